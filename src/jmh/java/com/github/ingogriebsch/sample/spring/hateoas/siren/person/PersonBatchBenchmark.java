@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.APPLICATION_NDJSON_VALUE;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import com.github.ingogriebsch.sample.spring.hateoas.siren.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+@BenchmarkMode(Throughput)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Measurement(iterations = 5, time = 2, timeUnit = SECONDS)
+@OutputTimeUnit(SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = SECONDS)
+public class PersonBatchBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+    private byte[] single;
+    private byte[] array;
+    private byte[] ndjson;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(Application.class).logStartupInfo(false).run("--server.port=0",
+            "--logging.level.root=warn");
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/persons";
+
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            items.append("{\"name\":\"Person-").append(Integer.toString(i, 36)).append("\",\"age\":").append(i % 100)
+                .append("}\n");
+        }
+        single = "{\"name\":\"Person\",\"age\":42}".getBytes(UTF_8);
+        ndjson = items.toString().getBytes(UTF_8);
+        array = ("[" + items.toString().trim().replace("\n", ",") + "]").getBytes(UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long insert() throws IOException {
+        return post(baseUrl, APPLICATION_JSON_VALUE, single);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long insertAll() throws IOException {
+        return post(baseUrl + "/batch", APPLICATION_JSON_VALUE, array);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long insertAllFromNdjson() throws IOException {
+        return post(baseUrl + "/batch", APPLICATION_NDJSON_VALUE, ndjson);
+    }
+
+    private static long post(String url, String contentType, byte[] content) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty(CONTENT_TYPE, contentType);
+        connection.setFixedLengthStreamingMode(content.length);
+        connection.setDoOutput(true);
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(content);
+        }
+
+        long length = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream body = connection.getInputStream()) {
+            for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+                length += read;
+            }
+        }
+        return length;
+    }
+}
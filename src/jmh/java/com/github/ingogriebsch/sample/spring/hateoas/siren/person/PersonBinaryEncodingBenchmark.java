@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.springframework.web.context.request.RequestContextHolder.resetRequestAttributes;
+import static org.springframework.web.context.request.RequestContextHolder.setRequestAttributes;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.ingogriebsch.sample.spring.hateoas.siren.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+public class PersonBinaryEncodingBenchmark {
+
+    @Param({ "application/vnd.siren+json", "application/vnd.siren+cbor", "application/vnd.siren+smile", "application/hal+json",
+        "application/hal+cbor", "application/hal+smile" })
+    private String mediaType;
+
+    @Param({ "20", "1000" })
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private MediaType contentType;
+    private HttpMessageConverter<Object> converter;
+    private ObjectMapper reader;
+    private EntityModel<Person> entityModel;
+    private PagedModel<EntityModel<Person>> pagedModel;
+    private byte[] encodedPagedModel;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+        context = new SpringApplicationBuilder(Application.class).logStartupInfo(false).run("--server.port=0",
+            "--logging.level.root=warn", "--person.metrics.detailed=false");
+        setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", PersonController.PATH_FIND_ALL)));
+
+        contentType = MediaType.parseMediaType(mediaType);
+        converter = (HttpMessageConverter<Object>) context.getBean(RequestMappingHandlerAdapter.class).getMessageConverters()
+            .stream().filter(c -> c.canWrite(PagedModel.class, contentType)).findFirst()
+            .orElseThrow(() -> new IllegalStateException("No converter available for " + contentType));
+        reader = mediaType.endsWith("cbor") ? new ObjectMapper(new CBORFactory())
+            : mediaType.endsWith("smile") ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+
+        PersonModelAssembler personModelAssembler = context.getBean(PersonModelAssembler.class);
+        List<Person> content =
+            rangeClosed(1, pageSize).mapToObj(id -> new Person(id, "Person " + id, (int) id % 100)).collect(toList());
+        entityModel = personModelAssembler.toModel(content.get(0));
+        pagedModel = context.getBean(PagedResourcesAssembler.class)
+            .toModel(new PageImpl<>(content, PageRequest.of(0, pageSize), pageSize * 10L), personModelAssembler);
+        encodedPagedModel = encode(pagedModel);
+
+        System.out.println(System.lineSeparator() + "Payload: entity " + encode(entityModel).length + " bytes, page "
+            + encodedPagedModel.length + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resetRequestAttributes();
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encodeEntityModel() throws IOException {
+        return encode(entityModel);
+    }
+
+    @Benchmark
+    public byte[] encodePagedModel() throws IOException {
+        return encode(pagedModel);
+    }
+
+    @Benchmark
+    public JsonNode decodePagedModel() throws IOException {
+        return reader.readTree(encodedPagedModel);
+    }
+
+    private byte[] encode(Object model) throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(model, contentType, message);
+        return message.getBodyAsBytes();
+    }
+}
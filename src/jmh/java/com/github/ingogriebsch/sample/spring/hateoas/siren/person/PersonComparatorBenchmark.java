@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.springframework.data.domain.Sort.by;
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.data.domain.Sort.Order.desc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+@BenchmarkMode(AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Measurement(iterations = 5, time = 2, timeUnit = SECONDS)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = SECONDS)
+public class PersonComparatorBenchmark {
+
+    private static final Sort SORT = by(asc("name"), desc("age"), asc("id"));
+
+    @Param({ "1000000" })
+    private int persons;
+
+    private List<Person> source;
+    private PersonService personService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        source = new ArrayList<>(persons);
+        for (int i = 0; i < persons; i++) {
+            // Few distinct names and ages, so that all three orders take part in the comparison.
+            source.add(new Person((long) i, "Person-" + random.nextInt(1000), random.nextInt(100)));
+        }
+
+        personService = new PersonService();
+        personService.insertAll(source.stream().map(p -> new PersonInput(p.getName(), p.getAge())).collect(toList()));
+    }
+
+    @Benchmark
+    public List<Person> sortCompiled() {
+        List<Person> sorted = new ArrayList<>(source);
+        sorted.sort(PersonComparator.of(SORT));
+        return sorted;
+    }
+
+    @Benchmark
+    public List<Person> sortChained() {
+        Comparator<Person> comparator =
+            comparing(Person::getName).thenComparing(Person::getAge, reverseOrder()).thenComparing(Person::getId);
+        List<Person> sorted = new ArrayList<>(source);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    @Benchmark
+    public Comparator<Person> compile() {
+        return PersonComparator.of(by(asc("name"), desc("age"), asc("id")));
+    }
+
+    @Benchmark
+    public Page<Person> findAllFirstPage() {
+        return personService.findAll(PageRequest.of(0, 20, SORT));
+    }
+}
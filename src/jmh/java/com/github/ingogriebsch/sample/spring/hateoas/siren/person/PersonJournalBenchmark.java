@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2, timeUnit = SECONDS)
+@OutputTimeUnit(SECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 3, time = 2, timeUnit = SECONDS)
+public class PersonJournalBenchmark {
+
+    @Param({ "ALWAYS", "BATCH", "INTERVAL" })
+    private String fsync;
+
+    private Path directory;
+    private FilePersonJournal journal;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("person-journal");
+        journal = new FilePersonJournal(directory, PersonJournal.Fsync.valueOf(fsync), 256, Duration.ofMillis(100));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        delete(directory);
+    }
+
+    @Benchmark
+    public long update() {
+        long id = ThreadLocalRandom.current().nextLong(1_000_000);
+        long position = journal.update(new Person(id, "Person-" + id, (int) (id % 100), 1L));
+        journal.sync(position);
+        return position;
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+}
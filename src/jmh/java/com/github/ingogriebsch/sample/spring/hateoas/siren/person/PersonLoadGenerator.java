@@ -0,0 +1,323 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.channels.SelectionKey.OP_CONNECT;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.ingogriebsch.sample.spring.hateoas.siren.Application;
+import com.google.common.collect.Lists;
+
+/**
+ * Starts the application in a separate JVM and keeps {@code connections} clients busy with updates whose body arrives in two
+ * parts, {@code delay} milliseconds apart. Every request therefore blocks the thread handling it while the client is slow.
+ * Run with {@code platform}, {@code virtual} or both as arguments.
+ */
+public class PersonLoadGenerator {
+
+    private static final int CONNECTIONS = Integer.getInteger("connections", 10_000);
+    private static final long DELAY = MILLISECONDS.toNanos(Long.getLong("delay", 100));
+    private static final long WARMUP = SECONDS.toNanos(Long.getLong("warmup", 20));
+    private static final long DURATION = SECONDS.toNanos(Long.getLong("duration", 30));
+    private static final Pattern PID = Pattern.compile("with PID (\\d+)");
+    private static final Pattern CONTENT_LENGTH = Pattern.compile("(?i)content-length: *(\\d+)");
+    private static final byte[] CHUNKED_END = "\r\n0\r\n\r\n".getBytes(US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        for (String mode : args.length > 0 ? Arrays.asList(args) : Arrays.asList("platform", "virtual")) {
+            try (Server server = new Server("virtual".equals(mode))) {
+                System.out.printf("%s threads, %d connections, %d ms delay: %s%n", mode, CONNECTIONS, NANOSECONDS.toMillis(DELAY),
+                    new Load(server).run());
+            }
+        }
+    }
+
+    private static final class Server implements Closeable {
+
+        private final Process process;
+        private final int port;
+        private final CompletableFuture<Long> pid = new CompletableFuture<>();
+
+        private Server(boolean virtual) throws Exception {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+
+            List<String> command = Lists.newArrayList(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx1g", "-cp", System.getProperty("java.class.path"), Application.class.getName(), "--server.port=" + port,
+                "--server.tomcat.max-connections=" + (CONNECTIONS + 100), "--server.tomcat.accept-count=" + CONNECTIONS,
+                "--person.virtual-threads.enabled=" + virtual, "--logging.level.root=warn",
+                "--logging.level." + Application.class.getName() + "=info");
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+            Thread output = new Thread(this::readOutput, "server-output");
+            output.setDaemon(true);
+            output.start();
+            pid.get(60, SECONDS);
+            awaitHealthy();
+        }
+
+        private void readOutput() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), US_ASCII))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    Matcher matcher = PID.matcher(line);
+                    if (!pid.isDone() && matcher.find()) {
+                        pid.complete(Long.valueOf(matcher.group(1)));
+                    } else if (line.contains("ERROR") || line.contains("Exception")) {
+                        System.err.println(line);
+                    }
+                }
+                pid.completeExceptionally(new IOException("Server terminated!"));
+            } catch (IOException e) {
+                pid.completeExceptionally(e);
+            }
+        }
+
+        private void awaitHealthy() throws Exception {
+            long deadline = System.nanoTime() + SECONDS.toNanos(60);
+            while (System.nanoTime() < deadline) {
+                HttpURLConnection connection =
+                    (HttpURLConnection) new URL("http://localhost:" + port + "/actuator/health").openConnection();
+                try {
+                    if (connection.getResponseCode() == 200) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                } finally {
+                    connection.disconnect();
+                }
+                Thread.sleep(100);
+            }
+            throw new TimeoutException("Server did not become healthy!");
+        }
+
+        // Resident memory and number of threads of the server process, as reported by Linux.
+        private long[] status() throws Exception {
+            long[] status = new long[2];
+            for (String line : Files.readAllLines(Paths.get("/proc", pid.get().toString(), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    status[0] = Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                } else if (line.startsWith("Threads:")) {
+                    status[1] = Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+            return status;
+        }
+
+        @Override
+        public void close() {
+            process.destroy();
+            try {
+                process.waitFor(30, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Load {
+
+        private final Server server;
+        private final Selector selector;
+        private final ArrayDeque<Client> delayed = new ArrayDeque<>();
+        private long[] latencies = new long[1 << 16];
+        private int completed;
+        private int failed;
+        private long measureFrom;
+        private long maxRss;
+        private long maxThreads;
+
+        private Load(Server server) throws IOException {
+            this.server = server;
+            selector = Selector.open();
+        }
+
+        private String run() throws Exception {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(new InetSocketAddress("localhost", server.port));
+                channel.register(selector, OP_CONNECT, new Client(channel, 1 + i % 3));
+            }
+
+            long start = System.nanoTime();
+            measureFrom = start + WARMUP;
+            long end = measureFrom + DURATION;
+            long nextSample = measureFrom;
+            while (System.nanoTime() < end) {
+                long now = System.nanoTime();
+                Client next = delayed.peek();
+                long timeout = next != null ? Math.max(1, NANOSECONDS.toMillis(next.wakeAt - now)) : 100;
+                selector.select(Math.min(timeout, 100));
+                for (SelectionKey key : selector.selectedKeys()) {
+                    ((Client) key.attachment()).ready(key);
+                }
+                selector.selectedKeys().clear();
+
+                now = System.nanoTime();
+                while (!delayed.isEmpty() && delayed.peek().wakeAt <= now) {
+                    delayed.poll().finishRequest();
+                }
+                if (now >= nextSample) {
+                    long[] status = server.status();
+                    maxRss = Math.max(maxRss, status[0]);
+                    maxThreads = Math.max(maxThreads, status[1]);
+                    nextSample = now + SECONDS.toNanos(1);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+
+            long[] sorted = Arrays.copyOf(latencies, completed);
+            Arrays.sort(sorted);
+            return String.format(
+                "%.0f requests/s, latency p50 %d ms, p99 %d ms, max %d ms, %d failed, server RSS %d MB, server threads %d",
+                completed / (double) NANOSECONDS.toSeconds(DURATION), percentile(sorted, 0.5), percentile(sorted, 0.99),
+                percentile(sorted, 1.0), failed, maxRss >> 20, maxThreads);
+        }
+
+        private void record(long started, boolean successful) {
+            long now = System.nanoTime();
+            if (started < measureFrom) {
+                return;
+            }
+            if (!successful) {
+                failed++;
+                return;
+            }
+            if (completed == latencies.length) {
+                latencies = Arrays.copyOf(latencies, completed * 2);
+            }
+            latencies[completed++] = now - started;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return NANOSECONDS.toMillis(sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))]);
+        }
+
+        private final class Client {
+
+            private final SocketChannel channel;
+            private final ByteBuffer head;
+            private final ByteBuffer tail;
+            private final ByteBuffer response = ByteBuffer.allocate(16 * 1024);
+            private long started;
+            private long wakeAt;
+
+            private Client(SocketChannel channel, long id) {
+                this.channel = channel;
+                byte[] body = "{\"name\":\"Load\",\"age\":42}".getBytes(US_ASCII);
+                String request = "PUT /persons/" + id + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Accept: application/vnd.siren+json\r\nContent-Length: " + body.length + "\r\n\r\n";
+                head = ByteBuffer.allocate(request.length() + body.length / 2);
+                head.put(request.getBytes(US_ASCII)).put(body, 0, body.length / 2).flip();
+                tail = ByteBuffer.wrap(body, body.length / 2, body.length - body.length / 2).slice();
+            }
+
+            private void ready(SelectionKey key) throws IOException {
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                    key.interestOps(OP_READ);
+                    startRequest();
+                } else if (key.isReadable()) {
+                    read(key);
+                }
+            }
+
+            private void startRequest() throws IOException {
+                started = System.nanoTime();
+                write(head);
+                wakeAt = started + DELAY;
+                delayed.add(this);
+            }
+
+            private void finishRequest() throws IOException {
+                write(tail);
+            }
+
+            private void read(SelectionKey key) throws IOException {
+                if (channel.read(response) < 0) {
+                    record(started, false);
+                    key.cancel();
+                    channel.close();
+                    return;
+                }
+                if (complete()) {
+                    record(started, response.get(9) == '2');
+                    response.clear();
+                    startRequest();
+                }
+            }
+
+            private void write(ByteBuffer buffer) throws IOException {
+                buffer.rewind();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            private boolean complete() {
+                String received = new String(response.array(), 0, response.position(), US_ASCII);
+                int headerEnd = received.indexOf("\r\n\r\n");
+                if (headerEnd < 0) {
+                    return false;
+                }
+
+                Matcher length = CONTENT_LENGTH.matcher(received.substring(0, headerEnd));
+                if (length.find()) {
+                    return response.position() >= headerEnd + 4 + Integer.parseInt(length.group(1));
+                }
+                return received.endsWith(new String(CHUNKED_END, US_ASCII));
+            }
+        }
+    }
+}
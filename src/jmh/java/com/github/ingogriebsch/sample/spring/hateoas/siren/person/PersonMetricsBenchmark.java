@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.springframework.util.unit.DataSize.ofMegabytes;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+public class PersonMetricsBenchmark {
+
+    private static final int PERSONS = 1000;
+
+    @Param({ "false", "true" })
+    private boolean detailed;
+
+    private PersonService personService;
+    private PersonMetrics personMetrics;
+    private Pageable pageable;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        personService = new PersonService(new ObjectPersonStore());
+        firstId = personService.insert(new PersonInput("Person 0", 0)).getId();
+        for (int i = 1; i < PERSONS; i++) {
+            personService.insert(new PersonInput("Person " + i, i % 100));
+        }
+
+        personMetrics = new PersonMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT),
+            new PersonResponseCache(ofMegabytes(1)), detailed);
+        pageable = PageRequest.of(0, 20, Sort.by("name"));
+    }
+
+    @Benchmark
+    public Optional<Person> findOneWithoutMetrics() {
+        return personService.findOne(id());
+    }
+
+    @Benchmark
+    public Optional<Person> findOne() {
+        return personMetrics.service("findOne", () -> personService.findOne(id()));
+    }
+
+    @Benchmark
+    public Pageable requested() {
+        personMetrics.requested("findAll", pageable);
+        return pageable;
+    }
+
+    private long id() {
+        return firstId + ThreadLocalRandom.current().nextInt(PERSONS);
+    }
+}
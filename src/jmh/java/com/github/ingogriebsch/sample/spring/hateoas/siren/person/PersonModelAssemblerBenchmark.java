@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.springframework.web.context.request.RequestContextHolder.resetRequestAttributes;
+import static org.springframework.web.context.request.RequestContextHolder.setRequestAttributes;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@BenchmarkMode(AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+public class PersonModelAssemblerBenchmark {
+
+    @Param({ "20", "100" })
+    private int pageSize;
+
+    private PersonModelAssembler personModelAssembler;
+    private Person person;
+    private Page<Person> page;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", PersonController.PATH_FIND_ALL);
+        setRequestAttributes(new ServletRequestAttributes(request));
+
+        personModelAssembler =
+            new PersonModelAssembler(new PagedResourcesAssembler<>(new HateoasPageableHandlerMethodArgumentResolver(), null));
+
+        person = new Person(1L, "Ingo", 44);
+        List<Person> content =
+            rangeClosed(1, pageSize).mapToObj(id -> new Person(id, "Person " + id, (int) id % 100)).collect(toList());
+        page = new PageImpl<>(content, PageRequest.of(0, pageSize), pageSize * 10L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resetRequestAttributes();
+    }
+
+    @Benchmark
+    public EntityModel<Person> toModel() {
+        return personModelAssembler.toModel(person);
+    }
+
+    @Benchmark
+    public PagedModel<EntityModel<Person>> toPagedModel() {
+        return personModelAssembler.toPagedModel(page);
+    }
+}
@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.INTERVAL;
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(SingleShotTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@Measurement(iterations = 3)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+public class PersonRecoveryBenchmark {
+
+    private static final int CHUNK_SIZE = 100_000;
+
+    @Param({ "1000000", "10000000" })
+    private int persons;
+
+    @Param({ "0.1" })
+    private double tail;
+
+    private Path directory;
+    private PersonPersistence persistence;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("person-recovery");
+        try (PersonPersistence persistence = open()) {
+            PersonStore store = persistence.recover();
+            PersonService personService = new PersonService(store, persistence.journal());
+
+            int snapshotted = persons - (int) (persons * tail);
+            insert(personService, snapshotted);
+            persistence.snapshot(store);
+            insert(personService, persons - snapshotted);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        PersonJournalBenchmark.delete(directory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        persistence.close();
+    }
+
+    @Benchmark
+    public PersonStore recover() throws IOException {
+        persistence = open();
+        return persistence.recover();
+    }
+
+    private PersonPersistence open() throws IOException {
+        return new PersonPersistence(directory, INTERVAL, 256, Duration.ofSeconds(1));
+    }
+
+    private static void insert(PersonService personService, int count) {
+        for (int i = 0; i < count; i += CHUNK_SIZE) {
+            List<PersonInput> chunk = range(i, Math.min(i + CHUNK_SIZE, count))
+                .mapToObj(n -> new PersonInput("Person-" + n, n % 100)).collect(toList());
+            personService.insertAll(chunk);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.ingogriebsch.sample.spring.hateoas.siren.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+@BenchmarkMode(Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2, timeUnit = SECONDS)
+@OutputTimeUnit(SECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+@Warmup(iterations = 3, time = 2, timeUnit = SECONDS)
+public class PersonResponseCacheBenchmark {
+
+    private static final int HOT_PERSONS = 100;
+
+    @Param({ "0", "16MB" })
+    private String maximumWeight;
+
+    @Param({ "application/vnd.siren+json", "application/hal+json" })
+    private String mediaType;
+
+    private ConfigurableApplicationContext context;
+    private PersonResponseCache personResponseCache;
+    private String baseUrl;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(Application.class).logStartupInfo(false).run("--server.port=0",
+            "--logging.level.root=warn", "--person.response-cache.maximum-weight=" + maximumWeight);
+        personResponseCache = context.getBean(PersonResponseCache.class);
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/persons/";
+
+        PersonService personService = context.getBean(PersonService.class);
+        firstId = personService.insert(new PersonInput("Person 0", 0)).getId();
+        for (int i = 1; i < HOT_PERSONS; i++) {
+            personService.insert(new PersonInput("Person " + i, i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println(System.lineSeparator() + "Response cache: " + personResponseCache.stats());
+        context.close();
+    }
+
+    @Benchmark
+    public long findOne() throws IOException {
+        long id = firstId + ThreadLocalRandom.current().nextInt(HOT_PERSONS);
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + id).openConnection();
+        connection.setRequestProperty(ACCEPT, mediaType);
+
+        long length = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream body = connection.getInputStream()) {
+            for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+                length += read;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.springframework.data.domain.Sort.by;
+import static org.springframework.data.domain.Sort.Order.asc;
+
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+@BenchmarkMode(AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@OutputTimeUnit(MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+public class PersonServiceBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({ "1000", "100000", "1000000" })
+    private int persons;
+
+    private final Random random = new Random(42);
+    private PersonStore personStore;
+    private PersonService personService;
+    private PersonInput personInput;
+    private Pageable middlePage;
+    private Pageable agePage;
+    private PersonCursor middleCursor;
+    private long lastIdBeforeIteration;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        personStore = new ObjectPersonStore();
+        personService = new PersonService(personStore);
+        for (int i = 0; i < persons; i++) {
+            personService.insert(new PersonInput(name(i), i % 100));
+        }
+
+        personInput = new PersonInput("Benchmark", 42);
+        middlePage = PageRequest.of(persons / PAGE_SIZE / 2, PAGE_SIZE, by("name"));
+        agePage = PageRequest.of((int) (persons * 0.4) / PAGE_SIZE / 2, PAGE_SIZE);
+        Person middle = personService.findAll(middlePage).getContent().get(0);
+        middleCursor = new PersonCursor(asc("name"), null).after(middle);
+    }
+
+    @Setup(Level.Iteration)
+    public void rememberLastId() {
+        lastIdBeforeIteration = personStore.lastId();
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeInserted() {
+        List<Long> inserted = personStore.streamAfter(asc("id"), new Person(lastIdBeforeIteration, null, null)).map(Person::getId)
+            .collect(toList());
+        inserted.forEach(id -> personStore.delete(id));
+    }
+
+    @Benchmark
+    public Person insert() {
+        return personService.insert(personInput);
+    }
+
+    @Benchmark
+    public long nextIdByScan() {
+        return personStore.stream().mapToLong(Person::getId).max().orElse(0L) + 1L;
+    }
+
+    @Benchmark
+    public Optional<Person> findOne() {
+        return personService.findOne(randomId());
+    }
+
+    @Benchmark
+    public Optional<Person> update() {
+        return personService.update(randomId(), personInput);
+    }
+
+    @Benchmark
+    public Page<Person> findAllFirstPage() {
+        return personService.findAll(PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Page<Person> findAllFirstPageSortedByName() {
+        return personService.findAll(PageRequest.of(0, PAGE_SIZE, by("name")));
+    }
+
+    @Benchmark
+    public Page<Person> findAllMiddlePageByOffset() {
+        return personService.findAll(middlePage);
+    }
+
+    @Benchmark
+    public Slice<Person> findAllMiddlePageByCursor() {
+        return personService.findAll(middleCursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Person> search() {
+        return personService.search(name(random.nextInt(persons)));
+    }
+
+    @Benchmark
+    public List<Person> searchByScan() {
+        String name = name(random.nextInt(persons));
+        return personStore.stream().filter(p -> name.equalsIgnoreCase(p.getName())).collect(toList());
+    }
+
+    @Benchmark
+    public Page<Person> searchByPrefix() {
+        String name = name(random.nextInt(persons));
+        return personService.search(name.substring(0, name.length() - 1), true, PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Page<Person> findByAgeMiddlePage() {
+        return personService.findByAge(20, 59, agePage);
+    }
+
+    @Benchmark
+    public List<Person> findByAgeMiddlePageByScan() {
+        return personStore.stream(asc("age")).filter(p -> p.getAge() >= 20 && p.getAge() <= 59).skip(agePage.getOffset())
+            .limit(PAGE_SIZE).collect(toList());
+    }
+
+    @Benchmark
+    public Optional<PersonAgeStatistics> ageStatistics() {
+        return personService.ageStatistics(20, 59, 10);
+    }
+
+    @Benchmark
+    public IntSummaryStatistics ageStatisticsByScan() {
+        return personStore.stream().mapToInt(Person::getAge).filter(a -> a >= 20 && a <= 59).summaryStatistics();
+    }
+
+    private Long randomId() {
+        return 1L + random.nextInt(persons);
+    }
+
+    private static String name(int i) {
+        return "Person-" + Integer.toString(i, 36);
+    }
+}
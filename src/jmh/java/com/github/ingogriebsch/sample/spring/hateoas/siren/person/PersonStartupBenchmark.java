@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ingogriebsch.sample.spring.hateoas.siren.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+@BenchmarkMode(SingleShotTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@Measurement(iterations = 3)
+@OutputTimeUnit(MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+public class PersonStartupBenchmark {
+
+    private static final long POLL_INTERVAL_MILLIS = 5;
+
+    @Param({ "1000000", "10000000" })
+    private int persons;
+
+    @Param({ "default", "fast-startup" })
+    private String profile;
+
+    private Path seedFile;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        seedFile = Files.createTempFile("persons", ".ndjson");
+        try (OutputStream output = Files.newOutputStream(seedFile)) {
+            new PersonExporter(new ObjectMapper())
+                .export(rangeClosed(1, persons).mapToObj(id -> new Person(id, "Person-" + id, (int) (id % 100))), output);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(seedFile);
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws Exception {
+        return awaitStatus(start() + "/actuator/health", 0);
+    }
+
+    @Benchmark
+    public int timeToReady() throws Exception {
+        return awaitStatus(start() + "/actuator/health", 200);
+    }
+
+    private String start() {
+        context = new SpringApplicationBuilder(Application.class).profiles(profile).logStartupInfo(false).run("--server.port=0",
+            "--logging.level.root=warn", "--person.startup.seed-file=" + seedFile);
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static int awaitStatus(String url, int expected) throws Exception {
+        while (true) {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            try {
+                int status = connection.getResponseCode();
+                if (expected == 0 || status == expected) {
+                    return status;
+                }
+            } finally {
+                connection.disconnect();
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+import static org.springframework.data.domain.Sort.Order.asc;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort.Order;
+
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class PersonStoreBenchmark {
+
+    private static final int CHUNK_SIZE = 100_000;
+    private static final int DISTINCT_NAMES = 100_000;
+    private static final Order BY_NAME = asc("name");
+
+    @Param({ "OBJECTS", "COLUMNS", "MAPPED" })
+    private String layout;
+
+    @Param({ "1000000", "10000000" })
+    private int persons;
+
+    private PersonStore store;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        long heap = usedHeapAfterGc();
+        long collections = collections();
+        long collectionTime = collectionTime();
+
+        store = store(PersonStore.Layout.valueOf(layout));
+        for (int i = 0; i < persons; i += CHUNK_SIZE) {
+            List<Person> chunk = range(i, Math.min(i + CHUNK_SIZE, persons))
+                .mapToObj(n -> new Person(n + 1L, "Person-" + n % DISTINCT_NAMES, n % 100)).collect(toList());
+            store.insertAll(chunk);
+        }
+        store.stream(BY_NAME).findFirst();
+
+        long footprint = usedHeapAfterGc() - heap;
+        System.out.printf("%nHeap footprint: %d MB (%d bytes per person), GC while loading: %d collections, %d ms%n",
+            footprint >> 20, footprint / persons, collections() - collections, collectionTime() - collectionTime);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            ((MappedPersonStore) store).close();
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(reverseOrder()).collect(toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(SingleShotTime)
+    @Measurement(iterations = 5)
+    @OutputTimeUnit(MILLISECONDS)
+    @Warmup(iterations = 1)
+    public void fullGc() {
+        System.gc();
+    }
+
+    @Benchmark
+    @BenchmarkMode(AverageTime)
+    @Measurement(iterations = 5, time = 2, timeUnit = SECONDS)
+    @OutputTimeUnit(MICROSECONDS)
+    @Warmup(iterations = 3, time = 2, timeUnit = SECONDS)
+    public List<Person> page() {
+        int n = ThreadLocalRandom.current().nextInt(persons);
+        Person last = new Person(n + 1L, "Person-" + n % DISTINCT_NAMES, n % 100);
+        return store.streamAfter(BY_NAME, last).limit(20).collect(toList());
+    }
+
+    private PersonStore store(PersonStore.Layout layout) throws IOException {
+        switch (layout) {
+            case COLUMNS:
+                return new ColumnarPersonStore();
+            case MAPPED:
+                directory = Files.createTempDirectory("persons");
+                return new MappedPersonStore(directory);
+            default:
+                return new ObjectPersonStore();
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long collections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount)
+            .sum();
+    }
+
+    private static long collectionTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+@BenchmarkMode(Throughput)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Measurement(iterations = 5, time = 2, timeUnit = SECONDS)
+@OutputTimeUnit(SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = SECONDS)
+public class PersonUpdateBenchmark {
+
+    private static final int PERSONS = 100_000;
+
+    @Param({ "OBJECTS", "COLUMNS" })
+    private String layout;
+
+    private PersonService personService;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        personService = new PersonService(PersonStore.Layout.valueOf(layout) == PersonStore.Layout.COLUMNS
+            ? new ColumnarPersonStore() : new ObjectPersonStore());
+        firstId = personService.insert(new PersonInput("Person 0", 0)).getId();
+        for (int i = 1; i < PERSONS; i++) {
+            personService.insert(new PersonInput("Person " + i, i % 100));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Person> updateDistinct(Partition partition) {
+        return personService.update(partition.next(), partition.input());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Person> updateSame(Partition partition) {
+        return personService.update(firstId, partition.input());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Optional<Person> read(Partition partition) {
+        return personService.findOne(partition.any());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Optional<Person> write(Partition partition) {
+        return personService.update(partition.any(), partition.input());
+    }
+
+    @State(Scope.Thread)
+    public static class Partition {
+
+        private long from;
+        private int size;
+        private long firstId;
+        private int counter;
+
+        @Setup(Level.Trial)
+        public void setup(PersonUpdateBenchmark benchmark, ThreadParams threads) {
+            firstId = benchmark.firstId;
+            size = PERSONS / threads.getThreadCount();
+            from = firstId + (long) threads.getThreadIndex() * size;
+        }
+
+        long next() {
+            return from + ThreadLocalRandom.current().nextInt(size);
+        }
+
+        long any() {
+            return firstId + ThreadLocalRandom.current().nextInt(PERSONS);
+        }
+
+        PersonInput input() {
+            int n = counter++;
+            return new PersonInput("Person " + n, n % 100);
+        }
+    }
+}
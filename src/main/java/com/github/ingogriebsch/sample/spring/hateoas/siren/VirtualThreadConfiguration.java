@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.apache.catalina.connector.Connector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "person.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    VirtualThreadConnectorCustomizer virtualThreadConnectorCustomizer() {
+        return new VirtualThreadConnectorCustomizer(virtualThreadExecutor());
+    }
+
+    // Looked up reflectively, so the application still builds and runs on Java 8 as long as the mode is not enabled.
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", methodType(ExecutorService.class)).invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(String.format("Virtual threads need Java 21 or newer, but running on Java %s!",
+                System.getProperty("java.version")), e);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create a virtual thread executor!", e);
+        }
+    }
+
+    // Tomcat does not shut down an executor it is handed, so the customizer owns it and shuts it down with the context. It is
+    // deliberately not exposed as an executor bean, which would replace the task executor Spring Boot configures otherwise.
+    @RequiredArgsConstructor
+    static class VirtualThreadConnectorCustomizer implements TomcatConnectorCustomizer {
+
+        @NonNull
+        private final ExecutorService executor;
+
+        @Override
+        public void customize(Connector connector) {
+            connector.getProtocolHandler().setExecutor(executor);
+        }
+
+        void shutdown() {
+            executor.shutdown();
+        }
+    }
+}
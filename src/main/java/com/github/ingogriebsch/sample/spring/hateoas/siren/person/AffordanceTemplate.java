@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.stream.Collectors.toList;
+
+import static org.springframework.core.ResolvableType.forMethodReturnType;
+import static org.springframework.hateoas.mediatype.PropertyUtils.getExposedProperties;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.hateoas.Affordance;
+import org.springframework.hateoas.AffordanceModel.PayloadMetadata;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.hateoas.QueryParameter;
+import org.springframework.hateoas.mediatype.Affordances;
+import org.springframework.hateoas.server.core.AnnotationMappingDiscoverer;
+import org.springframework.hateoas.server.core.CachingMappingDiscoverer;
+import org.springframework.hateoas.server.core.MappingDiscoverer;
+import org.springframework.hateoas.server.core.MethodParameters;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.util.UriComponentsBuilder;
+
+class AffordanceTemplate {
+
+    private static final MappingDiscoverer DISCOVERER =
+        CachingMappingDiscoverer.of(new AnnotationMappingDiscoverer(RequestMapping.class));
+
+    private final String name;
+    private final String mapping;
+    private final Collection<HttpMethod> httpMethods;
+    private final PayloadMetadata input;
+    private final PayloadMetadata output;
+    private final List<QueryParameter> parameters;
+
+    private AffordanceTemplate(Class<?> type, Method method) {
+        MethodParameters methodParameters = MethodParameters.of(method);
+        ResolvableType inputType = methodParameters.getParametersWith(RequestBody.class).stream().findFirst()
+            .map(ResolvableType::forMethodParameter).map(AffordanceTemplate::elementType).orElse(ResolvableType.NONE);
+
+        name = method.getName();
+        mapping = DISCOVERER.getMapping(method);
+        httpMethods = DISCOVERER.getRequestMethod(type, method);
+        input = getExposedProperties(inputType);
+        output = getExposedProperties(forMethodReturnType(method));
+        parameters = methodParameters.getParametersWith(RequestParam.class).stream().map(QueryParameter::of).collect(toList());
+    }
+
+    static AffordanceTemplate of(Class<?> type, String methodName, Class<?>... parameterTypes) {
+        Method method = ReflectionUtils.findMethod(type, methodName, parameterTypes);
+        Assert.notNull(method, String.format("Method '%s' not found on type '%s'!", methodName, type.getName()));
+        return new AffordanceTemplate(type, method);
+    }
+
+    String expand(UriComponentsBuilder base, Object... uriVariables) {
+        return base.cloneBuilder().path(mapping).buildAndExpand(uriVariables).encode().toUriString();
+    }
+
+    List<Affordance> affordances(String href) {
+        Affordances affordances = Affordances.of(Link.of(href, LinkRelation.of(name)));
+        return httpMethods.stream().flatMap(m -> affordances.afford(m).withInput(input).withOutput(output)
+            .withParameters(parameters).withName(name).build().stream()).collect(toList());
+    }
+
+    private static ResolvableType elementType(ResolvableType type) {
+        return Collection.class.isAssignableFrom(type.toClass()) ? type.asCollection().getGeneric() : type;
+    }
+}
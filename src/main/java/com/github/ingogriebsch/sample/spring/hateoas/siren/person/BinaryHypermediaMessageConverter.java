@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+class BinaryHypermediaMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+
+    BinaryHypermediaMessageConverter(@NonNull ObjectMapper objectMapper, @NonNull JsonFactory jsonFactory,
+        @NonNull MediaType mediaType) {
+        super(mediaType);
+        this.objectMapper = objectMapper;
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return RepresentationModel.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading binary hypermedia is not supported!", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading binary hypermedia is not supported!", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object model, Type type, HttpOutputMessage outputMessage) throws IOException {
+        // The serializers of the hypermedia module only talk to the generator, so they write the binary format as well.
+        JsonGenerator generator = jsonFactory.createGenerator(outputMessage.getBody());
+        objectMapper.writeValue(generator, model);
+        generator.flush();
+    }
+}
@@ -0,0 +1,37 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.util.function.Supplier;
+
+import lombok.NonNull;
+import lombok.Value;
+import org.springframework.hateoas.RepresentationModel;
+
+@Value
+class CachedPersonModel {
+
+    // The id of a single person or the URI of a page of persons.
+    @NonNull
+    Object key;
+    long version;
+    @NonNull
+    Supplier<? extends RepresentationModel<?>> model;
+}
@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonCompression.GZIP;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import lombok.NonNull;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+class CachedPersonModelConverter extends AbstractHttpMessageConverter<CachedPersonModel> {
+
+    private final PersonResponseCache cache;
+    private final PersonCompression compression;
+    private final List<HttpMessageConverter<?>> delegates;
+
+    CachedPersonModelConverter(@NonNull PersonResponseCache cache, @NonNull PersonCompression compression,
+        @NonNull List<MediaType> mediaTypes, @NonNull List<HttpMessageConverter<?>> delegates) {
+        setSupportedMediaTypes(ImmutableList.copyOf(mediaTypes));
+        this.cache = cache;
+        this.compression = compression;
+        this.delegates = ImmutableList.copyOf(delegates);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CachedPersonModel.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CachedPersonModel readInternal(Class<? extends CachedPersonModel> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading cached persons is not supported!", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(CachedPersonModel model, HttpOutputMessage outputMessage) throws IOException {
+        HttpHeaders headers = outputMessage.getHeaders();
+        MediaType mediaType = headers.getContentType();
+        Object key = model.getKey();
+        String variant = mediaType + " " + linkTo(PersonController.class).toUri();
+
+        byte[] response = cache.get(key, model.getVersion(), variant);
+        if (response == null) {
+            response = serialize(PersonMetrics.deferred(model.getModel()), mediaType);
+            cache.put(key, model.getVersion(), variant, response);
+        }
+
+        compression.vary(headers);
+        if (compression.requested() && compression.exceedsThreshold(response.length)) {
+            String compressedVariant = variant + " " + GZIP;
+            byte[] compressed = cache.get(key, model.getVersion(), compressedVariant);
+            if (compressed == null) {
+                compressed = compression.compress(response);
+                cache.put(key, model.getVersion(), compressedVariant, compressed);
+            }
+            PersonCompression.encoded(headers);
+            response = compressed;
+        }
+        outputMessage.getBody().write(response);
+    }
+
+    private byte[] serialize(RepresentationModel<?> model, MediaType mediaType) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpHeaders headers = new HttpHeaders();
+        delegate(model.getClass(), mediaType).write(model, mediaType, new HttpOutputMessage() {
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public OutputStream getBody() {
+                return body;
+            }
+        });
+        return body.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private HttpMessageConverter<Object> delegate(Class<?> clazz, MediaType mediaType) {
+        return (HttpMessageConverter<Object>) delegates.stream().filter(c -> c.canWrite(clazz, mediaType)).findFirst()
+            .orElseThrow(() -> new IllegalStateException(String.format("No converter available for '%s'!", mediaType)));
+    }
+}
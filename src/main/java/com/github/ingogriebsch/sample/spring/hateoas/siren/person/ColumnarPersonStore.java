@@ -0,0 +1,783 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonNameArena.encode;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lombok.NonNull;
+import org.springframework.data.domain.Sort.Order;
+
+// Readers never lock: they work on the columns published last. Rows are only appended, an updated or deleted row is
+// retired with the version that retired it, so every published state stays valid while later writes go on. The indexes
+// are kept as sorted runs of rows which readers merge on the fly, and writers merge the runs like a binary counter, so a
+// sorted read never has to rebuild an index. Once more rows are retired than live, they are compacted into new columns,
+// which also drops the names no row refers to anymore.
+class ColumnarPersonStore implements PersonStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int FIRST_CHUNK_SIZE = 16;
+    private static final int CHUNK_SIZE = 256;
+    private static final int EMPTY = -1;
+    private static final int NO_AGE = Integer.MIN_VALUE;
+    private static final long LIVE = Long.MAX_VALUE;
+
+    // The slots of the id table hold the row plus one, a deleted id leaves a tombstone so that probes never stop early.
+    private static final int FREE = 0;
+    private static final int TOMBSTONE = -1;
+
+    private static final Index ID_INDEX =
+        new Index(0, (c, a, b) -> Long.compare(c.ids[a], c.ids[b]), (c, row, key) -> Long.compare(c.ids[row], key.id));
+    private static final Index NAME_INDEX =
+        new Index(1, (c, a, b) -> c.tie(c.names.compare(c.nameCodes[a], c.nameCodes[b]), a, b),
+            (c, row, key) -> c.tie(c.names.compare(c.nameCodes[row], key.name), row, key));
+    private static final Index AGE_INDEX = new Index(2, (c, a, b) -> c.tie(Integer.compare(c.ages[a], c.ages[b]), a, b),
+        (c, row, key) -> c.tie(Integer.compare(c.ages[row], key.age), row, key));
+    private static final Index FOLDED_INDEX =
+        new Index(3, (c, a, b) -> c.tie(c.names.compare(c.foldedCodes[a], c.foldedCodes[b]), a, b),
+            (c, row, key) -> c.tie(c.names.compare(c.foldedCodes[row], key.folded), row, key));
+    private static final Index[] INDEXES = { ID_INDEX, NAME_INDEX, AGE_INDEX, FOLDED_INDEX };
+
+    // Writes of the same id are serialized by its stripe while guards and modifiers run, the columns are only locked while
+    // they are changed. Everything below is guarded by the write lock.
+    private final PersonLocks locks = new PersonLocks();
+    private final Lock write = new ReentrantLock();
+    private final PersonAgeHistogram histogram = new PersonAgeHistogram();
+    private volatile Columns columns;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int[] ages = new int[INITIAL_CAPACITY];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+    private int[] foldedCodes = new int[INITIAL_CAPACITY];
+    private long[] retired = new long[INITIAL_CAPACITY];
+    private int[] successors = new int[INITIAL_CAPACITY];
+    private PersonNameArena names = new PersonNameArena();
+    private AtomicIntegerArray table = new AtomicIntegerArray(INITIAL_CAPACITY * 2);
+    private final int[][][] runs = new int[INDEXES.length][0][];
+    private int rows;
+    private int live;
+    private int slots;
+    private long version;
+
+    ColumnarPersonStore() {
+        columns = new Columns();
+    }
+
+    @Override
+    public Optional<Person> get(@NonNull Long id) {
+        for (;;) {
+            Columns c = columns;
+            int row = c.find(id);
+            if (row < c.rows) {
+                return row != EMPTY ? Optional.of(c.view(row)) : Optional.empty();
+            }
+        }
+    }
+
+    @Override
+    public boolean insert(@NonNull Person person, @NonNull Consumer<Person> guard) {
+        Lock locked = locks.lock(person.getId());
+        try {
+            if (contains(person.getId())) {
+                return false;
+            }
+            guard.accept(person);
+
+            write.lock();
+            try {
+                int row = append(person);
+                index(row, rows);
+                reserve(1);
+                publish();
+                put(row);
+            } finally {
+                write.unlock();
+            }
+            return true;
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    @Override
+    public List<Person> insertAll(@NonNull Collection<Person> persons, @NonNull Consumer<List<Person>> guard) {
+        List<Lock> locked = locks.lockAll(persons);
+        try {
+            Set<Long> ids = new HashSet<>();
+            List<Person> accepted = persons.stream().filter(p -> !contains(p.getId()) && ids.add(p.getId())).collect(toList());
+            if (accepted.isEmpty()) {
+                return accepted;
+            }
+            guard.accept(accepted);
+
+            write.lock();
+            try {
+                int from = rows;
+                accepted.forEach(this::append);
+                index(from, rows);
+                reserve(rows - from);
+                publish();
+                for (int row = from; row < rows; row++) {
+                    put(row);
+                }
+            } finally {
+                write.unlock();
+            }
+            return accepted;
+        } finally {
+            PersonLocks.unlockAll(locked);
+        }
+    }
+
+    @Override
+    public Optional<Person> update(@NonNull Long id, @NonNull Consumer<Person> modifier) {
+        Lock locked = locks.lock(id);
+        try {
+            Optional<Person> person = get(id);
+            if (!person.isPresent()) {
+                return person;
+            }
+            modifier.accept(person.get());
+
+            write.lock();
+            try {
+                // Looked up again, as rows may have been compacted while the modifier ran.
+                int slot = slot(id);
+                int previous = table.get(slot) - 1;
+                int row = append(person.get());
+                retire(previous, row);
+                index(row, rows);
+                publish();
+                table.set(slot, row + 1);
+                compactIfSparse();
+            } finally {
+                write.unlock();
+            }
+            return person;
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(@NonNull Long id, @NonNull Consumer<Person> guard) {
+        Lock locked = locks.lock(id);
+        try {
+            Optional<Person> person = get(id);
+            if (!person.isPresent()) {
+                return false;
+            }
+            guard.accept(person.get());
+
+            write.lock();
+            try {
+                int slot = slot(id);
+                retire(table.get(slot) - 1, EMPTY);
+                publish();
+                table.set(slot, TOMBSTONE);
+                compactIfSparse();
+            } finally {
+                write.unlock();
+            }
+            return true;
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    @Override
+    public long lastId() {
+        return columns.lastId();
+    }
+
+    @Override
+    public long version() {
+        return columns.version;
+    }
+
+    @Override
+    public int size() {
+        return columns.live;
+    }
+
+    @Override
+    public Stream<Person> stream() {
+        return stream(ID_INDEX, false, null, (c, row) -> true, null);
+    }
+
+    // Every chunk of the snapshot is read from the same columns, so it shows the persons exactly as they were when it was
+    // taken.
+    @Override
+    public Stream<Person> snapshot() {
+        return stream(ID_INDEX, false, null, (c, row) -> true, columns);
+    }
+
+    @Override
+    public Stream<Person> streamByName(@NonNull String name) {
+        byte[] folded = encode(fold(name));
+        return stream(FOLDED_INDEX, false, new Key(Long.MIN_VALUE, NO_AGE, null, folded),
+            (c, row) -> c.names.compare(c.foldedCodes[row], folded) == 0, null);
+    }
+
+    @Override
+    public Stream<Person> streamByNamePrefix(@NonNull String prefix) {
+        byte[] folded = encode(fold(prefix));
+        return stream(FOLDED_INDEX, false, new Key(Long.MIN_VALUE, NO_AGE, null, folded),
+            (c, row) -> c.names.startsWith(c.foldedCodes[row], folded), null);
+    }
+
+    @Override
+    public Stream<Person> stream(@NonNull Order order) {
+        return stream(index(order), order.isDescending(), null, (c, row) -> true, null);
+    }
+
+    @Override
+    public Stream<Person> streamAfter(@NonNull Order order, @NonNull Person last) {
+        return stream(index(order), order.isDescending(), Key.of(last), (c, row) -> true, null);
+    }
+
+    @Override
+    public PersonAgeHistogram ages() {
+        return histogram;
+    }
+
+    int nameCount() {
+        return columns.names.size();
+    }
+
+    private Stream<Person> stream(Index index, boolean descending, Key after, RowPredicate until, Columns pinned) {
+        return StreamSupport.stream(new Cursor(index, descending, after, until, pinned), false);
+    }
+
+    private static Index index(Order order) {
+        switch (order.getProperty()) {
+            case "id":
+                return ID_INDEX;
+            case "name":
+                return NAME_INDEX;
+            case "age":
+                return AGE_INDEX;
+            default:
+                throw new IllegalArgumentException(String.format("Property '%s' is not indexed!", order.getProperty()));
+        }
+    }
+
+    private boolean contains(long id) {
+        for (;;) {
+            Columns c = columns;
+            int row = c.find(id);
+            if (row < c.rows) {
+                return row != EMPTY;
+            }
+        }
+    }
+
+    // Everything a write changed is published at once, afterwards only the id table is updated.
+    private void publish() {
+        version++;
+        columns = new Columns();
+    }
+
+    private int append(Person person) {
+        if (rows == ids.length) {
+            int capacity = rows * 2;
+            ids = copyOf(ids, capacity);
+            versions = copyOf(versions, capacity);
+            ages = copyOf(ages, capacity);
+            nameCodes = copyOf(nameCodes, capacity);
+            foldedCodes = copyOf(foldedCodes, capacity);
+            retired = copyOf(retired, capacity);
+            successors = copyOf(successors, capacity);
+        }
+
+        int row = rows++;
+        ids[row] = person.getId();
+        versions[row] = person.getVersion();
+        ages[row] = person.getAge() != null ? person.getAge() : NO_AGE;
+        nameCodes[row] = names.intern(person.getName());
+        foldedCodes[row] = names.intern(fold(person.getName()));
+        retired[row] = LIVE;
+        successors[row] = EMPTY;
+        histogram.add(person.getAge());
+        live++;
+        return row;
+    }
+
+    // The row stays readable for everybody still working on columns published before.
+    private void retire(int row, int successor) {
+        retired[row] = version + 1;
+        successors[row] = successor;
+        histogram.remove(ages[row]);
+        live--;
+    }
+
+    // Adds the appended rows as a new run to every index. Runs are merged as long as the previous one is not larger than
+    // twice the last, which keeps the number of runs logarithmic and merges every row only a logarithmic number of times.
+    private void index(int from, int to) {
+        Columns c = new Columns();
+        for (Index index : INDEXES) {
+            int[] run = new int[to - from];
+            for (int i = 0; i < run.length; i++) {
+                run[i] = from + i;
+            }
+            sort(run, new int[run.length], 0, run.length, (a, b) -> index.compare(c, a, b));
+
+            int[][] merged = copyOf(runs[index.ordinal], runs[index.ordinal].length + 1);
+            int count = merged.length;
+            merged[count - 1] = run;
+            while (count > 1 && merged[count - 2].length <= merged[count - 1].length * 2) {
+                merged[count - 2] = index.merge(c, merged[count - 2], merged[count - 1]);
+                count--;
+            }
+            runs[index.ordinal] = copyOf(merged, count);
+        }
+    }
+
+    private void compactIfSparse() {
+        if (rows - live <= Math.max(live, INITIAL_CAPACITY)) {
+            return;
+        }
+
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(live) * 2);
+        long[] ids = new long[capacity];
+        long[] versions = new long[capacity];
+        int[] ages = new int[capacity];
+        int[] nameCodes = new int[capacity];
+        int[] foldedCodes = new int[capacity];
+        long[] retired = new long[capacity];
+        int[] successors = new int[capacity];
+        PersonNameArena names = new PersonNameArena();
+        int[] moved = new int[rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (this.retired[row] != LIVE) {
+                moved[row] = EMPTY;
+                continue;
+            }
+
+            ids[count] = this.ids[row];
+            versions[count] = this.versions[row];
+            ages[count] = this.ages[row];
+            nameCodes[count] = names.copy(this.names, this.nameCodes[row]);
+            foldedCodes[count] = names.copy(this.names, this.foldedCodes[row]);
+            retired[count] = LIVE;
+            successors[count] = EMPTY;
+            moved[row] = count++;
+        }
+
+        this.ids = ids;
+        this.versions = versions;
+        this.ages = ages;
+        this.nameCodes = nameCodes;
+        this.foldedCodes = foldedCodes;
+        this.retired = retired;
+        this.successors = successors;
+        this.names = names;
+        rows = count;
+        table = table(live);
+        slots = 0;
+        for (int row = 0; row < rows; row++) {
+            put(row);
+        }
+
+        // The runs stay sorted when their rows are renumbered, so they only have to be merged, smallest first.
+        Columns c = new Columns();
+        for (Index index : INDEXES) {
+            int[][] previous = runs[index.ordinal];
+            int[] merged = new int[0];
+            for (int i = previous.length - 1; i >= 0; i--) {
+                merged = index.merge(c, remap(previous[i], moved), merged);
+            }
+            runs[index.ordinal] = new int[][] { merged };
+        }
+        // Nothing visible changed, so the version stays the same.
+        columns = new Columns();
+    }
+
+    // Makes room for the given number of ids before the columns are published, as a new table has to be published along.
+    private void reserve(int count) {
+        if ((slots + count) * 4 > table.length() * 3) {
+            rehash(count);
+        }
+    }
+
+    private void rehash(int count) {
+        AtomicIntegerArray previous = table;
+        table = table(live + count);
+        slots = 0;
+        for (int slot = 0; slot < previous.length(); slot++) {
+            int row = previous.get(slot) - 1;
+            if (row >= 0 && retired[row] == LIVE) {
+                put(row);
+            }
+        }
+    }
+
+    private void put(int row) {
+        int mask = table.length() - 1;
+        int slot = hash(ids[row]) & mask;
+        while (table.get(slot) != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        table.set(slot, row + 1);
+        slots++;
+    }
+
+    private int slot(long id) {
+        int mask = table.length() - 1;
+        int slot = hash(id) & mask;
+        while (table.get(slot) == TOMBSTONE || ids[table.get(slot) - 1] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static AtomicIntegerArray table(int count) {
+        return new AtomicIntegerArray(Math.max(INITIAL_CAPACITY * 2, Integer.highestOneBit(count) * 4));
+    }
+
+    private static int[] remap(int[] run, int[] moved) {
+        int[] remapped = new int[run.length];
+        int count = 0;
+        for (int row : run) {
+            if (moved[row] != EMPTY) {
+                remapped[count++] = moved[row];
+            }
+        }
+        return copyOf(remapped, count);
+    }
+
+    private static int hash(long id) {
+        long hash = id * 0x9e37_79b9_7f4a_7c15L;
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    private static String fold(String name) {
+        return name != null ? name.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static void sort(int[] rows, int[] buffer, int from, int to, IntBinaryOperator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(rows, buffer, from, middle, comparator);
+        sort(rows, buffer, middle, to, comparator);
+        if (comparator.applyAsInt(rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(rows, from, buffer, from, to - from);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right == to || (left < middle && comparator.applyAsInt(buffer[left], buffer[right]) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowComparator {
+
+        int compare(Columns columns, int left, int right);
+    }
+
+    @FunctionalInterface
+    private interface KeyComparator {
+
+        int compare(Columns columns, int row, Key key);
+    }
+
+    @FunctionalInterface
+    private interface RowPredicate {
+
+        boolean test(Columns columns, int row);
+    }
+
+    private static final class Key {
+
+        private final long id;
+        private final int age;
+        private final byte[] name;
+        private final byte[] folded;
+
+        private Key(long id, int age, byte[] name, byte[] folded) {
+            this.id = id;
+            this.age = age;
+            this.name = name;
+            this.folded = folded;
+        }
+
+        private static Key of(Person person) {
+            return new Key(person.getId() != null ? person.getId() : Long.MIN_VALUE,
+                person.getAge() != null ? person.getAge() : NO_AGE, encode(person.getName()), encode(fold(person.getName())));
+        }
+    }
+
+    private static final class Index {
+
+        private final int ordinal;
+        private final RowComparator rowComparator;
+        private final KeyComparator keyComparator;
+
+        private Index(int ordinal, RowComparator rowComparator, KeyComparator keyComparator) {
+            this.ordinal = ordinal;
+            this.rowComparator = rowComparator;
+            this.keyComparator = keyComparator;
+        }
+
+        private int compare(Columns c, int left, int right) {
+            return rowComparator.compare(c, left, right);
+        }
+
+        // Drops the retired rows, nobody reading the merged run can see them anymore.
+        private int[] merge(Columns c, int[] left, int[] right) {
+            int[] merged = new int[left.length + right.length];
+            int count = 0;
+            for (int l = 0, r = 0; l < left.length || r < right.length;) {
+                int row;
+                if (r == right.length || (l < left.length && rowComparator.compare(c, left[l], right[r]) <= 0)) {
+                    row = left[l++];
+                } else {
+                    row = right[r++];
+                }
+                if (c.retired[row] == LIVE) {
+                    merged[count++] = row;
+                }
+            }
+            return count < merged.length ? copyOf(merged, count) : merged;
+        }
+
+        private int after(Columns c, int[] run, Key key) {
+            int low = 0;
+            int high = run.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keyComparator.compare(c, run[middle], key) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int before(Columns c, int[] run, Key key) {
+            int low = 0;
+            int high = run.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keyComparator.compare(c, run[middle], key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+    }
+
+    // The state readers work on. Rows below the published count never change, apart from being retired by a later
+    // version, and the arrays are only replaced, never shrunk, so the columns stay readable as long as anybody needs them.
+    private final class Columns {
+
+        private final long[] ids = ColumnarPersonStore.this.ids;
+        private final long[] versions = ColumnarPersonStore.this.versions;
+        private final int[] ages = ColumnarPersonStore.this.ages;
+        private final int[] nameCodes = ColumnarPersonStore.this.nameCodes;
+        private final int[] foldedCodes = ColumnarPersonStore.this.foldedCodes;
+        private final long[] retired = ColumnarPersonStore.this.retired;
+        private final int[] successors = ColumnarPersonStore.this.successors;
+        private final PersonNameArena names = ColumnarPersonStore.this.names;
+        private final AtomicIntegerArray table = ColumnarPersonStore.this.table;
+        private final int[][][] runs = ColumnarPersonStore.this.runs.clone();
+        private final int rows = ColumnarPersonStore.this.rows;
+        private final int live = ColumnarPersonStore.this.live;
+        private final long version = ColumnarPersonStore.this.version;
+
+        // Returns the visible row of the id, or a row beyond these columns if the id was written after they were
+        // published. Then newer columns have to be read, the table is only updated after they were.
+        private int find(long id) {
+            int mask = table.length() - 1;
+            for (int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+                int row = table.get(slot) - 1;
+                if (row == EMPTY || row >= rows) {
+                    return row;
+                }
+                if (row >= 0 && ids[row] == id) {
+                    // A row retired by these columns may not have been replaced within the table yet.
+                    while (row != EMPTY && !visible(row)) {
+                        row = successors[row];
+                    }
+                    return row;
+                }
+            }
+        }
+
+        private boolean visible(int row) {
+            return retired[row] > version;
+        }
+
+        private long lastId() {
+            long last = 0L;
+            for (int[] run : runs[ID_INDEX.ordinal]) {
+                for (int i = run.length - 1; i >= 0; i--) {
+                    if (visible(run[i])) {
+                        last = Math.max(last, ids[run[i]]);
+                        break;
+                    }
+                }
+            }
+            return last;
+        }
+
+        private Person view(int row) {
+            return new Person(ids[row], names.name(nameCodes[row]), ages[row] == NO_AGE ? null : ages[row], versions[row]);
+        }
+
+        private Key key(int row) {
+            return new Key(ids[row], ages[row], names.bytes(nameCodes[row]), names.bytes(foldedCodes[row]));
+        }
+
+        private int tie(int result, int left, int right) {
+            return result != 0 ? result : Long.compare(ids[left], ids[right]);
+        }
+
+        private int tie(int result, int row, Key key) {
+            return result != 0 ? result : Long.compare(ids[row], key.id);
+        }
+    }
+
+    private final class Cursor extends Spliterators.AbstractSpliterator<Person> {
+
+        private final Index index;
+        private final boolean descending;
+        private final RowPredicate until;
+        private final Columns pinned;
+        private final ArrayDeque<Person> buffer = new ArrayDeque<>(CHUNK_SIZE);
+        private int chunkSize = FIRST_CHUNK_SIZE;
+        private Key last;
+        private boolean exhausted;
+
+        private Cursor(Index index, boolean descending, Key after, RowPredicate until, Columns pinned) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.index = index;
+            this.descending = descending;
+            this.until = until;
+            this.pinned = pinned;
+            last = after;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            if (buffer.isEmpty() && !exhausted) {
+                fill();
+            }
+
+            Person person = buffer.poll();
+            if (person == null) {
+                return false;
+            }
+            action.accept(person);
+            return true;
+        }
+
+        // Unless pinned, every chunk is read from the latest columns and continues after the key of the last person.
+        private void fill() {
+            Columns c = pinned != null ? pinned : columns;
+            int[][] runs = c.runs[index.ordinal];
+            int[] positions = new int[runs.length];
+            for (int i = 0; i < runs.length; i++) {
+                if (last == null) {
+                    positions[i] = descending ? runs[i].length - 1 : 0;
+                } else {
+                    positions[i] = descending ? index.before(c, runs[i], last) : index.after(c, runs[i], last);
+                }
+            }
+
+            int row = EMPTY;
+            while (buffer.size() < chunkSize) {
+                int next = next(c, runs, positions);
+                if (next == EMPTY) {
+                    exhausted = true;
+                    break;
+                }
+
+                int candidate = runs[next][positions[next]];
+                positions[next] += descending ? -1 : 1;
+                if (!c.visible(candidate)) {
+                    continue;
+                }
+                if (!until.test(c, candidate)) {
+                    exhausted = true;
+                    break;
+                }
+                buffer.add(c.view(candidate));
+                row = candidate;
+            }
+
+            chunkSize = Math.min(chunkSize * 2, CHUNK_SIZE);
+            if (row != EMPTY) {
+                last = c.key(row);
+            }
+        }
+
+        // Returns the run whose current row comes next.
+        private int next(Columns c, int[][] runs, int[] positions) {
+            int next = EMPTY;
+            for (int i = 0; i < runs.length; i++) {
+                if (positions[i] < 0 || positions[i] >= runs[i].length) {
+                    continue;
+                }
+                if (next != EMPTY) {
+                    int result = index.compare(c, runs[i][positions[i]], runs[next][positions[next]]);
+                    if (descending ? result <= 0 : result >= 0) {
+                        continue;
+                    }
+                }
+                next = i;
+            }
+            return next;
+        }
+    }
+}
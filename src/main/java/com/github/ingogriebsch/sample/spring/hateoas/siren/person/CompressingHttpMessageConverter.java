@@ -0,0 +1,214 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+
+@RequiredArgsConstructor
+class CompressingHttpMessageConverter<T> implements HttpMessageConverter<T> {
+
+    @NonNull
+    private final HttpMessageConverter<T> delegate;
+    @NonNull
+    private final PersonCompression personCompression;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static HttpMessageConverter<?> of(@NonNull HttpMessageConverter<?> delegate, @NonNull PersonCompression personCompression) {
+        return delegate instanceof GenericHttpMessageConverter
+            ? new Generic<>((GenericHttpMessageConverter) delegate, personCompression)
+            : new CompressingHttpMessageConverter<>(delegate, personCompression);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return delegate.canRead(clazz, mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return delegate.canWrite(clazz, mediaType);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return delegate.getSupportedMediaTypes();
+    }
+
+    @Override
+    public T read(Class<? extends T> clazz, HttpInputMessage inputMessage) throws IOException {
+        return delegate.read(clazz, inputMessage);
+    }
+
+    @Override
+    public void write(T t, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        write(outputMessage, m -> delegate.write(t, contentType, m));
+    }
+
+    void write(HttpOutputMessage outputMessage, Writer writer) throws IOException {
+        personCompression.vary(outputMessage.getHeaders());
+        if (!personCompression.requested() || outputMessage.getHeaders().containsKey(CONTENT_ENCODING)) {
+            writer.write(outputMessage);
+            return;
+        }
+
+        CompressingOutputMessage message = new CompressingOutputMessage(outputMessage, personCompression);
+        writer.write(message);
+        message.finish();
+    }
+
+    interface Writer {
+
+        void write(HttpOutputMessage outputMessage) throws IOException;
+    }
+
+    static class Generic<T> extends CompressingHttpMessageConverter<T> implements GenericHttpMessageConverter<T> {
+
+        private final GenericHttpMessageConverter<T> delegate;
+
+        Generic(GenericHttpMessageConverter<T> delegate, PersonCompression personCompression) {
+            super(delegate, personCompression);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+            return delegate.canRead(type, contextClass, mediaType);
+        }
+
+        @Override
+        public T read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+            return delegate.read(type, contextClass, inputMessage);
+        }
+
+        @Override
+        public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+            return delegate.canWrite(type, clazz, mediaType);
+        }
+
+        @Override
+        public void write(T t, Type type, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+            write(outputMessage, m -> delegate.write(t, type, contentType, m));
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class CompressingOutputMessage implements HttpOutputMessage {
+
+        private final HttpOutputMessage outputMessage;
+        private final PersonCompression personCompression;
+        private ThresholdOutputStream body;
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return outputMessage.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() {
+            if (body == null) {
+                body = new ThresholdOutputStream();
+            }
+            return body;
+        }
+
+        void finish() throws IOException {
+            if (body != null) {
+                body.close();
+            }
+        }
+
+        // Holds back the response until it reaches the threshold, so small responses stay uncompressed and the headers
+        // can still be changed once it is clear that the response gets compressed.
+        private class ThresholdOutputStream extends OutputStream {
+
+            private ByteArrayOutputStream head = new ByteArrayOutputStream();
+            private OutputStream target;
+            private GZIPOutputStream gzip;
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (target == null) {
+                    if (!personCompression.exceedsThreshold(head.size() + len)) {
+                        head.write(b, off, len);
+                        return;
+                    }
+                    start(true);
+                }
+                target.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (target != null) {
+                    target.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+
+                if (target == null) {
+                    start(false);
+                }
+                if (gzip != null) {
+                    gzip.finish();
+                }
+                target.flush();
+            }
+
+            private void start(boolean compressed) throws IOException {
+                if (compressed) {
+                    PersonCompression.encoded(getHeaders());
+                    target = gzip = personCompression.compress(outputMessage.getBody());
+                } else {
+                    target = outputMessage.getBody();
+                }
+                head.writeTo(target);
+                head = null;
+            }
+        }
+    }
+}
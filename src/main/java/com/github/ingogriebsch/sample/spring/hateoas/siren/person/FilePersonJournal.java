@@ -0,0 +1,367 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.ALWAYS;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class FilePersonJournal implements PersonJournal {
+
+    static final byte INSERT = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final Fsync fsync;
+    private final int batchSize;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final Object syncLock = new Object();
+    private final ScheduledExecutorService scheduler;
+
+    private FileChannel channel;
+    private long segment;
+    private long appended;
+    private volatile long synced;
+    private volatile long lastId;
+
+    FilePersonJournal(@NonNull Path directory, @NonNull Fsync fsync, int batchSize, @NonNull Duration interval)
+        throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive!");
+        }
+
+        this.directory = createDirectories(directory);
+        this.fsync = fsync;
+        this.batchSize = batchSize;
+
+        List<Long> segments = segments();
+        segment = segments.isEmpty() ? 1L : segments.get(segments.size() - 1);
+        channel = open(segment);
+
+        if (fsync != ALWAYS) {
+            scheduler = newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "person-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::forceAll, interval.toMillis(), interval.toMillis(), MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public long insert(@NonNull Person person) {
+        return append(INSERT, person);
+    }
+
+    @Override
+    public synchronized long insertAll(@NonNull Collection<Person> persons) {
+        long position = appended;
+        for (Person person : persons) {
+            position = append(INSERT, person);
+        }
+        return position;
+    }
+
+    @Override
+    public long update(@NonNull Person person) {
+        return append(UPDATE, person);
+    }
+
+    @Override
+    public synchronized long delete(@NonNull Long id) {
+        int start = reserve(1 + Long.BYTES);
+        buffer.put(DELETE).putLong(id);
+        lastId = Math.max(lastId, id);
+        return seal(start);
+    }
+
+    @Override
+    public void sync(long position) {
+        if (position <= synced) {
+            return;
+        }
+
+        switch (fsync) {
+            case ALWAYS:
+                force(position);
+                break;
+            case BATCH:
+                if (position - synced >= batchSize) {
+                    force(position);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public long lastId() {
+        return lastId;
+    }
+
+    // Raises the highest id to the one a snapshot saved, as the segments which journaled it may have been purged.
+    synchronized void seed(long id) {
+        lastId = Math.max(lastId, id);
+    }
+
+    long segment() {
+        return segment;
+    }
+
+    long rotate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                flush();
+                channel.force(false);
+                channel.close();
+                synced = appended;
+                channel = open(++segment);
+                return segment;
+            }
+        }
+    }
+
+    void purge(long before) throws IOException {
+        for (Long segment : segments()) {
+            if (segment < before) {
+                Files.delete(path(segment));
+            }
+        }
+    }
+
+    void replay(long from, @NonNull BiConsumer<Byte, Person> handler) throws IOException {
+        for (Long segment : segments()) {
+            if (segment >= from) {
+                try (FileChannel channel = FileChannel.open(path(segment), READ)) {
+                    read(channel, (type, person) -> {
+                        seed(person.getId());
+                        handler.accept(type, person);
+                    });
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (!channel.isOpen()) {
+                    return;
+                }
+                try {
+                    flush();
+                    channel.force(false);
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                synced = appended;
+            }
+        }
+    }
+
+    private synchronized long append(byte type, Person person) {
+        byte[] name = PersonRecord.name(person);
+        int start = reserve(1 + PersonRecord.size(name));
+        try {
+            buffer.put(type);
+            PersonRecord.write(buffer, person, name);
+        } catch (RuntimeException e) {
+            buffer.position(start);
+            throw e;
+        }
+        lastId = Math.max(lastId, person.getId());
+        return seal(start);
+    }
+
+    private int reserve(int size) {
+        if (HEADER_SIZE + size > BUFFER_SIZE) {
+            throw new IllegalArgumentException(String.format("Record of %d bytes exceeds the journal buffer!", size));
+        }
+
+        try {
+            if (buffer.remaining() < HEADER_SIZE + size) {
+                flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        return start;
+    }
+
+    private long seal(int start) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(buffer.position()).position(start + HEADER_SIZE);
+        int size = payload.remaining();
+
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(start, size).putInt(start + Integer.BYTES, (int) crc.getValue());
+        return ++appended;
+    }
+
+    private void force(long position) {
+        synchronized (syncLock) {
+            if (position <= synced) {
+                return;
+            }
+
+            long target;
+            try {
+                synchronized (this) {
+                    if (!channel.isOpen() || appended <= synced) {
+                        return;
+                    }
+                    flush();
+                    target = appended;
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            synced = Math.max(synced, target);
+        }
+    }
+
+    private void forceAll() {
+        try {
+            force(Long.MAX_VALUE);
+        } catch (UncheckedIOException e) {
+            log.error("Syncing the person journal failed!", e);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private FileChannel open(long segment) throws IOException {
+        FileChannel channel = FileChannel.open(path(segment), CREATE, READ, WRITE);
+        long valid = read(channel, (t, p) -> {
+        });
+        channel.truncate(valid);
+        channel.position(valid);
+        return channel;
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(f -> f.getFileName().toString()).filter(n -> n.startsWith(PREFIX) && n.endsWith(SUFFIX))
+                .map(n -> Long.valueOf(n.substring(PREFIX.length(), n.length() - SUFFIX.length()))).sorted().collect(toList());
+        }
+    }
+
+    private Path path(long segment) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private static long read(FileChannel channel, BiConsumer<Byte, Person> handler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        CRC32 crc = new CRC32();
+
+        long valid = 0;
+        channel.position(0);
+        while (fill(channel, buffer, HEADER_SIZE)) {
+            int start = buffer.position();
+            int size = buffer.getInt(start);
+            int checksum = buffer.getInt(start + Integer.BYTES);
+            if (size <= 0 || HEADER_SIZE + size > BUFFER_SIZE || !fill(channel, buffer, HEADER_SIZE + size)) {
+                break;
+            }
+
+            start = buffer.position();
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(start + HEADER_SIZE + size).position(start + HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            byte type = payload.get();
+            handler.accept(type, type == DELETE ? new Person(payload.getLong(), null, null) : PersonRecord.read(payload));
+            buffer.position(start + HEADER_SIZE + size);
+            valid += HEADER_SIZE + size;
+        }
+        return valid;
+    }
+
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return true;
+        }
+
+        buffer.compact();
+        while (buffer.position() < size) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= size;
+    }
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.NonNull;
+
+class MappedFile implements Closeable {
+
+    static final int REGION_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private final int regionShift;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private long capacity;
+
+    MappedFile(@NonNull Path path, long capacity) throws IOException {
+        this(path, capacity, REGION_SIZE);
+    }
+
+    MappedFile(@NonNull Path path, long capacity, int regionSize) throws IOException {
+        if (Integer.bitCount(regionSize) != 1) {
+            throw new IllegalArgumentException("Region size must be a power of two!");
+        }
+        this.regionSize = regionSize;
+        regionShift = Integer.numberOfTrailingZeros(regionSize);
+        channel = FileChannel.open(path, CREATE, READ, WRITE);
+        map(Math.max(channel.size(), capacity));
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    int regionSize() {
+        return regionSize;
+    }
+
+    void ensureCapacity(long required) {
+        if (required <= capacity) {
+            return;
+        }
+        try {
+            map(Math.max(capacity * 2, required));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    ByteBuffer region(long position) {
+        return regions.get((int) (position >>> regionShift));
+    }
+
+    int offset(long position) {
+        return (int) (position & (regionSize - 1));
+    }
+
+    byte get(long position) {
+        return region(position).get(offset(position));
+    }
+
+    int getInt(long position) {
+        return region(position).getInt(offset(position));
+    }
+
+    long getLong(long position) {
+        return region(position).getLong(offset(position));
+    }
+
+    void put(long position, byte value) {
+        region(position).put(offset(position), value);
+    }
+
+    void putInt(long position, int value) {
+        region(position).putInt(offset(position), value);
+    }
+
+    void putLong(long position, long value) {
+        region(position).putLong(offset(position), value);
+    }
+
+    void force() {
+        regions.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void map(long size) throws IOException {
+        int first = regions.isEmpty() ? 0 : regions.size() - 1;
+        for (int i = first; (long) i * regionSize < size; i++) {
+            long position = (long) i * regionSize;
+            MappedByteBuffer region = channel.map(READ_WRITE, position, Math.min(regionSize, size - position));
+            if (i < regions.size()) {
+                regions.set(i, region);
+            } else {
+                regions.add(region);
+            }
+        }
+        capacity = size;
+    }
+}
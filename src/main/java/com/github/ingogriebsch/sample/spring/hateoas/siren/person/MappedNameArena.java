@@ -0,0 +1,317 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonNameArena.encode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import lombok.NonNull;
+
+class MappedNameArena implements Closeable {
+
+    static final int NULL = PersonNameArena.NULL;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int ENTRY_SIZE = 16;
+    private static final int COUNT = 0;
+    private static final int LENGTH = 8;
+    private static final int ENTRY_START = 0;
+    private static final int ENTRY_LENGTH = 8;
+    private static final int ENTRY_CHECKSUM = 12;
+
+    private final Path tablePath;
+    private final MappedFile bytes;
+    private final MappedFile entries;
+    private MappedFile table;
+    private int count;
+    private long length;
+
+    MappedNameArena(@NonNull Path directory, int regionSize) throws IOException {
+        tablePath = directory.resolve("name-table.bin");
+        bytes = new MappedFile(directory.resolve("names.bin"), INITIAL_CAPACITY * 8, regionSize);
+        entries = new MappedFile(directory.resolve("name-entries.bin"), (INITIAL_CAPACITY + 1) * ENTRY_SIZE, regionSize);
+        table = new MappedFile(tablePath, INITIAL_CAPACITY * 2 * Integer.BYTES, regionSize);
+        count = (int) entries.getLong(COUNT);
+        length = entries.getLong(LENGTH);
+    }
+
+    int intern(String name) {
+        return name != null ? intern(encode(name)) : NULL;
+    }
+
+    // Copies the name without decoding it, like when the names still in use are moved into a new arena.
+    int copy(@NonNull MappedNameArena source, int code) {
+        return code != NULL ? intern(source.bytes(code)) : NULL;
+    }
+
+    // Drops every name after the given count which was not written completely, like after a crash. The table is only
+    // derived from the names, so it is built again.
+    void recover(int count) {
+        long length = count > 0 ? start(count - 1) + length(count - 1) : 0;
+        while (entry(count) + ENTRY_SIZE <= entries.capacity() && written(count, length)) {
+            length = start(count) + length(count);
+            count++;
+        }
+
+        this.count = count;
+        this.length = length;
+        entries.putLong(COUNT, count);
+        entries.putLong(LENGTH, length);
+        for (long position = entry(count); position < entries.capacity(); position += Long.BYTES) {
+            entries.putLong(position, 0L);
+        }
+        rebuild(Math.max(INITIAL_CAPACITY * 2, Long.highestOneBit(count) * 4));
+    }
+
+    String name(int code) {
+        return code == NULL ? null : decode(region(code), offset(code), length(code));
+    }
+
+    int compare(int left, int right) {
+        if (left == right) {
+            return 0;
+        }
+        if (left == NULL || right == NULL) {
+            return left == NULL ? -1 : 1;
+        }
+
+        ByteBuffer leftRegion = region(left);
+        ByteBuffer rightRegion = region(right);
+        int leftOffset = offset(left);
+        int rightOffset = offset(right);
+        int leftLength = length(left);
+        int rightLength = length(right);
+        for (int i = 0; i < Math.min(leftLength, rightLength); i++) {
+            int result = (leftRegion.get(leftOffset + i) & 0xff) - (rightRegion.get(rightOffset + i) & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    int compare(int code, byte[] encoded) {
+        if (code == NULL || encoded == null) {
+            return code == NULL ? (encoded == null ? 0 : -1) : 1;
+        }
+        return compare(code, encoded, length(code));
+    }
+
+    boolean startsWith(int code, @NonNull byte[] prefix) {
+        if (code == NULL || length(code) < prefix.length) {
+            return false;
+        }
+        return compare(code, prefix, prefix.length) == 0;
+    }
+
+    byte[] bytes(int code) {
+        if (code == NULL) {
+            return null;
+        }
+
+        byte[] copy = new byte[length(code)];
+        ByteBuffer region = region(code);
+        int offset = offset(code);
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = region.get(offset + i);
+        }
+        return copy;
+    }
+
+    ByteBuffer region(int code) {
+        return bytes.region(start(code));
+    }
+
+    int offset(int code) {
+        return bytes.offset(start(code));
+    }
+
+    int length(int code) {
+        return entries.getInt(entry(code) + ENTRY_LENGTH);
+    }
+
+    int size() {
+        return count;
+    }
+
+    void force() {
+        bytes.force();
+        entries.force();
+        table.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        bytes.close();
+        entries.close();
+        table.close();
+    }
+
+    static String decode(@NonNull ByteBuffer region, int offset, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        for (int i = offset; i < offset + length; count++) {
+            int b = region.get(i) & 0xff;
+            if (b < 0x80) {
+                chars[count] = (char) b;
+                i += 1;
+            } else if (b < 0xe0) {
+                chars[count] = (char) ((b & 0x1f) << 6 | region.get(i + 1) & 0x3f);
+                i += 2;
+            } else {
+                chars[count] = (char) ((b & 0x0f) << 12 | (region.get(i + 1) & 0x3f) << 6 | region.get(i + 2) & 0x3f);
+                i += 3;
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private int compare(int code, byte[] encoded, int length) {
+        ByteBuffer region = region(code);
+        int offset = offset(code);
+        for (int i = 0; i < Math.min(length, encoded.length); i++) {
+            int result = (region.get(offset + i) & 0xff) - (encoded[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return length - encoded.length;
+    }
+
+    private int intern(byte[] encoded) {
+        long mask = slots() - 1;
+        for (long slot = hash(encoded) & mask;; slot = (slot + 1) & mask) {
+            int code = table.getInt(slot * Integer.BYTES) - 1;
+            if (code == NULL) {
+                code = append(encoded);
+                table.putInt(slot * Integer.BYTES, code + 1);
+                if ((long) count * 2 > slots()) {
+                    rehash();
+                }
+                return code;
+            }
+            if (compare(code, encoded) == 0) {
+                return code;
+            }
+        }
+    }
+
+    private int append(byte[] encoded) {
+        if (encoded.length > bytes.regionSize()) {
+            throw new IllegalArgumentException("Name is too long to be stored!");
+        }
+
+        // A name never spans two regions, so it can always be read from a single buffer.
+        long start = length;
+        if (bytes.offset(start) + encoded.length > bytes.regionSize()) {
+            start += bytes.regionSize() - bytes.offset(start);
+        }
+        bytes.ensureCapacity(start + encoded.length);
+        for (int i = 0; i < encoded.length; i++) {
+            bytes.put(start + i, encoded[i]);
+        }
+
+        int code = count;
+        entries.ensureCapacity(entry(code) + ENTRY_SIZE);
+        entries.putLong(entry(code) + ENTRY_START, start);
+        entries.putInt(entry(code) + ENTRY_LENGTH, encoded.length);
+        entries.putInt(entry(code) + ENTRY_CHECKSUM, checksum(encoded));
+        length = start + encoded.length;
+        count++;
+        entries.putLong(LENGTH, length);
+        entries.putLong(COUNT, count);
+        return code;
+    }
+
+    private boolean written(int code, long end) {
+        long start = start(code);
+        int length = length(code);
+        return start >= end && length >= 0 && start + length <= bytes.capacity()
+            && bytes.offset(start) + length <= bytes.regionSize()
+            && entries.getInt(entry(code) + ENTRY_CHECKSUM) == checksum(bytes(code));
+    }
+
+    private void rehash() {
+        rebuild(slots() * 2);
+    }
+
+    private void rebuild(long slots) {
+        Path path = tablePath.resolveSibling(tablePath.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(path);
+            MappedFile rehashed = new MappedFile(path, slots * Integer.BYTES, bytes.regionSize());
+            long mask = slots - 1;
+            for (int code = 0; code < count; code++) {
+                long slot = hash(bytes(code)) & mask;
+                while (rehashed.getInt(slot * Integer.BYTES) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                rehashed.putInt(slot * Integer.BYTES, code + 1);
+            }
+
+            table.close();
+            Files.move(path, tablePath, REPLACE_EXISTING, ATOMIC_MOVE);
+            table = rehashed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long slots() {
+        return table.capacity() / Integer.BYTES;
+    }
+
+    private long start(int code) {
+        return entries.getLong(entry(code) + ENTRY_START);
+    }
+
+    private static long entry(int code) {
+        return (code + 1L) * ENTRY_SIZE;
+    }
+
+    // Covers the length as well, so that an entry which was never written does not pass as an empty name.
+    private static int checksum(byte[] encoded) {
+        CRC32 crc = new CRC32();
+        crc.update(encoded.length >>> 24);
+        crc.update(encoded.length >>> 16);
+        crc.update(encoded.length >>> 8);
+        crc.update(encoded.length);
+        crc.update(encoded, 0, encoded.length);
+        return (int) crc.getValue();
+    }
+
+    private static long hash(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return (hash ^ hash >>> 16) & 0xffff_ffffL;
+    }
+}
@@ -0,0 +1,1138 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.MappedNameArena.NULL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonNameArena.encode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+import lombok.NonNull;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.util.FileSystemUtils;
+
+// Records are only appended: an update appends the new state of the person and a delete appends a tombstone, so the
+// records alone tell which persons are alive. The dead flags, the id table and the indexes are derived from them and
+// changed in place. A checkpoint forces all files before it writes the header, alternating between two checksummed
+// slots. The first write after a checkpoint marks the header dirty, so opening a store that was not closed drops the
+// records which were not written completely (every record carries a checksum) and rebuilds everything derived.
+class MappedPersonStore implements PersonStore, Closeable {
+
+    private static final int MAGIC = 0x5053_544e;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MERGE_BATCH_SIZE = 1 << 22;
+    private static final int FIRST_CHUNK_SIZE = 16;
+    private static final int CHUNK_SIZE = 256;
+    private static final int EMPTY = -1;
+    private static final int NO_AGE = Integer.MIN_VALUE;
+    private static final int AGE_SIZE = Integer.BYTES + Long.BYTES;
+
+    private static final int RECORD_SIZE = 32;
+    private static final int ID = 0;
+    private static final int VERSION = 8;
+    private static final int AGE = 16;
+    private static final int NAME = 20;
+    private static final int FOLDED = 24;
+    private static final int FLAGS = 28;
+    // The lowest byte of the flags holds the flags, the others the checksum of the record.
+    private static final int DEAD = 1;
+    private static final int TOMBSTONE = 2;
+    private static final int WRITTEN = 4;
+
+    private static final int HEADER_SIZE = 256;
+    private static final int SLOT_SIZE = 128;
+    private static final int SLOT_MAGIC = 0;
+    private static final int SLOT_CLEAN = 4;
+    private static final int SLOT_SEQUENCE = 8;
+    private static final int SLOT_GENERATION = 16;
+    private static final int SLOT_ROWS = 24;
+    private static final int SLOT_LIVE = 32;
+    private static final int SLOT_VERSION = 40;
+    private static final int SLOT_NAMES = 48;
+    private static final int SLOT_INDEXES = 56;
+    private static final int SLOT_CHECKSUM = SLOT_SIZE - Long.BYTES;
+
+    private final Path directory;
+    private final int regionSize;
+    // Writes of the same id are serialized by its stripe while guards and modifiers run, the columns are only locked while
+    // they are changed.
+    private final PersonLocks locks = new PersonLocks();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong version = new AtomicLong();
+    private final PersonAgeHistogram histogram = new PersonAgeHistogram();
+    private final MappedFile header;
+    private long sequence;
+    private boolean clean;
+    private long generation;
+    private Path data;
+    private MappedFile records;
+    private MappedNameArena names;
+    private MappedFile table;
+    private int rows;
+    private int live;
+
+    private final Index idIndex =
+        new Index("id", (a, b) -> Long.compare(id(a), id(b)), (row, key) -> Long.compare(id(row), key.id));
+    private final Index nameIndex = new Index("name", (a, b) -> tie(names.compare(nameCode(a), nameCode(b)), a, b),
+        (row, key) -> tie(names.compare(nameCode(row), key.name), row, key));
+    private final Index ageIndex = new Index("age", (a, b) -> tie(Integer.compare(age(a), age(b)), a, b),
+        (row, key) -> tie(Integer.compare(age(row), key.age), row, key));
+    private final Index foldedIndex = new Index("folded", (a, b) -> tie(names.compare(foldedCode(a), foldedCode(b)), a, b),
+        (row, key) -> tie(names.compare(foldedCode(row), key.folded), row, key));
+    private final Index[] indexes = { idIndex, nameIndex, ageIndex, foldedIndex };
+
+    MappedPersonStore(@NonNull Path directory) throws IOException {
+        this(directory, MappedFile.REGION_SIZE);
+    }
+
+    MappedPersonStore(@NonNull Path directory, int regionSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.regionSize = regionSize;
+        header = new MappedFile(directory.resolve("store.bin"), HEADER_SIZE, regionSize);
+        long slot = latestSlot();
+        if (slot == EMPTY && (header.getInt(SLOT_MAGIC) != 0 || header.getInt(SLOT_SIZE + SLOT_MAGIC) != 0)) {
+            throw new IOException(String.format("Directory '%s' does not contain a person store!", directory));
+        }
+
+        if (slot != EMPTY) {
+            sequence = header.getLong(slot + SLOT_SEQUENCE);
+            generation = header.getLong(slot + SLOT_GENERATION);
+        }
+        deleteGenerations(generation);
+        open(generation(generation));
+        if (slot == EMPTY) {
+            checkpoint();
+        } else if (header.getInt(slot + SLOT_CLEAN) != 0) {
+            rows = (int) header.getLong(slot + SLOT_ROWS);
+            live = (int) header.getLong(slot + SLOT_LIVE);
+            version.set(header.getLong(slot + SLOT_VERSION));
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i].size = header.getLong(slot + SLOT_INDEXES + i * Long.BYTES);
+            }
+            clean = true;
+            if (!readAges()) {
+                for (int row = 0; row < rows; row++) {
+                    if (!dead(row)) {
+                        histogram.add(age(row));
+                    }
+                }
+            }
+        } else {
+            recover((int) header.getLong(slot + SLOT_ROWS), (int) header.getLong(slot + SLOT_NAMES),
+                header.getLong(slot + SLOT_VERSION));
+            checkpoint();
+        }
+    }
+
+    @Override
+    public Optional<Person> get(@NonNull Long id) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            int row = find(id);
+            return row != EMPTY ? Optional.of(view(row)) : Optional.empty();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public boolean insert(@NonNull Person person, @NonNull Consumer<Person> guard) {
+        Lock locked = locks.lock(person.getId());
+        try {
+            if (contains(person.getId())) {
+                return false;
+            }
+            guard.accept(person);
+
+            Lock write = lock.writeLock();
+            write.lock();
+            try {
+                dirty();
+                append(person);
+                version.incrementAndGet();
+            } finally {
+                write.unlock();
+            }
+            return true;
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    @Override
+    public List<Person> insertAll(@NonNull Collection<Person> persons, @NonNull Consumer<List<Person>> guard) {
+        List<Lock> locked = locks.lockAll(persons);
+        try {
+            Set<Long> ids = new HashSet<>();
+            List<Person> accepted = persons.stream().filter(p -> !contains(p.getId()) && ids.add(p.getId())).collect(toList());
+            if (accepted.isEmpty()) {
+                return accepted;
+            }
+            guard.accept(accepted);
+
+            Lock write = lock.writeLock();
+            write.lock();
+            try {
+                dirty();
+                accepted.forEach(this::append);
+                version.incrementAndGet();
+            } finally {
+                write.unlock();
+            }
+            return accepted;
+        } finally {
+            PersonLocks.unlockAll(locked);
+        }
+    }
+
+    @Override
+    public Optional<Person> update(@NonNull Long id, @NonNull Consumer<Person> modifier) {
+        Lock locked = locks.lock(id);
+        try {
+            Optional<Person> person = get(id);
+            if (!person.isPresent()) {
+                return person;
+            }
+            modifier.accept(person.get());
+
+            Lock write = lock.writeLock();
+            write.lock();
+            try {
+                dirty();
+                // Looked up again, as rows may have been compacted while the modifier ran.
+                kill(find(id));
+                append(person.get());
+                version.incrementAndGet();
+                compactIfSparse();
+            } finally {
+                write.unlock();
+            }
+            return person;
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(@NonNull Long id, @NonNull Consumer<Person> guard) {
+        Lock locked = locks.lock(id);
+        try {
+            Optional<Person> person = get(id);
+            if (!person.isPresent()) {
+                return false;
+            }
+            guard.accept(person.get());
+
+            Lock write = lock.writeLock();
+            write.lock();
+            try {
+                dirty();
+                int row = find(id);
+                remove(id);
+                kill(row);
+                appendTombstone(id);
+                version.incrementAndGet();
+                compactIfSparse();
+            } finally {
+                write.unlock();
+            }
+            return true;
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    @Override
+    public long lastId() {
+        Lock read = readMerged(idIndex);
+        try {
+            for (long i = idIndex.size - 1; i >= 0; i--) {
+                int row = idIndex.get(i);
+                if (!dead(row)) {
+                    return id(row);
+                }
+            }
+            return 0L;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public int size() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return live;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public Stream<Person> stream() {
+        return stream(idIndex, false, null, row -> true);
+    }
+
+    @Override
+    public Stream<Person> snapshot() {
+        long last = lastId();
+        return stream(idIndex, false, null, row -> id(row) <= last);
+    }
+
+    @Override
+    public Stream<Person> streamByName(@NonNull String name) {
+        byte[] folded = encode(fold(name));
+        return stream(foldedIndex, false, new Key(Long.MIN_VALUE, NO_AGE, null, folded),
+            row -> names.compare(foldedCode(row), folded) == 0);
+    }
+
+    @Override
+    public Stream<Person> streamByNamePrefix(@NonNull String prefix) {
+        byte[] folded = encode(fold(prefix));
+        return stream(foldedIndex, false, new Key(Long.MIN_VALUE, NO_AGE, null, folded),
+            row -> names.startsWith(foldedCode(row), folded));
+    }
+
+    @Override
+    public Stream<Person> stream(@NonNull Order order) {
+        return stream(index(order), order.isDescending(), null, row -> true);
+    }
+
+    @Override
+    public Stream<Person> streamAfter(@NonNull Order order, @NonNull Person last) {
+        return stream(index(order), order.isDescending(), Key.of(last), row -> true);
+    }
+
+    // Forces all files before the header points to them, so the header never refers to something which a crash could
+    // still lose. The ages are saved alongside, so that a store which was closed does not have to be scanned on open.
+    void checkpoint() {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            records.force();
+            names.force();
+            table.force();
+            for (Index index : indexes) {
+                index.file.force();
+            }
+            writeAges();
+            writeHeader(true);
+            clean = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            checkpoint();
+            records.close();
+            names.close();
+            table.close();
+            for (Index index : indexes) {
+                index.file.close();
+            }
+            header.close();
+        } finally {
+            write.unlock();
+        }
+    }
+
+    @Override
+    public PersonAgeHistogram ages() {
+        return histogram;
+    }
+
+    private void open(Path data) throws IOException {
+        this.data = Files.createDirectories(data);
+        records = new MappedFile(data.resolve("records.bin"), (long) INITIAL_CAPACITY * RECORD_SIZE, regionSize);
+        names = new MappedNameArena(data, regionSize);
+        table = new MappedFile(data.resolve("ids.bin"), INITIAL_CAPACITY * 2 * Integer.BYTES, regionSize);
+        for (Index index : indexes) {
+            index.open(data);
+        }
+    }
+
+    // Drops the records appended after the header was marked dirty which were not written completely and derives
+    // everything else from the records again. The latest record of an id wins, so updates and deletes are replayed.
+    private void recover(int trusted, int names, long version) {
+        this.names.recover(names);
+        rows = trusted;
+        while (record(rows) + RECORD_SIZE <= records.capacity() && written(rows)) {
+            rows++;
+        }
+        clear(records, record(rows));
+        clear(table, 0);
+
+        for (int row = 0; row < rows; row++) {
+            int flags = flags(row);
+            int previous = find(id(row));
+            if (previous != EMPTY) {
+                kill(previous);
+                remove(id(row));
+            }
+            if ((flags & TOMBSTONE) == 0) {
+                records.putInt(record(row) + FLAGS, flags & ~DEAD);
+                put(row);
+                histogram.add(age(row));
+                live++;
+            }
+        }
+        for (Index index : indexes) {
+            index.size = 0;
+        }
+        this.version.set(version + rows - trusted);
+    }
+
+    // Updates and deletes leave dead records behind, so once they outnumber the live ones, the live records are copied
+    // into a new generation of files in the order of their ids. The checkpoint switches over to the new generation, so a
+    // crash while copying simply leaves the old one in place.
+    private void compactIfSparse() {
+        if (rows - live <= Math.max(live, INITIAL_CAPACITY)) {
+            return;
+        }
+        for (Index index : indexes) {
+            index.merge();
+        }
+
+        Path previous = data;
+        MappedFile copied = records;
+        MappedNameArena copiedNames = names;
+        MappedFile copiedTable = table;
+        MappedFile[] copiedIndexes = new MappedFile[indexes.length];
+        long[] copiedSizes = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            copiedIndexes[i] = indexes[i].file;
+            copiedSizes[i] = indexes[i].size;
+        }
+
+        try {
+            generation++;
+            FileSystemUtils.deleteRecursively(generation(generation));
+            open(generation(generation));
+            rows = 0;
+            for (long i = 0; i < copiedSizes[0]; i++) {
+                long record = record(copiedIndexes[0].getInt(i * Integer.BYTES));
+                if ((copied.getInt(record + FLAGS) & DEAD) == 0) {
+                    write(copied.getLong(record + ID), copied.getLong(record + VERSION), copied.getInt(record + AGE),
+                        names.copy(copiedNames, copied.getInt(record + NAME)),
+                        names.copy(copiedNames, copied.getInt(record + FOLDED)), 0);
+                    put(rows++);
+                }
+            }
+
+            // The rows were copied in the order of their ids, the other indexes keep their order and only get the new rows.
+            idIndex.file.ensureCapacity((long) rows * Integer.BYTES);
+            for (int row = 0; row < rows; row++) {
+                idIndex.file.putInt((long) row * Integer.BYTES, row);
+            }
+            idIndex.size = rows;
+            for (int i = 1; i < indexes.length; i++) {
+                Index index = indexes[i];
+                index.file.ensureCapacity((long) rows * Integer.BYTES);
+                for (long position = 0; position < copiedSizes[i]; position++) {
+                    long record = record(copiedIndexes[i].getInt(position * Integer.BYTES));
+                    if ((copied.getInt(record + FLAGS) & DEAD) == 0) {
+                        index.file.putInt(index.size++ * Integer.BYTES, find(copied.getLong(record + ID)));
+                    }
+                }
+            }
+            checkpoint();
+
+            copied.close();
+            copiedNames.close();
+            copiedTable.close();
+            for (MappedFile file : copiedIndexes) {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            FileSystemUtils.deleteRecursively(previous);
+        } catch (IOException e) {
+            // Deleted once the store is opened again.
+        }
+    }
+
+    private void deleteGenerations(long kept) throws IOException {
+        List<Path> generations;
+        try (Stream<Path> paths = Files.list(directory)) {
+            generations = paths.filter(p -> p.getFileName().toString().startsWith("generation-"))
+                .filter(p -> !p.equals(generation(kept))).collect(toList());
+        }
+        for (Path path : generations) {
+            FileSystemUtils.deleteRecursively(path);
+        }
+    }
+
+    private Path generation(long generation) {
+        return directory.resolve("generation-" + generation);
+    }
+
+    private void dirty() {
+        if (clean) {
+            writeHeader(false);
+            clean = false;
+        }
+    }
+
+    private void writeHeader(boolean clean) {
+        long slot = ++sequence % 2 * SLOT_SIZE;
+        header.putInt(slot + SLOT_MAGIC, MAGIC);
+        header.putInt(slot + SLOT_CLEAN, clean ? 1 : 0);
+        header.putLong(slot + SLOT_SEQUENCE, sequence);
+        header.putLong(slot + SLOT_GENERATION, generation);
+        header.putLong(slot + SLOT_ROWS, rows);
+        header.putLong(slot + SLOT_LIVE, live);
+        header.putLong(slot + SLOT_VERSION, version.get());
+        header.putLong(slot + SLOT_NAMES, names.size());
+        for (int i = 0; i < indexes.length; i++) {
+            header.putLong(slot + SLOT_INDEXES + i * Long.BYTES, indexes[i].size);
+        }
+        header.putLong(slot + SLOT_CHECKSUM, checksum(slot));
+        header.force();
+    }
+
+    private long latestSlot() {
+        long latest = EMPTY;
+        for (long slot = 0; slot < HEADER_SIZE; slot += SLOT_SIZE) {
+            if (header.getInt(slot + SLOT_MAGIC) == MAGIC && header.getLong(slot + SLOT_CHECKSUM) == checksum(slot)
+                && (latest == EMPTY || header.getLong(slot + SLOT_SEQUENCE) > header.getLong(latest + SLOT_SEQUENCE))) {
+                latest = slot;
+            }
+        }
+        return latest;
+    }
+
+    private long checksum(long slot) {
+        CRC32 crc = new CRC32();
+        for (long position = slot; position < slot + SLOT_CHECKSUM; position++) {
+            crc.update(header.get(position));
+        }
+        return crc.getValue();
+    }
+
+    private void writeAges() throws IOException {
+        List<long[]> ages = new ArrayList<>();
+        histogram.forEach((age, count) -> ages.add(new long[] { age, count }));
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + ages.size() * AGE_SIZE + Long.BYTES);
+        buffer.putLong(version.get()).putInt(ages.size());
+        ages.forEach(age -> buffer.putInt((int) age[0]).putLong(age[1]));
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        Path written = data.resolve("ages.bin.tmp");
+        try (FileChannel channel = FileChannel.open(written, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(written, data.resolve("ages.bin"), REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    // Only trusted if saved by the same checkpoint as the header, otherwise the ages are counted from the records.
+    private boolean readAges() throws IOException {
+        Path path = data.resolve("ages.bin");
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.limit() < Long.BYTES + Integer.BYTES + Long.BYTES) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.limit() - Long.BYTES);
+        if (buffer.getLong(buffer.limit() - Long.BYTES) != crc.getValue() || buffer.getLong() != version.get()) {
+            return false;
+        }
+        int count = buffer.getInt();
+        if (buffer.remaining() != (long) count * AGE_SIZE + Long.BYTES) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            histogram.add(buffer.getInt(), buffer.getLong());
+        }
+        return true;
+    }
+
+    private Stream<Person> stream(Index index, boolean descending, Key after, IntPredicate until) {
+        return StreamSupport.stream(new Cursor(index, descending, after, until), false);
+    }
+
+    private Index index(Order order) {
+        switch (order.getProperty()) {
+            case "id":
+                return idIndex;
+            case "name":
+                return nameIndex;
+            case "age":
+                return ageIndex;
+            default:
+                throw new IllegalArgumentException(String.format("Property '%s' is not indexed!", order.getProperty()));
+        }
+    }
+
+    private Lock readMerged(Index index) {
+        Lock read = lock.readLock();
+        read.lock();
+        if (index.size == rows) {
+            return read;
+        }
+
+        read.unlock();
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            index.merge();
+            read.lock();
+        } finally {
+            write.unlock();
+        }
+        return read;
+    }
+
+    private long id(int row) {
+        return records.getLong(record(row) + ID);
+    }
+
+    private int age(int row) {
+        return records.getInt(record(row) + AGE);
+    }
+
+    private int nameCode(int row) {
+        return records.getInt(record(row) + NAME);
+    }
+
+    private int foldedCode(int row) {
+        return records.getInt(record(row) + FOLDED);
+    }
+
+    private int flags(int row) {
+        return records.getInt(record(row) + FLAGS);
+    }
+
+    private boolean dead(int row) {
+        return (flags(row) & DEAD) != 0;
+    }
+
+    private boolean written(int row) {
+        int flags = flags(row);
+        return (flags & WRITTEN) != 0 && (flags & ~0xff) == checksum(id(row), records.getLong(record(row) + VERSION), age(row),
+            nameCode(row), foldedCode(row), flags & (TOMBSTONE | WRITTEN)) && nameCode(row) < names.size()
+            && foldedCode(row) < names.size();
+    }
+
+    private Person view(int row) {
+        int code = nameCode(row);
+        return new MappedPerson(records.region(record(row)), records.offset(record(row)),
+            code != NULL ? names.region(code) : null, code != NULL ? names.offset(code) : 0,
+            code != NULL ? names.length(code) : 0);
+    }
+
+    private Key key(int row) {
+        return new Key(id(row), age(row), names.bytes(nameCode(row)), names.bytes(foldedCode(row)));
+    }
+
+    private void append(Person person) {
+        write(person.getId(), person.getVersion(), person.getAge() != null ? person.getAge() : NO_AGE,
+            names.intern(person.getName()), names.intern(fold(person.getName())), 0);
+        put(rows);
+        histogram.add(person.getAge());
+        rows++;
+        live++;
+    }
+
+    private void appendTombstone(long id) {
+        write(id, 0L, NO_AGE, NULL, NULL, TOMBSTONE | DEAD);
+        rows++;
+    }
+
+    // The flags are written last and carry a checksum of the whole record, so a record which was only written partially is
+    // recognized after a crash. The dead flag is left out of the checksum as it changes after the record was written.
+    private void write(long id, long version, int age, int name, int folded, int flags) {
+        long record = record(rows);
+        records.ensureCapacity(record + RECORD_SIZE);
+        records.putLong(record + ID, id);
+        records.putLong(record + VERSION, version);
+        records.putInt(record + AGE, age);
+        records.putInt(record + NAME, name);
+        records.putInt(record + FOLDED, folded);
+        records.putInt(record + FLAGS, checksum(id, version, age, name, folded, flags & ~DEAD | WRITTEN) | flags | WRITTEN);
+    }
+
+    private void kill(int row) {
+        records.putInt(record(row) + FLAGS, flags(row) | DEAD);
+        histogram.remove(age(row));
+        live--;
+    }
+
+    private boolean contains(long id) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return find(id) != EMPTY;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    private int find(long id) {
+        long mask = slots() - 1;
+        for (long slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+            int row = slot(table, slot);
+            if (row == EMPTY || id(row) == id) {
+                return row;
+            }
+        }
+    }
+
+    private void put(int row) {
+        if ((live + 1L) * 4 > slots() * 3) {
+            resize();
+        }
+        insert(table, slots() - 1, row);
+    }
+
+    private void insert(MappedFile table, long mask, int row) {
+        long slot = hash(id(row)) & mask;
+        while (slot(table, slot) != EMPTY && id(slot(table, slot)) != id(row)) {
+            slot = (slot + 1) & mask;
+        }
+        table.putInt(slot * Integer.BYTES, row + 1);
+    }
+
+    private void resize() {
+        Path path = data.resolve("ids.bin");
+        Path resized = data.resolve("ids.bin.tmp");
+        try {
+            Files.deleteIfExists(resized);
+            MappedFile larger = new MappedFile(resized, slots() * 2 * Integer.BYTES, regionSize);
+            for (long slot = 0; slot < slots(); slot++) {
+                int row = slot(table, slot);
+                if (row != EMPTY) {
+                    insert(larger, slots() * 2 - 1, row);
+                }
+            }
+
+            table.close();
+            Files.move(resized, path, REPLACE_EXISTING, ATOMIC_MOVE);
+            table = larger;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void remove(long id) {
+        long mask = slots() - 1;
+        long slot = hash(id) & mask;
+        while (id(slot(table, slot)) != id) {
+            slot = (slot + 1) & mask;
+        }
+
+        for (long next = (slot + 1) & mask; slot(table, next) != EMPTY; next = (next + 1) & mask) {
+            long home = hash(id(slot(table, next))) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table.putInt(slot * Integer.BYTES, slot(table, next) + 1);
+                slot = next;
+            }
+        }
+        table.putInt(slot * Integer.BYTES, 0);
+    }
+
+    private long slots() {
+        return table.capacity() / Integer.BYTES;
+    }
+
+    private int tie(int result, int left, int right) {
+        return result != 0 ? result : Long.compare(id(left), id(right));
+    }
+
+    private int tie(int result, int row, Key key) {
+        return result != 0 ? result : Long.compare(id(row), key.id);
+    }
+
+    private static int slot(MappedFile table, long slot) {
+        return table.getInt(slot * Integer.BYTES) - 1;
+    }
+
+    private static long record(int row) {
+        return (long) row * RECORD_SIZE;
+    }
+
+    private static void clear(MappedFile file, long from) {
+        for (long position = from; position < file.capacity(); position += Long.BYTES) {
+            file.putLong(position, 0L);
+        }
+    }
+
+    private static int checksum(long id, long version, int age, int name, int folded, int flags) {
+        long hash = hash(hash(hash(id) ^ version) ^ ((long) age << 32 | name & 0xffff_ffffL)) ^ ((long) folded << 32 | flags);
+        return (int) (hash(hash) >>> 32) & ~0xff;
+    }
+
+    private static long hash(long id) {
+        long hash = id * 0x9e37_79b9_7f4a_7c15L;
+        return hash ^ hash >>> 32;
+    }
+
+    private static String fold(String name) {
+        return name != null ? name.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static void sort(int[] rows, int[] buffer, int from, int to, IntBinaryOperator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(rows, buffer, from, middle, comparator);
+        sort(rows, buffer, middle, to, comparator);
+        if (comparator.applyAsInt(rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(rows, from, buffer, from, to - from);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right == to || (left < middle && comparator.applyAsInt(buffer[left], buffer[right]) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface KeyComparator {
+
+        int compare(int row, Key key);
+    }
+
+    private static final class Key {
+
+        private final long id;
+        private final int age;
+        private final byte[] name;
+        private final byte[] folded;
+
+        private Key(long id, int age, byte[] name, byte[] folded) {
+            this.id = id;
+            this.age = age;
+            this.name = name;
+            this.folded = folded;
+        }
+
+        private static Key of(Person person) {
+            return new Key(person.getId() != null ? person.getId() : Long.MIN_VALUE,
+                person.getAge() != null ? person.getAge() : NO_AGE, encode(person.getName()), encode(fold(person.getName())));
+        }
+    }
+
+    // Reads straight from the mapped buffers, so a person is only decoded once it gets serialized. The first modification
+    // detaches it, which is fine as records are never written again once appended (apart from their flags).
+    private static final class MappedPerson extends Person {
+
+        private final ByteBuffer record;
+        private final int offset;
+        private final ByteBuffer name;
+        private final int nameOffset;
+        private final int nameLength;
+        private boolean detached;
+
+        private MappedPerson(ByteBuffer record, int offset, ByteBuffer name, int nameOffset, int nameLength) {
+            this.record = record;
+            this.offset = offset;
+            this.name = name;
+            this.nameOffset = nameOffset;
+            this.nameLength = nameLength;
+        }
+
+        @Override
+        public Long getId() {
+            return detached ? super.getId() : record.getLong(offset + ID);
+        }
+
+        @Override
+        public String getName() {
+            if (detached) {
+                return super.getName();
+            }
+            return name != null ? MappedNameArena.decode(name, nameOffset, nameLength) : null;
+        }
+
+        @Override
+        public Integer getAge() {
+            if (detached) {
+                return super.getAge();
+            }
+            int age = record.getInt(offset + AGE);
+            return age != NO_AGE ? age : null;
+        }
+
+        @Override
+        public long getVersion() {
+            return detached ? super.getVersion() : record.getLong(offset + VERSION);
+        }
+
+        @Override
+        public void setId(Long id) {
+            detach();
+            super.setId(id);
+        }
+
+        @Override
+        public void setName(String name) {
+            detach();
+            super.setName(name);
+        }
+
+        @Override
+        public void setAge(Integer age) {
+            detach();
+            super.setAge(age);
+        }
+
+        @Override
+        public void setVersion(long version) {
+            detach();
+            super.setVersion(version);
+        }
+
+        private void detach() {
+            if (!detached) {
+                super.setId(getId());
+                super.setName(getName());
+                super.setAge(getAge());
+                super.setVersion(getVersion());
+                detached = true;
+            }
+        }
+    }
+
+    private final class Index {
+
+        private final String name;
+        private final IntBinaryOperator rowComparator;
+        private final KeyComparator keyComparator;
+        private MappedFile file;
+        private long size;
+
+        private Index(String name, IntBinaryOperator rowComparator, KeyComparator keyComparator) {
+            this.name = name;
+            this.rowComparator = rowComparator;
+            this.keyComparator = keyComparator;
+        }
+
+        private void open(Path data) throws IOException {
+            file = new MappedFile(data.resolve("index-" + name + ".bin"), INITIAL_CAPACITY * Integer.BYTES, regionSize);
+            size = 0;
+        }
+
+        private int get(long i) {
+            return file.getInt(i * Integer.BYTES);
+        }
+
+        // Merging moves the rows the last checkpoint saved, so the header is marked dirty first and the indexes are
+        // rebuilt if the merge does not complete.
+        private void merge() {
+            if (size < rows) {
+                dirty();
+            }
+            while (size < rows) {
+                int count = (int) Math.min(rows - size, MERGE_BATCH_SIZE);
+                int[] batch = new int[count];
+                for (int i = 0; i < count; i++) {
+                    batch[i] = (int) size + i;
+                }
+                sort(batch, new int[count], 0, count, rowComparator);
+
+                // Merging from the back moves every sorted row at most once and needs no second file.
+                file.ensureCapacity((size + count) * Integer.BYTES);
+                long target = size + count - 1;
+                long source = size - 1;
+                for (int i = count - 1; i >= 0; i--) {
+                    int row = batch[i];
+                    for (long bound = upperBound(row, source + 1); source >= bound; source--) {
+                        file.putInt(target-- * Integer.BYTES, get(source));
+                    }
+                    file.putInt(target-- * Integer.BYTES, row);
+                }
+                size += count;
+            }
+        }
+
+        private long upperBound(int row, long high) {
+            long low = 0;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (rowComparator.applyAsInt(get(middle), row) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private long after(Key key) {
+            long low = 0;
+            long high = size;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (keyComparator.compare(get(middle), key) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private long before(Key key) {
+            long low = 0;
+            long high = size;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (keyComparator.compare(get(middle), key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+    }
+
+    private final class Cursor extends Spliterators.AbstractSpliterator<Person> {
+
+        private final Index index;
+        private final boolean descending;
+        private final IntPredicate until;
+        private final ArrayDeque<Person> buffer = new ArrayDeque<>(CHUNK_SIZE);
+        private int chunkSize = FIRST_CHUNK_SIZE;
+        private Key last;
+        private boolean exhausted;
+
+        private Cursor(Index index, boolean descending, Key after, IntPredicate until) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.index = index;
+            this.descending = descending;
+            this.until = until;
+            last = after;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            if (buffer.isEmpty() && !exhausted) {
+                fill();
+            }
+
+            Person person = buffer.poll();
+            if (person == null) {
+                return false;
+            }
+            action.accept(person);
+            return true;
+        }
+
+        private void fill() {
+            Lock read = readMerged(index);
+            try {
+                long position;
+                if (last == null) {
+                    position = descending ? index.size - 1 : 0;
+                } else {
+                    position = descending ? index.before(last) : index.after(last);
+                }
+
+                int row = EMPTY;
+                for (; buffer.size() < chunkSize && position >= 0 && position < index.size; position += descending ? -1 : 1) {
+                    int candidate = index.get(position);
+                    if (dead(candidate)) {
+                        continue;
+                    }
+                    if (!until.test(candidate)) {
+                        exhausted = true;
+                        break;
+                    }
+                    buffer.add(view(candidate));
+                    row = candidate;
+                }
+
+                exhausted |= position < 0 || position >= index.size;
+                chunkSize = Math.min(chunkSize * 2, CHUNK_SIZE);
+                if (row != EMPTY) {
+                    last = key(row);
+                }
+            } finally {
+                read.unlock();
+            }
+        }
+    }
+}
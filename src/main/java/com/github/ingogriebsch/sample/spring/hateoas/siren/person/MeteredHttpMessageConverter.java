@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import com.google.common.io.CountingOutputStream;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+
+@RequiredArgsConstructor
+class MeteredHttpMessageConverter<T> implements HttpMessageConverter<T> {
+
+    @NonNull
+    private final HttpMessageConverter<T> delegate;
+    @NonNull
+    private final PersonMetrics personMetrics;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static HttpMessageConverter<?> of(@NonNull HttpMessageConverter<?> delegate, @NonNull PersonMetrics personMetrics) {
+        return delegate instanceof GenericHttpMessageConverter
+            ? new Generic<>((GenericHttpMessageConverter) delegate, personMetrics)
+            : new MeteredHttpMessageConverter<>(delegate, personMetrics);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return delegate.canRead(clazz, mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return delegate.canWrite(clazz, mediaType);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return delegate.getSupportedMediaTypes();
+    }
+
+    @Override
+    public T read(Class<? extends T> clazz, HttpInputMessage inputMessage) throws IOException {
+        return delegate.read(clazz, inputMessage);
+    }
+
+    @Override
+    public void write(T t, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        write(outputMessage, m -> delegate.write(t, contentType, m));
+    }
+
+    void write(HttpOutputMessage outputMessage, Writer writer) throws IOException {
+        CountingOutputMessage message = new CountingOutputMessage(outputMessage);
+        long deferred = PersonMetrics.deferred();
+        long start = System.nanoTime();
+        writer.write(message);
+        // Models which are assembled while they are written record that time as assembly, not as serialization.
+        long elapsed = System.nanoTime() - start - (PersonMetrics.deferred() - deferred);
+        personMetrics.serialized(outputMessage.getHeaders().getContentType(), elapsed, message.count());
+    }
+
+    interface Writer {
+
+        void write(HttpOutputMessage outputMessage) throws IOException;
+    }
+
+    static class Generic<T> extends MeteredHttpMessageConverter<T> implements GenericHttpMessageConverter<T> {
+
+        private final GenericHttpMessageConverter<T> delegate;
+
+        Generic(GenericHttpMessageConverter<T> delegate, PersonMetrics personMetrics) {
+            super(delegate, personMetrics);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+            return delegate.canRead(type, contextClass, mediaType);
+        }
+
+        @Override
+        public T read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+            return delegate.read(type, contextClass, inputMessage);
+        }
+
+        @Override
+        public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+            return delegate.canWrite(type, clazz, mediaType);
+        }
+
+        @Override
+        public void write(T t, Type type, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+            write(outputMessage, m -> delegate.write(t, type, contentType, m));
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class CountingOutputMessage implements HttpOutputMessage {
+
+        private final HttpOutputMessage outputMessage;
+        private CountingOutputStream body;
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return outputMessage.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            if (body == null) {
+                body = new CountingOutputStream(outputMessage.getBody());
+            }
+            return body;
+        }
+
+        long count() {
+            return body != null ? body.getCount() : 0;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Comparator.comparing;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.NonNull;
+import org.springframework.data.domain.Sort.Order;
+
+class ObjectPersonStore implements PersonStore {
+
+    private final ConcurrentMap<Long, Person> byId = new ConcurrentHashMap<>();
+    private final NavigableMap<Person, Person> idIndex = new ConcurrentSkipListMap<>(comparing(Person::getId));
+    private final NavigableMap<Person, Person> nameIndex =
+        new ConcurrentSkipListMap<>(comparing(Person::getName).thenComparing(Person::getId));
+    private final NavigableMap<Person, Person> ageIndex =
+        new ConcurrentSkipListMap<>(comparing(Person::getAge).thenComparing(Person::getId));
+    private final Map<String, NavigableMap<Person, Person>> indexes =
+        ImmutableMap.of("id", idIndex, "name", nameIndex, "age", ageIndex);
+    private final PersonNameIndex names = new PersonNameIndex();
+    private final PersonAgeHistogram ages = new PersonAgeHistogram();
+    private final AtomicLong version = new AtomicLong();
+    private final PersonLocks locks = new PersonLocks();
+
+    @Override
+    public Optional<Person> get(@NonNull Long id) {
+        return ofNullable(byId.get(id));
+    }
+
+    @Override
+    public boolean insert(@NonNull Person person, @NonNull Consumer<Person> guard) {
+        Lock lock = locks.lock(person.getId());
+        try {
+            if (byId.containsKey(person.getId())) {
+                return false;
+            }
+            guard.accept(person);
+            add(person);
+            version.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Person> insertAll(@NonNull Collection<Person> persons) {
+        // Without a guard the batch needs no common decision, so every person only holds the lock of its own id. This keeps
+        // chunks which are loaded in parallel from waiting for each other.
+        List<Person> accepted = new ArrayList<>(persons.size());
+        for (Person person : persons) {
+            Lock lock = locks.lock(person.getId());
+            try {
+                if (!byId.containsKey(person.getId())) {
+                    add(person);
+                    accepted.add(person);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (!accepted.isEmpty()) {
+            version.incrementAndGet();
+        }
+        return accepted;
+    }
+
+    @Override
+    public List<Person> insertAll(@NonNull Collection<Person> persons, @NonNull Consumer<List<Person>> guard) {
+        List<Lock> locked = locks.lockAll(persons);
+        try {
+            Set<Long> ids = new HashSet<>();
+            List<Person> accepted =
+                persons.stream().filter(p -> !byId.containsKey(p.getId()) && ids.add(p.getId())).collect(toList());
+            if (accepted.isEmpty()) {
+                return accepted;
+            }
+
+            guard.accept(accepted);
+            accepted.forEach(this::add);
+            version.incrementAndGet();
+            return accepted;
+        } finally {
+            PersonLocks.unlockAll(locked);
+        }
+    }
+
+    @Override
+    public Optional<Person> update(@NonNull Long id, @NonNull Consumer<Person> modifier) {
+        Lock lock = locks.lock(id);
+        try {
+            Person person = byId.get(id);
+            if (person == null) {
+                return Optional.empty();
+            }
+
+            // Stored persons are never modified, so readers always see either the previous or the updated person.
+            Person updated = new Person(person.getId(), person.getName(), person.getAge(), person.getVersion());
+            modifier.accept(updated);
+            byId.put(id, updated);
+            indexes.values().forEach(i -> replace(i, person, updated));
+            names.replace(person, updated);
+            ages.replace(person.getAge(), updated.getAge());
+            version.incrementAndGet();
+            return Optional.of(updated);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(@NonNull Long id, @NonNull Consumer<Person> guard) {
+        Lock lock = locks.lock(id);
+        try {
+            Person person = byId.get(id);
+            if (person == null) {
+                return false;
+            }
+
+            guard.accept(person);
+            byId.remove(id);
+            indexes.values().forEach(i -> i.remove(person));
+            names.remove(person);
+            ages.remove(person.getAge());
+            version.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long lastId() {
+        Map.Entry<Person, Person> last = idIndex.lastEntry();
+        return last != null ? last.getKey().getId() : 0L;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public int size() {
+        return byId.size();
+    }
+
+    @Override
+    public Stream<Person> stream() {
+        return idIndex.values().stream();
+    }
+
+    @Override
+    public Stream<Person> snapshot() {
+        // Bounded by the person holding the highest id right now, the skip list is then walked without blocking any writer.
+        Map.Entry<Person, Person> last = idIndex.lastEntry();
+        return last != null ? idIndex.headMap(last.getKey(), true).values().stream() : Stream.empty();
+    }
+
+    @Override
+    public Stream<Person> streamByName(@NonNull String name) {
+        return names.find(name);
+    }
+
+    @Override
+    public Stream<Person> streamByNamePrefix(@NonNull String prefix) {
+        return names.findByPrefix(prefix);
+    }
+
+    @Override
+    public Stream<Person> stream(@NonNull Order order) {
+        return index(order).values().stream();
+    }
+
+    @Override
+    public Stream<Person> streamAfter(@NonNull Order order, @NonNull Person last) {
+        return index(order).tailMap(last, false).values().stream();
+    }
+
+    @Override
+    public PersonAgeHistogram ages() {
+        return ages;
+    }
+
+    private NavigableMap<Person, Person> index(Order order) {
+        NavigableMap<Person, Person> index = indexes.get(order.getProperty());
+        if (index == null) {
+            throw new IllegalArgumentException(String.format("Property '%s' is not indexed!", order.getProperty()));
+        }
+        return order.isAscending() ? index : index.descendingMap();
+    }
+
+    // The person is reachable by its id first, so it is never found through an index but not by its id.
+    private void add(Person person) {
+        byId.put(person.getId(), person);
+        indexes.values().forEach(i -> i.put(person, person));
+        names.add(person);
+        ages.add(person.getAge());
+    }
+
+    private static void replace(NavigableMap<Person, Person> index, Person previous, Person next) {
+        index.put(next, next);
+        if (index.comparator().compare(previous, next) != 0) {
+            index.remove(previous);
+        }
+    }
+}
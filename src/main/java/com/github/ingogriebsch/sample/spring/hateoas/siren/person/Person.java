@@ -19,16 +19,29 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @AllArgsConstructor
 @Data
+@JsonInclude(NON_NULL)
 @NoArgsConstructor
 class Person {
 
     private Long id;
     private String name;
     private Integer age;
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
+    private long version;
+
+    Person(Long id, String name, Integer age) {
+        this(id, name, age, 0L);
+    }
 }
@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+
+// A Fenwick tree over the ages, so that counts, sums and ranks of any age range take O(log n). Ages beyond the tree are
+// rare enough to be kept in a sorted map instead of growing the tree.
+class PersonAgeHistogram {
+
+    static final int TREE_SIZE = 1 << 10;
+
+    private final AtomicLongArray counts = new AtomicLongArray(TREE_SIZE + 1);
+    private final AtomicLongArray sums = new AtomicLongArray(TREE_SIZE + 1);
+    private final ConcurrentNavigableMap<Integer, Long> overflow = new ConcurrentSkipListMap<>();
+
+    void add(Integer age) {
+        update(age, 1);
+    }
+
+    void add(Integer age, long count) {
+        update(age, count);
+    }
+
+    void remove(Integer age) {
+        update(age, -1);
+    }
+
+    void replace(Integer previous, Integer next) {
+        if (previous == null ? next != null : !previous.equals(next)) {
+            remove(previous);
+            add(next);
+        }
+    }
+
+    long count(int minAge, int maxAge) {
+        return minAge <= maxAge ? count(maxAge) - (minAge > 0 ? count(minAge - 1) : 0) : 0;
+    }
+
+    long sum(int minAge, int maxAge) {
+        return minAge <= maxAge ? sum(maxAge) - (minAge > 0 ? sum(minAge - 1) : 0) : 0;
+    }
+
+    // Returns the age of the person with the given rank (starting at 1) among all persons ordered by age, or -1 if there
+    // are not as many persons.
+    int select(long rank) {
+        if (rank < 1) {
+            throw new IllegalArgumentException(String.format("Rank '%d' must be positive!", rank));
+        }
+
+        int position = 0;
+        long remaining = rank;
+        for (int step = TREE_SIZE; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= TREE_SIZE) {
+                long count = counts.get(next);
+                if (count < remaining) {
+                    position = next;
+                    remaining -= count;
+                }
+            }
+        }
+        if (position < TREE_SIZE) {
+            return position;
+        }
+
+        for (Map.Entry<Integer, Long> entry : overflow.entrySet()) {
+            if (entry.getValue() >= remaining) {
+                return entry.getKey();
+            }
+            remaining -= entry.getValue();
+        }
+        return -1;
+    }
+
+    // Passes every age with the number of persons of that age, like when the histogram is saved.
+    void forEach(BiConsumer<Integer, Long> consumer) {
+        for (int age = 0; age < TREE_SIZE; age++) {
+            long count = count(age, age);
+            if (count != 0) {
+                consumer.accept(age, count);
+            }
+        }
+        overflow.forEach(consumer);
+    }
+
+    private void update(Integer age, long delta) {
+        if (age == null || age < 0) {
+            return;
+        }
+        if (age >= TREE_SIZE) {
+            overflow.merge(age, delta, (a, b) -> a + b == 0 ? null : a + b);
+            return;
+        }
+        for (int i = age + 1; i <= TREE_SIZE; i += i & -i) {
+            counts.addAndGet(i, delta);
+            sums.addAndGet(i, delta * age);
+        }
+    }
+
+    // The persons up to and including the given age.
+    private long count(int age) {
+        long count = prefix(counts, age);
+        if (age >= TREE_SIZE) {
+            count += overflow.headMap(age, true).values().stream().mapToLong(Long::longValue).sum();
+        }
+        return count;
+    }
+
+    private long sum(int age) {
+        long sum = prefix(sums, age);
+        if (age >= TREE_SIZE) {
+            sum += overflow.headMap(age, true).entrySet().stream().mapToLong(e -> e.getKey() * e.getValue()).sum();
+        }
+        return sum;
+    }
+
+    private static long prefix(AtomicLongArray tree, int age) {
+        long total = 0;
+        for (int i = Math.min(age, TREE_SIZE - 1) + 1; i > 0; i -= i & -i) {
+            total += tree.get(i);
+        }
+        return total;
+    }
+}
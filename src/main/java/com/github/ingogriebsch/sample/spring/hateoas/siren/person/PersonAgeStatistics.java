@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Collections.emptyList;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.NonNull;
+import lombok.Value;
+
+@JsonInclude(NON_NULL)
+@Value
+class PersonAgeStatistics {
+
+    static final int MAX_BUCKETS = 200;
+
+    long count;
+    Double average;
+    Integer min;
+    Integer max;
+    @NonNull
+    List<Bucket> buckets;
+
+    static Optional<PersonAgeStatistics> of(@NonNull PersonAgeHistogram ages, int minAge, int maxAge, int bucketSize) {
+        long count = ages.count(minAge, maxAge);
+        long before = minAge > 0 ? ages.count(0, minAge - 1) : 0;
+        int min = count > 0 ? ages.select(before + 1) : -1;
+        int max = count > 0 ? ages.select(before + count) : -1;
+        if (min < 0 || max < 0) {
+            return Optional.of(new PersonAgeStatistics(0, null, null, null, emptyList()));
+        }
+
+        // The buckets are aligned to multiples of their size and cover the ages that are present only.
+        long first = min / bucketSize * (long) bucketSize;
+        if ((max - first) / bucketSize >= MAX_BUCKETS) {
+            return Optional.empty();
+        }
+
+        List<Bucket> buckets = new ArrayList<>();
+        for (long start = first; start <= max; start += bucketSize) {
+            int from = (int) Math.max(start, minAge);
+            int to = (int) Math.min(start + bucketSize - 1, maxAge);
+            buckets.add(new Bucket(from, to, ages.count(from, to)));
+        }
+        return Optional.of(new PersonAgeStatistics(count, (double) ages.sum(minAge, maxAge) / count, min, max, buckets));
+    }
+
+    @Value
+    static class Bucket {
+
+        int from;
+        int to;
+        long count;
+    }
+}
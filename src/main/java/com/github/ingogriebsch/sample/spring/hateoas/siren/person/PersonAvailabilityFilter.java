@@ -0,0 +1,70 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+@ConditionalOnWebApplication(type = SERVLET)
+@Component
+@RequiredArgsConstructor
+class PersonAvailabilityFilter extends OncePerRequestFilter {
+
+    static final String PATH_PREFIX = "/persons";
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    @NonNull
+    private final ObjectProvider<PersonLoader> personLoader;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !urlPathHelper.getPathWithinApplication(request).startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        PersonLoader loader = personLoader.getIfAvailable();
+        if (loader != null && !loader.isReady()) {
+            response.setStatus(SC_SERVICE_UNAVAILABLE);
+            response.setHeader(RETRY_AFTER, RETRY_AFTER_SECONDS);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
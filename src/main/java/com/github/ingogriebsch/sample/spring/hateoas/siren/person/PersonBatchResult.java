@@ -0,0 +1,58 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Collections.emptyList;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+class PersonBatchResult {
+
+    int index;
+    int status;
+    @JsonInclude(NON_EMPTY)
+    Long id;
+    @JsonInclude(NON_EMPTY)
+    @NonNull
+    List<String> errors;
+
+    static PersonBatchResult created(int index, @NonNull Person person) {
+        return new PersonBatchResult(index, CREATED.value(), person.getId(), emptyList());
+    }
+
+    static PersonBatchResult rejected(int index, @NonNull List<String> errors) {
+        return new PersonBatchResult(index, BAD_REQUEST.value(), null, errors);
+    }
+
+    @JsonIgnore
+    boolean isCreated() {
+        return id != null;
+    }
+}
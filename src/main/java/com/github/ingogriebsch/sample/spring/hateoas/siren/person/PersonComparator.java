@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.springframework.data.domain.Sort.NullHandling.NULLS_FIRST;
+import static org.springframework.data.domain.Sort.NullHandling.NULLS_LAST;
+
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.NonNull;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
+
+// Compiles a sort into one flat comparator which compares the values of the persons directly instead of chaining a key
+// extractor and a comparator per order. Only a handful of distinct sorts is requested, so the compiled comparators are
+// cached and reused across requests. The cache is bounded and evicts the least recently used ones, so clients which request
+// ever new sorts cannot make it useless for the common ones.
+final class PersonComparator implements Comparator<Person> {
+
+    static final int MAX_CACHED = 256;
+
+    private static final Cache<Sort, PersonComparator> CACHE = CacheBuilder.newBuilder().maximumSize(MAX_CACHED).build();
+
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int NAME_IGNORING_CASE = 2;
+    private static final int AGE = 3;
+
+    private final int[] properties;
+    private final boolean[] descending;
+    // The result if only the left value is null.
+    private final int[] nulls;
+
+    private PersonComparator(int[] properties, boolean[] descending, int[] nulls) {
+        this.properties = properties;
+        this.descending = descending;
+        this.nulls = nulls;
+    }
+
+    static PersonComparator of(@NonNull Sort sort) {
+        PersonComparator comparator = CACHE.getIfPresent(sort);
+        if (comparator == null) {
+            // Sorts with unknown properties throw before they are put, so they never take up room in the cache.
+            comparator = compile(sort);
+            CACHE.put(sort, comparator);
+        }
+        return comparator;
+    }
+
+    @Override
+    public int compare(Person left, Person right) {
+        for (int i = 0; i < properties.length; i++) {
+            int result;
+            switch (properties[i]) {
+                case ID:
+                    result = compare(left.getId(), right.getId(), i);
+                    break;
+                case NAME:
+                    result = compare(left.getName(), right.getName(), false, i);
+                    break;
+                case NAME_IGNORING_CASE:
+                    result = compare(left.getName(), right.getName(), true, i);
+                    break;
+                default:
+                    result = compare(left.getAge(), right.getAge(), i);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private int compare(Long left, Long right, int i) {
+        if (left == null || right == null) {
+            return nulls(left, right, i);
+        }
+        return descending[i] ? Long.compare(right.longValue(), left.longValue())
+            : Long.compare(left.longValue(), right.longValue());
+    }
+
+    private int compare(Integer left, Integer right, int i) {
+        if (left == null || right == null) {
+            return nulls(left, right, i);
+        }
+        return descending[i] ? Integer.compare(right.intValue(), left.intValue())
+            : Integer.compare(left.intValue(), right.intValue());
+    }
+
+    private int compare(String left, String right, boolean ignoreCase, int i) {
+        if (left == null || right == null) {
+            return nulls(left, right, i);
+        }
+        int result = ignoreCase ? String.CASE_INSENSITIVE_ORDER.compare(left, right) : left.compareTo(right);
+        return descending[i] ? -result : result;
+    }
+
+    private int nulls(Object left, Object right, int i) {
+        if (left == right) {
+            return 0;
+        }
+        return left == null ? nulls[i] : -nulls[i];
+    }
+
+    private static PersonComparator compile(Sort sort) {
+        List<Order> orders = newArrayList(sort);
+        int[] properties = new int[orders.size()];
+        boolean[] descending = new boolean[orders.size()];
+        int[] nulls = new int[orders.size()];
+        for (int i = 0; i < properties.length; i++) {
+            Order order = orders.get(i);
+            properties[i] = property(order);
+            descending[i] = order.isDescending();
+            // Without an explicit handling nulls are greater than any value, like in most databases.
+            nulls[i] = order.getNullHandling() == NULLS_FIRST ? -1
+                : order.getNullHandling() == NULLS_LAST ? 1 : order.isDescending() ? -1 : 1;
+        }
+        return new PersonComparator(properties, descending, nulls);
+    }
+
+    private static int property(Order order) {
+        switch (order.getProperty()) {
+            case "id":
+                return ID;
+            case "name":
+                return order.isIgnoreCase() ? NAME_IGNORING_CASE : NAME;
+            case "age":
+                return AGE;
+            default:
+                throw new PersonSortException(order.getProperty());
+        }
+    }
+}
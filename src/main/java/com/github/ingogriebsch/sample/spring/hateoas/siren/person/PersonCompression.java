@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_LENGTH;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.VARY;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@Component
+class PersonCompression {
+
+    static final String GZIP = "gzip";
+
+    private static final String ETAG_SUFFIX = "-" + GZIP + "\"";
+    private static final int BUFFER_SIZE = 8192;
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final int minResponseSize;
+    private final int level;
+
+    PersonCompression(@Value("${person.compression.enabled:false}") boolean enabled,
+        @NonNull @Value("${person.compression.min-response-size:2KB}") DataSize minResponseSize,
+        @Value("${person.compression.level:6}") int level) {
+        this.enabled = enabled;
+        this.minResponseSize = (int) minResponseSize.toBytes();
+        this.level = level;
+    }
+
+    boolean requested() {
+        if (!enabled) {
+            return false;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return false;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        return accepts(request.getHeader(ACCEPT_ENCODING), GZIP);
+    }
+
+    boolean exceedsThreshold(long length) {
+        return length >= minResponseSize;
+    }
+
+    GZIPOutputStream compress(@NonNull OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    byte[] compress(@NonNull byte[] response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(response.length / 4);
+        try (OutputStream gzip = compress(out)) {
+            gzip.write(response);
+        }
+        return out.toByteArray();
+    }
+
+    void vary(@NonNull HttpHeaders headers) {
+        if (enabled && !headers.getVary().contains(ACCEPT_ENCODING)) {
+            headers.add(VARY, ACCEPT_ENCODING);
+        }
+    }
+
+    static void encoded(@NonNull HttpHeaders headers) {
+        headers.set(CONTENT_ENCODING, GZIP);
+        headers.remove(CONTENT_LENGTH);
+
+        // The compressed bytes are a different representation, so they need an entity tag of their own.
+        String eTag = headers.getETag();
+        if (eTag == null || !eTag.endsWith("\"")) {
+            return;
+        }
+        String encoded = eTag.substring(0, eTag.length() - 1) + ETAG_SUFFIX;
+
+        // Spring MVC moves the entity tag of GET responses to the servlet response while checking the preconditions.
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        HttpServletResponse response =
+            attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getResponse() : null;
+        if (response != null && eTag.equals(response.getHeader(ETAG))) {
+            response.setHeader(ETAG, encoded);
+        } else {
+            headers.setETag(encoded);
+        }
+    }
+
+    static String decoded(@NonNull String eTag) {
+        return eTag.endsWith(ETAG_SUFFIX) ? eTag.substring(0, eTag.length() - ETAG_SUFFIX.length()) + "\"" : eTag;
+    }
+
+    static boolean accepts(String header, @NonNull String coding) {
+        if (header == null) {
+            return false;
+        }
+
+        for (String candidate : header.split(",")) {
+            String[] parts = candidate.split(";");
+            if (parts[0].trim().equalsIgnoreCase(coding)) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
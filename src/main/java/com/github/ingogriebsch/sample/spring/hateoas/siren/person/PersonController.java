@@ -19,28 +19,69 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonCompression.GZIP;
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.ResponseEntity.badRequest;
 import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
 import static org.springframework.http.ResponseEntity.status;
+import static org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.PagedModel;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.ResponseEntity.BodyBuilder;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+@ConditionalOnWebApplication(type = SERVLET)
 @RequiredArgsConstructor
 @RestController
 class PersonController {
@@ -50,34 +91,292 @@ class PersonController {
     static final String PATH_INSERT = PATH_FIND_ALL;
     static final String PATH_UPDATE = PATH_FIND_ONE;
     static final String PATH_DELETE = PATH_FIND_ONE;
+    static final String PATH_SEARCH = "/persons/search";
+    static final String PATH_INSERT_ALL = "/persons/batch";
+    static final String PATH_EXPORT = "/persons/export";
+    static final String PATH_FIND_BY_AGE = "/persons/age";
+    static final String PATH_AGE_STATISTICS = "/persons/age/statistics";
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+    static final MediaType SIREN_CBOR = MediaType.valueOf("application/vnd.siren+cbor");
+    static final MediaType SIREN_SMILE = MediaType.valueOf("application/vnd.siren+smile");
+    static final MediaType HAL_CBOR = MediaType.valueOf("application/hal+cbor");
+    static final MediaType HAL_SMILE = MediaType.valueOf("application/hal+smile");
+
+    static final String PARAM_AFTER = "after";
+    static final String PARAM_FIELDS = "fields";
+    static final String PARAM_OMIT = "omit";
+    static final String PARAM_NAME = "name";
+    static final String PARAM_PREFIX = "prefix";
+    static final String PARAM_MIN_AGE = "minAge";
+    static final String PARAM_MAX_AGE = "maxAge";
+    static final String PARAM_BUCKET_SIZE = "bucketSize";
+
+    private static final String WEAK_PREFIX = "W/";
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
 
     @NonNull
     private final PersonService personService;
     @NonNull
     private final PersonModelAssembler personModelAssembler;
+    @NonNull
+    private final Validator validator;
+    @NonNull
+    private final ObjectMapper objectMapper;
+    @NonNull
+    private final PersonExporter personExporter;
+    @NonNull
+    private final PersonMetrics personMetrics;
 
     @GetMapping(path = PATH_FIND_ALL)
-    ResponseEntity<PagedModel<EntityModel<Person>>> findAll(Pageable pageable) {
-        return ok(personModelAssembler.toPagedModel(personService.findAll(pageable)));
+    ResponseEntity<Object> findAll(Pageable pageable, @RequestParam(name = PARAM_FIELDS, required = false) String fields,
+        @RequestParam(name = PARAM_OMIT, required = false) String omit,
+        @RequestHeader(name = IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(name = ACCEPT, required = false) String accept) {
+        personMetrics.requested("findAll", pageable);
+        return PersonFieldset.parse(fields, omit).map(f -> {
+            long version = personService.version();
+            return conditional(eTag(version, accept), ifNoneMatch, () -> {
+                Supplier<PagedModel<EntityModel<Person>>> model = () -> {
+                    Page<Person> page = personMetrics.service("findAll", () -> personService.findAll(pageable));
+                    return personMetrics.assembly("findAll", () -> personModelAssembler.toPagedModel(page, f));
+                };
+                // Only first pages are requested often enough to be worth caching. A cached page is only resolved on a
+                // cache miss while it is written, its service and assembly time is kept out of the serialization.
+                return pageable.getPageNumber() == 0 ? new CachedPersonModel(fromCurrentRequest().toUriString(), version, model)
+                    : model.get();
+            });
+        }).orElse(badRequest().build());
+    }
+
+    @GetMapping(path = PATH_FIND_ALL, params = PARAM_AFTER)
+    ResponseEntity<CollectionModel<EntityModel<Person>>> findAllAfter(@RequestParam(PARAM_AFTER) String after, Pageable pageable,
+        @RequestParam(name = PARAM_FIELDS, required = false) String fields,
+        @RequestParam(name = PARAM_OMIT, required = false) String omit,
+        @RequestHeader(name = IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(name = ACCEPT, required = false) String accept) {
+        personMetrics.requested("findAllAfter", pageable);
+        return PersonFieldset.parse(fields, omit).flatMap(f -> PersonCursor.parse(after, pageable.getSort())
+            .map(c -> conditional(eTag(personService.version(), accept), ifNoneMatch, () -> {
+                Slice<Person> slice =
+                    personMetrics.service("findAllAfter", () -> personService.findAll(c, pageable.getPageSize()));
+                return personMetrics.assembly("findAllAfter", () -> personModelAssembler.toSlicedModel(slice, c, f));
+            }))).orElse(badRequest().build());
+    }
+
+    @GetMapping(path = PATH_SEARCH)
+    ResponseEntity<PagedModel<EntityModel<Person>>> search(@RequestParam(PARAM_NAME) String name,
+        @RequestParam(name = PARAM_PREFIX, defaultValue = "false") boolean prefix, Pageable pageable,
+        @RequestParam(name = PARAM_FIELDS, required = false) String fields,
+        @RequestParam(name = PARAM_OMIT, required = false) String omit) {
+        personMetrics.requested("search", pageable);
+        return PersonFieldset.parse(fields, omit).map(f -> {
+            Page<Person> page = personMetrics.service("search", () -> personService.search(name, prefix, pageable));
+            return ok(personMetrics.assembly("search", () -> personModelAssembler.toSearchModel(page, f)));
+        }).orElse(badRequest().build());
+    }
+
+    @GetMapping(path = PATH_FIND_BY_AGE)
+    ResponseEntity<PagedModel<EntityModel<Person>>> findByAge(
+        @RequestParam(name = PARAM_MIN_AGE, required = false) Integer minAge,
+        @RequestParam(name = PARAM_MAX_AGE, required = false) Integer maxAge, Pageable pageable,
+        @RequestParam(name = PARAM_FIELDS, required = false) String fields,
+        @RequestParam(name = PARAM_OMIT, required = false) String omit,
+        @RequestHeader(name = IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(name = ACCEPT, required = false) String accept) {
+        personMetrics.requested("findByAge", pageable);
+        int min = minAge != null ? minAge : 0;
+        int max = maxAge != null ? maxAge : Integer.MAX_VALUE;
+        if (min < 0 || min > max) {
+            return badRequest().build();
+        }
+
+        return PersonFieldset.parse(fields, omit).map(f -> conditional(eTag(personService.version(), accept), ifNoneMatch, () -> {
+            Page<Person> page = personMetrics.service("findByAge", () -> personService.findByAge(min, max, pageable));
+            return personMetrics.assembly("findByAge", () -> personModelAssembler.toSearchModel(page, f));
+        })).orElse(badRequest().build());
+    }
+
+    @GetMapping(path = PATH_AGE_STATISTICS)
+    ResponseEntity<EntityModel<PersonAgeStatistics>> ageStatistics(
+        @RequestParam(name = PARAM_MIN_AGE, required = false) Integer minAge,
+        @RequestParam(name = PARAM_MAX_AGE, required = false) Integer maxAge,
+        @RequestParam(name = PARAM_BUCKET_SIZE, defaultValue = "10") int bucketSize,
+        @RequestHeader(name = IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(name = ACCEPT, required = false) String accept) {
+        int min = minAge != null ? minAge : 0;
+        int max = maxAge != null ? maxAge : Integer.MAX_VALUE;
+        if (min < 0 || min > max || bucketSize < 1) {
+            return badRequest().build();
+        }
+
+        long version = personService.version();
+        return personMetrics.service("ageStatistics", () -> personService.ageStatistics(min, max, bucketSize))
+            .map(s -> conditional(eTag(version, accept), ifNoneMatch, () -> personMetrics.assembly("ageStatistics",
+                () -> personModelAssembler.toAgeStatisticsModel(s, minAge, maxAge))))
+            .orElse(badRequest().build());
+    }
+
+    @GetMapping(path = PATH_EXPORT, produces = APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> export(@RequestHeader(name = ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Stream<Person> persons = personService.export();
+        BodyBuilder builder = ok().contentType(APPLICATION_NDJSON).header(VARY, ACCEPT_ENCODING);
+        if (!PersonCompression.accepts(acceptEncoding, GZIP)) {
+            return builder.body(out -> personExporter.export(persons, out));
+        }
+
+        return builder.header(CONTENT_ENCODING, GZIP).body(out -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+            personExporter.export(persons, gzip);
+            gzip.finish();
+        });
     }
 
     @GetMapping(path = PATH_FIND_ONE)
-    ResponseEntity<EntityModel<Person>> findOne(@PathVariable Long id) {
-        return personService.findOne(id).map(p -> ok(personModelAssembler.toModel(p))).orElse(notFound().build());
+    ResponseEntity<CachedPersonModel> findOne(@PathVariable Long id,
+        @RequestHeader(name = IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(name = ACCEPT, required = false) String accept) {
+        return personMetrics.service("findOne", () -> personService.findOne(id)).map(p -> {
+            long version = p.getVersion();
+            return conditional(eTag(version, accept), ifNoneMatch, () -> new CachedPersonModel(p.getId(), version,
+                () -> personMetrics.assembly("findOne", () -> personModelAssembler.toModel(p))));
+        }).orElse(notFound().build());
     }
 
     @PostMapping(path = PATH_INSERT, consumes = APPLICATION_JSON_VALUE)
-    ResponseEntity<EntityModel<Person>> insert(@RequestBody @Valid PersonInput personInput) {
-        return status(CREATED).body(personModelAssembler.toModel(personService.insert(personInput)));
+    ResponseEntity<EntityModel<Person>> insert(@RequestBody @Valid PersonInput personInput,
+        @RequestHeader(name = ACCEPT, required = false) String accept) {
+        Person person = personMetrics.service("insert", () -> personService.insert(personInput));
+        return status(CREATED).eTag(eTag(person.getVersion(), accept)).header(VARY, ACCEPT)
+            .body(personMetrics.assembly("insert", () -> personModelAssembler.toModel(person)));
+    }
+
+    @PostMapping(path = PATH_INSERT_ALL, consumes = APPLICATION_JSON_VALUE)
+    ResponseEntity<CollectionModel<EntityModel<PersonBatchResult>>> insertAll(@RequestBody List<PersonInput> personInputs) {
+        PersonBatchResult[] results = new PersonBatchResult[personInputs.size()];
+        List<PersonInput> accepted = new ArrayList<>(personInputs.size());
+        for (int i = 0; i < results.length; i++) {
+            List<String> errors = validate(validator, personInputs.get(i));
+            if (errors.isEmpty()) {
+                accepted.add(personInputs.get(i));
+            } else {
+                results[i] = PersonBatchResult.rejected(i, errors);
+            }
+        }
+
+        Iterator<Person> inserted = personMetrics.service("insertAll", () -> personService.insertAll(accepted)).iterator();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = PersonBatchResult.created(i, inserted.next());
+            }
+        }
+        return ok(personMetrics.assembly("insertAll", () -> personModelAssembler.toBatchModel(asList(results))));
+    }
+
+    @PostMapping(path = PATH_INSERT_ALL, consumes = APPLICATION_NDJSON_VALUE)
+    ResponseEntity<CollectionModel<EntityModel<PersonBatchResult>>> insertAll(InputStream personInputs) throws IOException {
+        try (MappingIterator<PersonInput> iterator = objectMapper.readerFor(PersonInput.class).readValues(personInputs)) {
+            return insertAll(iterator.readAll());
+        }
     }
 
     @PutMapping(path = PATH_UPDATE, consumes = APPLICATION_JSON_VALUE)
-    ResponseEntity<EntityModel<Person>> update(@PathVariable Long id, @RequestBody @Valid PersonInput personInput) {
-        return personService.update(id, personInput).map(p -> ok(personModelAssembler.toModel(p))).orElse(notFound().build());
+    ResponseEntity<EntityModel<Person>> update(@PathVariable Long id,
+        @RequestHeader(name = IF_MATCH, required = false) String ifMatch,
+        @RequestHeader(name = ACCEPT, required = false) String accept, @RequestBody @Valid PersonInput personInput) {
+        Optional<Person> person = personMetrics.service("update", () -> ifMatch != null
+            ? personService.update(id, personInput, v -> matches(ifMatch, v)) : personService.update(id, personInput));
+        return person.map(p -> ok().eTag(eTag(p.getVersion(), accept)).header(VARY, ACCEPT)
+            .body(personMetrics.assembly("update", () -> personModelAssembler.toModel(p)))).orElse(notFound().build());
     }
 
     @DeleteMapping(path = PATH_DELETE)
-    ResponseEntity<Void> delete(@PathVariable Long id) {
-        return personService.delete(id) ? ok().build() : notFound().build();
+    ResponseEntity<Void> delete(@PathVariable Long id, @RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
+        boolean deleted = personMetrics.service("delete",
+            () -> ifMatch != null ? personService.delete(id, v -> matches(ifMatch, v)) : personService.delete(id));
+        return deleted ? ok().build() : notFound().build();
+    }
+
+    @ExceptionHandler(PersonVersionMismatchException.class)
+    ResponseEntity<Void> versionMismatch() {
+        return status(PRECONDITION_FAILED).build();
+    }
+
+    @ExceptionHandler(PersonSortException.class)
+    ResponseEntity<Void> unsortable() {
+        return badRequest().build();
+    }
+
+    @ExceptionHandler(JsonProcessingException.class)
+    ResponseEntity<Void> unreadable() {
+        return badRequest().build();
+    }
+
+    // Every media type is a representation of its own, so the accepted media types become part of the entity tag (and the
+    // responses vary by them). The epoch keeps the tags of different runs apart, as versions may start over with a restart.
+    static String eTag(long version, String accept) {
+        return "\"" + state(version) + Integer.toHexString(accept != null ? accept.replace(" ", "").hashCode() : 0) + "\"";
+    }
+
+    private static String state(long version) {
+        return EPOCH + "." + version + ".";
+    }
+
+    private static <T> ResponseEntity<T> conditional(String eTag, String ifNoneMatch, Supplier<T> body) {
+        String matching = matching(ifNoneMatch, eTag, true);
+        if (matching != null) {
+            // The client may hold the compressed variant, so it gets back the entity tag it sent instead of the plain one.
+            return status(NOT_MODIFIED).eTag(matching.equals("*") ? eTag : matching).header(VARY, ACCEPT).build();
+        }
+        return ok().eTag(eTag).header(VARY, ACCEPT).body(body.get());
+    }
+
+    static List<String> validate(Validator validator, PersonInput personInput) {
+        if (personInput == null) {
+            return singletonList("must not be null");
+        }
+        return validator.validate(personInput).stream().map(v -> v.getPropertyPath() + " " + v.getMessage()).sorted()
+            .collect(toList());
+    }
+
+    static boolean matches(String header, String eTag, boolean weak) {
+        return matching(header, eTag, weak) != null;
+    }
+
+    // A precondition concerns the state of the person instead of a single representation, so the tag of any media type
+    // matches, as long as it is a strong one.
+    static boolean matches(String header, long version) {
+        String state = "\"" + state(version);
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || PersonCompression.decoded(value).startsWith(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String matching(String header, String eTag, boolean weak) {
+        if (header == null) {
+            return null;
+        }
+
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return value;
+            }
+            if (value.startsWith(WEAK_PREFIX)) {
+                if (!weak) {
+                    continue;
+                }
+                value = value.substring(WEAK_PREFIX.length());
+            }
+            if (PersonCompression.decoded(value).equals(eTag)) {
+                return value;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import static org.springframework.data.domain.Sort.Direction.ASC;
+
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Optional;
+
+import lombok.NonNull;
+import lombok.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+
+@Value
+class PersonCursor {
+
+    private static final String SEPARATOR = ",";
+
+    @NonNull
+    Order order;
+    Person last;
+
+    static Optional<PersonCursor> parse(@NonNull String token, @NonNull Sort sort) {
+        return token.isEmpty() ? first(sort) : decode(token);
+    }
+
+    PersonCursor after(@NonNull Person person) {
+        return new PersonCursor(order, person);
+    }
+
+    String encode() {
+        String id = last != null ? "" + last.getId() : "";
+        String token = String.join(SEPARATOR, order.getProperty(), order.getDirection().name(), id, value());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(UTF_8));
+    }
+
+    private String value() {
+        if (last == null) {
+            return "";
+        }
+
+        String property = order.getProperty();
+        if (property.equals("name")) {
+            return last.getName();
+        } else if (property.equals("age")) {
+            return "" + last.getAge();
+        }
+        return "";
+    }
+
+    private static Optional<PersonCursor> first(Sort sort) {
+        Iterator<Order> orders = sort.iterator();
+        if (!orders.hasNext()) {
+            return of(new PersonCursor(new Order(ASC, "id"), null));
+        }
+
+        Order order = orders.next();
+        if (orders.hasNext() || !PersonStore.isIndexed(order.getProperty())) {
+            return empty();
+        }
+        return of(new PersonCursor(order, null));
+    }
+
+    private static Optional<PersonCursor> decode(String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), UTF_8).split(SEPARATOR, 4);
+        } catch (IllegalArgumentException e) {
+            return empty();
+        }
+
+        if (parts.length != 4 || !PersonStore.isIndexed(parts[0])) {
+            return empty();
+        }
+
+        try {
+            Order order = new Order(Direction.fromString(parts[1]), parts[0]);
+            if (parts[2].isEmpty()) {
+                return of(new PersonCursor(order, null));
+            }
+
+            Person last = new Person(Long.valueOf(parts[2]), null, null);
+            if (order.getProperty().equals("name")) {
+                last.setName(parts[3]);
+            } else if (order.getProperty().equals("age")) {
+                last.setAge(Integer.valueOf(parts[3]));
+            }
+            return of(new PersonCursor(order, last));
+        } catch (IllegalArgumentException e) {
+            return empty();
+        }
+    }
+}
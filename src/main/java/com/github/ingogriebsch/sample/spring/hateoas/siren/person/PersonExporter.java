@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
+import static com.fasterxml.jackson.databind.SerializationFeature.INDENT_OUTPUT;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+
+@Component
+class PersonExporter {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    PersonExporter(@NonNull ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        writer = objectMapper.writerFor(Person.class).without(FLUSH_AFTER_WRITE_VALUE).without(INDENT_OUTPUT);
+    }
+
+    long export(@NonNull Stream<Person> persons, @NonNull OutputStream output) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output).disable(AUTO_CLOSE_TARGET)) {
+            generator.setRootValueSeparator(null);
+            for (Iterator<Person> iterator = persons.iterator(); iterator.hasNext(); count++) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Collections.emptySet;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_FIELDS;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_OMIT;
+
+import java.util.Optional;
+import java.util.Set;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import lombok.NonNull;
+import lombok.Value;
+import org.springframework.hateoas.Link;
+import org.springframework.web.util.UriComponentsBuilder;
+
+@Value
+class PersonFieldset {
+
+    static final String LINKS = "links";
+    static final String ACTIONS = "actions";
+
+    private static final Set<String> FIELDS = ImmutableSet.of("id", "name", "age");
+    private static final Set<String> OMITTABLE = ImmutableSet.of(LINKS, ACTIONS);
+    private static final Splitter SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    static final PersonFieldset ALL = new PersonFieldset(FIELDS, true, true);
+
+    @NonNull
+    Set<String> fields;
+    boolean links;
+    boolean actions;
+
+    static Optional<PersonFieldset> parse(String fields, String omit) {
+        Set<String> selected = fields != null ? ImmutableSet.copyOf(SPLITTER.split(fields)) : FIELDS;
+        Set<String> omitted = omit != null ? ImmutableSet.copyOf(SPLITTER.split(omit)) : emptySet();
+        if (!FIELDS.containsAll(selected) || !OMITTABLE.containsAll(omitted)) {
+            return empty();
+        }
+
+        boolean links = !omitted.contains(LINKS);
+        return of(new PersonFieldset(selected, links, links && !omitted.contains(ACTIONS)));
+    }
+
+    Link apply(@NonNull Link link) {
+        if (equals(ALL) || link.isTemplated()) {
+            return link;
+        }
+
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(link.getHref());
+        if (fields.size() != FIELDS.size()) {
+            builder.replaceQueryParam(PARAM_FIELDS, String.join(",", fields));
+        }
+        if (!links || !actions) {
+            builder.replaceQueryParam(PARAM_OMIT, links ? ACTIONS : LINKS);
+        }
+        return link.withHref(builder.toUriString());
+    }
+
+    Person apply(@NonNull Person person) {
+        if (fields.size() == FIELDS.size()) {
+            return person;
+        }
+
+        return new Person(fields.contains("id") ? person.getId() : null, fields.contains("name") ? person.getName() : null,
+            fields.contains("age") ? person.getAge() : null, person.getVersion());
+    }
+}
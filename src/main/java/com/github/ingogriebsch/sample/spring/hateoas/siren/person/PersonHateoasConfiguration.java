@@ -19,11 +19,15 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+
 import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.web.PagedResourcesAssembler;
 
+@ConditionalOnWebApplication(type = SERVLET)
 @Configuration
 public class PersonHateoasConfiguration {
 
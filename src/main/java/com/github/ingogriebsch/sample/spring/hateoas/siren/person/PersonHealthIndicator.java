@@ -19,30 +19,36 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
-import static com.google.common.collect.Lists.newArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
 @Component
 @RequiredArgsConstructor
-@Slf4j
-class PersonInitializer implements CommandLineRunner {
+class PersonHealthIndicator implements HealthIndicator {
 
+    @NonNull
+    private final PersonLoader personLoader;
     @NonNull
     private final PersonService personService;
 
     @Override
-    public void run(String... args) throws Exception {
-        newArrayList(new PersonInput("Ingo", 44), new PersonInput("Marcel", 33), new PersonInput("Sophia", 21)).stream()
-            .forEach(p -> insert(p));
-    }
+    public Health health() {
+        CompletableFuture<Long> loaded = personLoader.loaded();
+        if (!loaded.isDone()) {
+            return Health.outOfService().withDetail("persons", personService.count()).build();
+        }
 
-    private void insert(PersonInput personInput) {
-        Person person = personService.insert(personInput);
-        log.debug("Inserted person '{}'...", person);
+        try {
+            loaded.join();
+            return Health.up().withDetail("persons", personService.count()).build();
+        } catch (CompletionException e) {
+            return Health.down().withException(e.getCause()).build();
+        }
     }
 }
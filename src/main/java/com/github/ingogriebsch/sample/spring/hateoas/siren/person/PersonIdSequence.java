@@ -0,0 +1,53 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.stream.LongStream.range;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import lombok.NonNull;
+
+class PersonIdSequence {
+
+    private final AtomicLong last = new AtomicLong();
+
+    long next() {
+        return last.incrementAndGet();
+    }
+
+    LongStream reserve(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative!");
+        }
+
+        long first = last.getAndAdd(count) + 1L;
+        return range(first, first + count);
+    }
+
+    void seed(@NonNull PersonStore persons) {
+        seed(persons.lastId());
+    }
+
+    void seed(long id) {
+        last.accumulateAndGet(id, Math::max);
+    }
+}
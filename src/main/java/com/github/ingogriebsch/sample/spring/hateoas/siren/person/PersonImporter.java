@@ -0,0 +1,122 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+class PersonImporter {
+
+    private static final long RANGE_SIZE = 1L << 23;
+    private static final int SCAN_SIZE = 4096;
+
+    private final ObjectReader reader;
+    private final long rangeSize;
+
+    @Autowired
+    PersonImporter(@NonNull ObjectMapper objectMapper) {
+        this(objectMapper, RANGE_SIZE);
+    }
+
+    PersonImporter(@NonNull ObjectMapper objectMapper, long rangeSize) {
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("Range size must be positive!");
+        }
+        reader = objectMapper.readerFor(Person.class);
+        this.rangeSize = rangeSize;
+    }
+
+    long importFrom(@NonNull Path file, @NonNull ExecutorService executor, int chunkSize, @NonNull Consumer<List<Person>> chunks)
+        throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive!");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long size = channel.size();
+            List<Callable<Long>> tasks = new ArrayList<>();
+            for (long from = 0; from < size;) {
+                long to = lineEnd(channel, Math.min(from + rangeSize, size) - 1);
+                ByteBuffer lines = channel.map(READ_ONLY, from, to - from);
+                tasks.add(() -> importFrom(lines, chunkSize, chunks));
+                from = to;
+            }
+            return PersonChunks.invokeAll(executor, tasks);
+        }
+    }
+
+    private long importFrom(ByteBuffer lines, int chunkSize, Consumer<List<Person>> chunks) throws IOException {
+        long count = 0;
+        List<Person> chunk = new ArrayList<>(chunkSize);
+        try (MappingIterator<Person> persons = reader.readValues(new ByteBufferBackedInputStream(lines))) {
+            while (persons.hasNextValue()) {
+                Person person = persons.nextValue();
+                if (person.getId() == null) {
+                    throw new IOException("Person without an id cannot be imported!");
+                }
+
+                chunk.add(person);
+                if (chunk.size() == chunkSize) {
+                    chunks.accept(chunk);
+                    count += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.accept(chunk);
+        }
+        return count + chunk.size();
+    }
+
+    private static long lineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long offset = position;
+        for (int read = channel.read(buffer, offset); read > 0; read = channel.read(buffer, offset)) {
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+            buffer.clear();
+        }
+        return channel.size();
+    }
+}
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.io.Closeable;
+import java.util.Collection;
+
+interface PersonJournal extends Closeable {
+
+    PersonJournal NONE = new PersonJournal() {
+
+        @Override
+        public long insert(Person person) {
+            return 0;
+        }
+
+        @Override
+        public long insertAll(Collection<Person> persons) {
+            return 0;
+        }
+
+        @Override
+        public long update(Person person) {
+            return 0;
+        }
+
+        @Override
+        public long delete(Long id) {
+            return 0;
+        }
+
+        @Override
+        public void sync(long position) {
+        }
+
+        @Override
+        public long lastId() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    long insert(Person person);
+
+    long insertAll(Collection<Person> persons);
+
+    long update(Person person);
+
+    long delete(Long id);
+
+    void sync(long position);
+
+    // The highest id ever journaled, including those of deleted persons, so that they are not handed out again.
+    long lastId();
+
+    @Override
+    void close();
+
+    enum Fsync {
+            ALWAYS, BATCH, INTERVAL
+    }
+}
@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+@Component
+@Lazy(false)
+@Slf4j
+class PersonLoader implements InitializingBean, DisposableBean {
+
+    private static final int CHUNK_SIZE = 65_536;
+
+    private final PersonStore persons;
+    private final PersonService personService;
+    private final PersonImporter personImporter;
+    private final Optional<PersonPersistence> persistence;
+    private final PersonStartupProperties properties;
+    private final Duration snapshotInterval;
+    private final ForkJoinPool pool;
+    private final CompletableFuture<Long> loaded = new CompletableFuture<>();
+
+    PersonLoader(@NonNull PersonStore persons, @NonNull PersonService personService, @NonNull PersonImporter personImporter,
+        @NonNull Optional<PersonPersistence> persistence, @NonNull PersonStartupProperties properties,
+        @NonNull PersonPersistenceProperties persistenceProperties) {
+        this.persons = persons;
+        this.personService = personService;
+        this.personImporter = personImporter;
+        this.persistence = persistence;
+        this.properties = properties;
+        snapshotInterval = persistenceProperties.getSnapshotInterval();
+        pool = new ForkJoinPool(properties.getParallelism());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (properties.isBackground()) {
+            Thread thread = new Thread(this::load, "person-loader");
+            thread.setDaemon(true);
+            thread.start();
+            return;
+        }
+
+        load();
+        loaded.join();
+    }
+
+    boolean isReady() {
+        return loaded.isDone() && !loaded.isCompletedExceptionally();
+    }
+
+    CompletableFuture<Long> loaded() {
+        return loaded;
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        try {
+            if (persistence.isPresent()) {
+                persistence.get().recover(persons, pool);
+            }
+            if (persons.size() == 0 && properties.getSeedFile() != null) {
+                personImporter.importFrom(properties.getSeedFile(), pool, CHUNK_SIZE, persons::insertAll);
+                if (persistence.isPresent()) {
+                    persistence.get().snapshot(persons);
+                }
+            }
+
+            personService.seed();
+            if (persons.size() == 0) {
+                List<Person> inserted = personService.insertAll(
+                    newArrayList(new PersonInput("Ingo", 44), new PersonInput("Marcel", 33), new PersonInput("Sophia", 21)));
+                inserted.forEach(p -> log.debug("Inserted person '{}'...", p));
+            }
+            if (persistence.isPresent()) {
+                persistence.get().scheduleSnapshots(persons, snapshotInterval);
+            }
+
+            loaded.complete((long) persons.size());
+            log.info("Loaded {} persons in {} ms...", persons.size(), NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            if (pool.isShutdown()) {
+                log.debug("Loading the persons was aborted...");
+            } else {
+                log.error("Loading the persons failed!", e);
+            }
+            loaded.completeExceptionally(e);
+        }
+    }
+}
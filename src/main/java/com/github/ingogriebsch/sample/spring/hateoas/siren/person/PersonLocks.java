@@ -0,0 +1,63 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.util.concurrent.Striped;
+import lombok.NonNull;
+
+// Serializes the writes of a person, while writes of persons whose ids fall into different stripes do not wait for each
+// other.
+class PersonLocks {
+
+    private static final int STRIPES = 256;
+
+    private final Striped<Lock> stripes = Striped.lock(STRIPES);
+
+    Lock lock(long id) {
+        Lock lock = stripes.get(id);
+        lock.lock();
+        return lock;
+    }
+
+    // The stripes are handed out in a fixed order, so batches sharing some of them never wait for each other in a cycle.
+    List<Lock> lockAll(@NonNull Collection<Person> persons) {
+        List<Lock> locked = new ArrayList<>();
+        for (Lock lock : stripes.bulkGet(persons.stream().map(Person::getId).collect(toList()))) {
+            if (locked.isEmpty() || locked.get(locked.size() - 1) != lock) {
+                lock.lock();
+                locked.add(lock);
+            }
+        }
+        return locked;
+    }
+
+    static void unlockAll(@NonNull List<Lock> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).unlock();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.HAL_CBOR;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.HAL_SMILE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_CBOR;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_SMILE;
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static org.springframework.hateoas.MediaTypes.HAL_JSON;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.collect.ImmutableSet;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+@Component
+@RequiredArgsConstructor
+class PersonMessageConverterRegistrar implements BeanPostProcessor {
+
+    private static final Set<MediaType> HYPERMEDIA =
+        ImmutableSet.of(SIREN_JSON, SIREN_CBOR, SIREN_SMILE, HAL_JSON, HAL_CBOR, HAL_SMILE);
+
+    @NonNull
+    private final ObjectProvider<PersonResponseCache> personResponseCache;
+    @NonNull
+    private final ObjectProvider<PersonCompression> personCompression;
+    @NonNull
+    private final ObjectProvider<PersonMetrics> personMetrics;
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RequestMappingHandlerAdapter) {
+            register(((RequestMappingHandlerAdapter) bean).getMessageConverters());
+        }
+        return bean;
+    }
+
+    private void register(List<HttpMessageConverter<?>> converters) {
+        registerBinary(converters, SIREN_JSON, SIREN_CBOR, SIREN_SMILE);
+        registerBinary(converters, HAL_JSON, HAL_CBOR, HAL_SMILE);
+
+        List<MediaType> cacheable = new ArrayList<>();
+        for (MediaType mediaType : new MediaType[] { SIREN_JSON, HAL_JSON, APPLICATION_JSON, SIREN_CBOR, SIREN_SMILE, HAL_CBOR,
+            HAL_SMILE }) {
+            if (converters.stream().anyMatch(c -> c.canWrite(EntityModel.class, mediaType))) {
+                cacheable.add(mediaType);
+            }
+        }
+
+        for (int i = 0; i < converters.size(); i++) {
+            HttpMessageConverter<?> converter = converters.get(i);
+            if (converter instanceof AbstractJackson2HttpMessageConverter
+                && converter.getSupportedMediaTypes().contains(SIREN_JSON)) {
+                converters.add(i,
+                    new PersonPagedModelConverter(((AbstractJackson2HttpMessageConverter) converter).getObjectMapper()));
+                break;
+            }
+        }
+
+        // The cached responses are compressed once when they are cached, all others while they are written.
+        List<HttpMessageConverter<?>> delegates = new ArrayList<>(converters);
+        PersonCompression compression = personCompression.getObject();
+        if (compression.isEnabled()) {
+            converters.replaceAll(c -> isHypermedia(c) ? CompressingHttpMessageConverter.of(c, compression) : c);
+        }
+        converters.add(0, new CachedPersonModelConverter(personResponseCache.getObject(), compression, cacheable, delegates));
+
+        PersonMetrics metrics = personMetrics.getIfAvailable();
+        if (metrics != null && metrics.isDetailed()) {
+            converters.replaceAll(c -> isHypermedia(c) ? MeteredHttpMessageConverter.of(c, metrics) : c);
+        }
+    }
+
+    private static void registerBinary(List<HttpMessageConverter<?>> converters, MediaType json, MediaType cbor,
+        MediaType smile) {
+        for (int i = 0; i < converters.size(); i++) {
+            HttpMessageConverter<?> converter = converters.get(i);
+            if (converter instanceof AbstractJackson2HttpMessageConverter && converter.getSupportedMediaTypes().contains(json)) {
+                ObjectMapper objectMapper = ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper();
+                converters.add(i + 1, new BinaryHypermediaMessageConverter(objectMapper, new SmileFactory(), smile));
+                converters.add(i + 1, new BinaryHypermediaMessageConverter(objectMapper, new CBORFactory(), cbor));
+                break;
+            }
+        }
+    }
+
+    private static boolean isHypermedia(HttpMessageConverter<?> converter) {
+        return converter.getSupportedMediaTypes().stream().anyMatch(HYPERMEDIA::contains);
+    }
+}
@@ -0,0 +1,180 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static org.springframework.web.context.request.RequestAttributes.SCOPE_REQUEST;
+
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+@Component
+class PersonMetrics {
+
+    static final String TAG_ENDPOINT = "endpoint";
+    static final String TAG_MEDIA_TYPE = "media.type";
+
+    private static final Set<String> SORT_PROPERTIES = ImmutableSet.of("id", "name", "age");
+    private static final String ASSEMBLY = PersonMetrics.class.getName() + ".ASSEMBLY";
+
+    private final MeterRegistry registry;
+    @Getter
+    private final boolean detailed;
+
+    PersonMetrics(@NonNull MeterRegistry registry, @NonNull PersonResponseCache cache,
+        @Value("${person.metrics.detailed:true}") boolean detailed) {
+        this.registry = registry;
+        this.detailed = detailed;
+
+        FunctionCounter.builder("person.response-cache.requests", cache, c -> c.stats().hitCount()).tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("person.response-cache.requests", cache, c -> c.stats().missCount()).tag("result", "miss")
+            .register(registry);
+        FunctionCounter.builder("person.response-cache.evictions", cache, c -> c.stats().evictionCount()).register(registry);
+    }
+
+    <T> T service(@NonNull String endpoint, @NonNull Supplier<T> call) {
+        return record("person.service", endpoint, call);
+    }
+
+    <T> T assembly(@NonNull String endpoint, @NonNull Supplier<T> call) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!detailed || attributes == null) {
+            return record("person.assembly", endpoint, call);
+        }
+
+        // Lazy models are only completely assembled while they are written, so the assembly of a request is collected
+        // until the request completes and then recorded once.
+        AssemblyTime assembly = (AssemblyTime) attributes.getAttribute(ASSEMBLY, SCOPE_REQUEST);
+        if (assembly == null) {
+            AssemblyTime time = assembly = new AssemblyTime();
+            Timer timer = Timer.builder("person.assembly").tag(TAG_ENDPOINT, endpoint).register(registry);
+            attributes.setAttribute(ASSEMBLY, assembly, SCOPE_REQUEST);
+            attributes.registerDestructionCallback(ASSEMBLY, () -> timer.record(time.total, NANOSECONDS), SCOPE_REQUEST);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            assembly.total += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Times an assembler which is only applied while the model is written. The time is added to the assembly of the current
+     * request and is kept out of its serialization.
+     */
+    static <T, R> Function<T, R> deferred(@NonNull Function<T, R> assembler) {
+        AssemblyTime assembly = current();
+        if (assembly == null) {
+            return assembler;
+        }
+        return t -> {
+            long start = System.nanoTime();
+            try {
+                return assembler.apply(t);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                assembly.total += elapsed;
+                assembly.written += elapsed;
+            }
+        };
+    }
+
+    /**
+     * Resolves a model while it is written. The time is kept out of the serialization of the current request, the service
+     * and assembly calls of the supplier record themselves.
+     */
+    static <T> T deferred(@NonNull Supplier<T> model) {
+        long start = System.nanoTime();
+        try {
+            return model.get();
+        } finally {
+            AssemblyTime assembly = current();
+            if (assembly != null) {
+                assembly.written += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Returns the time the current request spent so far in deferred work while its response was written.
+     */
+    static long deferred() {
+        AssemblyTime assembly = current();
+        return assembly != null ? assembly.written : 0L;
+    }
+
+    void requested(@NonNull String endpoint, @NonNull Pageable pageable) {
+        if (!detailed) {
+            return;
+        }
+
+        DistributionSummary.builder("person.page.size").tag(TAG_ENDPOINT, endpoint).register(registry)
+            .record(pageable.getPageSize());
+        for (Order order : pageable.getSort()) {
+            String property = SORT_PROPERTIES.contains(order.getProperty()) ? order.getProperty() : "other";
+            registry.counter("person.sort.fields", TAG_ENDPOINT, endpoint, "property", property, "direction",
+                order.getDirection().name().toLowerCase()).increment();
+        }
+    }
+
+    void serialized(MediaType mediaType, long nanos, long bytes) {
+        String tag = mediaType != null ? mediaType.getType() + "/" + mediaType.getSubtype() : "unknown";
+        Timer.builder("person.serialization").tag(TAG_MEDIA_TYPE, tag).register(registry).record(nanos, NANOSECONDS);
+        DistributionSummary.builder("person.payload").baseUnit("bytes").tag(TAG_MEDIA_TYPE, tag).register(registry).record(bytes);
+    }
+
+    private <T> T record(String name, String endpoint, Supplier<T> call) {
+        if (!detailed) {
+            return call.get();
+        }
+        return Timer.builder(name).tag(TAG_ENDPOINT, endpoint).register(registry).record(call);
+    }
+
+    private static AssemblyTime current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null ? (AssemblyTime) attributes.getAttribute(ASSEMBLY, SCOPE_REQUEST) : null;
+    }
+
+    private static class AssemblyTime {
+
+        private long total;
+        private long written;
+    }
+}
@@ -19,34 +19,63 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_AFTER;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_MAX_AGE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_MIN_AGE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_BY_AGE;
+import static org.springframework.hateoas.IanaLinkRelations.COLLECTION;
+import static org.springframework.hateoas.IanaLinkRelations.NEXT;
+import static org.springframework.hateoas.IanaLinkRelations.RELATED;
 import static org.springframework.hateoas.IanaLinkRelations.SELF;
 import static org.springframework.hateoas.Links.MergeMode.REPLACE_BY_REL;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.afford;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+import static org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentRequest;
+
+import java.util.List;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.Affordance;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.Links;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.hateoas.server.SimpleRepresentationModelAssembler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 @RequiredArgsConstructor
 public class PersonModelAssembler implements SimpleRepresentationModelAssembler<Person> {
 
+    private static final AffordanceTemplate FIND_ONE =
+        AffordanceTemplate.of(PersonController.class, "findOne", Long.class, String.class, String.class);
+    private static final AffordanceTemplate INSERT =
+        AffordanceTemplate.of(PersonController.class, "insert", PersonInput.class, String.class);
+    private static final AffordanceTemplate INSERT_ALL = AffordanceTemplate.of(PersonController.class, "insertAll", List.class);
+    private static final AffordanceTemplate UPDATE =
+        AffordanceTemplate.of(PersonController.class, "update", Long.class, String.class, String.class, PersonInput.class);
+    private static final AffordanceTemplate DELETE =
+        AffordanceTemplate.of(PersonController.class, "delete", Long.class, String.class);
+
     @NonNull
     private final PagedResourcesAssembler<Person> pagedResourcesAssembler;
 
     public PagedModel<EntityModel<Person>> toPagedModel(@NonNull Page<Person> page) {
-        PagedModel<EntityModel<Person>> model = pagedResourcesAssembler.toModel(page, this);
+        return toPagedModel(page, PersonFieldset.ALL);
+    }
+
+    PagedModel<EntityModel<Person>> toPagedModel(@NonNull Page<Person> page, @NonNull PersonFieldset fieldset) {
+        PagedModel<EntityModel<Person>> model = toStreamingModel(page, fieldset);
 
         Link selfLink = model.getRequiredLink(SELF);
-        selfLink = selfLink.andAffordance(afford(methodOn(PersonController.class).insert(null)));
+        selfLink = selfLink.andAffordances(insertAffordances()).andAffordances(INSERT_ALL.affordances(INSERT_ALL.expand(base())));
 
         Links links = model.getLinks();
         links = links.merge(REPLACE_BY_REL, selfLink);
@@ -57,20 +86,99 @@ public class PersonModelAssembler implements SimpleRepresentationModelAssembler<
         return model;
     }
 
+    public PagedModel<EntityModel<Person>> toSearchModel(@NonNull Page<Person> page) {
+        return toSearchModel(page, PersonFieldset.ALL);
+    }
+
+    PagedModel<EntityModel<Person>> toSearchModel(@NonNull Page<Person> page, @NonNull PersonFieldset fieldset) {
+        return toStreamingModel(page, fieldset);
+    }
+
+    public CollectionModel<EntityModel<Person>> toSlicedModel(@NonNull Slice<Person> slice, @NonNull PersonCursor cursor) {
+        return toSlicedModel(slice, cursor, PersonFieldset.ALL);
+    }
+
+    CollectionModel<EntityModel<Person>> toSlicedModel(@NonNull Slice<Person> slice, @NonNull PersonCursor cursor,
+        @NonNull PersonFieldset fieldset) {
+        CollectionModel<EntityModel<Person>> model =
+            CollectionModel.of(slice.getContent().stream().map(p -> toModel(p, fieldset)).collect(toList()));
+
+        UriComponentsBuilder builder = fromCurrentRequest();
+        model.add(Link.of(builder.toUriString()).withSelfRel().andAffordances(insertAffordances()));
+
+        if (slice.hasNext()) {
+            Person last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            builder.replaceQueryParam(PARAM_AFTER, cursor.after(last).encode()).replaceQueryParam("sort");
+            model.add(Link.of(builder.toUriString(), NEXT));
+        }
+
+        return model;
+    }
+
+    public CollectionModel<EntityModel<PersonBatchResult>> toBatchModel(@NonNull List<PersonBatchResult> results) {
+        UriComponentsBuilder base = base();
+        List<EntityModel<PersonBatchResult>> content = results.stream()
+            .map(r -> r.isCreated() ? EntityModel.of(r, Link.of(FIND_ONE.expand(base, r.getId()), RELATED)) : EntityModel.of(r))
+            .collect(toList());
+        return CollectionModel.of(content, Link.of(INSERT_ALL.expand(base)).withSelfRel());
+    }
+
+    EntityModel<PersonAgeStatistics> toAgeStatisticsModel(@NonNull PersonAgeStatistics statistics, Integer minAge,
+        Integer maxAge) {
+        UriComponentsBuilder collection = base().path(PATH_FIND_BY_AGE);
+        if (minAge != null) {
+            collection.queryParam(PARAM_MIN_AGE, minAge);
+        }
+        if (maxAge != null) {
+            collection.queryParam(PARAM_MAX_AGE, maxAge);
+        }
+        return EntityModel.of(statistics, Link.of(fromCurrentRequest().toUriString()).withSelfRel(),
+            Link.of(collection.toUriString(), COLLECTION));
+    }
+
+    EntityModel<Person> toModel(@NonNull Person person, @NonNull PersonFieldset fieldset) {
+        EntityModel<Person> resource = EntityModel.of(fieldset.apply(person));
+        if (fieldset.isLinks()) {
+            addLinks(resource, person.getId(), fieldset.isActions());
+        }
+        return resource;
+    }
+
     @Override
     public void addLinks(EntityModel<Person> resource) {
-        Class<PersonController> controllerType = PersonController.class;
-        Long personId = resource.getContent().getId();
+        addLinks(resource, resource.getContent().getId(), true);
+    }
 
-        Link selfLink = linkTo(methodOn(controllerType).findOne(personId)).withSelfRel()
-            .andAffordance(afford(methodOn(controllerType).update(personId, null)))
-            .andAffordance(afford(methodOn(controllerType).delete(personId)));
+    @Override
+    public void addLinks(CollectionModel<EntityModel<Person>> resources) {
+    }
+
+    private static void addLinks(EntityModel<Person> resource, Long personId, boolean actions) {
+        UriComponentsBuilder base = base();
+        String href = FIND_ONE.expand(base, personId);
+        Link selfLink = Link.of(href).withSelfRel();
+        if (actions) {
+            selfLink = selfLink.andAffordances(FIND_ONE.affordances(href))
+                .andAffordances(UPDATE.affordances(UPDATE.expand(base, personId)))
+                .andAffordances(DELETE.affordances(DELETE.expand(base, personId)));
+        }
 
         resource.add(selfLink);
     }
 
-    @Override
-    public void addLinks(CollectionModel<EntityModel<Person>> resources) {
+    private PagedModel<EntityModel<Person>> toStreamingModel(Page<Person> page, PersonFieldset fieldset) {
+        Page<Person> envelope = new PageImpl<>(emptyList(), page.getPageable(), page.getTotalElements());
+        PagedModel<EntityModel<Person>> model = pagedResourcesAssembler.toModel(envelope, this);
+        List<Link> links = model.getLinks().stream().map(fieldset::apply).collect(toList());
+        return new PersonPagedModel(page.getContent(), model.getMetadata(), links, p -> toModel(p, fieldset));
+    }
+
+    private static List<Affordance> insertAffordances() {
+        return INSERT.affordances(INSERT.expand(base()));
+    }
+
+    private static UriComponentsBuilder base() {
+        return linkTo(PersonController.class).toUriComponentsBuilder();
     }
 
 }
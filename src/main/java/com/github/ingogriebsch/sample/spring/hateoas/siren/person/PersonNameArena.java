@@ -0,0 +1,211 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.copyOfRange;
+import static java.util.Arrays.fill;
+
+import lombok.NonNull;
+
+class PersonNameArena {
+
+    static final int NULL = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = -1;
+
+    // Names are appended by a single writer while readers compare the names they already know of without any lock, so a
+    // grown array is published before anything is appended to it.
+    private volatile byte[] bytes = new byte[INITIAL_CAPACITY * 8];
+    private int length;
+    private volatile int[] offsets = new int[INITIAL_CAPACITY + 1];
+    private int count;
+    private int[] table = emptyTable(INITIAL_CAPACITY * 2);
+
+    int intern(String name) {
+        return name != null ? intern(encode(name)) : NULL;
+    }
+
+    // Copies the name without decoding it, like when the names still in use are moved into a new arena.
+    int copy(@NonNull PersonNameArena source, int code) {
+        return code != NULL ? intern(source.bytes(code)) : NULL;
+    }
+
+    String name(int code) {
+        return code == NULL ? null : decode(bytes, offsets[code], offsets[code + 1]);
+    }
+
+    int compare(int left, int right) {
+        if (left == right) {
+            return 0;
+        }
+        if (left == NULL || right == NULL) {
+            return left == NULL ? -1 : 1;
+        }
+        byte[] bytes = this.bytes;
+        int[] offsets = this.offsets;
+        return compare(bytes, offsets[left], offsets[left + 1], bytes, offsets[right], offsets[right + 1]);
+    }
+
+    int compare(int code, byte[] encoded) {
+        if (code == NULL || encoded == null) {
+            return code == NULL ? (encoded == null ? 0 : -1) : 1;
+        }
+        int[] offsets = this.offsets;
+        return compare(bytes, offsets[code], offsets[code + 1], encoded, 0, encoded.length);
+    }
+
+    boolean startsWith(int code, @NonNull byte[] prefix) {
+        int[] offsets = this.offsets;
+        if (code == NULL || offsets[code + 1] - offsets[code] < prefix.length) {
+            return false;
+        }
+        return compare(bytes, offsets[code], offsets[code] + prefix.length, prefix, 0, prefix.length) == 0;
+    }
+
+    byte[] bytes(int code) {
+        int[] offsets = this.offsets;
+        return code == NULL ? null : copyOfRange(bytes, offsets[code], offsets[code + 1]);
+    }
+
+    int size() {
+        return count;
+    }
+
+    long footprint() {
+        return bytes.length + (long) offsets.length * Integer.BYTES + (long) table.length * Integer.BYTES;
+    }
+
+    // Every UTF-16 unit is encoded on its own (like CESU-8), so comparing the bytes unsigned yields the order of
+    // String#compareTo.
+    static byte[] encode(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        byte[] encoded = new byte[name.length() * 3];
+        int position = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                encoded[position++] = (byte) c;
+            } else if (c < 0x800) {
+                encoded[position++] = (byte) (0xc0 | c >> 6);
+                encoded[position++] = (byte) (0x80 | c & 0x3f);
+            } else {
+                encoded[position++] = (byte) (0xe0 | c >> 12);
+                encoded[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                encoded[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return copyOf(encoded, position);
+    }
+
+    private static String decode(byte[] bytes, int from, int to) {
+        char[] chars = new char[to - from];
+        int count = 0;
+        for (int i = from; i < to; count++) {
+            int b = bytes[i] & 0xff;
+            if (b < 0x80) {
+                chars[count] = (char) b;
+                i += 1;
+            } else if (b < 0xe0) {
+                chars[count] = (char) ((b & 0x1f) << 6 | bytes[i + 1] & 0x3f);
+                i += 2;
+            } else {
+                chars[count] = (char) ((b & 0x0f) << 12 | (bytes[i + 1] & 0x3f) << 6 | bytes[i + 2] & 0x3f);
+                i += 3;
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private int intern(byte[] encoded) {
+        int hash = hash(encoded, 0, encoded.length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int code = table[slot];
+            if (code == EMPTY) {
+                code = append(encoded);
+                table[slot] = code;
+                if (count * 2 > table.length) {
+                    rehash();
+                }
+                return code;
+            }
+            if (compare(code, encoded) == 0) {
+                return code;
+            }
+        }
+    }
+
+    private int append(byte[] encoded) {
+        if (length + encoded.length > bytes.length) {
+            bytes = copyOf(bytes, Math.max(bytes.length * 2, length + encoded.length));
+        }
+        if (count + 2 > offsets.length) {
+            offsets = copyOf(offsets, offsets.length * 2);
+        }
+
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+        offsets[count + 1] = length;
+        return count++;
+    }
+
+    private void rehash() {
+        table = emptyTable(table.length * 2);
+        int mask = table.length - 1;
+        for (int code = 0; code < count; code++) {
+            int slot = hash(bytes, offsets[code], offsets[code + 1]) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code;
+        }
+    }
+
+    private static int compare(byte[] left, int leftFrom, int leftTo, byte[] right, int rightFrom, int rightTo) {
+        int leftLength = leftTo - leftFrom;
+        int rightLength = rightTo - rightFrom;
+        for (int i = 0; i < Math.min(leftLength, rightLength); i++) {
+            int result = (left[leftFrom + i] & 0xff) - (right[rightFrom + i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    private static int[] emptyTable(int size) {
+        int[] table = new int[size];
+        fill(table, EMPTY);
+        return table;
+    }
+}
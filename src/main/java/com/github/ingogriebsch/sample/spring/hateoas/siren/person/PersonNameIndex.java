@@ -0,0 +1,95 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.stream.Collectors.groupingBy;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+
+class PersonNameIndex {
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Long, Person>> exact = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, ConcurrentNavigableMap<Long, Person>> sorted = new ConcurrentSkipListMap<>();
+
+    void add(@NonNull Person person) {
+        exact.compute(fold(person.getName()), (name, persons) -> {
+            if (persons == null) {
+                persons = new ConcurrentSkipListMap<>();
+                sorted.put(name, persons);
+            }
+            persons.put(person.getId(), person);
+            return persons;
+        });
+    }
+
+    void addAll(@NonNull Collection<Person> persons) {
+        persons.stream().collect(groupingBy(p -> fold(p.getName())))
+            .forEach((name, group) -> exact.compute(name, (k, existing) -> {
+                if (existing == null) {
+                    existing = new ConcurrentSkipListMap<>();
+                    sorted.put(name, existing);
+                }
+                ConcurrentNavigableMap<Long, Person> target = existing;
+                group.forEach(p -> target.put(p.getId(), p));
+                return target;
+            }));
+    }
+
+    void replace(@NonNull Person previous, @NonNull Person next) {
+        add(next);
+        if (!fold(previous.getName()).equals(fold(next.getName()))) {
+            remove(previous);
+        }
+    }
+
+    void remove(@NonNull Person person) {
+        exact.computeIfPresent(fold(person.getName()), (name, persons) -> {
+            persons.remove(person.getId());
+            if (persons.isEmpty()) {
+                sorted.remove(name);
+                return null;
+            }
+            return persons;
+        });
+    }
+
+    Stream<Person> find(@NonNull String name) {
+        ConcurrentNavigableMap<Long, Person> persons = exact.get(fold(name));
+        return persons != null ? persons.values().stream() : Stream.empty();
+    }
+
+    Stream<Person> findByPrefix(@NonNull String prefix) {
+        String from = fold(prefix);
+        return sorted.subMap(from, true, from + Character.MAX_VALUE, true).values().stream()
+            .flatMap(persons -> persons.values().stream());
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
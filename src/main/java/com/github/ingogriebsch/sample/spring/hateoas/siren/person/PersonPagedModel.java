@@ -0,0 +1,66 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.common.collect.Collections2;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.PagedModel;
+
+@EqualsAndHashCode(callSuper = true, onlyExplicitlyIncluded = true)
+class PersonPagedModel extends PagedModel<EntityModel<Person>> {
+
+    @EqualsAndHashCode.Include
+    private final List<Person> persons;
+    @EqualsAndHashCode.Include
+    private final PageMetadata metadata;
+    private final Function<Person, EntityModel<Person>> assembler;
+
+    PersonPagedModel(@NonNull List<Person> persons, @NonNull PageMetadata metadata, @NonNull Iterable<Link> links,
+        @NonNull Function<Person, EntityModel<Person>> assembler) {
+        // The constructors of PagedModel which take the metadata are deprecated, so the metadata is held here instead.
+        this.persons = persons;
+        this.metadata = metadata;
+        this.assembler = assembler;
+        add(links);
+    }
+
+    @Override
+    public PageMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public Collection<EntityModel<Person>> getContent() {
+        return Collections2.transform(persons, PersonMetrics.deferred(assembler)::apply);
+    }
+
+    @Override
+    public Iterator<EntityModel<Person>> iterator() {
+        return getContent().iterator();
+    }
+}
@@ -0,0 +1,139 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Collections.emptyList;
+
+import static com.fasterxml.jackson.core.JsonEncoding.UTF8;
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.filter.FilteringGeneratorDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+class PersonPagedModelConverter extends AbstractHttpMessageConverter<PersonPagedModel> {
+
+    static final int CHUNK_SIZE = 256;
+
+    private static final String ENTITIES = "entities";
+    private static final Set<String> HEAD = ImmutableSet.of("class", "rel", "title", "properties");
+
+    private final ObjectMapper objectMapper;
+
+    PersonPagedModelConverter(@NonNull ObjectMapper objectMapper) {
+        super(SIREN_JSON);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PersonPagedModel.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected PersonPagedModel readInternal(Class<? extends PersonPagedModel> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading paged persons is not supported!", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(PersonPagedModel model, HttpOutputMessage outputMessage) throws IOException {
+        // Only the envelope is built as a tree, it holds the links and the page metadata but none of the entities.
+        JsonNode envelope = objectMapper.valueToTree(PagedModel.of(emptyList(), model.getMetadata(), model.getLinks()));
+        ObjectWriter writer = objectMapper.writer().without(FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator =
+            objectMapper.getFactory().createGenerator(outputMessage.getBody(), UTF8).disable(AUTO_CLOSE_TARGET)) {
+            generator.writeStartObject();
+            writeFields(envelope, generator, true);
+
+            if (!model.getContent().isEmpty()) {
+                generator.writeArrayFieldStart(ENTITIES);
+                // Every chunk is serialized as a page of its own, so the Siren serializer derives the relations of the
+                // entities from their page as usual. Only the entities of that page are passed on to the generator.
+                JsonGenerator entities = new FilteringGeneratorDelegate(generator, EntitiesFilter.PAGE, false, true);
+                for (List<EntityModel<Person>> chunk : Iterables.partition(model, CHUNK_SIZE)) {
+                    writer.writeValue(entities, PagedModel.of(chunk, model.getMetadata(), model.getLinks()));
+                }
+                generator.writeEndArray();
+            }
+
+            writeFields(envelope, generator, false);
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeFields(JsonNode node, JsonGenerator generator, boolean head) throws IOException {
+        Iterator<Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Entry<String, JsonNode> field = fields.next();
+            if (HEAD.contains(field.getKey()) == head) {
+                generator.writeFieldName(field.getKey());
+                generator.writeTree(field.getValue());
+            }
+        }
+    }
+
+    @RequiredArgsConstructor(access = PRIVATE)
+    private static final class EntitiesFilter extends TokenFilter {
+
+        static final TokenFilter PAGE = new EntitiesFilter(false);
+        static final TokenFilter ENTITY = new EntitiesFilter(true);
+
+        private final boolean entity;
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            return !entity && ENTITIES.equals(name) ? ENTITY : null;
+        }
+
+        @Override
+        public TokenFilter includeElement(int index) {
+            return entity ? INCLUDE_ALL : null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.FilePersonJournal.DELETE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.FilePersonJournal.INSERT;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class PersonPersistence implements Closeable {
+
+    private static final int CHUNK_SIZE = 65_536;
+
+    private final FilePersonJournal journal;
+    private final PersonSnapshots snapshots;
+    private final ScheduledExecutorService scheduler = newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "person-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    PersonPersistence(@NonNull Path directory, @NonNull PersonJournal.Fsync fsync, int batchSize, @NonNull Duration fsyncInterval)
+        throws IOException {
+        journal = new FilePersonJournal(directory, fsync, batchSize, fsyncInterval);
+        snapshots = new PersonSnapshots(directory, CHUNK_SIZE);
+    }
+
+    PersonJournal journal() {
+        return journal;
+    }
+
+    PersonStore recover() throws IOException {
+        PersonStore persons = new ObjectPersonStore();
+        recover(persons, ForkJoinPool.commonPool());
+        return persons;
+    }
+
+    long recover(@NonNull PersonStore persons, @NonNull ExecutorService executor) throws IOException {
+        OptionalLong snapshot = snapshots.latest();
+        long loaded = snapshot.isPresent() ? snapshots.load(snapshot.getAsLong(), executor, persons::insertAll) : 0;
+        if (snapshot.isPresent()) {
+            journal.seed(snapshots.lastId(snapshot.getAsLong()));
+        }
+
+        List<Person> inserts = new ArrayList<>(CHUNK_SIZE);
+        // Writes are journaled before they are applied, so the segment preceding a snapshot may hold changes the snapshot
+        // missed. Replaying it again is safe as every record carries the complete state of the person.
+        journal.replay(snapshot.orElse(1L) - 1, (type, person) -> {
+            if (type == INSERT) {
+                inserts.add(person);
+                if (inserts.size() == CHUNK_SIZE) {
+                    persons.insertAll(inserts);
+                    inserts.clear();
+                }
+                return;
+            }
+
+            persons.insertAll(inserts);
+            inserts.clear();
+            if (type == DELETE) {
+                persons.delete(person.getId());
+            } else {
+                persons.update(person.getId(), p -> {
+                    p.setName(person.getName());
+                    p.setAge(person.getAge());
+                    p.setVersion(person.getVersion());
+                });
+            }
+        });
+        persons.insertAll(inserts);
+
+        log.info("Recovered {} persons ({} from snapshot)...", persons.size(), loaded);
+        return persons.size();
+    }
+
+    void snapshot(@NonNull PersonStore persons) throws IOException {
+        long segment = journal.rotate();
+        // Rotated first, so that the highest id covers every person the snapshot may contain.
+        long count = snapshots.write(segment, journal.lastId(), persons.snapshot());
+        snapshots.purge(segment);
+        journal.purge(segment - 1);
+        log.debug("Written snapshot of {} persons before journal segment {}...", count, segment);
+    }
+
+    void scheduleSnapshots(@NonNull PersonStore persons, @NonNull Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(persons);
+            } catch (IOException | RuntimeException e) {
+                log.error("Writing a snapshot of the persons failed!", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        journal.close();
+    }
+}
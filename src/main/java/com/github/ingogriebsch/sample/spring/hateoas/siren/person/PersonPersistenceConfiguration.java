@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.io.IOException;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({ PersonPersistenceProperties.class, PersonStartupProperties.class, PersonStoreProperties.class })
+public class PersonPersistenceConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "person.persistence.enabled", havingValue = "true")
+    PersonPersistence personPersistence(@NonNull PersonPersistenceProperties properties) throws IOException {
+        return new PersonPersistence(properties.getDirectory(), properties.getFsync(), properties.getBatchSize(),
+            properties.getFsyncInterval());
+    }
+
+    @Bean
+    PersonStore personStore(@NonNull PersonStoreProperties properties) throws IOException {
+        switch (properties.getLayout()) {
+            case COLUMNS:
+                return new ColumnarPersonStore();
+            case MAPPED:
+                return new MappedPersonStore(properties.getDirectory());
+            default:
+                return new ObjectPersonStore();
+        }
+    }
+
+    @Bean(destroyMethod = "")
+    PersonJournal personJournal(@NonNull ObjectProvider<PersonPersistence> persistence) {
+        PersonPersistence available = persistence.getIfAvailable();
+        return available != null ? available.journal() : PersonJournal.NONE;
+    }
+}
@@ -0,0 +1,41 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.BATCH;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("person.persistence")
+@Data
+public class PersonPersistenceProperties {
+
+    private boolean enabled;
+    private Path directory = Paths.get("data");
+    private PersonJournal.Fsync fsync = BATCH;
+    private int batchSize = 256;
+    private Duration fsyncInterval = Duration.ofMillis(100);
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+}
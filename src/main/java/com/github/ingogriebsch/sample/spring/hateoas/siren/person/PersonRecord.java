@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.ByteBuffer;
+
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = PRIVATE)
+class PersonRecord {
+
+    private static final int FIXED_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int NO_AGE = Integer.MIN_VALUE;
+    private static final int NO_NAME = -1;
+
+    static byte[] name(Person person) {
+        return person.getName() != null ? person.getName().getBytes(UTF_8) : null;
+    }
+
+    static int size(byte[] name) {
+        return FIXED_SIZE + (name != null ? name.length : 0);
+    }
+
+    static int sizeOfHead() {
+        return FIXED_SIZE;
+    }
+
+    static void write(ByteBuffer buffer, Person person, byte[] name) {
+        buffer.putLong(person.getId()).putLong(person.getVersion()).putInt(person.getAge() != null ? person.getAge() : NO_AGE);
+        if (name == null) {
+            buffer.putInt(NO_NAME);
+        } else {
+            buffer.putInt(name.length).put(name);
+        }
+    }
+
+    static int sizeOfName(ByteBuffer buffer) {
+        return Math.max(buffer.getInt(buffer.position() + FIXED_SIZE - Integer.BYTES), 0);
+    }
+
+    static Person read(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long version = buffer.getLong();
+        int age = buffer.getInt();
+        int length = buffer.getInt();
+
+        String name = null;
+        if (length != NO_NAME) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            name = new String(bytes, UTF_8);
+        }
+        return new Person(id, name, age != NO_AGE ? age : null, version);
+    }
+}
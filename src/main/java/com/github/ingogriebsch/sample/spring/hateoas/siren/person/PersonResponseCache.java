@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.google.common.collect.Maps.newHashMap;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+class PersonResponseCache {
+
+    private final Cache<Object, Responses> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PersonResponseCache(@NonNull @Value("${person.response-cache.maximum-weight:16MB}") DataSize maximumWeight) {
+        cache = CacheBuilder.newBuilder().maximumWeight(maximumWeight.toBytes()).weigher((Object key, Responses r) -> r.weight())
+            .recordStats().build();
+    }
+
+    byte[] get(@NonNull Object key, long version, @NonNull String variant) {
+        Responses responses = cache.getIfPresent(key);
+        byte[] response = responses != null && responses.getVersion() == version ? responses.getVariants().get(variant) : null;
+        (response != null ? hits : misses).increment();
+        return response;
+    }
+
+    void put(@NonNull Object key, long version, @NonNull String variant, @NonNull byte[] response) {
+        cache.asMap().merge(key, new Responses(version, ImmutableMap.of(variant, response)), Responses::merge);
+    }
+
+    void invalidate(@NonNull Long id) {
+        cache.invalidate(id);
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, cache.stats().evictionCount());
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Responses {
+
+        private final long version;
+        private final Map<String, byte[]> variants;
+
+        int weight() {
+            return variants.values().stream().mapToInt(r -> r.length).sum();
+        }
+
+        Responses merge(Responses other) {
+            if (other.version != version) {
+                return other.version > version ? other : this;
+            }
+            Map<String, byte[]> merged = newHashMap(variants);
+            merged.putAll(other.variants);
+            return new Responses(version, ImmutableMap.copyOf(merged));
+        }
+    }
+}
@@ -19,24 +19,34 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
+import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
 
 import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.MoreCollectors.toOptional;
 import static org.springframework.data.domain.Sort.by;
 import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.NullHandling.NATIVE;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.PrimitiveIterator;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import lombok.NonNull;
-import org.apache.commons.collections.comparators.ReverseComparator;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.stereotype.Service;
@@ -44,55 +54,220 @@ import org.springframework.stereotype.Service;
 @Service
 class PersonService {
 
-    private final List<Person> persons = newArrayList();
+    private final PersonStore persons;
+    private final PersonJournal journal;
+    private final PersonResponseCache responses;
+    private final PersonIdSequence ids = new PersonIdSequence();
+
+    PersonService() {
+        this(new ObjectPersonStore());
+    }
+
+    PersonService(@NonNull PersonStore persons) {
+        this(persons, PersonJournal.NONE);
+    }
+
+    PersonService(@NonNull PersonStore persons, @NonNull PersonJournal journal) {
+        this(persons, journal, null);
+    }
+
+    // The cached responses are dropped here rather than by a controller, so that every caller changing a person is
+    // covered. It is optional, so that a service can be used without the web layer.
+    @Autowired
+    PersonService(@NonNull PersonStore persons, @NonNull PersonJournal journal, PersonResponseCache responses) {
+        this.persons = persons;
+        this.journal = journal;
+        this.responses = responses;
+        seed();
+    }
 
     Page<Person> findAll(@NonNull Pageable pageable) {
         return toPage(persons, pageable);
     }
 
+    Slice<Person> findAll(@NonNull PersonCursor cursor, int size) {
+        Order order = cursor.getOrder();
+        Stream<Person> source = cursor.getLast() != null ? persons.streamAfter(order, cursor.getLast()) : persons.stream(order);
+
+        List<Person> content = source.limit(size + 1L).collect(toList());
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = content.subList(0, size);
+        }
+        return new SliceImpl<>(content, PageRequest.of(0, size, by(order)), hasNext);
+    }
+
+    Stream<Person> export() {
+        return persons.snapshot();
+    }
+
     List<Person> search(@NonNull String name) {
-        return persons.stream().filter(p -> name.equalsIgnoreCase(p.getName())).collect(toList());
+        return persons.streamByName(name).collect(toList());
+    }
+
+    Page<Person> search(@NonNull String name, boolean prefix, @NonNull Pageable pageable) {
+        Supplier<Stream<Person>> matches = () -> prefix ? persons.streamByNamePrefix(name) : persons.streamByName(name);
+
+        Sort sort = pageable.getSort();
+        Stream<Person> source = sort.isSorted() ? matches.get().sorted(PersonComparator.of(sort)) : matches.get();
+
+        List<Person> content = source.skip(pageable.getOffset()).limit(pageable.getPageSize()).collect(toList());
+        return new PageImpl<>(content, pageable, matches.get().count());
+    }
+
+    Page<Person> findByAge(int minAge, int maxAge, @NonNull Pageable pageable) {
+        PersonAgeHistogram ages = persons.ages();
+        long total = ages.count(minAge, maxAge);
+
+        Sort sort = pageable.getSortOr(by(ASC, "age"));
+        Comparator<Person> comparator = PersonComparator.of(sort);
+        Order order = sort.iterator().next();
+        Stream<Person> source;
+        if (order.getProperty().equals("age") && sort.stream().count() == 1 && indexed(order)) {
+            source = seek(ages, minAge, maxAge, order, pageable.getOffset(), total);
+        } else {
+            source = seek(ages, minAge, maxAge, Order.asc("age"), 0, total).sorted(comparator).skip(pageable.getOffset());
+        }
+
+        List<Person> content = source.limit(pageable.getPageSize()).collect(toList());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    Optional<PersonAgeStatistics> ageStatistics(int minAge, int maxAge, int bucketSize) {
+        return PersonAgeStatistics.of(persons.ages(), minAge, maxAge, bucketSize);
     }
 
     Optional<Person> findOne(@NonNull Long id) {
-        return persons.stream().filter(p -> p.getId().equals(id)).limit(1).findAny();
+        return persons.get(id);
     }
 
     Person insert(@NonNull PersonInput personInput) {
-        Person person = new Person(nextId(persons), personInput.getName(), personInput.getAge());
-        persons.add(person);
+        Person person;
+        // Retried with another id for the same reason as within insertAll.
+        do {
+            person = new Person(ids.next(), personInput.getName(), personInput.getAge());
+        } while (!persons.insert(person, p -> journal.sync(journal.insert(p))));
         return person;
     }
 
+    List<Person> insertAll(@NonNull List<PersonInput> personInputs) {
+        Person[] inserted = new Person[personInputs.size()];
+        List<Integer> pending = range(0, inserted.length).boxed().collect(toList());
+        // The store only rejects a person whose id was taken past this service (like a loader does), so the input affected
+        // simply gets another id. Only the persons the store accepted are journaled.
+        while (!pending.isEmpty()) {
+            PrimitiveIterator.OfLong next = ids.reserve(pending.size()).iterator();
+            Map<Long, Integer> inputs = new LinkedHashMap<>();
+            List<Person> batch = pending.stream().map(i -> {
+                Person person = new Person(next.nextLong(), personInputs.get(i).getName(), personInputs.get(i).getAge());
+                inputs.put(person.getId(), i);
+                return person;
+            }).collect(toList());
+
+            persons.insertAll(batch, accepted -> journal.sync(journal.insertAll(accepted)))
+                .forEach(p -> inserted[inputs.remove(p.getId())] = p);
+            pending = new ArrayList<>(inputs.values());
+        }
+        return asList(inserted);
+    }
+
     Optional<Person> update(@NonNull Long id, @NonNull PersonInput personInput) {
-        Optional<Person> person = persons.stream().filter(p -> id.equals(p.getId())).collect(toOptional());
-        person.ifPresent(p -> {
+        return update(id, personInput, v -> true);
+    }
+
+    Optional<Person> update(@NonNull Long id, @NonNull PersonInput personInput, @NonNull LongPredicate version) {
+        Optional<Person> updated = persons.update(id, p -> {
+            verify(p, version);
             p.setName(personInput.getName());
             p.setAge(personInput.getAge());
+            p.setVersion(p.getVersion() + 1);
+            // Forced before the store publishes the new state, so nobody reads a change which a crash could still lose.
+            journal.sync(journal.update(p));
         });
-        return person;
+        updated.ifPresent(p -> invalidate(id));
+        return updated;
     }
 
     boolean delete(@NonNull Long id) {
-        return persons.removeIf(p -> p.getId().equals(id));
+        return delete(id, v -> true);
     }
 
-    private static Long nextId(Collection<Person> persons) {
-        Long id = 0L;
-        for (Person person : persons) {
-            if (id < person.getId()) {
-                id = person.getId();
-            }
+    boolean delete(@NonNull Long id, @NonNull LongPredicate version) {
+        boolean deleted = persons.delete(id, p -> {
+            verify(p, version);
+            journal.sync(journal.delete(p.getId()));
+        });
+        if (deleted) {
+            invalidate(id);
         }
-        return id + 1L;
+        return deleted;
+    }
+
+    long version() {
+        return persons.version();
+    }
+
+    long count() {
+        return persons.size();
+    }
+
+    // The store only knows about the persons still alive, the journal about every id handed out before.
+    void seed() {
+        ids.seed(persons);
+        ids.seed(journal.lastId());
     }
 
     static Page<Person> toPage(List<Person> persons, Pageable pageable) {
-        List<Person> content = extract(persons, pageable);
-        content = sort(content, pageable.getSortOr(by(ASC, "id")));
+        List<Person> content = sort(persons, pageable.getSortOr(by(ASC, "id")));
+        content = extract(content, pageable);
         return new PageImpl<>(content, pageable, persons.size());
     }
 
+    private static Page<Person> toPage(PersonStore persons, Pageable pageable) {
+        Stream<Person> sorted = sort(persons, pageable.getSortOr(by(ASC, "id")));
+        List<Person> content = sorted.skip(pageable.getOffset()).limit(pageable.getPageSize()).collect(toList());
+        return new PageImpl<>(content, pageable, persons.size());
+    }
+
+    // Uses the histogram to find the age of the first person to return, so that only the persons of that age ahead of the
+    // offset have to be skipped instead of the whole range.
+    private Stream<Person> seek(PersonAgeHistogram ages, int minAge, int maxAge, Order order, long offset, long total) {
+        if (offset >= total) {
+            return Stream.empty();
+        }
+
+        Stream<Person> source;
+        if (order.isAscending()) {
+            int age = ages.select((minAge > 0 ? ages.count(0, minAge - 1) : 0) + offset + 1);
+            if (age < 0) {
+                return Stream.empty();
+            }
+            source =
+                persons.streamAfter(order, new Person(Long.MAX_VALUE, "", age - 1)).skip(offset - ages.count(minAge, age - 1));
+        } else {
+            int age = ages.select(ages.count(0, maxAge) - offset);
+            if (age < 0) {
+                return Stream.empty();
+            }
+            source = age < Integer.MAX_VALUE ? persons.streamAfter(order, new Person(Long.MIN_VALUE, "", age + 1))
+                : persons.stream(order);
+            source = source.skip(offset - ages.count(age + 1, maxAge));
+        }
+        return source.limit(total - offset).filter(p -> p.getAge() >= minAge && p.getAge() <= maxAge);
+    }
+
+    private void invalidate(Long id) {
+        if (responses != null) {
+            responses.invalidate(id);
+        }
+    }
+
+    private static void verify(Person person, LongPredicate version) {
+        if (!version.test(person.getVersion())) {
+            throw new PersonVersionMismatchException(person.getId(), person.getVersion());
+        }
+    }
+
     private static List<Person> extract(List<Person> source, Pageable pageable) {
         int count = source.size();
         int pageSize = pageable.getPageSize();
@@ -101,45 +276,27 @@ class PersonService {
     }
 
     private static List<Person> sort(List<Person> source, Sort sort) {
-        Comparator<Person> comparator = null;
-        for (Order order : sort) {
-            comparator = comparator(order, comparator);
-        }
-
-        if (comparator == null) {
+        if (sort.isUnsorted()) {
             return source;
         }
 
-        source.sort(comparator);
-        return source;
+        List<Person> sorted = newArrayList(source);
+        sorted.sort(PersonComparator.of(sort));
+        return sorted;
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    private static Comparator<Person> comparator(Order order, Comparator<Person> comparator) {
-        Function<Person, Long> id = Person::getId;
-        Function<Person, String> name = Person::getName;
-        Function<Person, Integer> age = Person::getAge;
-
-        Function function = null;
-        String property = order.getProperty();
-        if (property.equals("id")) {
-            function = id;
-        } else if (property.equals("name")) {
-            function = name;
-        } else if (property.equals("age")) {
-            function = age;
-        }
-
-        if (function == null) {
-            return null;
+    private static Stream<Person> sort(PersonStore source, Sort sort) {
+        // Compiled up front so that unknown properties are rejected even if an index serves the sort.
+        Comparator<Person> comparator = PersonComparator.of(sort);
+        Order order = sort.iterator().next();
+        if (indexed(order) && (order.getProperty().equals("id") || sort.stream().count() == 1)) {
+            return source.stream(order);
         }
+        return source.stream().sorted(comparator);
+    }
 
-        Comparator<Person> result;
-        if (comparator == null) {
-            result = Comparator.comparing(function);
-        } else {
-            result = comparator.thenComparing(function);
-        }
-        return order.isAscending() ? result : new ReverseComparator(result);
+    // The indexes of the stores know neither about null handling nor about ignoring case.
+    private static boolean indexed(Order order) {
+        return PersonStore.isIndexed(order.getProperty()) && order.getNullHandling() == NATIVE && !order.isIgnoreCase();
     }
 }
@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+
+class PersonSnapshots {
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x5053_4e51;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final int chunkSize;
+
+    PersonSnapshots(@NonNull Path directory, int chunkSize) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive!");
+        }
+        this.directory = createDirectories(directory);
+        this.chunkSize = chunkSize;
+    }
+
+    OptionalLong latest() throws IOException {
+        List<Long> segments = segments();
+        return segments.isEmpty() ? OptionalLong.empty() : OptionalLong.of(segments.get(segments.size() - 1));
+    }
+
+    long write(long segment, long lastId, @NonNull Stream<Person> persons) throws IOException {
+        Path temporary = directory.resolve(path(segment).getFileName() + TEMPORARY_SUFFIX);
+
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putLong(0L).putLong(0L).putLong(lastId);
+
+            List<Long> chunks = new ArrayList<>();
+            for (Iterator<Person> iterator = persons.iterator(); iterator.hasNext(); count++) {
+                Person person = iterator.next();
+                byte[] name = PersonRecord.name(person);
+                if (buffer.remaining() < PersonRecord.size(name)) {
+                    flush(channel, buffer);
+                }
+                if (count % chunkSize == 0) {
+                    chunks.add(channel.position() + buffer.position());
+                }
+                PersonRecord.write(buffer, person, name);
+            }
+            flush(channel, buffer);
+
+            long index = channel.position();
+            for (Long chunk : chunks) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(chunk);
+            }
+            flush(channel, buffer);
+
+            buffer.putLong(count).putLong(index).flip();
+            channel.write(buffer, Integer.BYTES);
+            channel.force(true);
+        }
+
+        Files.move(temporary, path(segment), ATOMIC_MOVE, REPLACE_EXISTING);
+        return count;
+    }
+
+    long load(long segment, @NonNull ExecutorService executor, @NonNull Consumer<List<Person>> chunks) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(segment), READ)) {
+            long size = channel.size();
+            ByteBuffer header = channel.map(READ_ONLY, 0, Math.min(size, HEADER_SIZE));
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw invalid(segment);
+            }
+
+            long count = header.getLong();
+            long index = header.getLong();
+            if (index < HEADER_SIZE || index > size || (size - index) % Long.BYTES != 0) {
+                throw invalid(segment);
+            }
+
+            LongBuffer offsets = channel.map(READ_ONLY, index, size - index).asLongBuffer();
+            List<Callable<Long>> tasks = new ArrayList<>(offsets.remaining());
+            for (int i = 0; i < offsets.limit(); i++) {
+                long from = offsets.get(i);
+                long to = i + 1 < offsets.limit() ? offsets.get(i + 1) : index;
+                if (from < HEADER_SIZE || to < from) {
+                    throw invalid(segment);
+                }
+                tasks.add(() -> load(channel.map(READ_ONLY, from, to - from), chunks));
+            }
+
+            if (PersonChunks.invokeAll(executor, tasks) != count) {
+                throw invalid(segment);
+            }
+            return count;
+        }
+    }
+
+    // The highest id handed out when the snapshot was written, which may belong to a person deleted since.
+    long lastId(long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(segment), READ)) {
+            ByteBuffer header = channel.map(READ_ONLY, 0, Math.min(channel.size(), HEADER_SIZE));
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw invalid(segment);
+            }
+            return header.getLong(HEADER_SIZE - Long.BYTES);
+        }
+    }
+
+    void purge(long before) throws IOException {
+        for (Long segment : segments()) {
+            if (segment < before) {
+                Files.delete(path(segment));
+            }
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(f -> f.getFileName().toString()).filter(n -> n.startsWith(PREFIX) && n.endsWith(SUFFIX))
+                .map(n -> Long.valueOf(n.substring(PREFIX.length(), n.length() - SUFFIX.length()))).sorted().collect(toList());
+        }
+    }
+
+    private Path path(long segment) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private IOException invalid(long segment) {
+        return new IOException(String.format("Snapshot '%s' is not valid!", path(segment)));
+    }
+
+    private long load(ByteBuffer records, Consumer<List<Person>> chunks) {
+        List<Person> chunk = new ArrayList<>(chunkSize);
+        while (records.hasRemaining()) {
+            chunk.add(PersonRecord.read(records));
+        }
+        chunks.accept(chunk);
+        return chunk.size();
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
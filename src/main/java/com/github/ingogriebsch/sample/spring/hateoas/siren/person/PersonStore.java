@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.NonNull;
+import org.springframework.data.domain.Sort.Order;
+
+interface PersonStore {
+
+    Set<String> INDEXED_PROPERTIES = ImmutableSet.of("id", "name", "age");
+
+    Optional<Person> get(Long id);
+
+    default boolean insert(Person person) {
+        return insert(person, p -> {
+        });
+    }
+
+    boolean insert(Person person, Consumer<Person> guard);
+
+    default List<Person> insertAll(Collection<Person> persons) {
+        return insertAll(persons, accepted -> {
+        });
+    }
+
+    // Inserts the persons whose id is not known yet and returns them. The guard is called with these persons before any of
+    // them becomes visible, so a failing guard keeps the whole batch out of the store.
+    List<Person> insertAll(Collection<Person> persons, Consumer<List<Person>> guard);
+
+    Optional<Person> update(Long id, Consumer<Person> modifier);
+
+    default boolean delete(Long id) {
+        return delete(id, p -> {
+        });
+    }
+
+    boolean delete(Long id, Consumer<Person> guard);
+
+    long lastId();
+
+    long version();
+
+    int size();
+
+    Stream<Person> stream();
+
+    /**
+     * Streams all persons ordered by id without blocking writers while the stream is consumed. Persons inserted afterwards
+     * are left out as long as their id exceeds every id stored when the snapshot was taken. Persons which are updated or
+     * deleted meanwhile may show up in their previous or in their new state, so the snapshot is only consistent once the
+     * changes made while it was consumed are replayed on top of it (as the journal does when a snapshot is recovered).
+     */
+    Stream<Person> snapshot();
+
+    Stream<Person> streamByName(String name);
+
+    Stream<Person> streamByNamePrefix(String prefix);
+
+    Stream<Person> stream(Order order);
+
+    Stream<Person> streamAfter(Order order, Person last);
+
+    PersonAgeHistogram ages();
+
+    static boolean isIndexed(@NonNull String property) {
+        return INDEXED_PROPERTIES.contains(property);
+    }
+
+    enum Layout {
+            OBJECTS, COLUMNS, MAPPED
+    }
+}
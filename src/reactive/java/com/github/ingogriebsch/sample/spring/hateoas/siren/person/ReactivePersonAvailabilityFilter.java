@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonAvailabilityFilter.PATH_PREFIX;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonAvailabilityFilter.RETRY_AFTER_SECONDS;
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+@ConditionalOnWebApplication(type = REACTIVE)
+@Component
+@RequiredArgsConstructor
+class ReactivePersonAvailabilityFilter implements WebFilter {
+
+    @NonNull
+    private final ObjectProvider<PersonLoader> personLoader;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().pathWithinApplication().value().startsWith(PATH_PREFIX)) {
+            return chain.filter(exchange);
+        }
+
+        PersonLoader loader = personLoader.getIfAvailable();
+        if (loader != null && !loader.isReady()) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(SERVICE_UNAVAILABLE);
+            response.getHeaders().set(RETRY_AFTER, RETRY_AFTER_SECONDS);
+            return response.setComplete();
+        }
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,171 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_DELETE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_ALL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_ONE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_INSERT_ALL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_UPDATE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.matches;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.validate;
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.ResponseEntity.badRequest;
+import static org.springframework.http.ResponseEntity.notFound;
+import static org.springframework.http.ResponseEntity.ok;
+import static org.springframework.http.ResponseEntity.status;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.validation.Valid;
+import javax.validation.Validator;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Pageable;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+@ConditionalOnWebApplication(type = REACTIVE)
+@RequiredArgsConstructor
+@RestController
+class ReactivePersonController {
+
+    @NonNull
+    private final ReactivePersonService personService;
+    @NonNull
+    private final ReactivePersonModelAssembler personModelAssembler;
+    @NonNull
+    private final Validator validator;
+
+    @GetMapping(path = PATH_FIND_ALL)
+    Mono<ResponseEntity<PagedModel<EntityModel<Person>>>> findAll(Pageable pageable,
+        @RequestHeader(name = IF_NONE_MATCH, required = false) String ifNoneMatch, ServerWebExchange exchange) {
+        return personService.version().flatMap(v -> conditional(eTag(v, exchange), ifNoneMatch,
+            () -> personService.findAll(pageable).flatMap(p -> personModelAssembler.toPagedModel(p, exchange))));
+    }
+
+    @GetMapping(path = PATH_FIND_ONE)
+    Mono<ResponseEntity<EntityModel<Person>>> findOne(@PathVariable Long id,
+        @RequestHeader(name = IF_NONE_MATCH, required = false) String ifNoneMatch, ServerWebExchange exchange) {
+        return personService.findOne(id)
+            .flatMap(
+                p -> conditional(eTag(p.getVersion(), exchange), ifNoneMatch, () -> personModelAssembler.toModel(p, exchange)))
+            .defaultIfEmpty(notFound().build());
+    }
+
+    @PostMapping(path = PATH_INSERT, consumes = APPLICATION_JSON_VALUE)
+    Mono<ResponseEntity<EntityModel<Person>>> insert(@RequestBody @Valid PersonInput personInput, ServerWebExchange exchange) {
+        return personService.insert(personInput).flatMap(p -> personModelAssembler.toModel(p, exchange)
+            .map(m -> status(CREATED).eTag(eTag(p.getVersion(), exchange)).header(VARY, ACCEPT).body(m)));
+    }
+
+    @PostMapping(path = PATH_INSERT_ALL, consumes = APPLICATION_JSON_VALUE)
+    Mono<ResponseEntity<CollectionModel<EntityModel<PersonBatchResult>>>> insertAll(@RequestBody List<PersonInput> personInputs,
+        ServerWebExchange exchange) {
+        PersonBatchResult[] results = new PersonBatchResult[personInputs.size()];
+        List<PersonInput> accepted = new ArrayList<>(personInputs.size());
+        for (int i = 0; i < results.length; i++) {
+            List<String> errors = validate(validator, personInputs.get(i));
+            if (errors.isEmpty()) {
+                accepted.add(personInputs.get(i));
+            } else {
+                results[i] = PersonBatchResult.rejected(i, errors);
+            }
+        }
+
+        return personService.insertAll(accepted).collectList().flatMap(persons -> {
+            Iterator<Person> inserted = persons.iterator();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = PersonBatchResult.created(i, inserted.next());
+                }
+            }
+            return personModelAssembler.toBatchModel(asList(results), exchange);
+        }).map(ResponseEntity::ok);
+    }
+
+    @PutMapping(path = PATH_UPDATE, consumes = APPLICATION_JSON_VALUE)
+    Mono<ResponseEntity<EntityModel<Person>>> update(@PathVariable Long id,
+        @RequestHeader(name = IF_MATCH, required = false) String ifMatch, @RequestBody @Valid PersonInput personInput,
+        ServerWebExchange exchange) {
+        return personService.update(id, personInput, v -> ifMatch == null || matches(ifMatch, v))
+            .flatMap(p -> personModelAssembler.toModel(p, exchange)
+                .map(m -> ok().eTag(eTag(p.getVersion(), exchange)).header(VARY, ACCEPT).body(m)))
+            .defaultIfEmpty(notFound().build());
+    }
+
+    @DeleteMapping(path = PATH_DELETE)
+    Mono<ResponseEntity<Void>> delete(@PathVariable Long id, @RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
+        return personService.delete(id, v -> ifMatch == null || matches(ifMatch, v))
+            .map(deleted -> deleted ? ok().<Void> build() : notFound().<Void> build());
+    }
+
+    @ExceptionHandler(PersonVersionMismatchException.class)
+    ResponseEntity<Void> versionMismatch() {
+        return status(PRECONDITION_FAILED).build();
+    }
+
+    @ExceptionHandler(PersonSortException.class)
+    ResponseEntity<Void> unsortable() {
+        return badRequest().build();
+    }
+
+    private static <T> Mono<ResponseEntity<T>> conditional(String eTag, String ifNoneMatch, Supplier<Mono<T>> body) {
+        if (matches(ifNoneMatch, eTag, true)) {
+            return Mono.just(status(NOT_MODIFIED).eTag(eTag).header(VARY, ACCEPT).build());
+        }
+        return body.get().map(b -> ok().eTag(eTag).header(VARY, ACCEPT).body(b));
+    }
+
+    private static String eTag(long version, ServerWebExchange exchange) {
+        return PersonController.eTag(version,
+            String.join(",", exchange.getRequest().getHeaders().getOrDefault(ACCEPT, emptyList())));
+    }
+}
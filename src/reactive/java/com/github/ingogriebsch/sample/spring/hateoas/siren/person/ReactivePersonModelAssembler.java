@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.stream.Collectors.toList;
+
+import static org.springframework.hateoas.IanaLinkRelations.RELATED;
+import static org.springframework.hateoas.IanaLinkRelations.SELF;
+import static org.springframework.hateoas.Links.MergeMode.REPLACE_BY_REL;
+import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.methodOn;
+
+import java.util.List;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.hateoas.server.reactive.ReactiveRepresentationModelAssembler;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class ReactivePersonModelAssembler implements ReactiveRepresentationModelAssembler<Person, EntityModel<Person>> {
+
+    private static final AffordanceTemplate FIND_ONE = of("findOne", Long.class, String.class, ServerWebExchange.class);
+    private static final AffordanceTemplate INSERT = of("insert", PersonInput.class, ServerWebExchange.class);
+    private static final AffordanceTemplate INSERT_ALL = of("insertAll", List.class, ServerWebExchange.class);
+    private static final AffordanceTemplate UPDATE =
+        of("update", Long.class, String.class, PersonInput.class, ServerWebExchange.class);
+    private static final AffordanceTemplate DELETE = of("delete", Long.class, String.class);
+
+    @NonNull
+    private final HateoasPageableHandlerMethodArgumentResolver pageableResolver;
+    @NonNull
+    private final PagedResourcesAssembler<Person> pagedResourcesAssembler;
+
+    public Mono<PagedModel<EntityModel<Person>>> toPagedModel(@NonNull Page<Person> page, @NonNull ServerWebExchange exchange) {
+        return base(exchange).map(base -> {
+            UriComponentsBuilder request = UriComponentsBuilder.fromHttpRequest(exchange.getRequest());
+            pageableResolver.enhance(request, null, page.getPageable());
+            PagedModel<EntityModel<Person>> model =
+                pagedResourcesAssembler.toModel(page, p -> toModel(p, base), Link.of(request.toUriString()));
+
+            Link selfLink = model.getRequiredLink(SELF).andAffordances(INSERT.affordances(INSERT.expand(base)))
+                .andAffordances(INSERT_ALL.affordances(INSERT_ALL.expand(base)));
+            return PagedModel.of(model.getContent(), model.getMetadata(), model.getLinks().merge(REPLACE_BY_REL, selfLink));
+        });
+    }
+
+    public Mono<CollectionModel<EntityModel<PersonBatchResult>>> toBatchModel(@NonNull List<PersonBatchResult> results,
+        @NonNull ServerWebExchange exchange) {
+        return base(exchange).map(base -> {
+            List<EntityModel<PersonBatchResult>> content = results.stream().map(
+                r -> r.isCreated() ? EntityModel.of(r, Link.of(FIND_ONE.expand(base, r.getId()), RELATED)) : EntityModel.of(r))
+                .collect(toList());
+            return CollectionModel.of(content, Link.of(INSERT_ALL.expand(base)).withSelfRel());
+        });
+    }
+
+    @Override
+    public Mono<EntityModel<Person>> toModel(@NonNull Person person, @NonNull ServerWebExchange exchange) {
+        return base(exchange).map(base -> toModel(person, base));
+    }
+
+    private static EntityModel<Person> toModel(Person person, UriComponentsBuilder base) {
+        Long personId = person.getId();
+        String href = FIND_ONE.expand(base, personId);
+        Link selfLink = Link.of(href).withSelfRel().andAffordances(FIND_ONE.affordances(href))
+            .andAffordances(UPDATE.affordances(UPDATE.expand(base, personId)))
+            .andAffordances(DELETE.affordances(DELETE.expand(base, personId)));
+        return EntityModel.of(person, selfLink);
+    }
+
+    // All links of a response are expanded from the root of the link to the collection, which is resolved once per response.
+    private static Mono<UriComponentsBuilder> base(ServerWebExchange exchange) {
+        String contextPath = exchange.getRequest().getPath().contextPath().value();
+        return linkTo(methodOn(ReactivePersonController.class).findAll(null, null, null), exchange).withSelfRel().toMono()
+            .map(link -> UriComponentsBuilder.fromUriString(link.getHref()).replacePath(contextPath));
+    }
+
+    private static AffordanceTemplate of(String methodName, Class<?>... parameterTypes) {
+        return AffordanceTemplate.of(ReactivePersonController.class, methodName, parameterTypes);
+    }
+}
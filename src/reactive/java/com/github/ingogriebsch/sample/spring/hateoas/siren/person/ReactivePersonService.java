@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@ConditionalOnWebApplication(type = REACTIVE)
+@RequiredArgsConstructor
+@Service
+class ReactivePersonService {
+
+    // Reads may wait for the store locks or fault pages of a mapped store in and writes may wait for the journal to be forced
+    // to disk, so neither must run on the event loop.
+    private static final Scheduler BLOCKING = Schedulers.boundedElastic();
+
+    @NonNull
+    private final PersonService personService;
+
+    Mono<Page<Person>> findAll(@NonNull Pageable pageable) {
+        return Mono.fromSupplier(() -> personService.findAll(pageable)).subscribeOn(BLOCKING);
+    }
+
+    Mono<Person> findOne(@NonNull Long id) {
+        return Mono.fromSupplier(() -> personService.findOne(id).orElse(null)).subscribeOn(BLOCKING);
+    }
+
+    Mono<Person> insert(@NonNull PersonInput personInput) {
+        return Mono.fromSupplier(() -> personService.insert(personInput)).subscribeOn(BLOCKING);
+    }
+
+    Flux<Person> insertAll(@NonNull List<PersonInput> personInputs) {
+        return Mono.fromSupplier(() -> personService.insertAll(personInputs)).subscribeOn(BLOCKING)
+            .flatMapIterable(persons -> persons);
+    }
+
+    Mono<Person> update(@NonNull Long id, @NonNull PersonInput personInput, @NonNull LongPredicate version) {
+        return Mono.fromSupplier(() -> personService.update(id, personInput, version).orElse(null)).subscribeOn(BLOCKING);
+    }
+
+    Mono<Boolean> delete(@NonNull Long id, @NonNull LongPredicate version) {
+        return Mono.fromSupplier(() -> personService.delete(id, version)).subscribeOn(BLOCKING);
+    }
+
+    Mono<Long> version() {
+        return Mono.fromSupplier(personService::version).subscribeOn(BLOCKING);
+    }
+}
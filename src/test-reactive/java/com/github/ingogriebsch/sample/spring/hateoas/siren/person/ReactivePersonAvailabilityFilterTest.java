@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Optional.empty;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonLoaderTest.loader;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonLoaderTest.properties;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+class ReactivePersonAvailabilityFilterTest {
+
+    @Nested
+    class Filter {
+
+        @Test
+        void should_reject_person_requests_while_persons_are_loading() {
+            MockServerWebExchange exchange = exchange("/persons/1");
+            boolean passed = filter(loader(new ObjectPersonStore(), empty(), properties(false, null)), exchange);
+
+            assertThat(passed).isFalse();
+            assertThat(exchange.getResponse().getStatusCode()).isEqualTo(SERVICE_UNAVAILABLE);
+            assertThat(exchange.getResponse().getHeaders().getFirst(RETRY_AFTER)).isEqualTo("1");
+        }
+
+        @Test
+        void should_pass_other_requests_while_persons_are_loading() {
+            PersonLoader personLoader = loader(new ObjectPersonStore(), empty(), properties(false, null));
+
+            assertThat(filter(personLoader, exchange("/actuator/health"))).isTrue();
+        }
+
+        @Test
+        void should_pass_person_requests_once_persons_are_loaded() {
+            PersonLoader personLoader = loader(new ObjectPersonStore(), empty(), properties(false, null));
+            personLoader.afterPropertiesSet();
+
+            assertThat(filter(personLoader, exchange("/persons"))).isTrue();
+        }
+
+        @Test
+        void should_pass_person_requests_if_no_loader_is_available() {
+            assertThat(filter(null, exchange("/persons"))).isTrue();
+        }
+    }
+
+    private static MockServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    private static boolean filter(PersonLoader personLoader, MockServerWebExchange exchange) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (personLoader != null) {
+            beanFactory.addBean("personLoader", personLoader);
+        }
+
+        AtomicBoolean passed = new AtomicBoolean();
+        new ReactivePersonAvailabilityFilter(beanFactory.getBeanProvider(PersonLoader.class)).filter(exchange, e -> {
+            passed.set(true);
+            return Mono.empty();
+        }).block();
+        return passed.get();
+    }
+}
@@ -0,0 +1,313 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_DELETE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_ALL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_ONE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_INSERT_ALL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_UPDATE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonService.toPage;
+import static com.google.common.collect.Lists.newArrayList;
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.springframework.hateoas.MediaTypes.HAL_JSON;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import com.github.ingogriebsch.sample.spring.hateoas.siren.HateoasConfiguration;
+import de.ingogriebsch.spring.hateoas.siren.SirenMediaTypeConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@Import(value = { HateoasConfiguration.class, ReactivePersonHateoasConfiguration.class, ReactivePersonService.class,
+    SirenMediaTypeConfiguration.class })
+@WebFluxTest(ReactivePersonController.class)
+class ReactivePersonControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private PersonService personService;
+
+    @BeforeEach
+    void beforeEach() {
+        webTestClient = webTestClient.mutate().baseUrl("http://localhost").build();
+    }
+
+    @Nested
+    class FindAll {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_the_same_siren_representation_as_the_servlet_stack() {
+            Pageable pageable = PageRequest.of(1, 2, Sort.by("name").descending());
+            given(personService.findAll(pageable)).willReturn(toPage(
+                newArrayList(new Person(1L, "Ingo", 44), new Person(2L, "Marcel", 33), new Person(3L, "Sophia", 21)), pageable));
+
+            webTestClient.get().uri(PATH_FIND_ALL + "?size=2&page=1&sort=name,desc").accept(SIREN_JSON).exchange().expectStatus()
+                .isOk().expectHeader().contentType(SIREN_JSON).expectBody(String.class)
+                .value(body -> assertThat(body)
+                    .isEqualTo(json("{'class':['paged'],'properties':{'size':2,'totalElements':3,'totalPages':2,'number':1},"
+                        + "'entities':[{'class':['entity'],'rel':['item'],'properties':{'id':1,'name':'Ingo','age':44},"
+                        + "'links':[{'rel':['self'],'href':'http://localhost/persons/1'}],"
+                        + "'actions':[{'name':'update','method':'PUT','href':'http://localhost/persons/1',"
+                        + "'fields':[{'name':'age','type':'number'},{'name':'name','type':'text'}]},"
+                        + "{'name':'delete','method':'DELETE','href':'http://localhost/persons/1'}]}],"
+                        + "'links':[{'rel':['first'],'href':'http://localhost/persons?page=0&size=2&sort=name,desc'},"
+                        + "{'rel':['prev'],'href':'http://localhost/persons?page=0&size=2&sort=name,desc'},"
+                        + "{'rel':['last'],'href':'http://localhost/persons?page=1&size=2&sort=name,desc'},"
+                        + "{'rel':['self'],'href':'http://localhost/persons?page=1&size=2&sort=name,desc'}],"
+                        + "'actions':[{'name':'insert','method':'POST','href':'http://localhost/persons',"
+                        + "'fields':[{'name':'age','type':'number'},{'name':'name','type':'text'}]},"
+                        + "{'name':'insertAll','method':'POST','href':'http://localhost/persons/batch',"
+                        + "'fields':[{'name':'age','type':'number'},{'name':'name','type':'text'}]}]}")));
+
+            verify(personService, times(1)).version();
+            verify(personService, times(1)).findAll(pageable);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_the_same_hal_representation_as_the_servlet_stack() {
+            Pageable pageable = PageRequest.of(0, 20);
+            given(personService.findAll(pageable)).willReturn(toPage(newArrayList(new Person(1L, "Ingo", 44)), pageable));
+
+            webTestClient.get().uri(PATH_FIND_ALL).accept(HAL_JSON).exchange().expectStatus().isOk().expectHeader()
+                .contentType(HAL_JSON).expectBody(String.class)
+                .value(body -> assertThat(body).isEqualTo(json("{'_embedded':{'personList':[{'id':1,'name':'Ingo','age':44,"
+                    + "'_links':{'self':{'href':'http://localhost/persons/1'}}}]},"
+                    + "'_links':{'self':{'href':'http://localhost/persons?page=0&size=20'}},"
+                    + "'page':{'size':20,'totalElements':1,'totalPages':1,'number':0}}")));
+
+            verify(personService, times(1)).version();
+            verify(personService, times(1)).findAll(pageable);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_bad_request_if_sorted_by_unknown_property() {
+            given(personService.findAll(any(Pageable.class))).willThrow(new PersonSortException("unknown"));
+
+            webTestClient.get().uri(PATH_FIND_ALL + "?sort=unknown").accept(SIREN_JSON).exchange().expectStatus().isBadRequest();
+        }
+
+        @Test
+        void should_return_not_modified_if_version_did_not_change() {
+            given(personService.version()).willReturn(7L);
+
+            webTestClient.get().uri(PATH_FIND_ALL).header(IF_NONE_MATCH, eTag(7L, SIREN_JSON)).accept(SIREN_JSON).exchange()
+                .expectStatus().isNotModified().expectHeader().valueEquals(ETAG, eTag(7L, SIREN_JSON)).expectBody().isEmpty();
+
+            verify(personService, times(1)).version();
+            verifyNoMoreInteractions(personService);
+        }
+    }
+
+    @Nested
+    class FindOne {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_resource_if_available() {
+            given(personService.findOne(1L)).willReturn(of(new Person(1L, "Ingo", 44, 3)));
+
+            webTestClient.get().uri(PATH_FIND_ONE, 1L).accept(SIREN_JSON).exchange().expectStatus().isOk().expectHeader()
+                .valueEquals(ETAG, eTag(3L, SIREN_JSON)).expectHeader().valueEquals(VARY, ACCEPT).expectBody()
+                .jsonPath("$.properties.name").isEqualTo("Ingo").jsonPath("$.links[0].href")
+                .isEqualTo("http://localhost/persons/1").jsonPath("$.actions.length()").isEqualTo(2);
+
+            verify(personService, times(1)).findOne(1L);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_not_found_if_not_available() {
+            given(personService.findOne(1L)).willReturn(empty());
+
+            webTestClient.get().uri(PATH_FIND_ONE, 1L).accept(SIREN_JSON).exchange().expectStatus().isNotFound();
+
+            verify(personService, times(1)).findOne(1L);
+            verifyNoMoreInteractions(personService);
+        }
+    }
+
+    @Nested
+    class Insert {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_created_including_resource() {
+            PersonInput personInput = new PersonInput("Ingo", 44);
+            given(personService.insert(personInput)).willReturn(new Person(1L, "Ingo", 44));
+
+            webTestClient.post().uri(PATH_INSERT).contentType(APPLICATION_JSON).accept(SIREN_JSON).bodyValue(personInput)
+                .exchange().expectStatus().isCreated().expectHeader().valueEquals(ETAG, eTag(0L, SIREN_JSON)).expectBody()
+                .jsonPath("$.properties.id").isEqualTo(1);
+
+            verify(personService, times(1)).insert(personInput);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_bad_request_if_input_is_not_valid() {
+            webTestClient.post().uri(PATH_INSERT).contentType(APPLICATION_JSON).accept(SIREN_JSON)
+                .bodyValue(new PersonInput("", 44)).exchange().expectStatus().isBadRequest();
+
+            verifyNoInteractions(personService);
+        }
+    }
+
+    @Nested
+    class InsertAll {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_a_result_per_input() {
+            given(personService.insertAll(anyList())).willReturn(newArrayList(new Person(1L, "Ingo", 44)));
+
+            webTestClient.post().uri(PATH_INSERT_ALL).contentType(APPLICATION_JSON).accept(SIREN_JSON)
+                .bodyValue(newArrayList(new PersonInput("Ingo", 44), new PersonInput("", 21))).exchange().expectStatus().isOk()
+                .expectBody().jsonPath("$.entities[0].properties.status").isEqualTo(201).jsonPath("$.entities[0].links[0].href")
+                .isEqualTo("http://localhost/persons/1").jsonPath("$.entities[1].properties.status").isEqualTo(400);
+
+            verify(personService, times(1)).insertAll(newArrayList(new PersonInput("Ingo", 44)));
+            verifyNoMoreInteractions(personService);
+        }
+    }
+
+    @Nested
+    class Update {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_resource_if_available() {
+            PersonInput personInput = new PersonInput("Ingo", 45);
+            given(personService.update(eq(1L), eq(personInput), any(LongPredicate.class)))
+                .willReturn(of(new Person(1L, "Ingo", 45, 1)));
+
+            webTestClient.put().uri(PATH_UPDATE, 1L).contentType(APPLICATION_JSON).accept(SIREN_JSON).bodyValue(personInput)
+                .exchange().expectStatus().isOk().expectHeader().valueEquals(ETAG, eTag(1L, SIREN_JSON)).expectBody()
+                .jsonPath("$.properties.age").isEqualTo(45);
+        }
+
+        @Test
+        void should_return_not_found_if_not_available() {
+            PersonInput personInput = new PersonInput("Ingo", 45);
+            given(personService.update(eq(1L), eq(personInput), any(LongPredicate.class))).willReturn(empty());
+
+            webTestClient.put().uri(PATH_UPDATE, 1L).contentType(APPLICATION_JSON).accept(SIREN_JSON).bodyValue(personInput)
+                .exchange().expectStatus().isNotFound();
+        }
+
+        @Test
+        void should_return_precondition_failed_if_version_does_not_match() {
+            PersonInput personInput = new PersonInput("Ingo", 45);
+            given(personService.update(eq(1L), eq(personInput), any(LongPredicate.class)))
+                .willThrow(new PersonVersionMismatchException(1L, 2L));
+
+            webTestClient.put().uri(PATH_UPDATE, 1L).header(IF_MATCH, eTag(1L, SIREN_JSON)).contentType(APPLICATION_JSON)
+                .accept(SIREN_JSON).bodyValue(personInput).exchange().expectStatus().isEqualTo(412);
+        }
+    }
+
+    @Nested
+    class Delete {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_if_available() {
+            given(personService.delete(eq(1L), any(LongPredicate.class))).willReturn(true);
+
+            webTestClient.delete().uri(PATH_DELETE, 1L).exchange().expectStatus().isOk();
+        }
+
+        @Test
+        void should_return_not_found_if_not_available() {
+            given(personService.delete(eq(1L), any(LongPredicate.class))).willReturn(false);
+
+            webTestClient.delete().uri(PATH_DELETE, 1L).exchange().expectStatus().isNotFound();
+        }
+    }
+
+    private static String eTag(long version, MediaType mediaType) {
+        return PersonController.eTag(version, mediaType.toString());
+    }
+
+    private static String json(String json) {
+        return json.replace('\'', '"');
+    }
+}
@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.VirtualThreadConfiguration.virtualThreadExecutor;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.catalina.connector.Connector;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class VirtualThreadConfigurationTest {
+
+    private static boolean virtualThreadsSupported() {
+        return Arrays.stream(Executors.class.getMethods()).anyMatch(m -> m.getName().equals("newVirtualThreadPerTaskExecutor"));
+    }
+
+    @Nested
+    class VirtualThreadExecutor {
+
+        @Test
+        void should_run_tasks_on_virtual_threads() throws Exception {
+            assumeTrue(virtualThreadsSupported());
+
+            ExecutorService executor = virtualThreadExecutor();
+            try {
+                Object virtual =
+                    executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get(10, SECONDS);
+                assertThat(virtual).isEqualTo(true);
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        void should_throw_exception_if_virtual_threads_are_not_supported() {
+            assumeFalse(virtualThreadsSupported());
+
+            assertThatThrownBy(() -> virtualThreadExecutor()).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(System.getProperty("java.version"));
+        }
+    }
+
+    @Nested
+    class VirtualThreadConnectorCustomizer {
+
+        @Test
+        void should_hand_the_executor_to_the_connector_and_shut_it_down() throws Exception {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            VirtualThreadConfiguration.VirtualThreadConnectorCustomizer customizer =
+                new VirtualThreadConfiguration.VirtualThreadConnectorCustomizer(executor);
+
+            Connector connector = new Connector();
+            customizer.customize(connector);
+            assertThat(connector.getProtocolHandler().getExecutor()).isSameAs(executor);
+
+            customizer.shutdown();
+            assertThat(executor.isShutdown()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_CBOR;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_SMILE;
+import static com.google.common.collect.Lists.newArrayList;
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import de.ingogriebsch.spring.hateoas.siren.RepresentationModelFactories;
+import de.ingogriebsch.spring.hateoas.siren.SirenActionFieldTypeConverter;
+import de.ingogriebsch.spring.hateoas.siren.SirenConfiguration;
+import de.ingogriebsch.spring.hateoas.siren.SirenEntityClassProvider;
+import de.ingogriebsch.spring.hateoas.siren.SirenEntityRelProvider;
+import de.ingogriebsch.spring.hateoas.siren.SirenMediaTypeConfiguration;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+class BinaryHypermediaMessageConverterTest {
+
+    private static final AffordanceTemplate UPDATE =
+        AffordanceTemplate.of(PersonController.class, "update", Long.class, String.class, String.class, PersonInput.class);
+
+    private final ObjectMapper objectMapper = sirenObjectMapper();
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class,
+                () -> new BinaryHypermediaMessageConverter(null, new CBORFactory(), SIREN_CBOR));
+            assertThrows(IllegalArgumentException.class,
+                () -> new BinaryHypermediaMessageConverter(objectMapper, null, SIREN_CBOR));
+            assertThrows(IllegalArgumentException.class,
+                () -> new BinaryHypermediaMessageConverter(objectMapper, new CBORFactory(), null));
+        }
+    }
+
+    @Nested
+    class CanWrite {
+
+        @Test
+        void should_return_true_for_representation_models_in_its_media_type_only() throws Exception {
+            BinaryHypermediaMessageConverter converter =
+                new BinaryHypermediaMessageConverter(objectMapper, new CBORFactory(), SIREN_CBOR);
+
+            assertThat(converter.canWrite(EntityModel.class, SIREN_CBOR)).isTrue();
+            assertThat(converter.canWrite(RepresentationModel.class, SIREN_CBOR)).isTrue();
+            assertThat(converter.canWrite(EntityModel.class, SIREN_JSON)).isFalse();
+            assertThat(converter.canWrite(Person.class, SIREN_CBOR)).isFalse();
+        }
+
+        @Test
+        void should_never_read() throws Exception {
+            BinaryHypermediaMessageConverter converter =
+                new BinaryHypermediaMessageConverter(objectMapper, new CBORFactory(), SIREN_CBOR);
+
+            assertThat(converter.canRead(EntityModel.class, SIREN_CBOR)).isFalse();
+            assertThat(converter.canRead(EntityModel.class, null, SIREN_CBOR)).isFalse();
+        }
+    }
+
+    @Nested
+    class Write {
+
+        @Test
+        void should_write_the_same_structure_as_the_json_serializer_in_cbor() throws Exception {
+            EntityModel<Person> model = model(new Person(1L, "Ingo", 44));
+
+            assertThat(write(new CBORFactory(), model)).isEqualTo(objectMapper.readTree(objectMapper.writeValueAsBytes(model)));
+        }
+
+        @Test
+        void should_write_the_same_structure_as_the_json_serializer_in_smile() throws Exception {
+            CollectionModel<EntityModel<Person>> model =
+                CollectionModel.of(newArrayList(model(new Person(1L, "Ingo", 44)), model(new Person(2L, "Edina", 21))),
+                    Link.of("/persons").withSelfRel());
+
+            assertThat(write(new SmileFactory(), model)).isEqualTo(objectMapper.readTree(objectMapper.writeValueAsBytes(model)));
+        }
+    }
+
+    private Object write(JsonFactory jsonFactory, RepresentationModel<?> model) throws Exception {
+        BinaryHypermediaMessageConverter converter = new BinaryHypermediaMessageConverter(objectMapper, jsonFactory,
+            jsonFactory instanceof CBORFactory ? SIREN_CBOR : SIREN_SMILE);
+
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        converter.write(model, null, outputMessage);
+        return new ObjectMapper(jsonFactory).readTree(outputMessage.getBodyAsBytes());
+    }
+
+    private static EntityModel<Person> model(Person person) {
+        String href = "/persons/" + person.getId();
+        return EntityModel.of(person, Link.of(href).withSelfRel().andAffordances(UPDATE.affordances(href)));
+    }
+
+    private static ObjectMapper sirenObjectMapper() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        SirenMediaTypeConfiguration configuration = new SirenMediaTypeConfiguration(
+            beanFactory.getBeanProvider(MessageResolver.class), beanFactory.getBeanProvider(SirenConfiguration.class),
+            beanFactory.getBeanProvider(SirenEntityClassProvider.class),
+            beanFactory.getBeanProvider(SirenEntityRelProvider.class),
+            beanFactory.getBeanProvider(SirenActionFieldTypeConverter.class),
+            beanFactory.getBeanProvider(RepresentationModelFactories.class));
+        return configuration.configureObjectMapper(new ObjectMapper());
+    }
+}
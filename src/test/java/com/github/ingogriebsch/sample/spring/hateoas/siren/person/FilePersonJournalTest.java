@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.time.Duration.ofDays;
+import static java.time.Duration.ofMillis;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.FilePersonJournal.DELETE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.FilePersonJournal.INSERT;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.FilePersonJournal.UPDATE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.ALWAYS;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.BATCH;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.INTERVAL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.util.Lists.newArrayList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FilePersonJournalTest {
+
+    @Nested
+    class Create {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_throw_exception_if_batch_size_is_not_positive() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new FilePersonJournal(directory, BATCH, 0, ofDays(1)));
+        }
+    }
+
+    @Nested
+    class Replay {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_appended_records_in_order() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                journal.sync(journal.insert(new Person(1L, "Mary", 20)));
+                journal.sync(journal.insertAll(newArrayList(new Person(2L, "Paul", 30), new Person(3L, null, null))));
+                journal.sync(journal.update(new Person(1L, "Maria", 21, 1L)));
+                journal.sync(journal.delete(2L));
+            }
+
+            assertThat(replay(directory, 1L)).containsExactly(tuple(INSERT, 1L, "Mary", 20, 0L),
+                tuple(INSERT, 2L, "Paul", 30, 0L), tuple(INSERT, 3L, null, null, 0L), tuple(UPDATE, 1L, "Maria", 21, 1L),
+                tuple(DELETE, 2L, null, null, 0L));
+        }
+
+        @Test
+        void should_ignore_and_truncate_torn_tail() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                journal.sync(journal.insert(new Person(1L, "Mary", 20)));
+            }
+            Path segment = segments(directory).get(0);
+            Files.write(segment, new byte[] { 42, 0, 0, 0, 7 }, APPEND);
+
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                journal.sync(journal.insert(new Person(2L, "Paul", 30)));
+            }
+
+            assertThat(replay(directory, 1L)).extracting(t -> t.toList().get(1)).containsExactly(1L, 2L);
+        }
+
+        @Test
+        void should_only_return_records_of_requested_segments() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                journal.sync(journal.insert(new Person(1L, "Mary", 20)));
+                assertThat(journal.rotate()).isEqualTo(2L);
+                journal.sync(journal.insert(new Person(2L, "Paul", 30)));
+            }
+
+            assertThat(replay(directory, 2L)).extracting(t -> t.toList().get(1)).containsExactly(2L);
+        }
+    }
+
+    @Nested
+    class LastId {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_highest_id_journaled_including_deleted_ones() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                journal.sync(journal.insertAll(newArrayList(new Person(1L, "Mary", 20), new Person(7L, "Paul", 30))));
+                journal.sync(journal.delete(9L));
+                assertThat(journal.lastId()).isEqualTo(9L);
+            }
+
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                assertThat(journal.lastId()).isZero();
+                journal.replay(1L, (type, person) -> {
+                });
+                assertThat(journal.lastId()).isEqualTo(9L);
+            }
+        }
+    }
+
+    @Nested
+    class Sync {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_write_every_record_if_policy_is_always() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                journal.sync(journal.insert(new Person(1L, "Mary", 20)));
+
+                assertThat(Files.size(segments(directory).get(0))).isPositive();
+            }
+        }
+
+        @Test
+        void should_wait_for_batch_if_policy_is_batch() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, BATCH, 2, ofDays(1))) {
+                journal.sync(journal.insert(new Person(1L, "Mary", 20)));
+                assertThat(Files.size(segments(directory).get(0))).isZero();
+
+                journal.sync(journal.insert(new Person(2L, "Paul", 30)));
+                assertThat(Files.size(segments(directory).get(0))).isPositive();
+            }
+        }
+
+        @Test
+        void should_write_records_in_background_if_policy_is_interval() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, INTERVAL, 1, ofMillis(10))) {
+                journal.sync(journal.insert(new Person(1L, "Mary", 20)));
+
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (Files.size(segments(directory).get(0)) == 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertThat(Files.size(segments(directory).get(0))).isPositive();
+            }
+        }
+    }
+
+    @Nested
+    class Purge {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_delete_segments_before_the_given_one() throws Exception {
+            try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+                journal.rotate();
+                journal.rotate();
+                journal.purge(3L);
+            }
+
+            assertThat(segments(directory)).extracting(p -> p.getFileName().toString())
+                .containsExactly("journal-0000000000000000003.log");
+        }
+    }
+
+    private static List<Tuple> replay(Path directory, long from) throws Exception {
+        List<Tuple> records = newArrayList();
+        try (FilePersonJournal journal = new FilePersonJournal(directory, ALWAYS, 1, ofDays(1))) {
+            journal.replay(from, (t, p) -> records.add(tuple(t, p.getId(), p.getName(), p.getAge(), p.getVersion())));
+        }
+        return records;
+    }
+
+    private static List<Path> segments(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(toList());
+        }
+    }
+}
@@ -0,0 +1,730 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
+import static org.apache.commons.lang3.RandomUtils.nextInt;
+import static org.apache.commons.lang3.RandomUtils.nextLong;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.newArrayList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.data.domain.Sort.Order.desc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedPersonStoreTest {
+
+    @Nested
+    class Ages {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_count_and_sum_persons_by_age_after_modifications() throws Exception {
+            PersonStore personStore = store(directory);
+            rangeClosed(1, 100).forEach(id -> personStore.insert(new Person(id, "Person " + id, (int) id % 50)));
+            personStore.update(1L, p -> p.setAge(2000));
+            personStore.update(2L, p -> p.setName("Paul"));
+            personStore.delete(3L);
+
+            PersonAgeHistogram ages = personStore.ages();
+            assertThat(ages.count(0, Integer.MAX_VALUE)).isEqualTo(99);
+            assertThat(ages.count(10, 19))
+                .isEqualTo(personStore.stream().filter(p -> p.getAge() >= 10 && p.getAge() <= 19).count());
+            assertThat(ages.sum(0, 49))
+                .isEqualTo(personStore.stream().filter(p -> p.getAge() <= 49).mapToLong(Person::getAge).sum());
+            assertThat(ages.count(1000, 3000)).isEqualTo(1);
+            assertThat(ages.select(99)).isEqualTo(2000);
+        }
+
+        @Test
+        void should_rebuild_ages_if_store_is_reopened() throws Exception {
+            MappedPersonStore personStore = store(directory);
+            rangeClosed(1, 100).forEach(id -> personStore.insert(new Person(id, "Person " + id, (int) id % 50)));
+            personStore.delete(3L);
+            personStore.close();
+
+            MappedPersonStore reopened = store(directory);
+            assertThat(reopened.ages().count(0, 49)).isEqualTo(99);
+            assertThat(reopened.ages().count(3, 3)).isEqualTo(1);
+            assertThat(reopened.ages().sum(0, 49)).isEqualTo(reopened.stream().mapToLong(Person::getAge).sum());
+            reopened.close();
+        }
+    }
+
+    private static final int THREADS = 8;
+
+    @Nested
+    class Get {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> store(directory).get(null));
+        }
+
+        @Test
+        void should_return_matching_person_if_available() throws Exception {
+            PersonStore personStore = store(directory);
+            Person person = person(nextLong(1, 1000));
+            personStore.insert(person);
+
+            Optional<Person> optional = personStore.get(person.getId());
+            assertThat(optional).isNotNull();
+            assertThat(optional.isPresent()).isTrue();
+            assertThat(optional.get()).isEqualTo(person);
+        }
+
+        @Test
+        void should_return_empty_optional_if_not_available() throws Exception {
+            Optional<Person> optional = store(directory).get(nextLong());
+            assertThat(optional).isNotNull();
+            assertThat(optional.isPresent()).isFalse();
+        }
+    }
+
+    @Nested
+    class Insert {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_false_if_id_is_already_known() throws Exception {
+            PersonStore personStore = store(directory);
+            Person person = person(nextLong(1, 1000));
+
+            assertThat(personStore.insert(person)).isTrue();
+            assertThat(personStore.insert(person(person.getId()))).isFalse();
+            assertThat(personStore.get(person.getId())).contains(person);
+            assertThat(personStore.size()).isEqualTo(1);
+        }
+
+        @Test
+        void should_not_lose_persons_if_inserted_concurrently() throws Exception {
+            PersonStore personStore = store(directory);
+            int count = 10_000;
+
+            concurrently(
+                t -> rangeClosed(1, count).filter(id -> id % THREADS == t).forEach(id -> personStore.insert(person(id))));
+
+            assertThat(personStore.size()).isEqualTo(count);
+            assertThat(personStore.stream().map(Person::getId).collect(toList()))
+                .containsExactlyElementsOf(rangeClosed(1, count).boxed().collect(toList()));
+        }
+    }
+
+    @Nested
+    class InsertAll {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> store(directory).insertAll(null));
+        }
+
+        @Test
+        void should_skip_persons_whose_id_is_already_known() throws Exception {
+            PersonStore personStore = store(directory);
+            Person known = person(2L);
+            personStore.insert(known);
+
+            List<Person> inserted = personStore.insertAll(newArrayList(person(1L), person(2L), person(3L)));
+            assertThat(inserted).extracting("id").containsExactly(1L, 3L);
+            assertThat(personStore.get(2L)).contains(known);
+            assertThat(personStore.size()).isEqualTo(3);
+        }
+
+        @Test
+        void should_pass_accepted_persons_to_guard_before_they_become_visible() throws Exception {
+            PersonStore personStore = store(directory);
+            personStore.insert(person(2L));
+            List<Person> guarded = newArrayList();
+
+            List<Person> inserted =
+                personStore.insertAll(newArrayList(person(1L), person(2L), person(3L), person(3L)), accepted -> {
+                    assertThat(personStore.get(1L)).isEmpty();
+                    guarded.addAll(accepted);
+                });
+
+            assertThat(inserted).extracting("id").containsExactly(1L, 3L);
+            assertThat(guarded).containsExactlyElementsOf(inserted);
+        }
+
+        @Test
+        void should_insert_nothing_if_guard_throws_exception() throws Exception {
+            PersonStore personStore = store(directory);
+
+            assertThrows(IllegalStateException.class,
+                () -> personStore.insertAll(newArrayList(person(1L), person(2L)), accepted -> {
+                    throw new IllegalStateException();
+                }));
+            assertThat(personStore.size()).isZero();
+            assertThat(personStore.version()).isZero();
+        }
+
+        @Test
+        void should_maintain_all_indexes_and_increase_version_once() throws Exception {
+            PersonStore personStore = store(directory);
+            Person paul = new Person(1L, "Paul", 40);
+            Person anna = new Person(2L, "Anna", 30);
+            Person mary = new Person(3L, "Mary", 20);
+
+            personStore.insertAll(newArrayList(paul, anna, mary));
+            assertThat(personStore.version()).isEqualTo(1L);
+            assertThat(personStore.stream(asc("id"))).containsExactly(paul, anna, mary);
+            assertThat(personStore.stream(asc("name"))).containsExactly(anna, mary, paul);
+            assertThat(personStore.stream(asc("age"))).containsExactly(mary, anna, paul);
+            assertThat(personStore.streamByName("anna")).containsExactly(anna);
+            assertThat(personStore.lastId()).isEqualTo(3L);
+        }
+
+        @Test
+        void should_not_change_version_if_nothing_was_inserted() throws Exception {
+            PersonStore personStore = store(directory);
+
+            assertThat(personStore.insertAll(newArrayList())).isEmpty();
+            assertThat(personStore.version()).isZero();
+        }
+    }
+
+    @Nested
+    class Update {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_empty_optional_if_person_is_not_known() throws Exception {
+            Optional<Person> optional = store(directory).update(nextLong(), p -> p.setAge(1));
+            assertThat(optional).isNotNull();
+            assertThat(optional.isPresent()).isFalse();
+        }
+
+        @Test
+        void should_not_lose_updates_if_updated_concurrently() throws Exception {
+            PersonStore personStore = store(directory);
+            Person person = new Person(1L, randomAlphabetic(10), 0);
+            personStore.insert(person);
+            int updates = 1_000;
+
+            concurrently(t -> {
+                for (int i = 0; i < updates; i++) {
+                    personStore.update(person.getId(), p -> p.setAge(p.getAge() + 1));
+                }
+            });
+
+            assertThat(personStore.get(person.getId()).get().getAge()).isEqualTo(THREADS * updates);
+        }
+
+        @Test
+        void should_keep_person_indexed_if_modifier_fails() throws Exception {
+            PersonStore personStore = store(directory);
+            Person person = person(1L);
+            personStore.insert(person);
+            long version = personStore.version();
+
+            assertThrows(IllegalStateException.class, () -> personStore.update(person.getId(), p -> {
+                throw new IllegalStateException();
+            }));
+
+            assertThat(personStore.stream(asc("name"))).containsExactly(person);
+            assertThat(personStore.streamByName(person.getName())).containsExactly(person);
+            assertThat(personStore.version()).isEqualTo(version);
+        }
+    }
+
+    @Nested
+    class Delete {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_false_if_person_is_not_known() throws Exception {
+            assertThat(store(directory).delete(nextLong())).isFalse();
+        }
+
+        @Test
+        void should_remove_person_from_all_structures_if_known() throws Exception {
+            PersonStore personStore = store(directory);
+            Person person = person(nextLong(1, 1000));
+            personStore.insert(person);
+
+            assertThat(personStore.delete(person.getId())).isTrue();
+            assertThat(personStore.get(person.getId()).isPresent()).isFalse();
+            assertThat(personStore.stream()).isEmpty();
+            assertThat(personStore.size()).isZero();
+        }
+
+        @Test
+        void should_keep_person_if_guard_fails() throws Exception {
+            PersonStore personStore = store(directory);
+            Person person = person(1L);
+            personStore.insert(person);
+
+            assertThrows(IllegalStateException.class, () -> personStore.delete(person.getId(), p -> {
+                throw new IllegalStateException();
+            }));
+
+            assertThat(personStore.get(person.getId())).contains(person);
+            assertThat(personStore.stream(asc("age"))).containsExactly(person);
+        }
+    }
+
+    @Nested
+    class Version {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_increase_on_every_modification() throws Exception {
+            PersonStore personStore = store(directory);
+            Person person = person(1L);
+
+            personStore.insert(person);
+            assertThat(personStore.version()).isEqualTo(1L);
+            personStore.insert(person);
+            assertThat(personStore.version()).isEqualTo(1L);
+            personStore.update(person.getId(), p -> p.setAge(1));
+            assertThat(personStore.version()).isEqualTo(2L);
+            personStore.delete(person.getId());
+            assertThat(personStore.version()).isEqualTo(3L);
+        }
+    }
+
+    @Nested
+    class Snapshot {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_not_include_persons_inserted_after_snapshot_was_taken() throws Exception {
+            PersonStore personStore = store(directory);
+            personStore.insert(person(1L));
+            personStore.insert(person(2L));
+
+            Iterator<Person> snapshot = personStore.snapshot().iterator();
+            personStore.insert(person(3L));
+
+            assertThat(snapshot).toIterable().extracting("id").containsExactly(1L, 2L);
+        }
+
+        @Test
+        void should_return_empty_snapshot_if_no_persons_are_available() throws Exception {
+            assertThat(store(directory).snapshot()).isEmpty();
+        }
+    }
+
+    @Nested
+    class Stream {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_persons_in_id_order() throws Exception {
+            PersonStore personStore = store(directory);
+            rangeClosed(1, 5).map(id -> 6 - id).forEach(id -> personStore.insert(person(id)));
+
+            assertThat(personStore.stream()).extracting("id").containsExactly(1L, 2L, 3L, 4L, 5L);
+        }
+
+        @Test
+        void should_throw_exception_if_property_is_not_indexed() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> store(directory).stream(asc("unknown")));
+        }
+
+        @Test
+        void should_return_persons_in_requested_order_if_property_is_indexed() throws Exception {
+            PersonStore personStore = store(directory);
+            personStore.insert(new Person(1L, "Paul", 30));
+            personStore.insert(new Person(2L, "Mary", 20));
+            personStore.insert(new Person(3L, "Peter", 40));
+
+            assertThat(personStore.stream(asc("name"))).extracting("id").containsExactly(2L, 1L, 3L);
+            assertThat(personStore.stream(desc("age"))).extracting("id").containsExactly(3L, 1L, 2L);
+            assertThat(personStore.stream(desc("id"))).extracting("id").containsExactly(3L, 2L, 1L);
+        }
+
+        @Test
+        void should_keep_indexes_in_order_if_persons_are_updated_or_deleted() throws Exception {
+            PersonStore personStore = store(directory);
+            personStore.insert(new Person(1L, "Paul", 30));
+            personStore.insert(new Person(2L, "Mary", 20));
+            personStore.insert(new Person(3L, "Peter", 40));
+
+            personStore.update(2L, p -> {
+                p.setName("Ringo");
+                p.setAge(50);
+            });
+            personStore.delete(1L);
+
+            assertThat(personStore.stream(asc("name"))).extracting("id").containsExactly(3L, 2L);
+            assertThat(personStore.stream(asc("age"))).extracting("id").containsExactly(3L, 2L);
+        }
+    }
+
+    @Nested
+    class StreamAfter {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_persons_after_given_one_across_chunks() throws Exception {
+            PersonStore personStore = store(directory);
+            rangeClosed(1, 1000).forEach(id -> personStore.insert(new Person(id, "Person " + (id % 10), (int) (id % 7))));
+            Person last = personStore.get(500L).get();
+
+            assertThat(personStore.streamAfter(asc("age"), last)).extracting("id").containsExactlyElementsOf(
+                objects(personStore).streamAfter(asc("age"), last).map(Person::getId).collect(toList()));
+            assertThat(personStore.streamAfter(desc("name"), last)).extracting("id").containsExactlyElementsOf(
+                objects(personStore).streamAfter(desc("name"), last).map(Person::getId).collect(toList()));
+        }
+
+        @Test
+        void should_continue_if_persons_are_modified_while_streaming() throws Exception {
+            PersonStore personStore = store(directory);
+            rangeClosed(1, 1000).forEach(id -> personStore.insert(person(id)));
+
+            Iterator<Person> iterator = personStore.stream(asc("id")).iterator();
+            List<Long> ids = newArrayList();
+            while (iterator.hasNext()) {
+                long id = iterator.next().getId();
+                ids.add(id);
+                if (id == 100) {
+                    personStore.delete(300L);
+                    personStore.insert(person(1001L));
+                    personStore.update(50L, p -> p.setAge(1));
+                }
+            }
+
+            assertThat(ids).hasSize(1000).isSorted().doesNotContain(300L).contains(1001L);
+        }
+    }
+
+    @Nested
+    class Views {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_not_change_store_if_returned_person_is_modified() throws Exception {
+            PersonStore personStore = store(directory);
+            personStore.insert(new Person(1L, "Mary", 20));
+
+            personStore.get(1L).get().setName("Paul");
+            personStore.stream().findFirst().get().setAge(30);
+
+            assertThat(personStore.get(1L)).contains(new Person(1L, "Mary", 20));
+            assertThat(personStore.streamByName("paul")).isEmpty();
+        }
+    }
+
+    @Nested
+    class Reopen {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_map_persons_of_previous_store() throws Exception {
+            MappedPersonStore personStore = store(directory);
+            rangeClosed(1, 1000).forEach(id -> personStore.insert(person(id)));
+            personStore.update(10L, p -> p.setName("Paul"));
+            personStore.delete(20L);
+            List<Person> persons = personStore.stream(asc("name")).collect(toList());
+            personStore.insert(person(1001L));
+            personStore.close();
+
+            MappedPersonStore reopened = store(directory);
+            assertThat(reopened.size()).isEqualTo(1000);
+            assertThat(reopened.version()).isEqualTo(personStore.version());
+            assertThat(reopened.get(10L).get().getName()).isEqualTo("Paul");
+            assertThat(reopened.get(20L)).isEmpty();
+            assertThat(reopened.lastId()).isEqualTo(1001L);
+            assertThat(reopened.stream(asc("name")).filter(p -> p.getId() != 1001L)).containsExactlyElementsOf(persons);
+        }
+
+        @Test
+        void should_recover_persons_of_store_which_was_not_closed() throws Exception {
+            MappedPersonStore personStore = store(directory);
+            rangeClosed(1, 1000).forEach(id -> personStore.insert(person(id)));
+            personStore.update(10L, p -> p.setName("Paul"));
+            personStore.delete(20L);
+            personStore.insertAll(rangeClosed(1001, 1100).mapToObj(id -> person(id)).collect(toList()));
+
+            MappedPersonStore recovered = store(directory);
+            assertThat(recovered.size()).isEqualTo(1099);
+            assertThat(recovered.version()).isGreaterThanOrEqualTo(personStore.version());
+            assertThat(recovered.get(20L)).isEmpty();
+            assertThat(recovered.lastId()).isEqualTo(1100L);
+            assertThat(recovered.ages().count(0, Integer.MAX_VALUE)).isEqualTo(1099);
+            for (String property : PersonStore.INDEXED_PROPERTIES) {
+                assertThat(recovered.stream(asc(property)))
+                    .containsExactlyElementsOf(personStore.stream(asc(property)).collect(toList()));
+            }
+            recovered.close();
+        }
+
+        @Test
+        void should_drop_record_which_was_not_written_completely() throws Exception {
+            MappedPersonStore personStore = store(directory);
+            rangeClosed(1, 100).forEach(id -> personStore.insert(new Person(id, "Person " + id, 30)));
+            personStore.close();
+            MappedPersonStore reopened = store(directory);
+            reopened.update(5L, p -> p.setAge(40));
+
+            // Tears the record the update appended, as if the crash happened while it was written.
+            try (FileChannel records = FileChannel.open(directory.resolve("generation-0").resolve("records.bin"), WRITE)) {
+                records.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }), 100 * 32 + 8);
+            }
+
+            MappedPersonStore recovered = store(directory);
+            assertThat(recovered.get(5L)).contains(new Person(5L, "Person 5", 30));
+            assertThat(recovered.size()).isEqualTo(100);
+            assertThat(recovered.ages().count(30, 30)).isEqualTo(100);
+            assertThat(recovered.stream(asc("age")).filter(p -> p.getId() == 5L)).hasSize(1);
+            recovered.close();
+        }
+
+        @Test
+        void should_throw_exception_if_directory_contains_something_else() throws Exception {
+            Files.write(directory.resolve("store.bin"), new byte[] { 1, 2, 3, 4 });
+
+            assertThrows(IOException.class, () -> new MappedPersonStore(directory));
+        }
+    }
+
+    @Nested
+    class Capacity {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_keep_persons_spanning_many_regions_after_reopen() throws Exception {
+            long count = 200_000L;
+            MappedPersonStore personStore = store(directory);
+            personStore.insertAll(
+                rangeClosed(1, count).mapToObj(id -> new Person(id, "Person " + id % 1000, (int) (id % 100))).collect(toList()));
+
+            assertThat(personStore.size()).isEqualTo(count);
+            assertThat(personStore.get(count / 2)).contains(new Person(count / 2, "Person 0", 0));
+            assertThat(personStore.stream(desc("id")).limit(2)).extracting("id").containsExactly(count, count - 1);
+            personStore.close();
+
+            MappedPersonStore reopened = store(directory);
+            assertThat(reopened.size()).isEqualTo(count);
+            assertThat(reopened.get(count)).contains(new Person(count, "Person 0", 0));
+            assertThat(reopened.stream(asc("age")).limit(1)).extracting("age").containsExactly(0);
+            reopened.close();
+        }
+
+        // Writes several gigabytes and takes minutes, so it only runs with the large-tests profile.
+        @Tag("large")
+        @Test
+        void should_keep_fifty_million_persons_outside_of_the_heap() throws Exception {
+            assertThat(Runtime.getRuntime().maxMemory()).isLessThanOrEqualTo(512L * 1024 * 1024);
+
+            long count = 50_000_000L;
+            MappedPersonStore personStore = new MappedPersonStore(directory);
+            List<Person> batch = new ArrayList<>(100_000);
+            for (long id = 1; id <= count; id++) {
+                batch.add(new Person(id, "Person " + id % 1000, (int) (id % 100)));
+                if (batch.size() == 100_000 || id == count) {
+                    personStore.insertAll(batch);
+                    batch.clear();
+                }
+            }
+
+            assertThat(personStore.size()).isEqualTo(count);
+            assertThat(personStore.get(count / 2)).contains(new Person(count / 2, "Person 0", 0));
+            assertThat(personStore.stream(desc("id")).limit(2)).extracting("id").containsExactly(count, count - 1);
+            System.gc();
+            assertThat(usedHeap()).isLessThan(64L * 1024 * 1024);
+            personStore.close();
+
+            MappedPersonStore reopened = new MappedPersonStore(directory);
+            assertThat(reopened.size()).isEqualTo(count);
+            assertThat(reopened.get(count)).contains(new Person(count, "Person 0", 0));
+            reopened.close();
+        }
+
+        private long usedHeap() {
+            return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        }
+    }
+
+    @Nested
+    class Compaction {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_move_live_persons_into_new_generation_if_most_records_are_dead() throws Exception {
+            MappedPersonStore personStore = store(directory);
+            rangeClosed(1, 100).forEach(id -> personStore.insert(person(id)));
+            for (int i = 0; i < 30; i++) {
+                rangeClosed(1, 100).forEach(id -> personStore.update(id, p -> p.setAge(nextInt(0, 100))));
+            }
+            rangeClosed(1, 10).forEach(id -> personStore.delete(id));
+            PersonStore objects = objects(personStore);
+
+            assertThat(generations()).hasSize(1).doesNotContain("generation-0");
+            assertThat(personStore.size()).isEqualTo(90);
+            assertThat(personStore.ages().count(0, Integer.MAX_VALUE)).isEqualTo(90);
+            for (String property : PersonStore.INDEXED_PROPERTIES) {
+                assertThat(personStore.stream(asc(property)))
+                    .containsExactlyElementsOf(objects.stream(asc(property)).collect(toList()));
+            }
+            personStore.close();
+
+            MappedPersonStore reopened = store(directory);
+            assertThat(reopened.stream(asc("name"))).containsExactlyElementsOf(objects.stream(asc("name")).collect(toList()));
+            reopened.close();
+        }
+
+        private List<String> generations() throws IOException {
+            List<String> generations = new ArrayList<>();
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "generation-*")) {
+                paths.forEach(p -> generations.add(p.getFileName().toString()));
+            }
+            return generations;
+        }
+    }
+
+    @Nested
+    class Consistency {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_behave_like_object_store_after_random_modifications() throws Exception {
+            PersonStore columns = store(directory);
+            PersonStore objects = new ObjectPersonStore();
+            String[] names = { "Anna", "anna", "ANNA", "Änne", "Zoë", "\uD83D\uDE00 Smile", "\uFFFD Replacement", "Ann", "Bob" };
+
+            for (int i = 0; i < 20_000; i++) {
+                long id = nextLong(1, 2_000);
+                String name = names[nextInt(0, names.length)] + nextInt(0, 3);
+                int age = nextInt(0, 100);
+                switch (nextInt(0, 3)) {
+                    case 0:
+                        assertThat(columns.insert(new Person(id, name, age)))
+                            .isEqualTo(objects.insert(new Person(id, name, age)));
+                        break;
+                    case 1:
+                        assertThat(columns.update(id, p -> p.setName(name)).isPresent())
+                            .isEqualTo(objects.update(id, p -> p.setName(name)).isPresent());
+                        break;
+                    default:
+                        assertThat(columns.delete(id)).isEqualTo(objects.delete(id));
+                }
+            }
+
+            assertThat(columns.size()).isEqualTo(objects.size());
+            assertThat(columns.lastId()).isEqualTo(objects.lastId());
+            for (String property : PersonStore.INDEXED_PROPERTIES) {
+                assertThat(columns.stream(asc(property)))
+                    .containsExactlyElementsOf(objects.stream(asc(property)).collect(toList()));
+                assertThat(columns.stream(desc(property)))
+                    .containsExactlyElementsOf(objects.stream(desc(property)).collect(toList()));
+            }
+            for (String name : names) {
+                assertThat(columns.streamByName(name + "1"))
+                    .containsExactlyElementsOf(objects.streamByName(name + "1").collect(toList()));
+                assertThat(columns.streamByNamePrefix(name))
+                    .containsExactlyElementsOf(objects.streamByNamePrefix(name).collect(toList()));
+            }
+        }
+    }
+
+    // Small regions make the records and names span several buffers even for a few persons.
+    private static MappedPersonStore store(Path directory) throws IOException {
+        return new MappedPersonStore(directory, 4096);
+    }
+
+    private static PersonStore objects(PersonStore personStore) {
+        PersonStore objects = new ObjectPersonStore();
+        objects.insertAll(personStore.stream().collect(toList()));
+        return objects;
+    }
+
+    private static Person person(long id) {
+        return new Person(id, randomAlphabetic(10), nextInt(1, 100));
+    }
+
+    private static void concurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Void>> callables = rangeClosed(0, THREADS - 1).mapToObj(t -> (Callable<Void>) () -> {
+                task.run((int) t);
+                return null;
+            }).collect(toList());
+            for (Future<Void> future : executor.invokeAll(callables)) {
+                future.get(10, SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+
+        void run(int thread);
+    }
+}
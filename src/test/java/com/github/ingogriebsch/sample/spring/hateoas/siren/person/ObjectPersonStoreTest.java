@@ -0,0 +1,407 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
+import static org.apache.commons.lang3.RandomUtils.nextInt;
+import static org.apache.commons.lang3.RandomUtils.nextLong;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.newArrayList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.data.domain.Sort.Order.desc;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class ObjectPersonStoreTest {
+
+    @Nested
+    class Ages {
+
+        @Test
+        void should_count_and_sum_persons_by_age_after_modifications() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            rangeClosed(1, 100).forEach(id -> personStore.insert(new Person(id, "Person " + id, (int) id % 50)));
+            personStore.update(1L, p -> p.setAge(2000));
+            personStore.update(2L, p -> p.setName("Paul"));
+            personStore.delete(3L);
+
+            PersonAgeHistogram ages = personStore.ages();
+            assertThat(ages.count(0, Integer.MAX_VALUE)).isEqualTo(99);
+            assertThat(ages.count(10, 19))
+                .isEqualTo(personStore.stream().filter(p -> p.getAge() >= 10 && p.getAge() <= 19).count());
+            assertThat(ages.sum(0, 49))
+                .isEqualTo(personStore.stream().filter(p -> p.getAge() <= 49).mapToLong(Person::getAge).sum());
+            assertThat(ages.count(1000, 3000)).isEqualTo(1);
+            assertThat(ages.select(99)).isEqualTo(2000);
+        }
+    }
+
+    private static final int THREADS = 8;
+
+    @Nested
+    class Get {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new ObjectPersonStore().get(null));
+        }
+
+        @Test
+        void should_return_matching_person_if_available() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person person = person(nextLong(1, 1000));
+            personStore.insert(person);
+
+            Optional<Person> optional = personStore.get(person.getId());
+            assertThat(optional).isNotNull();
+            assertThat(optional.isPresent()).isTrue();
+            assertThat(optional.get()).isEqualTo(person);
+        }
+
+        @Test
+        void should_return_empty_optional_if_not_available() throws Exception {
+            Optional<Person> optional = new ObjectPersonStore().get(nextLong());
+            assertThat(optional).isNotNull();
+            assertThat(optional.isPresent()).isFalse();
+        }
+    }
+
+    @Nested
+    class Insert {
+
+        @Test
+        void should_return_false_if_id_is_already_known() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person person = person(nextLong(1, 1000));
+
+            assertThat(personStore.insert(person)).isTrue();
+            assertThat(personStore.insert(person(person.getId()))).isFalse();
+            assertThat(personStore.get(person.getId())).contains(person);
+            assertThat(personStore.size()).isEqualTo(1);
+        }
+
+        @Test
+        void should_not_lose_persons_if_inserted_concurrently() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            int count = 10_000;
+
+            concurrently(
+                t -> rangeClosed(1, count).filter(id -> id % THREADS == t).forEach(id -> personStore.insert(person(id))));
+
+            assertThat(personStore.size()).isEqualTo(count);
+            assertThat(personStore.stream().map(Person::getId).collect(toList()))
+                .containsExactlyElementsOf(rangeClosed(1, count).boxed().collect(toList()));
+        }
+    }
+
+    @Nested
+    class InsertAll {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new ObjectPersonStore().insertAll(null));
+        }
+
+        @Test
+        void should_skip_persons_whose_id_is_already_known() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person known = person(2L);
+            personStore.insert(known);
+
+            List<Person> inserted = personStore.insertAll(newArrayList(person(1L), person(2L), person(3L)));
+            assertThat(inserted).extracting("id").containsExactly(1L, 3L);
+            assertThat(personStore.get(2L)).containsSame(known);
+            assertThat(personStore.size()).isEqualTo(3);
+        }
+
+        @Test
+        void should_pass_accepted_persons_to_guard_before_they_become_visible() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            personStore.insert(person(2L));
+            List<Person> guarded = newArrayList();
+
+            List<Person> inserted =
+                personStore.insertAll(newArrayList(person(1L), person(2L), person(3L), person(3L)), accepted -> {
+                    assertThat(personStore.get(1L)).isEmpty();
+                    guarded.addAll(accepted);
+                });
+
+            assertThat(inserted).extracting("id").containsExactly(1L, 3L);
+            assertThat(guarded).containsExactlyElementsOf(inserted);
+        }
+
+        @Test
+        void should_insert_nothing_if_guard_throws_exception() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+
+            assertThrows(IllegalStateException.class,
+                () -> personStore.insertAll(newArrayList(person(1L), person(2L)), accepted -> {
+                    throw new IllegalStateException();
+                }));
+            assertThat(personStore.size()).isZero();
+            assertThat(personStore.version()).isZero();
+        }
+
+        @Test
+        void should_maintain_all_indexes_and_increase_version_once() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person paul = new Person(1L, "Paul", 40);
+            Person anna = new Person(2L, "Anna", 30);
+            Person mary = new Person(3L, "Mary", 20);
+
+            personStore.insertAll(newArrayList(paul, anna, mary));
+            assertThat(personStore.version()).isEqualTo(1L);
+            assertThat(personStore.stream(asc("id"))).containsExactly(paul, anna, mary);
+            assertThat(personStore.stream(asc("name"))).containsExactly(anna, mary, paul);
+            assertThat(personStore.stream(asc("age"))).containsExactly(mary, anna, paul);
+            assertThat(personStore.streamByName("anna")).containsExactly(anna);
+            assertThat(personStore.lastId()).isEqualTo(3L);
+        }
+
+        @Test
+        void should_not_change_version_if_nothing_was_inserted() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+
+            assertThat(personStore.insertAll(newArrayList())).isEmpty();
+            assertThat(personStore.version()).isZero();
+        }
+    }
+
+    @Nested
+    class Update {
+
+        @Test
+        void should_return_empty_optional_if_person_is_not_known() throws Exception {
+            Optional<Person> optional = new ObjectPersonStore().update(nextLong(), p -> p.setAge(1));
+            assertThat(optional).isNotNull();
+            assertThat(optional.isPresent()).isFalse();
+        }
+
+        @Test
+        void should_not_lose_updates_if_updated_concurrently() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person person = new Person(1L, randomAlphabetic(10), 0);
+            personStore.insert(person);
+            int updates = 1_000;
+
+            concurrently(t -> {
+                for (int i = 0; i < updates; i++) {
+                    personStore.update(person.getId(), p -> p.setAge(p.getAge() + 1));
+                }
+            });
+
+            assertThat(personStore.get(person.getId()).get().getAge()).isEqualTo(THREADS * updates);
+        }
+
+        @Test
+        void should_keep_person_indexed_if_modifier_fails() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person person = person(1L);
+            personStore.insert(person);
+            long version = personStore.version();
+
+            assertThrows(IllegalStateException.class, () -> personStore.update(person.getId(), p -> {
+                throw new IllegalStateException();
+            }));
+
+            assertThat(personStore.stream(asc("name"))).containsExactly(person);
+            assertThat(personStore.streamByName(person.getName())).containsExactly(person);
+            assertThat(personStore.version()).isEqualTo(version);
+        }
+    }
+
+    @Nested
+    class Delete {
+
+        @Test
+        void should_return_false_if_person_is_not_known() throws Exception {
+            assertThat(new ObjectPersonStore().delete(nextLong())).isFalse();
+        }
+
+        @Test
+        void should_remove_person_from_all_structures_if_known() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person person = person(nextLong(1, 1000));
+            personStore.insert(person);
+
+            assertThat(personStore.delete(person.getId())).isTrue();
+            assertThat(personStore.get(person.getId()).isPresent()).isFalse();
+            assertThat(personStore.stream()).isEmpty();
+            assertThat(personStore.size()).isZero();
+        }
+
+        @Test
+        void should_keep_person_if_guard_fails() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person person = person(1L);
+            personStore.insert(person);
+
+            assertThrows(IllegalStateException.class, () -> personStore.delete(person.getId(), p -> {
+                throw new IllegalStateException();
+            }));
+
+            assertThat(personStore.get(person.getId())).contains(person);
+            assertThat(personStore.stream(asc("age"))).containsExactly(person);
+        }
+    }
+
+    @Nested
+    class Version {
+
+        @Test
+        void should_increase_on_every_modification() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person person = person(1L);
+
+            personStore.insert(person);
+            assertThat(personStore.version()).isEqualTo(1L);
+            personStore.insert(person);
+            assertThat(personStore.version()).isEqualTo(1L);
+            personStore.update(person.getId(), p -> p.setAge(1));
+            assertThat(personStore.version()).isEqualTo(2L);
+            personStore.delete(person.getId());
+            assertThat(personStore.version()).isEqualTo(3L);
+        }
+    }
+
+    @Nested
+    class Snapshot {
+
+        @Test
+        void should_not_include_persons_inserted_after_snapshot_was_taken() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            personStore.insert(person(1L));
+            personStore.insert(person(2L));
+
+            Iterator<Person> snapshot = personStore.snapshot().iterator();
+            personStore.insert(person(3L));
+
+            assertThat(snapshot).toIterable().extracting("id").containsExactly(1L, 2L);
+        }
+
+        @Test
+        void should_accept_changes_while_snapshot_is_exported() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            Person second = person(2L);
+            personStore.insert(person(1L));
+            personStore.insert(second);
+
+            List<Person> exported = personStore.snapshot().peek(p -> {
+                if (p.getId() == 1L) {
+                    assertThat(personStore.update(2L, u -> u.setName("Changed"))).isPresent();
+                    assertThat(personStore.insert(person(3L))).isTrue();
+                }
+            }).collect(toList());
+
+            assertThat(exported).extracting("id").containsExactly(1L, 2L);
+            assertThat(exported.get(1).getName()).isIn(second.getName(), "Changed");
+        }
+
+        @Test
+        void should_return_empty_snapshot_if_no_persons_are_available() throws Exception {
+            assertThat(new ObjectPersonStore().snapshot()).isEmpty();
+        }
+    }
+
+    @Nested
+    class Stream {
+
+        @Test
+        void should_return_persons_in_id_order() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            rangeClosed(1, 5).map(id -> 6 - id).forEach(id -> personStore.insert(person(id)));
+
+            assertThat(personStore.stream()).extracting("id").containsExactly(1L, 2L, 3L, 4L, 5L);
+        }
+
+        @Test
+        void should_throw_exception_if_property_is_not_indexed() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new ObjectPersonStore().stream(asc("unknown")));
+        }
+
+        @Test
+        void should_return_persons_in_requested_order_if_property_is_indexed() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            personStore.insert(new Person(1L, "Paul", 30));
+            personStore.insert(new Person(2L, "Mary", 20));
+            personStore.insert(new Person(3L, "Peter", 40));
+
+            assertThat(personStore.stream(asc("name"))).extracting("id").containsExactly(2L, 1L, 3L);
+            assertThat(personStore.stream(desc("age"))).extracting("id").containsExactly(3L, 1L, 2L);
+            assertThat(personStore.stream(desc("id"))).extracting("id").containsExactly(3L, 2L, 1L);
+        }
+
+        @Test
+        void should_keep_indexes_in_order_if_persons_are_updated_or_deleted() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            personStore.insert(new Person(1L, "Paul", 30));
+            personStore.insert(new Person(2L, "Mary", 20));
+            personStore.insert(new Person(3L, "Peter", 40));
+
+            personStore.update(2L, p -> {
+                p.setName("Ringo");
+                p.setAge(50);
+            });
+            personStore.delete(1L);
+
+            assertThat(personStore.stream(asc("name"))).extracting("id").containsExactly(3L, 2L);
+            assertThat(personStore.stream(asc("age"))).extracting("id").containsExactly(3L, 2L);
+        }
+    }
+
+    private static Person person(long id) {
+        return new Person(id, randomAlphabetic(10), nextInt(1, 100));
+    }
+
+    private static void concurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Void>> callables = rangeClosed(0, THREADS - 1).mapToObj(t -> (Callable<Void>) () -> {
+                task.run((int) t);
+                return null;
+            }).collect(toList());
+            for (Future<Void> future : executor.invokeAll(callables)) {
+                future.get(10, SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+
+        void run(int thread);
+    }
+}
@@ -0,0 +1,162 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static org.apache.commons.lang3.RandomUtils.nextInt;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonAgeHistogramTest {
+
+    @Nested
+    class Count {
+
+        @Test
+        void should_count_persons_within_range_including_bounds() throws Exception {
+            PersonAgeHistogram histogram = histogram(0, 10, 10, 20, 30, 1023, 1024, 5000);
+
+            assertThat(histogram.count(10, 20)).isEqualTo(3);
+            assertThat(histogram.count(0, 0)).isEqualTo(1);
+            assertThat(histogram.count(21, 29)).isZero();
+            assertThat(histogram.count(1000, 2000)).isEqualTo(2);
+            assertThat(histogram.count(0, Integer.MAX_VALUE)).isEqualTo(8);
+        }
+
+        @Test
+        void should_return_zero_if_range_is_empty() throws Exception {
+            assertThat(histogram(10, 20).count(20, 10)).isZero();
+        }
+
+        @Test
+        void should_ignore_missing_and_negative_ages() throws Exception {
+            PersonAgeHistogram histogram = histogram(10);
+            histogram.add(null);
+            histogram.add(-1);
+
+            assertThat(histogram.count(0, Integer.MAX_VALUE)).isEqualTo(1);
+        }
+
+        @Test
+        void should_not_count_removed_or_replaced_ages() throws Exception {
+            PersonAgeHistogram histogram = histogram(10, 20, 2000);
+            histogram.remove(10);
+            histogram.replace(20, 30);
+            histogram.remove(2000);
+
+            assertThat(histogram.count(0, 29)).isZero();
+            assertThat(histogram.count(30, 30)).isEqualTo(1);
+            assertThat(histogram.count(1024, Integer.MAX_VALUE)).isZero();
+        }
+
+        @Test
+        void should_match_a_scan_after_random_modifications() throws Exception {
+            PersonAgeHistogram histogram = new PersonAgeHistogram();
+            List<Integer> ages = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                if (ages.isEmpty() || nextInt(0, 3) > 0) {
+                    int age = nextInt(0, 1100);
+                    ages.add(age);
+                    histogram.add(age);
+                } else {
+                    histogram.remove(ages.remove(nextInt(0, ages.size())));
+                }
+            }
+
+            for (int i = 0; i < 100; i++) {
+                int min = nextInt(0, 1100);
+                int max = nextInt(min, 1100);
+                assertThat(histogram.count(min, max)).isEqualTo(ages.stream().filter(a -> a >= min && a <= max).count());
+                assertThat(histogram.sum(min, max))
+                    .isEqualTo(ages.stream().filter(a -> a >= min && a <= max).mapToLong(a -> a).sum());
+            }
+        }
+    }
+
+    @Nested
+    class Sum {
+
+        @Test
+        void should_sum_ages_within_range() throws Exception {
+            PersonAgeHistogram histogram = histogram(10, 20, 30, 1500, 2500);
+
+            assertThat(histogram.sum(15, 30)).isEqualTo(50);
+            assertThat(histogram.sum(0, Integer.MAX_VALUE)).isEqualTo(4060);
+            assertThat(histogram.sum(1024, 2000)).isEqualTo(1500);
+        }
+    }
+
+    @Nested
+    class Select {
+
+        @Test
+        void should_throw_exception_if_rank_is_not_positive() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> histogram(10).select(0));
+        }
+
+        @Test
+        void should_return_age_of_person_with_given_rank() throws Exception {
+            PersonAgeHistogram histogram = histogram(30, 10, 10, 1023, 5000, 2000);
+
+            assertThat(histogram.select(1)).isEqualTo(10);
+            assertThat(histogram.select(2)).isEqualTo(10);
+            assertThat(histogram.select(3)).isEqualTo(30);
+            assertThat(histogram.select(4)).isEqualTo(1023);
+            assertThat(histogram.select(5)).isEqualTo(2000);
+            assertThat(histogram.select(6)).isEqualTo(5000);
+        }
+
+        @Test
+        void should_return_minus_one_if_rank_exceeds_number_of_persons() throws Exception {
+            assertThat(histogram(10, 20).select(3)).isEqualTo(-1);
+            assertThat(new PersonAgeHistogram().select(1)).isEqualTo(-1);
+        }
+    }
+
+    @Nested
+    class ForEach {
+
+        @Test
+        void should_pass_counts_which_restore_an_equal_histogram() throws Exception {
+            PersonAgeHistogram histogram = histogram(30, 10, 10, 1023, 5000, 5000);
+            PersonAgeHistogram restored = new PersonAgeHistogram();
+
+            histogram.forEach(restored::add);
+
+            assertThat(restored.count(0, Integer.MAX_VALUE)).isEqualTo(6);
+            assertThat(restored.count(10, 10)).isEqualTo(2);
+            assertThat(restored.sum(0, Integer.MAX_VALUE)).isEqualTo(histogram.sum(0, Integer.MAX_VALUE));
+            assertThat(restored.select(6)).isEqualTo(5000);
+        }
+    }
+
+    private static PersonAgeHistogram histogram(int... ages) {
+        PersonAgeHistogram histogram = new PersonAgeHistogram();
+        for (int age : ages) {
+            histogram.add(age);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Optional.empty;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonLoaderTest.loader;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonLoaderTest.properties;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class PersonAvailabilityFilterTest {
+
+    @Nested
+    class DoFilter {
+
+        @Test
+        void should_reject_person_requests_while_persons_are_loading() throws Exception {
+            MockHttpServletResponse response =
+                filter(loader(new ObjectPersonStore(), empty(), properties(false, null)), "/persons/1");
+
+            assertThat(response.getStatus()).isEqualTo(SERVICE_UNAVAILABLE.value());
+            assertThat(response.getHeader(RETRY_AFTER)).isEqualTo("1");
+        }
+
+        @Test
+        void should_pass_other_requests_while_persons_are_loading() throws Exception {
+            MockHttpServletResponse response =
+                filter(loader(new ObjectPersonStore(), empty(), properties(false, null)), "/actuator/health");
+
+            assertThat(response.getStatus()).isEqualTo(OK.value());
+        }
+
+        @Test
+        void should_pass_person_requests_once_persons_are_loaded() throws Exception {
+            PersonLoader personLoader = loader(new ObjectPersonStore(), empty(), properties(false, null));
+            personLoader.afterPropertiesSet();
+
+            assertThat(filter(personLoader, "/persons").getStatus()).isEqualTo(OK.value());
+        }
+
+        @Test
+        void should_pass_person_requests_if_no_loader_is_available() throws Exception {
+            assertThat(filter(null, "/persons").getStatus()).isEqualTo(OK.value());
+        }
+    }
+
+    private static MockHttpServletResponse filter(PersonLoader personLoader, String path) throws Exception {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (personLoader != null) {
+            beanFactory.addBean("personLoader", personLoader);
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new PersonAvailabilityFilter(beanFactory.getBeanProvider(PersonLoader.class))
+            .doFilter(new MockHttpServletRequest("GET", path), response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Collections.nCopies;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.Sort.by;
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.data.domain.Sort.Order.desc;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+class PersonComparatorTest {
+
+    @Nested
+    class Of {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> PersonComparator.of(null));
+        }
+
+        @Test
+        void should_throw_exception_if_any_property_is_unknown() throws Exception {
+            PersonSortException exception =
+                assertThrows(PersonSortException.class, () -> PersonComparator.of(by(asc("name"), asc("unknown"), asc("age"))));
+            assertThat(exception.getProperty()).isEqualTo("unknown");
+        }
+
+        @Test
+        void should_return_the_same_comparator_for_equal_sorts() throws Exception {
+            assertThat(PersonComparator.of(by(asc("name"), desc("age"))))
+                .isSameAs(PersonComparator.of(by(asc("name"), desc("age"))));
+        }
+
+        @Test
+        void should_still_cache_new_sorts_once_the_cache_was_filled() throws Exception {
+            for (int i = 1; i <= PersonComparator.MAX_CACHED * 2; i++) {
+                PersonComparator.of(by(nCopies(i, asc("id"))));
+            }
+
+            Sort sort = by(desc("age"), asc("id").ignoreCase(), desc("name"));
+            assertThat(PersonComparator.of(sort)).isSameAs(PersonComparator.of(sort));
+        }
+    }
+
+    @Nested
+    class Compare {
+
+        @Test
+        void should_apply_the_direction_of_every_order_to_its_own_property() throws Exception {
+            List<Person> persons = sort(by(asc("name"), desc("age")), new Person(1L, "Paul", 30), new Person(2L, "Anna", 20),
+                new Person(3L, "Paul", 40));
+
+            assertThat(persons).extracting("id").containsExactly(2L, 3L, 1L);
+        }
+
+        @Test
+        void should_fall_back_to_the_next_order_if_values_are_equal() throws Exception {
+            List<Person> persons = sort(by(desc("age"), asc("name"), desc("id")), new Person(1L, "Paul", 30),
+                new Person(2L, "Anna", 30), new Person(3L, "Paul", 30), new Person(4L, "Zoe", 40));
+
+            assertThat(persons).extracting("id").containsExactly(4L, 2L, 3L, 1L);
+        }
+
+        @Test
+        void should_order_nulls_last_if_ascending_and_first_if_descending_by_default() throws Exception {
+            Person unknown = new Person(1L, null, null);
+            Person paul = new Person(2L, "Paul", 30);
+
+            assertThat(sort(by(asc("age")), unknown, paul)).containsExactly(paul, unknown);
+            assertThat(sort(by(desc("age")), paul, unknown)).containsExactly(unknown, paul);
+            assertThat(sort(by(asc("name")), unknown, paul)).containsExactly(paul, unknown);
+        }
+
+        @Test
+        void should_order_nulls_as_requested_regardless_of_direction() throws Exception {
+            Person unknown = new Person(1L, null, null);
+            Person paul = new Person(2L, "Paul", 30);
+
+            assertThat(sort(by(desc("age").nullsLast()), unknown, paul)).containsExactly(paul, unknown);
+            assertThat(sort(by(asc("age").nullsFirst()), paul, unknown)).containsExactly(unknown, paul);
+            assertThat(sort(by(asc("age").nullsFirst(), asc("name").nullsLast()), new Person(3L, null, null), unknown))
+                .extracting("id").containsExactly(3L, 1L);
+        }
+
+        @Test
+        void should_ignore_case_of_names_if_requested() throws Exception {
+            List<Person> persons = sort(by(asc("name").ignoreCase()), new Person(1L, "paul", 30), new Person(2L, "Mary", 20));
+
+            assertThat(persons).extracting("id").containsExactly(2L, 1L);
+        }
+    }
+
+    private static List<Person> sort(Sort sort, Person... persons) {
+        List<Person> sorted = newArrayList(persons);
+        sorted.sort(PersonComparator.of(sort));
+        return sorted;
+    }
+}
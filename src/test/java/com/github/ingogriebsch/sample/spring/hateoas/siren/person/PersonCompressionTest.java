@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.util.unit.DataSize.ofKilobytes;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class PersonCompressionTest {
+
+    @Nested
+    class Requested {
+
+        @AfterEach
+        void afterEach() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        @Test
+        void should_return_true_if_enabled_and_client_accepts_gzip() throws Exception {
+            request("deflate, gzip;q=0.5");
+            assertThat(new PersonCompression(true, ofKilobytes(2), 6).requested()).isTrue();
+        }
+
+        @Test
+        void should_return_false_if_client_refuses_gzip() throws Exception {
+            request("gzip;q=0, identity");
+            assertThat(new PersonCompression(true, ofKilobytes(2), 6).requested()).isFalse();
+            request(null);
+            assertThat(new PersonCompression(true, ofKilobytes(2), 6).requested()).isFalse();
+        }
+
+        @Test
+        void should_return_false_if_disabled_or_outside_of_a_request() throws Exception {
+            assertThat(new PersonCompression(true, ofKilobytes(2), 6).requested()).isFalse();
+            request("gzip");
+            assertThat(new PersonCompression(false, ofKilobytes(2), 6).requested()).isFalse();
+        }
+
+        private void request(String acceptEncoding) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            if (acceptEncoding != null) {
+                request.addHeader(ACCEPT_ENCODING, acceptEncoding);
+            }
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+    }
+
+    @Nested
+    class Compress {
+
+        @Test
+        void should_return_gzip_encoded_bytes() throws Exception {
+            byte[] response = Strings.repeat("{\"name\":\"Ingo\"}", 200).getBytes(UTF_8);
+
+            byte[] compressed = new PersonCompression(true, ofKilobytes(2), 1).compress(response);
+
+            assertThat(compressed.length).isLessThan(response.length / 10);
+            assertThat(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)))).isEqualTo(response);
+        }
+
+        @Test
+        void should_only_compress_responses_reaching_the_threshold() throws Exception {
+            PersonCompression compression = new PersonCompression(true, ofKilobytes(2), 6);
+            assertThat(compression.exceedsThreshold(2047)).isFalse();
+            assertThat(compression.exceedsThreshold(2048)).isTrue();
+        }
+    }
+
+    @Nested
+    class Encoded {
+
+        @Test
+        void should_mark_the_content_encoding_and_suffix_the_etag() throws Exception {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag("\"5\"");
+            headers.setContentLength(42);
+
+            PersonCompression.encoded(headers);
+
+            assertThat(headers.getFirst(CONTENT_ENCODING)).isEqualTo("gzip");
+            assertThat(headers.getETag()).isEqualTo("\"5-gzip\"");
+            assertThat(headers.getContentLength()).isEqualTo(-1);
+            assertThat(PersonCompression.decoded(headers.getETag())).isEqualTo("\"5\"");
+        }
+
+        @Test
+        void should_keep_other_etags_if_decoded() throws Exception {
+            assertThat(PersonCompression.decoded("\"5\"")).isEqualTo("\"5\"");
+            assertThat(PersonCompression.decoded("*")).isEqualTo("*");
+        }
+    }
+
+    @Nested
+    class Vary {
+
+        @Test
+        void should_add_accept_encoding_once_if_enabled() throws Exception {
+            HttpHeaders headers = new HttpHeaders();
+            PersonCompression compression = new PersonCompression(true, ofKilobytes(2), 6);
+            compression.vary(headers);
+            compression.vary(headers);
+            assertThat(headers.getVary()).containsExactly(ACCEPT_ENCODING);
+        }
+
+        @Test
+        void should_not_add_anything_if_disabled() throws Exception {
+            HttpHeaders headers = new HttpHeaders();
+            new PersonCompression(false, ofKilobytes(2), 6).vary(headers);
+            assertThat(headers.getVary()).isEmpty();
+        }
+    }
+}
@@ -19,53 +19,121 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.APPLICATION_NDJSON;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.APPLICATION_NDJSON_VALUE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.HAL_CBOR;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.HAL_SMILE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_AFTER;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_BUCKET_SIZE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_FIELDS;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_MAX_AGE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_MIN_AGE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_NAME;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_OMIT;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PARAM_PREFIX;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_AGE_STATISTICS;
 import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_DELETE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_EXPORT;
 import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_ALL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_BY_AGE;
 import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_FIND_ONE;
 import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_INSERT_ALL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_SEARCH;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.PATH_UPDATE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_CBOR;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_SMILE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonMetrics.TAG_ENDPOINT;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonMetrics.TAG_MEDIA_TYPE;
 import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonService.toPage;
 import static com.google.common.collect.Lists.newArrayList;
 import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON_VALUE;
 import static org.apache.commons.lang3.RandomUtils.nextLong;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.hateoas.MediaTypes.HAL_JSON;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.github.ingogriebsch.sample.spring.hateoas.siren.HateoasConfiguration;
+import com.google.common.io.CharStreams;
 import de.ingogriebsch.spring.hateoas.siren.SirenMediaTypeConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
-@Import(value = { HateoasConfiguration.class, PersonHateoasConfiguration.class, SirenMediaTypeConfiguration.class })
+@Import(value = { HateoasConfiguration.class, PersonHateoasConfiguration.class, PersonCompression.class, PersonExporter.class,
+    PersonMessageConverterRegistrar.class, PersonMetrics.class, PersonResponseCache.class, SimpleMeterRegistry.class,
+    SirenMediaTypeConfiguration.class })
 @WebMvcTest(PersonController.class)
 class PersonControllerTest {
 
@@ -78,12 +146,19 @@ class PersonControllerTest {
     @MockBean
     private PersonService personService;
 
+    @Autowired
+    private PersonResponseCache personResponseCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Nested
     class FindAll {
 
         @AfterEach
         void afterEach() {
             reset(personService);
+            personResponseCache.invalidateAll();
         }
 
         @Test
@@ -103,6 +178,7 @@ class PersonControllerTest {
                 .andExpect(jsonPath("$.links", is(not(empty())))) //
                 .andExpect(jsonPath("$.actions", is(not(empty()))));
 
+            verify(personService, times(1)).version();
             verify(personService, times(1)).findAll(pageable);
             verifyNoMoreInteractions(personService);
         }
@@ -121,15 +197,497 @@ class PersonControllerTest {
                 .andExpect(jsonPath("$.links", is(not(empty())))) //
                 .andExpect(jsonPath("$.actions", is(not(empty()))));
 
+            verify(personService, times(1)).version();
+            verify(personService, times(1)).findAll(pageable);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_bad_request_if_sorted_by_unknown_property() throws Exception {
+            given(personService.findAll(any(Pageable.class))).willThrow(new PersonSortException("unknown"));
+
+            mockMvc.perform(get(PATH_FIND_ALL).param("sort", "unknown").accept(SIREN_JSON)).andExpect(status().isBadRequest());
+            mockMvc.perform(get(PATH_FIND_ALL).param("page", "1").param("sort", "unknown").accept(SIREN_JSON))
+                .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        void should_return_not_modified_if_version_did_not_change() throws Exception {
+            given(personService.version()).willReturn(7L);
+
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ALL).header(IF_NONE_MATCH, eTag(7L, SIREN_JSON)).accept(SIREN_JSON));
+            actions.andExpect(status().isNotModified());
+            actions.andExpect(header().string(ETAG, eTag(7L, SIREN_JSON)));
+            actions.andExpect(content().string(""));
+
+            verify(personService, times(1)).version();
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_ok_including_etag_if_version_did_change() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            given(personService.version()).willReturn(8L);
+            given(personService.findAll(pageable)).willReturn(toPage(newArrayList(), pageable));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable))
+                .header(IF_NONE_MATCH, eTag(7L, SIREN_JSON)).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(ETAG, eTag(8L, SIREN_JSON)));
+
+            verify(personService, times(1)).version();
             verify(personService, times(1)).findAll(pageable);
             verifyNoMoreInteractions(personService);
         }
 
-        private MultiValueMap<String, String> pageableParams(Pageable pageable) {
-            MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
-            map.add("page", "" + pageable.getPageNumber());
-            map.add("size", "" + pageable.getPageSize());
-            return map;
+        @Test
+        void should_record_the_time_spent_in_service_assembly_and_serialization() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10, Sort.by("name"));
+            given(personService.findAll(pageable)).willReturn(toPage(newArrayList(new Person(1L, "Ingo", 44)), pageable));
+            long service = timer("person.service", TAG_ENDPOINT, "findAll").count();
+            long assembly = timer("person.assembly", TAG_ENDPOINT, "findAll").count();
+            long serialization = timer("person.serialization", TAG_MEDIA_TYPE, SIREN_JSON_VALUE).count();
+
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable)).param("sort", "name").accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+
+            assertThat(timer("person.service", TAG_ENDPOINT, "findAll").count()).isEqualTo(service + 1);
+            assertThat(timer("person.assembly", TAG_ENDPOINT, "findAll").count()).isEqualTo(assembly + 1);
+            assertThat(timer("person.serialization", TAG_MEDIA_TYPE, SIREN_JSON_VALUE).count()).isEqualTo(serialization + 1);
+            assertThat(meterRegistry.get("person.payload").tag(TAG_MEDIA_TYPE, SIREN_JSON_VALUE).summary().totalAmount())
+                .isPositive();
+            assertThat(
+                meterRegistry.get("person.sort.fields").tags(TAG_ENDPOINT, "findAll", "property", "name").counter().count())
+                    .isPositive();
+        }
+
+        @Test
+        void should_not_record_the_service_time_of_a_cache_miss_as_serialization() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            given(personService.findAll(pageable)).willAnswer(i -> {
+                MILLISECONDS.sleep(200);
+                return toPage(newArrayList(new Person(1L, "Ingo", 44)), pageable);
+            });
+            double service = timer("person.service", TAG_ENDPOINT, "findAll").totalTime(MILLISECONDS);
+            double serialization = timer("person.serialization", TAG_MEDIA_TYPE, SIREN_JSON_VALUE).totalTime(MILLISECONDS);
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable)).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+
+            assertThat(timer("person.service", TAG_ENDPOINT, "findAll").totalTime(MILLISECONDS) - service)
+                .isGreaterThanOrEqualTo(200.0);
+            assertThat(timer("person.serialization", TAG_MEDIA_TYPE, SIREN_JSON_VALUE).totalTime(MILLISECONDS) - serialization)
+                .isLessThan(200.0);
+        }
+
+        @Test
+        void should_return_the_same_structure_in_binary_encodings() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            List<Person> persons = newArrayList(new Person(1L, "Ingo", 44), new Person(2L, "Edina", 21));
+            given(personService.findAll(pageable)).willReturn(toPage(persons, pageable));
+
+            MultiValueMap<String, String> params = pageableParams(pageable);
+            JsonNode siren = tree(mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(SIREN_JSON)), objectMapper);
+            JsonNode hal = tree(mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(HAL_JSON)), objectMapper);
+            assertThat(siren.path("properties").path("totalElements").asInt()).isEqualTo(2);
+            assertThat(hal.path("page").path("totalElements").asInt()).isEqualTo(2);
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(SIREN_SMILE));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_SMILE));
+            assertThat(tree(actions, new ObjectMapper(new SmileFactory()))).isEqualTo(siren);
+
+            actions = mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(HAL_CBOR));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(HAL_CBOR));
+            assertThat(tree(actions, new ObjectMapper(new CBORFactory()))).isEqualTo(hal);
+        }
+
+        @Test
+        void should_return_only_the_requested_fields_and_skip_actions_if_omitted() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            List<Person> persons = newArrayList(new Person(1L, "Ingo", 44), new Person(2L, "Edina", 21));
+            given(personService.findAll(pageable)).willReturn(toPage(persons, pageable));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable))
+                .param(PARAM_FIELDS, "name").param(PARAM_OMIT, "actions").accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+
+            actions.andExpect(jsonPath("$.entities[*].properties.name", contains("Ingo", "Edina"))) //
+                .andExpect(jsonPath("$.entities[0].properties.*", hasSize(1))) //
+                .andExpect(jsonPath("$.entities[0].links", hasSize(1))) //
+                .andExpect(jsonPath("$.entities[0].actions").doesNotExist()) //
+                .andExpect(jsonPath("$.actions", is(not(empty()))));
+        }
+
+        @Test
+        void should_skip_links_of_the_persons_if_omitted() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            given(personService.findAll(pageable)).willReturn(toPage(newArrayList(new Person(1L, "Ingo", 44)), pageable));
+
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable)).param(PARAM_OMIT, "links").accept(HAL_JSON));
+            actions.andExpect(status().isOk());
+
+            actions.andExpect(jsonPath("$._embedded.personList[0].name", is("Ingo"))) //
+                .andExpect(jsonPath("$._embedded.personList[0]._links").doesNotExist()) //
+                .andExpect(jsonPath("$._links.self.href", containsString(PARAM_OMIT + "=links")));
+        }
+
+        @Test
+        void should_return_bad_request_if_unknown_fields_are_requested() throws Exception {
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_FIELDS, "name,password").accept(SIREN_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(personService);
+        }
+
+        @Test
+        void should_serve_repeated_first_pages_from_cache_until_version_changes() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            given(personService.version()).willReturn(1L);
+            given(personService.findAll(pageable)).willReturn(toPage(newArrayList(new Person(1L, "Ingo", 44)), pageable));
+
+            MultiValueMap<String, String> params = pageableParams(pageable);
+            String siren = mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(SIREN_JSON)).andReturn().getResponse()
+                .getContentAsString();
+            mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(SIREN_JSON)).andExpect(content().string(siren));
+            verify(personService, times(1)).findAll(pageable);
+
+            given(personService.version()).willReturn(2L);
+            mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(SIREN_JSON)).andExpect(content().string(siren));
+            verify(personService, times(2)).findAll(pageable);
+        }
+
+        @Test
+        void should_compress_first_pages_once_if_client_accepts_gzip() throws Exception {
+            Pageable pageable = PageRequest.of(0, 50);
+            given(personService.version()).willReturn(3L);
+            given(personService.findAll(pageable)).willReturn(toPage(persons(50), pageable));
+
+            MultiValueMap<String, String> params = pageableParams(pageable);
+            String siren = mockMvc.perform(get(PATH_FIND_ALL).params(params).accept(SIREN_JSON)).andReturn().getResponse()
+                .getContentAsString();
+            long hits = personResponseCache.stats().hitCount();
+
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ALL).params(params).header(ACCEPT_ENCODING, "gzip").accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(CONTENT_ENCODING, "gzip"));
+            actions.andExpect(header().stringValues(VARY, hasItems(ACCEPT, ACCEPT_ENCODING)));
+            actions.andExpect(header().string(ETAG, gzipped(eTag(3L, SIREN_JSON))));
+            byte[] compressed = actions.andReturn().getResponse().getContentAsByteArray();
+            assertThat(gunzip(compressed)).isEqualTo(siren);
+
+            mockMvc.perform(get(PATH_FIND_ALL).params(params).header(ACCEPT_ENCODING, "gzip").accept(SIREN_JSON))
+                .andExpect(content().bytes(compressed));
+            assertThat(personResponseCache.stats().hitCount()).isEqualTo(hits + 3);
+            verify(personService, times(1)).findAll(pageable);
+        }
+
+        @Test
+        void should_compress_other_pages_while_writing_if_client_accepts_gzip() throws Exception {
+            Pageable pageable = PageRequest.of(1, 50);
+            given(personService.version()).willReturn(4L);
+            given(personService.findAll(pageable)).willReturn(toPage(persons(100), pageable));
+
+            ResultActions actions = mockMvc.perform(
+                get(PATH_FIND_ALL).params(pageableParams(pageable)).header(ACCEPT_ENCODING, "br, gzip").accept(HAL_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(CONTENT_ENCODING, "gzip"));
+            actions.andExpect(header().string(ETAG, gzipped(eTag(4L, HAL_JSON))));
+
+            JsonNode hal = objectMapper.readTree(gunzip(actions.andReturn().getResponse().getContentAsByteArray()));
+            assertThat(hal.path("_embedded").path("personList")).hasSize(50);
+        }
+
+        @Test
+        void should_not_compress_if_response_is_below_threshold() throws Exception {
+            Pageable pageable = PageRequest.of(1, 10);
+            given(personService.findAll(pageable)).willReturn(toPage(persons(12), pageable));
+
+            ResultActions actions = mockMvc
+                .perform(get(PATH_FIND_ALL).params(pageableParams(pageable)).header(ACCEPT_ENCODING, "gzip").accept(HAL_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().doesNotExist(CONTENT_ENCODING));
+            actions.andExpect(header().stringValues(VARY, hasItems(ACCEPT, ACCEPT_ENCODING)));
+            actions.andExpect(jsonPath("$._links", is(not(empty()))));
+        }
+
+        @Test
+        void should_return_not_modified_if_compressed_version_did_not_change() throws Exception {
+            given(personService.version()).willReturn(7L);
+
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ALL).header(IF_NONE_MATCH, gzipped(eTag(7L, SIREN_JSON))).accept(SIREN_JSON));
+            actions.andExpect(status().isNotModified());
+
+            verify(personService, times(1)).version();
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_the_entity_tag_of_the_compressed_variant_if_it_did_not_change() throws Exception {
+            given(personService.version()).willReturn(7L);
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).header(ACCEPT_ENCODING, "gzip")
+                .header(IF_NONE_MATCH, gzipped(eTag(6L, SIREN_JSON)) + ", " + gzipped(eTag(7L, SIREN_JSON))).accept(SIREN_JSON));
+            actions.andExpect(status().isNotModified());
+            actions.andExpect(header().string(ETAG, gzipped(eTag(7L, SIREN_JSON))));
+
+            actions = mockMvc.perform(get(PATH_FIND_ALL).header(IF_NONE_MATCH, eTag(7L, SIREN_JSON)).accept(SIREN_JSON));
+            actions.andExpect(status().isNotModified());
+            actions.andExpect(header().string(ETAG, eTag(7L, SIREN_JSON)));
+        }
+
+        private Timer timer(String name, String key, String value) {
+            return meterRegistry.timer(name, key, value);
+        }
+    }
+
+    @Nested
+    class FindAllAfter {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_next_link_if_more_available() throws Exception {
+            PersonCursor cursor = new PersonCursor(asc("name"), null);
+            List<Person> persons = newArrayList(new Person(2L, "Edina", 21), new Person(1L, "Ingo", 44));
+            given(personService.findAll(cursor, 2)).willReturn(new SliceImpl<>(persons, PageRequest.of(0, 2), true));
+
+            ResultActions actions = mockMvc
+                .perform(get(PATH_FIND_ALL).param(PARAM_AFTER, "").param("size", "2").param("sort", "name").accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_JSON));
+
+            actions.andExpect(jsonPath("$.entities", hasSize(2))) //
+                .andExpect(jsonPath("$.links[?(@.rel[0] == 'next')].href",
+                    contains(containsString(PARAM_AFTER + "=" + cursor.after(persons.get(1)).encode())))) //
+                .andExpect(jsonPath("$.actions", is(not(empty()))));
+
+            verify(personService, times(1)).version();
+            verify(personService, times(1)).findAll(cursor, 2);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_ok_without_next_link_if_no_more_available() throws Exception {
+            PersonCursor cursor = new PersonCursor(asc("id"), new Person(1L, null, null));
+            List<Person> persons = newArrayList(new Person(2L, "Edina", 21));
+            given(personService.findAll(cursor, 20)).willReturn(new SliceImpl<>(persons, PageRequest.of(0, 20), false));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_AFTER, cursor.encode()).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_JSON));
+
+            actions.andExpect(jsonPath("$.entities", hasSize(1))) //
+                .andExpect(jsonPath("$.links[?(@.rel[0] == 'next')]", hasSize(0)));
+
+            verify(personService, times(1)).version();
+            verify(personService, times(1)).findAll(cursor, 20);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_bad_request_if_cursor_is_not_legal() throws Exception {
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_AFTER, "%%%").accept(SIREN_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(personService);
+        }
+    }
+
+    @Nested
+    class Search {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_matching_resources() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            List<Person> persons = newArrayList(new Person(1L, "Ingo", 44), new Person(2L, "Ingrid", 21));
+            given(personService.search("ing", true, pageable)).willReturn(toPage(persons, pageable));
+
+            ResultActions actions = mockMvc.perform(get(PATH_SEARCH).param(PARAM_NAME, "ing").param(PARAM_PREFIX, "true")
+                .params(pageableParams(pageable)).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_JSON));
+
+            actions.andExpect(jsonPath("$.class", is(not(empty())))) //
+                .andExpect(jsonPath("$.properties", is(not(empty())))) //
+                .andExpect(jsonPath("$.entities", hasSize(2))) //
+                .andExpect(jsonPath("$.links", is(not(empty()))));
+
+            verify(personService, times(1)).search("ing", true, pageable);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_bad_request_if_name_is_missing() throws Exception {
+            ResultActions actions = mockMvc.perform(get(PATH_SEARCH).accept(SIREN_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(personService);
+        }
+    }
+
+    @Nested
+    class FindByAge {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_resources_within_range() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            List<Person> persons = newArrayList(new Person(1L, "Edina", 21), new Person(2L, "Marcus", 37));
+            given(personService.findByAge(20, 40, pageable)).willReturn(toPage(persons, pageable));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_BY_AGE).param(PARAM_MIN_AGE, "20").param(PARAM_MAX_AGE, "40")
+                .params(pageableParams(pageable)).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_JSON));
+
+            actions.andExpect(jsonPath("$.properties.totalElements", is(2))) //
+                .andExpect(jsonPath("$.entities", hasSize(2))) //
+                .andExpect(jsonPath("$.entities[0].properties.age", is(21))) //
+                .andExpect(jsonPath("$.links", is(not(empty()))));
+
+            verify(personService, times(1)).version();
+            verify(personService, times(1)).findByAge(20, 40, pageable);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_use_open_bounds_if_range_is_missing() throws Exception {
+            Pageable pageable = PageRequest.of(0, 10);
+            given(personService.findByAge(0, Integer.MAX_VALUE, pageable)).willReturn(toPage(newArrayList(), pageable));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_BY_AGE).params(pageableParams(pageable)).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+
+            verify(personService, times(1)).findByAge(0, Integer.MAX_VALUE, pageable);
+        }
+
+        @Test
+        void should_return_bad_request_if_range_is_invalid() throws Exception {
+            mockMvc.perform(get(PATH_FIND_BY_AGE).param(PARAM_MIN_AGE, "-1").accept(SIREN_JSON))
+                .andExpect(status().isBadRequest());
+            mockMvc.perform(get(PATH_FIND_BY_AGE).param(PARAM_MIN_AGE, "40").param(PARAM_MAX_AGE, "20").accept(SIREN_JSON))
+                .andExpect(status().isBadRequest());
+
+            verifyNoInteractions(personService);
+        }
+    }
+
+    @Nested
+    class AgeStatistics {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_statistics_within_range() throws Exception {
+            PersonAgeStatistics statistics = new PersonAgeStatistics(3, 30.0, 21, 37,
+                newArrayList(new PersonAgeStatistics.Bucket(20, 29, 2), new PersonAgeStatistics.Bucket(30, 39, 1)));
+            given(personService.ageStatistics(20, 40, 10)).willReturn(Optional.of(statistics));
+
+            ResultActions actions = mockMvc
+                .perform(get(PATH_AGE_STATISTICS).param(PARAM_MIN_AGE, "20").param(PARAM_MAX_AGE, "40").accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_JSON));
+
+            actions.andExpect(jsonPath("$.properties.count", is(3))) //
+                .andExpect(jsonPath("$.properties.average", is(30.0))) //
+                .andExpect(jsonPath("$.properties.buckets", hasSize(2))) //
+                .andExpect(jsonPath("$.properties.buckets[0].count", is(2))) //
+                .andExpect(jsonPath("$.links[?(@.rel[0] == 'collection')].href",
+                    contains("http://localhost/persons/age?minAge=20&maxAge=40")));
+
+            verify(personService, times(1)).version();
+            verify(personService, times(1)).ageStatistics(20, 40, 10);
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_bad_request_if_too_many_buckets_are_needed() throws Exception {
+            given(personService.ageStatistics(0, Integer.MAX_VALUE, 1)).willReturn(Optional.empty());
+
+            ResultActions actions = mockMvc.perform(get(PATH_AGE_STATISTICS).param(PARAM_BUCKET_SIZE, "1").accept(SIREN_JSON));
+            actions.andExpect(status().isBadRequest());
+        }
+
+        @Test
+        void should_return_bad_request_if_bucket_size_is_not_positive() throws Exception {
+            mockMvc.perform(get(PATH_AGE_STATISTICS).param(PARAM_BUCKET_SIZE, "0").accept(SIREN_JSON))
+                .andExpect(status().isBadRequest());
+
+            verifyNoInteractions(personService);
+        }
+    }
+
+    @Nested
+    class Export {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_stream_all_persons_as_newline_delimited_json() throws Exception {
+            given(personService.export()).willReturn(Stream.of(new Person(1L, "Ingo", 44), new Person(2L, "Edina", 21)));
+
+            MvcResult result = mockMvc.perform(get(PATH_EXPORT)).andExpect(request().asyncStarted()).andReturn();
+            ResultActions actions = mockMvc.perform(asyncDispatch(result));
+
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(APPLICATION_NDJSON));
+            actions.andExpect(header().doesNotExist(CONTENT_ENCODING));
+            actions.andExpect(
+                content().string("{\"id\":1,\"name\":\"Ingo\",\"age\":44}\n{\"id\":2,\"name\":\"Edina\",\"age\":21}\n"));
+
+            verify(personService, times(1)).export();
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_compress_if_client_accepts_gzip() throws Exception {
+            given(personService.export()).willReturn(Stream.of(new Person(1L, "Ingo", 44)));
+
+            MvcResult result = mockMvc.perform(get(PATH_EXPORT).header(ACCEPT_ENCODING, "deflate, gzip;q=0.8"))
+                .andExpect(request().asyncStarted()).andReturn();
+            ResultActions actions = mockMvc.perform(asyncDispatch(result));
+
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(CONTENT_ENCODING, "gzip"));
+            try (Reader body = new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray())), UTF_8)) {
+                assertThat(CharStreams.toString(body)).isEqualTo("{\"id\":1,\"name\":\"Ingo\",\"age\":44}\n");
+            }
+        }
+
+        @Test
+        void should_not_compress_if_client_refuses_gzip() throws Exception {
+            given(personService.export()).willReturn(Stream.empty());
+
+            MvcResult result = mockMvc.perform(get(PATH_EXPORT).header(ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+            mockMvc.perform(asyncDispatch(result)).andExpect(header().doesNotExist(CONTENT_ENCODING));
         }
     }
 
@@ -159,6 +717,40 @@ class PersonControllerTest {
             verifyNoMoreInteractions(personService);
         }
 
+        @Test
+        void should_record_the_assembly_of_the_person_as_assembly_and_not_as_serialization() throws Exception {
+            Person person = new Person(nextLong(), "Kamil", 32);
+            given(personService.findOne(person.getId())).willReturn(of(person));
+            long assembly = meterRegistry.timer("person.assembly", TAG_ENDPOINT, "findOne").count();
+            long serialization = meterRegistry.timer("person.serialization", TAG_MEDIA_TYPE, SIREN_JSON_VALUE).count();
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+
+            assertThat(meterRegistry.timer("person.assembly", TAG_ENDPOINT, "findOne").count()).isEqualTo(assembly + 1);
+            assertThat(meterRegistry.timer("person.serialization", TAG_MEDIA_TYPE, SIREN_JSON_VALUE).count())
+                .isEqualTo(serialization + 1);
+        }
+
+        @Test
+        void should_return_the_same_structure_in_binary_encodings() throws Exception {
+            Person person = new Person(nextLong(), "Kamil", 32);
+            given(personService.findOne(person.getId())).willReturn(of(person));
+
+            JsonNode siren = tree(mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(SIREN_JSON)), objectMapper);
+            JsonNode hal = tree(mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(HAL_JSON)), objectMapper);
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(SIREN_CBOR));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_CBOR));
+            assertThat(tree(actions, new ObjectMapper(new CBORFactory()))).isEqualTo(siren);
+
+            actions = mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(HAL_SMILE));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(HAL_SMILE));
+            assertThat(tree(actions, new ObjectMapper(new SmileFactory()))).isEqualTo(hal);
+        }
+
         @Test
         void should_return_not_found_if_not_available() throws Exception {
             Long id = nextLong();
@@ -170,6 +762,56 @@ class PersonControllerTest {
             verify(personService, times(1)).findOne(id);
             verifyNoMoreInteractions(personService);
         }
+
+        @Test
+        void should_serve_repeated_requests_from_cache_per_media_type() throws Exception {
+            Person person = new Person(nextLong(), "Kamil", 32);
+            given(personService.findOne(person.getId())).willReturn(of(person));
+            long hits = personResponseCache.stats().hitCount();
+
+            String siren = mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(SIREN_JSON)).andReturn().getResponse()
+                .getContentAsString();
+            String hal = mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(HAL_JSON)).andReturn().getResponse()
+                .getContentAsString();
+            assertThat(personResponseCache.stats().hitCount()).isEqualTo(hits);
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_JSON));
+            actions.andExpect(content().string(siren));
+            mockMvc.perform(get(PATH_FIND_ONE, person.getId()).accept(HAL_JSON)).andExpect(content().string(hal));
+
+            assertThat(personResponseCache.stats().hitCount()).isEqualTo(hits + 2);
+            assertThat(siren).isNotEqualTo(hal);
+        }
+
+        @Test
+        void should_return_not_modified_if_version_did_not_change() throws Exception {
+            Person person = new Person(1L, "Kamil", 32, 3L);
+            given(personService.findOne(person.getId())).willReturn(of(person));
+
+            ResultActions actions = mockMvc.perform(
+                get(PATH_FIND_ONE, person.getId()).header(IF_NONE_MATCH, "W/" + eTag(3L, SIREN_JSON)).accept(SIREN_JSON));
+            actions.andExpect(status().isNotModified());
+            actions.andExpect(header().string(ETAG, eTag(3L, SIREN_JSON)));
+            actions.andExpect(content().string(""));
+
+            verify(personService, times(1)).findOne(person.getId());
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_entity_tag_per_media_type_and_vary_by_accept() throws Exception {
+            Person person = new Person(1L, "Kamil", 32, 3L);
+            given(personService.findOne(person.getId())).willReturn(of(person));
+
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ONE, person.getId()).header(IF_NONE_MATCH, eTag(3L, SIREN_JSON)).accept(HAL_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(ETAG, eTag(3L, HAL_JSON)));
+            actions.andExpect(header().string(VARY, containsString(ACCEPT)));
+            assertThat(eTag(3L, HAL_JSON)).isNotEqualTo(eTag(3L, SIREN_JSON));
+        }
     }
 
     @Nested
@@ -211,6 +853,66 @@ class PersonControllerTest {
         }
     }
 
+    @Nested
+    class InsertAll {
+
+        @AfterEach
+        void afterEach() {
+            reset(personService);
+        }
+
+        @Test
+        void should_return_ok_including_result_per_item() throws Exception {
+            PersonInput kamil = new PersonInput("Kamil", 32);
+            PersonInput mia = new PersonInput("Mia", 12);
+            given(personService.insertAll(newArrayList(kamil, mia))).willReturn(
+                newArrayList(new Person(1L, kamil.getName(), kamil.getAge()), new Person(2L, mia.getName(), mia.getAge())));
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT_ALL).accept(SIREN_JSON).contentType(APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(newArrayList(kamil, new PersonInput(" ", -1), mia))));
+
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(SIREN_JSON));
+
+            actions.andExpect(jsonPath("$.entities", hasSize(3))) //
+                .andExpect(jsonPath("$.entities[*].properties.index", contains(0, 1, 2))) //
+                .andExpect(jsonPath("$.entities[*].properties.status", contains(201, 400, 201))) //
+                .andExpect(jsonPath("$.entities[0].properties.id", is(1))) //
+                .andExpect(jsonPath("$.entities[1].properties.errors", hasSize(2))) //
+                .andExpect(jsonPath("$.entities[2].properties.id", is(2)));
+
+            verify(personService, times(1)).insertAll(newArrayList(kamil, mia));
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_accept_newline_delimited_input() throws Exception {
+            PersonInput kamil = new PersonInput("Kamil", 32);
+            PersonInput mia = new PersonInput("Mia", 12);
+            given(personService.insertAll(newArrayList(kamil, mia))).willReturn(
+                newArrayList(new Person(1L, kamil.getName(), kamil.getAge()), new Person(2L, mia.getName(), mia.getAge())));
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT_ALL).accept(SIREN_JSON).contentType(APPLICATION_NDJSON_VALUE)
+                .content(objectMapper.writeValueAsString(kamil) + "\n" + objectMapper.writeValueAsString(mia) + "\n"));
+
+            actions.andExpect(status().isOk());
+            actions.andExpect(jsonPath("$.entities[*].properties.status", contains(201, 201)));
+
+            verify(personService, times(1)).insertAll(newArrayList(kamil, mia));
+            verifyNoMoreInteractions(personService);
+        }
+
+        @Test
+        void should_return_bad_request_if_newline_delimited_input_is_not_readable() throws Exception {
+            ResultActions actions =
+                mockMvc.perform(post(PATH_INSERT_ALL).contentType(APPLICATION_NDJSON_VALUE).content("{\"name\":\"Kamil\"\n{"));
+
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(personService);
+        }
+    }
+
     @Nested
     class Update {
 
@@ -219,7 +921,40 @@ class PersonControllerTest {
             reset(personService);
         }
 
-        // FIXME Implement more tests
+        @Test
+        void should_return_ok_including_etag_if_version_matches() throws Exception {
+            Long id = nextLong();
+            PersonInput personInput = new PersonInput("Kamil", 33);
+            given(personService.update(eq(id), eq(personInput), any(LongPredicate.class)))
+                .willReturn(of(new Person(id, personInput.getName(), personInput.getAge(), 4L)));
+
+            ResultActions actions = mockMvc.perform(put(PATH_UPDATE, id).header(IF_MATCH, eTag(3L, HAL_JSON))
+                .contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(personInput)).accept(SIREN_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(ETAG, eTag(4L, SIREN_JSON)));
+
+            ArgumentCaptor<LongPredicate> version = ArgumentCaptor.forClass(LongPredicate.class);
+            verify(personService, times(1)).update(eq(id), eq(personInput), version.capture());
+            verifyNoMoreInteractions(personService);
+
+            assertThat(version.getValue().test(3L)).isTrue();
+            assertThat(version.getValue().test(4L)).isFalse();
+        }
+
+        @Test
+        void should_return_precondition_failed_if_version_does_not_match() throws Exception {
+            Long id = nextLong();
+            PersonInput personInput = new PersonInput("Kamil", 33);
+            given(personService.update(eq(id), eq(personInput), any(LongPredicate.class)))
+                .willThrow(new PersonVersionMismatchException(id, 4L));
+
+            ResultActions actions = mockMvc.perform(put(PATH_UPDATE, id).header(IF_MATCH, eTag(3L, SIREN_JSON))
+                .contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(personInput)).accept(SIREN_JSON));
+            actions.andExpect(status().isPreconditionFailed());
+
+            verify(personService, times(1)).update(eq(id), eq(personInput), any(LongPredicate.class));
+            verifyNoMoreInteractions(personService);
+        }
     }
 
     @Nested
@@ -253,5 +988,46 @@ class PersonControllerTest {
             verify(personService, times(1)).delete(id);
             verifyNoMoreInteractions(personService);
         }
+
+        @Test
+        void should_return_precondition_failed_if_version_does_not_match() throws Exception {
+            Long id = nextLong();
+            given(personService.delete(eq(id), any(LongPredicate.class))).willThrow(new PersonVersionMismatchException(id, 4L));
+
+            ResultActions actions = mockMvc.perform(delete(PATH_DELETE, id).header(IF_MATCH, eTag(3L, SIREN_JSON)));
+            actions.andExpect(status().isPreconditionFailed());
+
+            verify(personService, times(1)).delete(eq(id), any(LongPredicate.class));
+            verifyNoMoreInteractions(personService);
+        }
+    }
+
+    private static String eTag(long version, MediaType mediaType) {
+        return PersonController.eTag(version, mediaType.toString());
+    }
+
+    private static String gzipped(String eTag) {
+        return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+    }
+
+    private static List<Person> persons(int count) {
+        return rangeClosed(1, count).mapToObj(id -> new Person(id, "Person " + id, (int) id % 100)).collect(toList());
+    }
+
+    private static String gunzip(byte[] content) throws Exception {
+        try (Reader body = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(content)), UTF_8)) {
+            return CharStreams.toString(body);
+        }
+    }
+
+    private static JsonNode tree(ResultActions actions, ObjectMapper objectMapper) throws Exception {
+        return objectMapper.readTree(actions.andReturn().getResponse().getContentAsByteArray());
+    }
+
+    private static MultiValueMap<String, String> pageableParams(Pageable pageable) {
+        MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+        map.add("page", "" + pageable.getPageNumber());
+        map.add("size", "" + pageable.getPageSize());
+        return map;
     }
 }
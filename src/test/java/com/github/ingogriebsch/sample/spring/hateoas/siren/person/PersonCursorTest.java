@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.Sort.by;
+import static org.springframework.data.domain.Sort.unsorted;
+import static org.springframework.data.domain.Sort.Direction.DESC;
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.data.domain.Sort.Order.desc;
+
+import java.util.Base64;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonCursorTest {
+
+    @Nested
+    class Parse {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> PersonCursor.parse(null, unsorted()));
+            assertThrows(IllegalArgumentException.class, () -> PersonCursor.parse("", null));
+        }
+
+        @Test
+        void should_start_with_id_order_if_token_is_empty_and_unsorted() throws Exception {
+            Optional<PersonCursor> cursor = PersonCursor.parse("", unsorted());
+            assertThat(cursor).contains(new PersonCursor(asc("id"), null));
+        }
+
+        @Test
+        void should_start_with_requested_order_if_token_is_empty() throws Exception {
+            Optional<PersonCursor> cursor = PersonCursor.parse("", by(DESC, "age"));
+            assertThat(cursor).contains(new PersonCursor(desc("age"), null));
+        }
+
+        @Test
+        void should_return_empty_optional_if_sort_is_not_supported() throws Exception {
+            assertThat(PersonCursor.parse("", by("unknown"))).isEmpty();
+            assertThat(PersonCursor.parse("", by("name", "age"))).isEmpty();
+        }
+
+        @Test
+        void should_return_empty_optional_if_token_is_malformed() throws Exception {
+            assertThat(PersonCursor.parse("%%%", unsorted())).isEmpty();
+            assertThat(PersonCursor.parse("aWQ", unsorted())).isEmpty();
+            assertThat(PersonCursor.parse(token("unknown,ASC,1,"), unsorted())).isEmpty();
+            assertThat(PersonCursor.parse(token("age,UP,1,42"), unsorted())).isEmpty();
+            assertThat(PersonCursor.parse(token("age,ASC,1,old"), unsorted())).isEmpty();
+        }
+    }
+
+    @Nested
+    class Encode {
+
+        @Test
+        void should_return_token_that_parses_to_equal_cursor() throws Exception {
+            PersonCursor name = new PersonCursor(desc("name"), new Person(7L, "Mary, Jane", null));
+            assertThat(PersonCursor.parse(name.encode(), unsorted())).contains(name);
+
+            PersonCursor age = new PersonCursor(asc("age"), new Person(3L, null, 42));
+            assertThat(PersonCursor.parse(age.encode(), unsorted())).contains(age);
+
+            PersonCursor id = new PersonCursor(asc("id"), new Person(11L, null, null));
+            assertThat(PersonCursor.parse(id.encode(), unsorted())).contains(id);
+        }
+
+        @Test
+        void should_return_url_safe_token() throws Exception {
+            PersonCursor cursor = new PersonCursor(asc("name"), new Person(1L, "???>>>", null));
+            assertThat(cursor.encode()).matches("[A-Za-z0-9_-]+");
+        }
+    }
+
+    private static String token(String value) {
+        return Base64.getUrlEncoder().encodeToString(value.getBytes(UTF_8));
+    }
+}
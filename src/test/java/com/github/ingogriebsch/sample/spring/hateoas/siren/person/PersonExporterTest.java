@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonExporterTest {
+
+    private final PersonExporter personExporter = new PersonExporter(new ObjectMapper());
+
+    @Nested
+    class Export {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> personExporter.export(null, new ByteArrayOutputStream()));
+            assertThrows(IllegalArgumentException.class, () -> personExporter.export(Stream.empty(), null));
+        }
+
+        @Test
+        void should_write_one_line_per_person() throws Exception {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            long count = personExporter.export(Stream.of(new Person(1L, "Mary", 20), new Person(2L, "Paul", 30)), output);
+            assertThat(count).isEqualTo(2);
+            assertThat(output.toString(UTF_8.name()))
+                .isEqualTo("{\"id\":1,\"name\":\"Mary\",\"age\":20}\n{\"id\":2,\"name\":\"Paul\",\"age\":30}\n");
+        }
+
+        @Test
+        void should_write_nothing_if_no_persons_are_available() throws Exception {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            assertThat(personExporter.export(Stream.empty(), output)).isZero();
+            assertThat(output.size()).isZero();
+        }
+
+        @Test
+        void should_export_millions_of_persons_in_constant_memory() throws Exception {
+            int persons = 5_000_000;
+            LineCountingOutputStream output = new LineCountingOutputStream();
+
+            long count = personExporter.export(
+                rangeClosed(1, persons).mapToObj(id -> new Person(id, "Person with a rather long name " + id, 42)), output);
+            assertThat(count).isEqualTo(persons);
+            assertThat(output.lines).isEqualTo(persons);
+            assertThat(output.bytes).isGreaterThan(256L * 1024 * 1024);
+        }
+    }
+
+    private static class LineCountingOutputStream extends OutputStream {
+
+        private long bytes;
+        private long lines;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+}
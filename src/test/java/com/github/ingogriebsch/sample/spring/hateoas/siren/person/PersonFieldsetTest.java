@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.Link;
+
+class PersonFieldsetTest {
+
+    @Nested
+    class Parse {
+
+        @Test
+        void should_return_all_fields_links_and_actions_if_nothing_is_requested() throws Exception {
+            assertThat(PersonFieldset.parse(null, null)).contains(PersonFieldset.ALL);
+        }
+
+        @Test
+        void should_return_the_requested_fields() throws Exception {
+            PersonFieldset fieldset = PersonFieldset.parse(" name, age ,", null).get();
+
+            assertThat(fieldset.getFields()).containsExactly("name", "age");
+            assertThat(fieldset.isLinks()).isTrue();
+            assertThat(fieldset.isActions()).isTrue();
+        }
+
+        @Test
+        void should_omit_actions_only_if_requested() throws Exception {
+            PersonFieldset fieldset = PersonFieldset.parse(null, "actions").get();
+
+            assertThat(fieldset.isLinks()).isTrue();
+            assertThat(fieldset.isActions()).isFalse();
+        }
+
+        @Test
+        void should_omit_actions_as_well_if_links_are_omitted() throws Exception {
+            PersonFieldset fieldset = PersonFieldset.parse(null, "links").get();
+
+            assertThat(fieldset.isLinks()).isFalse();
+            assertThat(fieldset.isActions()).isFalse();
+        }
+
+        @Test
+        void should_return_empty_if_unknown_fields_or_omissions_are_requested() throws Exception {
+            assertThat(PersonFieldset.parse("name,version", null)).isEmpty();
+            assertThat(PersonFieldset.parse(null, "links,entities")).isEmpty();
+        }
+    }
+
+    @Nested
+    class Apply {
+
+        @Test
+        void should_keep_the_fieldset_in_links() throws Exception {
+            Link link = Link.of("http://localhost/persons?page=1&size=20", "next");
+
+            assertThat(PersonFieldset.ALL.apply(link)).isSameAs(link);
+            assertThat(PersonFieldset.parse("name", "actions").get().apply(link).getHref())
+                .isEqualTo("http://localhost/persons?page=1&size=20&fields=name&omit=actions");
+            assertThat(PersonFieldset.parse(null, "links,actions").get().apply(link).getHref())
+                .isEqualTo("http://localhost/persons?page=1&size=20&omit=links");
+        }
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> PersonFieldset.ALL.apply((Person) null));
+            assertThrows(IllegalArgumentException.class, () -> PersonFieldset.ALL.apply((Link) null));
+        }
+
+        @Test
+        void should_return_the_same_person_if_all_fields_are_selected() throws Exception {
+            Person person = new Person(1L, "Ingo", 44);
+            assertThat(PersonFieldset.ALL.apply(person)).isSameAs(person);
+        }
+
+        @Test
+        void should_return_a_copy_holding_the_selected_fields_only() throws Exception {
+            Person person = new Person(1L, "Ingo", 44, 3L);
+
+            Person applied = PersonFieldset.parse("age", null).get().apply(person);
+            assertThat(applied).isEqualTo(new Person(null, null, 44));
+            assertThat(applied.getVersion()).isEqualTo(3L);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Optional.empty;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonLoaderTest.loader;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonLoaderTest.properties;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.actuate.health.Status.DOWN;
+import static org.springframework.boot.actuate.health.Status.OUT_OF_SERVICE;
+import static org.springframework.boot.actuate.health.Status.UP;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Health;
+
+class PersonHealthIndicatorTest {
+
+    @Nested
+    class GetHealth {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_out_of_service_while_persons_are_loading() {
+            PersonStore persons = new ObjectPersonStore();
+            PersonLoader personLoader = loader(persons, empty(), properties(false, null));
+
+            Health health = new PersonHealthIndicator(personLoader, new PersonService(persons)).health();
+            assertThat(health.getStatus()).isEqualTo(OUT_OF_SERVICE);
+        }
+
+        @Test
+        void should_return_up_once_persons_are_loaded() {
+            PersonStore persons = new ObjectPersonStore();
+            PersonLoader personLoader = loader(persons, empty(), properties(false, null));
+            personLoader.afterPropertiesSet();
+
+            Health health = new PersonHealthIndicator(personLoader, new PersonService(persons)).health();
+            assertThat(health.getStatus()).isEqualTo(UP);
+            assertThat(health.getDetails()).containsEntry("persons", 3L);
+        }
+
+        @Test
+        void should_return_down_if_loading_failed() throws Exception {
+            PersonStore persons = new ObjectPersonStore();
+            PersonLoader personLoader = loader(persons, empty(), properties(true, directory.resolve("missing")));
+            personLoader.afterPropertiesSet();
+            personLoader.loaded().handle((c, e) -> c).get(10, SECONDS);
+
+            Health health = new PersonHealthIndicator(personLoader, new PersonService(persons)).health();
+            assertThat(health.getStatus()).isEqualTo(DOWN);
+            assertThat(health.getDetails()).containsKey("error");
+        }
+    }
+}
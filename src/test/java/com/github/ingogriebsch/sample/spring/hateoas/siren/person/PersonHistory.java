@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import lombok.NonNull;
+import lombok.Value;
+
+// Checks concurrent updates and reads of a single person against an atomic register.
+class PersonHistory {
+
+    private static final Operation INITIAL = new Operation(null, null, Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final String initial;
+    private final Queue<Operation> writes = new ConcurrentLinkedQueue<>();
+    private final Queue<Operation> reads = new ConcurrentLinkedQueue<>();
+
+    PersonHistory(@NonNull String initial) {
+        this.initial = initial;
+    }
+
+    // Every update has to write a unique name. The age is derived from it, so torn reads become visible.
+    static PersonInput input(@NonNull String name) {
+        return new PersonInput(name, age(name));
+    }
+
+    void update(@NonNull String name, @NonNull Function<PersonInput, Optional<Person>> operation) {
+        long invoked = System.nanoTime();
+        operation.apply(input(name));
+        write(name, invoked, System.nanoTime());
+    }
+
+    void read(@NonNull Supplier<Optional<Person>> operation) {
+        long invoked = System.nanoTime();
+        Person person = operation.get().orElseThrow(IllegalStateException::new);
+        read(person.getName(), person.getAge(), invoked, System.nanoTime());
+    }
+
+    void write(@NonNull String name, long invoked, long returned) {
+        writes.add(new Operation(name, age(name), invoked, returned));
+    }
+
+    void read(String name, Integer age, long invoked, long returned) {
+        reads.add(new Operation(name, age, invoked, returned));
+    }
+
+    List<String> violations() {
+        List<String> violations = new ArrayList<>();
+        Map<String, Operation> written = writes.stream().collect(toMap(Operation::getName, Function.identity()));
+
+        List<Operation> byInvocation = new ArrayList<>(writes);
+        byInvocation.sort(comparingLong(Operation::getInvoked));
+        long[] earliestReturn = new long[byInvocation.size() + 1];
+        earliestReturn[byInvocation.size()] = Long.MAX_VALUE;
+        for (int i = byInvocation.size() - 1; i >= 0; i--) {
+            earliestReturn[i] = Math.min(earliestReturn[i + 1], byInvocation.get(i).getReturned());
+        }
+
+        List<Operation> byReturn = new ArrayList<>(reads);
+        byReturn.sort(comparingLong(Operation::getReturned));
+        long[] latestInvocation = new long[byReturn.size()];
+        for (int i = 0; i < byReturn.size(); i++) {
+            Operation read = byReturn.get(i);
+            Operation write = initial.equals(read.getName()) ? INITIAL : written.get(read.getName());
+            if (write == null) {
+                violations.add("Read of a value that was never written: " + read);
+                return violations;
+            }
+
+            if (!initial.equals(read.getName()) && !age(read.getName()).equals(read.getAge())) {
+                violations.add("Torn read: " + read);
+            }
+            if (write.getInvoked() > read.getReturned()) {
+                violations.add("Read of a value before it was written: " + read);
+            }
+            // Some other write started after the observed one was done and was itself done before the read started.
+            if (earliestReturn[firstInvokedAfter(byInvocation, write.getReturned())] < read.getInvoked()) {
+                violations.add("Read of an overwritten value: " + read);
+            }
+            // Some earlier read already observed a write that started after the observed one was done.
+            int before = lastReturnedBefore(byReturn, read.getInvoked());
+            if (before >= 0 && latestInvocation[before] > write.getReturned()) {
+                violations.add("Read of a value older than an earlier read: " + read);
+            }
+            latestInvocation[i] = Math.max(i > 0 ? latestInvocation[i - 1] : Long.MIN_VALUE, write.getInvoked());
+        }
+        return violations;
+    }
+
+    private static int firstInvokedAfter(List<Operation> writes, long time) {
+        int low = 0;
+        int high = writes.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (writes.get(middle).getInvoked() <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int lastReturnedBefore(List<Operation> reads, long time) {
+        int low = 0;
+        int high = reads.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (reads.get(middle).getReturned() < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    private static Integer age(String name) {
+        return Math.floorMod(name.hashCode(), 100);
+    }
+
+    @Value
+    private static class Operation {
+
+        String name;
+        Integer age;
+        long invoked;
+        long returned;
+    }
+}
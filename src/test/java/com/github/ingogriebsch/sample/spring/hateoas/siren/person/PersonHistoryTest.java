@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonHistoryTest {
+
+    @Nested
+    class Violations {
+
+        @Test
+        void should_accept_reads_of_overlapping_writes() throws Exception {
+            PersonHistory history = new PersonHistory("initial");
+            history.write("a", 10, 20);
+            history.write("b", 15, 40);
+            history.read("initial", null, 12, 14);
+            history.read("b", age("b"), 16, 18);
+            history.read("a", age("a"), 25, 30);
+            history.read("b", age("b"), 45, 50);
+
+            assertThat(history.violations()).isEmpty();
+        }
+
+        @Test
+        void should_report_read_of_overwritten_value() throws Exception {
+            PersonHistory history = new PersonHistory("initial");
+            history.write("a", 10, 20);
+            history.write("b", 30, 40);
+            history.read("a", age("a"), 45, 50);
+
+            assertThat(history.violations()).hasSize(1).allMatch(v -> v.startsWith("Read of an overwritten value"));
+        }
+
+        @Test
+        void should_report_read_of_initial_value_after_write() throws Exception {
+            PersonHistory history = new PersonHistory("initial");
+            history.write("a", 10, 20);
+            history.read("initial", null, 25, 30);
+
+            assertThat(history.violations()).hasSize(1).allMatch(v -> v.startsWith("Read of an overwritten value"));
+        }
+
+        @Test
+        void should_report_read_of_value_before_it_was_written() throws Exception {
+            PersonHistory history = new PersonHistory("initial");
+            history.write("a", 30, 40);
+            history.read("a", age("a"), 10, 20);
+
+            assertThat(history.violations()).hasSize(1).allMatch(v -> v.startsWith("Read of a value before it was written"));
+        }
+
+        @Test
+        void should_report_read_of_value_older_than_earlier_read() throws Exception {
+            PersonHistory history = new PersonHistory("initial");
+            history.write("a", 10, 20);
+            history.write("b", 30, 60);
+            history.read("b", age("b"), 35, 40);
+            history.read("a", age("a"), 45, 50);
+
+            assertThat(history.violations()).hasSize(1).allMatch(v -> v.startsWith("Read of a value older than an earlier read"));
+        }
+
+        @Test
+        void should_report_torn_read() throws Exception {
+            PersonHistory history = new PersonHistory("initial");
+            history.write("a", 10, 20);
+            history.read("a", age("a") + 1, 25, 30);
+
+            assertThat(history.violations()).hasSize(1).allMatch(v -> v.startsWith("Torn read"));
+        }
+    }
+
+    private static Integer age(String name) {
+        return PersonHistory.input(name).getAge();
+    }
+}
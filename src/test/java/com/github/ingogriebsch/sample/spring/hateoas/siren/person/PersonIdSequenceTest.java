@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
+import static org.apache.commons.lang3.RandomUtils.nextInt;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonIdSequenceTest {
+
+    @Nested
+    class Next {
+
+        @Test
+        void should_return_monotonic_ids_starting_with_one() throws Exception {
+            PersonIdSequence ids = new PersonIdSequence();
+            assertThat(ids.next()).isEqualTo(1L);
+            assertThat(ids.next()).isEqualTo(2L);
+            assertThat(ids.next()).isEqualTo(3L);
+        }
+
+        @Test
+        void should_not_return_duplicates_if_called_concurrently() throws Exception {
+            PersonIdSequence ids = new PersonIdSequence();
+            Set<Long> allocated = ConcurrentHashMap.newKeySet();
+            int threads = 8, count = 10_000;
+
+            ExecutorService executor = newFixedThreadPool(threads);
+            try {
+                List<Callable<Void>> callables = range(0, threads).mapToObj(t -> (Callable<Void>) () -> {
+                    range(0, count).forEach(i -> allocated.add(ids.next()));
+                    return null;
+                }).collect(toList());
+                for (Future<Void> future : executor.invokeAll(callables)) {
+                    future.get(10, SECONDS);
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertThat(allocated).hasSize(threads * count);
+            assertThat(ids.next()).isEqualTo(threads * count + 1L);
+        }
+    }
+
+    @Nested
+    class Reserve {
+
+        @Test
+        void should_throw_exception_if_called_with_negative_count() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new PersonIdSequence().reserve(-1));
+        }
+
+        @Test
+        void should_return_contiguous_block_and_continue_after_it() throws Exception {
+            PersonIdSequence ids = new PersonIdSequence();
+            ids.next();
+
+            assertThat(ids.reserve(5)).containsExactly(2L, 3L, 4L, 5L, 6L);
+            assertThat(ids.next()).isEqualTo(7L);
+        }
+
+        @Test
+        void should_return_empty_block_if_count_is_zero() throws Exception {
+            PersonIdSequence ids = new PersonIdSequence();
+
+            assertThat(ids.reserve(0)).isEmpty();
+            assertThat(ids.next()).isEqualTo(1L);
+        }
+    }
+
+    @Nested
+    class Seed {
+
+        @Test
+        void should_continue_after_highest_known_id() throws Exception {
+            PersonStore persons = new ObjectPersonStore();
+            long id = nextInt(10, 1000);
+            persons.insert(new Person(id, randomAlphabetic(10), nextInt(1, 100)));
+
+            PersonIdSequence ids = new PersonIdSequence();
+            ids.seed(persons);
+            assertThat(ids.next()).isEqualTo(id + 1L);
+        }
+
+        @Test
+        void should_not_move_backwards_if_store_is_behind() throws Exception {
+            PersonIdSequence ids = new PersonIdSequence();
+            ids.reserve(10);
+
+            ids.seed(new ObjectPersonStore());
+            assertThat(ids.next()).isEqualTo(11L);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.ForkJoinPool.commonPool;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersonImporterTest {
+
+    @Nested
+    class ImportFrom {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            PersonImporter personImporter = new PersonImporter(new ObjectMapper());
+            Path file = directory.resolve("persons.ndjson");
+
+            assertThrows(IllegalArgumentException.class, () -> personImporter.importFrom(null, commonPool(), 1, c -> {
+            }));
+            assertThrows(IllegalArgumentException.class, () -> personImporter.importFrom(file, null, 1, c -> {
+            }));
+            assertThrows(IllegalArgumentException.class, () -> personImporter.importFrom(file, commonPool(), 1, null));
+        }
+
+        @Test
+        void should_read_persons_written_by_the_exporter_in_ranges_and_chunks() throws Exception {
+            Path file = directory.resolve("persons.ndjson");
+            try (OutputStream output = Files.newOutputStream(file)) {
+                new PersonExporter(new ObjectMapper())
+                    .export(rangeClosed(1, 1000).mapToObj(id -> new Person(id, "Person " + id, (int) (id % 100))), output);
+            }
+
+            PersonStore persons = new ObjectPersonStore();
+            List<List<Person>> chunks = new CopyOnWriteArrayList<>();
+            long count = new PersonImporter(new ObjectMapper(), 1000).importFrom(file, commonPool(), 10, c -> {
+                chunks.add(c);
+                persons.insertAll(c);
+            });
+
+            assertThat(count).isEqualTo(1000);
+            assertThat(persons.size()).isEqualTo(1000);
+            assertThat(persons.get(1000L)).hasValue(new Person(1000L, "Person 1000", 0));
+            assertThat(chunks).allSatisfy(c -> assertThat(c).hasSizeBetween(1, 10));
+        }
+
+        @Test
+        void should_read_lines_longer_than_a_range() throws Exception {
+            Path file = directory.resolve("persons.ndjson");
+            Files.write(file, "{\"id\":1,\"name\":\"Mary\",\"age\":20}\n\n{\"id\":2,\"name\":\"Paul\"}".getBytes(UTF_8));
+
+            List<Person> persons = new CopyOnWriteArrayList<>();
+            long count = new PersonImporter(new ObjectMapper(), 3).importFrom(file, commonPool(), 10, persons::addAll);
+
+            assertThat(count).isEqualTo(2);
+            assertThat(persons).containsExactlyInAnyOrder(new Person(1L, "Mary", 20), new Person(2L, "Paul", null));
+        }
+
+        @Test
+        void should_throw_exception_if_person_has_no_id() throws Exception {
+            Path file = directory.resolve("persons.ndjson");
+            Files.write(file, "{\"name\":\"Mary\",\"age\":20}\n".getBytes(UTF_8));
+
+            assertThrows(IOException.class, () -> new PersonImporter(new ObjectMapper()).importFrom(file, commonPool(), 10, c -> {
+            }));
+        }
+
+        @Test
+        void should_throw_exception_if_file_is_not_readable() throws Exception {
+            Path file = directory.resolve("persons.ndjson");
+            Files.write(file, "{\"id\":1,\"name\":\n".getBytes(UTF_8));
+
+            assertThrows(IOException.class, () -> new PersonImporter(new ObjectMapper()).importFrom(file, commonPool(), 10, c -> {
+            }));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.ALWAYS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersonLoaderTest {
+
+    @Nested
+    class AfterPropertiesSet {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_insert_default_persons_if_nothing_is_available() throws Exception {
+            PersonStore persons = new ObjectPersonStore();
+            PersonLoader personLoader = loader(persons, Optional.empty(), properties(false, null));
+            assertThat(personLoader.isReady()).isFalse();
+
+            personLoader.afterPropertiesSet();
+
+            assertThat(personLoader.isReady()).isTrue();
+            assertThat(persons.size()).isEqualTo(3);
+        }
+
+        @Test
+        void should_load_seed_file_in_background() throws Exception {
+            Path seedFile = directory.resolve("persons.ndjson");
+            Files.write(seedFile,
+                "{\"id\":7,\"name\":\"Mary\",\"age\":20}\n{\"id\":9,\"name\":\"Paul\",\"age\":30}\n".getBytes(UTF_8));
+
+            PersonStore persons = new ObjectPersonStore();
+            PersonService personService = new PersonService(persons);
+            PersonLoader personLoader = loader(persons, personService, Optional.empty(), properties(true, seedFile));
+            personLoader.afterPropertiesSet();
+
+            assertThat(personLoader.loaded().get(10, SECONDS)).isEqualTo(2L);
+            assertThat(personLoader.isReady()).isTrue();
+            assertThat(personService.insert(new PersonInput("Peter", 40)).getId()).isEqualTo(10L);
+        }
+
+        @Test
+        void should_prefer_recovered_persons_over_seed_file() throws Exception {
+            Path seedFile = directory.resolve("persons.ndjson");
+            Files.write(seedFile, "{\"id\":7,\"name\":\"Mary\",\"age\":20}\n".getBytes(UTF_8));
+            try (PersonPersistence persistence = persistence(directory)) {
+                new PersonService(new ObjectPersonStore(), persistence.journal()).insert(new PersonInput("Paul", 30));
+            }
+
+            PersonStore persons = new ObjectPersonStore();
+            try (PersonPersistence persistence = persistence(directory)) {
+                loader(persons, Optional.of(persistence), properties(false, seedFile)).afterPropertiesSet();
+            }
+
+            assertThat(persons.size()).isEqualTo(1);
+            assertThat(persons.get(1L)).hasValueSatisfying(p -> assertThat(p.getName()).isEqualTo("Paul"));
+        }
+
+        @Test
+        void should_persist_persons_loaded_from_seed_file() throws Exception {
+            Path seedFile = directory.resolve("persons.ndjson");
+            Files.write(seedFile, "{\"id\":7,\"name\":\"Mary\",\"age\":20}\n".getBytes(UTF_8));
+            try (PersonPersistence persistence = persistence(directory.resolve("data"))) {
+                loader(new ObjectPersonStore(), Optional.of(persistence), properties(false, seedFile)).afterPropertiesSet();
+            }
+
+            try (PersonPersistence persistence = persistence(directory.resolve("data"))) {
+                assertThat(persistence.recover().get(7L)).hasValue(new Person(7L, "Mary", 20));
+            }
+        }
+
+        @Test
+        void should_throw_exception_if_loading_fails() throws Exception {
+            PersonLoader personLoader =
+                loader(new ObjectPersonStore(), Optional.empty(), properties(false, directory.resolve("missing")));
+
+            assertThrows(CompletionException.class, () -> personLoader.afterPropertiesSet());
+            assertThat(personLoader.isReady()).isFalse();
+        }
+
+        @Test
+        void should_not_become_ready_if_loading_in_background_fails() throws Exception {
+            PersonLoader personLoader =
+                loader(new ObjectPersonStore(), Optional.empty(), properties(true, directory.resolve("missing")));
+            personLoader.afterPropertiesSet();
+
+            assertThrows(ExecutionException.class, () -> personLoader.loaded().get(10, SECONDS));
+            assertThat(personLoader.isReady()).isFalse();
+        }
+    }
+
+    static PersonLoader loader(PersonStore persons, Optional<PersonPersistence> persistence, PersonStartupProperties properties) {
+        PersonJournal journal = persistence.map(PersonPersistence::journal).orElse(PersonJournal.NONE);
+        return loader(persons, new PersonService(persons, journal), persistence, properties);
+    }
+
+    private static PersonLoader loader(PersonStore persons, PersonService personService, Optional<PersonPersistence> persistence,
+        PersonStartupProperties properties) {
+        return new PersonLoader(persons, personService, new PersonImporter(new ObjectMapper()), persistence, properties,
+            new PersonPersistenceProperties());
+    }
+
+    static PersonStartupProperties properties(boolean background, Path seedFile) {
+        PersonStartupProperties properties = new PersonStartupProperties();
+        properties.setBackground(background);
+        properties.setSeedFile(seedFile);
+        properties.setParallelism(2);
+        return properties;
+    }
+
+    private static PersonPersistence persistence(Path directory) throws Exception {
+        return new PersonPersistence(directory, ALWAYS, 1, Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,161 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.HAL_CBOR;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.HAL_SMILE;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_CBOR;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonController.SIREN_SMILE;
+import static com.google.common.collect.Lists.newArrayList;
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.hateoas.MediaTypes.HAL_JSON;
+import static org.springframework.util.unit.DataSize.ofKilobytes;
+
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.server.mvc.TypeConstrainedMappingJackson2HttpMessageConverter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+class PersonMessageConverterRegistrarTest {
+
+    @Nested
+    class PostProcessBeforeInitialization {
+
+        @Test
+        void should_register_person_converters_ahead_of_the_hypermedia_converters() throws Exception {
+            HttpMessageConverter<?> siren = converter(SIREN_JSON);
+            HttpMessageConverter<?> hal = converter(HAL_JSON);
+            HttpMessageConverter<?> json = new MappingJackson2HttpMessageConverter();
+
+            RequestMappingHandlerAdapter adapter = new RequestMappingHandlerAdapter();
+            adapter.setMessageConverters(newArrayList(siren, hal, json));
+            registrar().postProcessBeforeInitialization(adapter, "requestMappingHandlerAdapter");
+
+            List<HttpMessageConverter<?>> converters = adapter.getMessageConverters();
+            assertThat(converters).hasSize(9);
+            assertThat(converters.get(0)).isInstanceOf(CachedPersonModelConverter.class);
+            assertThat(converters.get(0).getSupportedMediaTypes()).containsExactly(SIREN_JSON, HAL_JSON,
+                json.getSupportedMediaTypes().get(0), SIREN_CBOR, SIREN_SMILE, HAL_CBOR, HAL_SMILE);
+            assertThat(converters.get(1)).isInstanceOf(PersonPagedModelConverter.class);
+            assertThat(converters.get(2)).isSameAs(siren);
+            assertThat(converters.get(5)).isSameAs(hal);
+            assertThat(converters.get(8)).isSameAs(json);
+        }
+
+        @Test
+        void should_register_binary_converters_next_to_the_hypermedia_converters() throws Exception {
+            RequestMappingHandlerAdapter adapter = new RequestMappingHandlerAdapter();
+            adapter.setMessageConverters(newArrayList(converter(SIREN_JSON), converter(HAL_JSON)));
+            registrar().postProcessBeforeInitialization(adapter, "requestMappingHandlerAdapter");
+
+            List<HttpMessageConverter<?>> converters = adapter.getMessageConverters();
+            assertThat(converters.get(3)).isInstanceOf(BinaryHypermediaMessageConverter.class);
+            assertThat(converters.get(3).getSupportedMediaTypes()).containsExactly(SIREN_CBOR);
+            assertThat(converters.get(4).getSupportedMediaTypes()).containsExactly(SIREN_SMILE);
+            assertThat(converters.get(6)).isInstanceOf(BinaryHypermediaMessageConverter.class);
+            assertThat(converters.get(6).getSupportedMediaTypes()).containsExactly(HAL_CBOR);
+            assertThat(converters.get(7).getSupportedMediaTypes()).containsExactly(HAL_SMILE);
+        }
+
+        @Test
+        void should_meter_the_hypermedia_converters_if_detailed_metrics_are_enabled() throws Exception {
+            HttpMessageConverter<?> json = new MappingJackson2HttpMessageConverter();
+
+            RequestMappingHandlerAdapter adapter = new RequestMappingHandlerAdapter();
+            adapter.setMessageConverters(newArrayList(converter(SIREN_JSON), converter(HAL_JSON), json));
+            registrar(new PersonMetrics(new SimpleMeterRegistry(), new PersonResponseCache(ofKilobytes(1)), true))
+                .postProcessBeforeInitialization(adapter, "requestMappingHandlerAdapter");
+
+            List<HttpMessageConverter<?>> converters = adapter.getMessageConverters();
+            assertThat(converters).hasSize(9);
+            assertThat(converters.subList(0, 2)).allMatch(c -> c instanceof MeteredHttpMessageConverter);
+            assertThat(converters.subList(2, 8)).allMatch(c -> c instanceof MeteredHttpMessageConverter.Generic);
+            assertThat(converters.get(8)).isSameAs(json);
+        }
+
+        @Test
+        void should_not_meter_the_converters_if_detailed_metrics_are_disabled() throws Exception {
+            RequestMappingHandlerAdapter adapter = new RequestMappingHandlerAdapter();
+            adapter.setMessageConverters(newArrayList(converter(SIREN_JSON), converter(HAL_JSON)));
+            registrar(new PersonMetrics(new SimpleMeterRegistry(), new PersonResponseCache(ofKilobytes(1)), false))
+                .postProcessBeforeInitialization(adapter, "requestMappingHandlerAdapter");
+
+            assertThat(adapter.getMessageConverters()).noneMatch(c -> c instanceof MeteredHttpMessageConverter);
+        }
+
+        @Test
+        void should_compress_the_hypermedia_converters_if_compression_is_enabled() throws Exception {
+            HttpMessageConverter<?> json = new MappingJackson2HttpMessageConverter();
+
+            RequestMappingHandlerAdapter adapter = new RequestMappingHandlerAdapter();
+            adapter.setMessageConverters(newArrayList(converter(SIREN_JSON), converter(HAL_JSON), json));
+            registrar(null, new PersonCompression(true, ofKilobytes(2), 6)).postProcessBeforeInitialization(adapter,
+                "requestMappingHandlerAdapter");
+
+            List<HttpMessageConverter<?>> converters = adapter.getMessageConverters();
+            assertThat(converters).hasSize(9);
+            assertThat(converters.get(0)).isInstanceOf(CachedPersonModelConverter.class);
+            assertThat(converters.get(1)).isInstanceOf(CompressingHttpMessageConverter.class);
+            assertThat(converters.subList(2, 8)).allMatch(c -> c instanceof CompressingHttpMessageConverter.Generic);
+            assertThat(converters.get(8)).isSameAs(json);
+        }
+
+        @Test
+        void should_ignore_other_beans() throws Exception {
+            Object bean = new Object();
+            assertThat(registrar().postProcessBeforeInitialization(bean, "bean")).isSameAs(bean);
+        }
+    }
+
+    private static HttpMessageConverter<?> converter(MediaType mediaType) {
+        MappingJackson2HttpMessageConverter converter =
+            new TypeConstrainedMappingJackson2HttpMessageConverter(RepresentationModel.class);
+        converter.setSupportedMediaTypes(newArrayList(mediaType));
+        return converter;
+    }
+
+    private static PersonMessageConverterRegistrar registrar() {
+        return registrar(null);
+    }
+
+    private static PersonMessageConverterRegistrar registrar(PersonMetrics personMetrics) {
+        return registrar(personMetrics, new PersonCompression(false, ofKilobytes(2), 6));
+    }
+
+    private static PersonMessageConverterRegistrar registrar(PersonMetrics personMetrics, PersonCompression compression) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        if (personMetrics != null) {
+            beanFactory.registerSingleton("personMetrics", personMetrics);
+        }
+        beanFactory.registerSingleton("personResponseCache", new PersonResponseCache(ofKilobytes(1)));
+        beanFactory.registerSingleton("personCompression", compression);
+        return new PersonMessageConverterRegistrar(beanFactory.getBeanProvider(PersonResponseCache.class),
+            beanFactory.getBeanProvider(PersonCompression.class), beanFactory.getBeanProvider(PersonMetrics.class));
+    }
+}
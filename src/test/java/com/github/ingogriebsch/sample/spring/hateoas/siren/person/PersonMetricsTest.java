@@ -0,0 +1,203 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.data.domain.Sort.Order.desc;
+import static org.springframework.hateoas.MediaTypes.HAL_JSON;
+import static org.springframework.util.unit.DataSize.ofKilobytes;
+
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class PersonMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final PersonResponseCache cache = new PersonResponseCache(ofKilobytes(1));
+
+    @Nested
+    class Service {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, true);
+            assertThrows(IllegalArgumentException.class, () -> metrics.service(null, () -> 1));
+            assertThrows(IllegalArgumentException.class, () -> metrics.service("findAll", null));
+        }
+
+        @Test
+        void should_time_the_call_per_endpoint_if_detailed() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, true);
+
+            assertThat(metrics.service("findAll", () -> "persons")).isEqualTo("persons");
+            assertThat(metrics.service("findAll", () -> "persons")).isEqualTo("persons");
+            assertThat(metrics.service("findOne", () -> "person")).isEqualTo("person");
+
+            assertThat(registry.get("person.service").tag("endpoint", "findAll").timer().count()).isEqualTo(2L);
+            assertThat(registry.get("person.service").tag("endpoint", "findOne").timer().count()).isEqualTo(1L);
+        }
+
+        @Test
+        void should_only_call_through_if_not_detailed() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, false);
+
+            assertThat(metrics.service("findAll", () -> "persons")).isEqualTo("persons");
+            assertThat(registry.find("person.service").timer()).isNull();
+        }
+    }
+
+    @Nested
+    class Assembly {
+
+        @Test
+        void should_time_the_call_per_endpoint_if_detailed() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, true);
+
+            assertThat(metrics.assembly("insert", () -> "model")).isEqualTo("model");
+            assertThat(registry.get("person.assembly").tag("endpoint", "insert").timer().count()).isEqualTo(1L);
+        }
+
+        @Test
+        void should_record_deferred_assembly_once_the_request_completed() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, true);
+            ServletRequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+            RequestContextHolder.setRequestAttributes(attributes);
+            try {
+                Function<String, String> assembler = metrics.assembly("findAll", () -> PersonMetrics.deferred(s -> sleep(s)));
+                assertThat(PersonMetrics.deferred()).isZero();
+
+                assertThat(assembler.apply("model")).isEqualTo("model");
+                assertThat(PersonMetrics.deferred()).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(5));
+                assertThat(registry.get("person.assembly").tag("endpoint", "findAll").timer().count()).isZero();
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+                attributes.requestCompleted();
+            }
+
+            Timer timer = registry.get("person.assembly").tag("endpoint", "findAll").timer();
+            assertThat(timer.count()).isEqualTo(1L);
+            assertThat(timer.totalTime(MILLISECONDS)).isGreaterThanOrEqualTo(5.0);
+        }
+
+        @Test
+        void should_keep_resolving_a_model_out_of_serialization() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, true);
+            ServletRequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+            RequestContextHolder.setRequestAttributes(attributes);
+            try {
+                assertThat(PersonMetrics.deferred(() -> metrics.assembly("findOne", () -> sleep("model")))).isEqualTo("model");
+                assertThat(PersonMetrics.deferred()).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(5));
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+                attributes.requestCompleted();
+            }
+
+            assertThat(registry.get("person.assembly").tag("endpoint", "findOne").timer().count()).isEqualTo(1L);
+        }
+
+        private String sleep(String result) {
+            try {
+                MILLISECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+    }
+
+    @Nested
+    class Requested {
+
+        @Test
+        void should_count_page_sizes_and_sort_fields_if_detailed() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, true);
+
+            metrics.requested("findAll", PageRequest.of(0, 20, Sort.by(asc("name"), desc("age"), asc("password"))));
+            metrics.requested("findAll", PageRequest.of(1, 50, Sort.by(asc("name"))));
+
+            assertThat(registry.get("person.page.size").tag("endpoint", "findAll").summary().totalAmount()).isEqualTo(70.0);
+            assertThat(registry.get("person.sort.fields").tags("property", "name", "direction", "asc").counter().count())
+                .isEqualTo(2.0);
+            assertThat(registry.get("person.sort.fields").tags("property", "age", "direction", "desc").counter().count())
+                .isEqualTo(1.0);
+            assertThat(registry.get("person.sort.fields").tags("property", "other", "direction", "asc").counter().count())
+                .isEqualTo(1.0);
+        }
+
+        @Test
+        void should_count_nothing_if_not_detailed() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, false);
+
+            metrics.requested("findAll", PageRequest.of(0, 20, Sort.by("name")));
+            assertThat(registry.getMeters()).allMatch(m -> m.getId().getName().startsWith("person.response-cache"));
+        }
+    }
+
+    @Nested
+    class Serialized {
+
+        @Test
+        void should_record_time_and_bytes_per_media_type() throws Exception {
+            PersonMetrics metrics = new PersonMetrics(registry, cache, true);
+
+            metrics.serialized(new MediaType(HAL_JSON, UTF_8), 1000L, 512L);
+            metrics.serialized(HAL_JSON, 3000L, 256L);
+
+            assertThat(registry.get("person.serialization").tag("media.type", "application/hal+json").timer().count())
+                .isEqualTo(2L);
+            assertThat(registry.get("person.payload").tag("media.type", "application/hal+json").summary().totalAmount())
+                .isEqualTo(768.0);
+        }
+    }
+
+    @Nested
+    class ResponseCache {
+
+        @Test
+        void should_expose_hits_and_misses_of_the_response_cache() throws Exception {
+            new PersonMetrics(registry, cache, false);
+            cache.put(1L, 0L, "variant", new byte[] { 1 });
+            cache.get(1L, 0L, "variant");
+            cache.get(2L, 0L, "variant");
+            cache.get(3L, 0L, "variant");
+
+            assertThat(registry.get("person.response-cache.requests").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1.0);
+            assertThat(registry.get("person.response-cache.requests").tag("result", "miss").functionCounter().count())
+                .isEqualTo(2.0);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.stream.Collectors.toList;
+
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.hateoas.IanaLinkRelations.RELATED;
+import static org.springframework.hateoas.IanaLinkRelations.SELF;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.afford;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+import static org.springframework.http.HttpMethod.POST;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.AffordanceModel;
+import org.springframework.hateoas.AffordanceModel.PropertyMetadata;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class PersonModelAssemblerTest {
+
+    private final PersonModelAssembler assembler =
+        new PersonModelAssembler(new PagedResourcesAssembler<>(new HateoasPageableHandlerMethodArgumentResolver(), null));
+
+    @BeforeEach
+    void before() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/persons");
+        request.setServerName("example.org");
+        request.setServerPort(8080);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void after() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Nested
+    class ToModel {
+
+        @Test
+        void should_add_the_same_self_link_as_a_link_builder_would() throws Exception {
+            Person person = new Person(42L, "Peter", 33);
+
+            EntityModel<Person> model = assembler.toModel(person);
+
+            PersonController controller = methodOn(PersonController.class);
+            Link expected = linkTo(controller.findOne(42L, null, null)).withSelfRel()
+                .andAffordance(afford(controller.update(42L, null, null, null)))
+                .andAffordance(afford(controller.delete(42L, null)));
+
+            assertThat(model.getRequiredLink(SELF)).isEqualTo(expected);
+            assertThat(model.getRequiredLink(SELF).getAffordances()).isEqualTo(expected.getAffordances());
+        }
+
+        @Test
+        void should_only_add_the_selected_fields_and_a_plain_self_link_if_actions_are_omitted() throws Exception {
+            Person person = new Person(42L, "Peter", 33);
+
+            EntityModel<Person> model = assembler.toModel(person, PersonFieldset.parse("name", "actions").get());
+
+            assertThat(model.getContent()).isEqualTo(new Person(null, "Peter", null));
+            assertThat(model.getRequiredLink(SELF).getHref()).endsWith("/persons/42");
+            assertThat(model.getRequiredLink(SELF).getAffordances()).isEmpty();
+        }
+
+        @Test
+        void should_not_add_any_link_if_links_are_omitted() throws Exception {
+            EntityModel<Person> model =
+                assembler.toModel(new Person(42L, "Peter", 33), PersonFieldset.parse(null, "links").get());
+
+            assertThat(model.getContent()).isEqualTo(new Person(42L, "Peter", 33));
+            assertThat(model.getLinks()).isEmpty();
+        }
+    }
+
+    @Nested
+    class ToPagedModel {
+
+        @Test
+        void should_add_the_same_insert_affordance_as_a_link_builder_would() throws Exception {
+            PagedModel<EntityModel<Person>> model =
+                assembler.toPagedModel(new PageImpl<>(ImmutableList.of(new Person(1L, "Peter", 33)), of(0, 20), 1));
+
+            assertThat(model.getRequiredLink(SELF).getAffordances())
+                .contains(afford(methodOn(PersonController.class).insert(null, null)));
+        }
+
+        @Test
+        void should_add_an_insert_all_affordance_describing_a_single_item() throws Exception {
+            PagedModel<EntityModel<Person>> model = assembler.toPagedModel(new PageImpl<>(ImmutableList.of(), of(0, 20), 0));
+
+            List<AffordanceModel> affordances = model.getRequiredLink(SELF).getAffordances().stream()
+                .<AffordanceModel> map(a -> a.getAffordanceModel(SIREN_JSON)).collect(toList());
+            AffordanceModel insert = affordances.stream().filter(a -> a.getName().equals("insert")).findFirst().get();
+            AffordanceModel insertAll = affordances.stream().filter(a -> a.getName().equals("insertAll")).findFirst().get();
+
+            assertThat(insertAll.getHttpMethod()).isEqualTo(POST);
+            assertThat(insertAll.getURI()).isEqualTo("http://example.org:8080/persons/batch");
+            assertThat(insertAll.getInput().stream().map(PropertyMetadata::getName))
+                .containsExactlyElementsOf(insert.getInput().stream().map(PropertyMetadata::getName).collect(toList()));
+        }
+    }
+
+    @Nested
+    class ToSlicedModel {
+
+        @Test
+        void should_apply_the_fieldset_to_every_person() throws Exception {
+            PersonCursor cursor = PersonCursor.parse("", Sort.unsorted()).get();
+            Slice<Person> slice = new SliceImpl<>(ImmutableList.of(new Person(1L, "Peter", 33), new Person(2L, "Paul", 44)));
+
+            CollectionModel<EntityModel<Person>> model =
+                assembler.toSlicedModel(slice, cursor, PersonFieldset.parse("id,age", "links").get());
+
+            assertThat(model.getContent()).extracting(EntityModel::getContent).containsExactly(new Person(1L, null, 33),
+                new Person(2L, null, 44));
+            assertThat(model.getContent()).allMatch(m -> m.getLinks().isEmpty());
+        }
+    }
+
+    @Nested
+    class ToBatchModel {
+
+        @Test
+        void should_link_created_persons_only() throws Exception {
+            CollectionModel<EntityModel<PersonBatchResult>> model =
+                assembler.toBatchModel(ImmutableList.of(PersonBatchResult.created(0, new Person(42L, "Peter", 33)),
+                    PersonBatchResult.rejected(1, ImmutableList.of("age"))));
+
+            assertThat(model.getRequiredLink(SELF).getHref()).isEqualTo("http://example.org:8080/persons/batch");
+            assertThat(model.getContent()).extracting(m -> m.getLinks().toList())
+                .containsExactly(ImmutableList.of(Link.of("http://example.org:8080/persons/42", RELATED)), ImmutableList.of());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.lang.Integer.signum;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonNameArena.NULL;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonNameArena.encode;
+import static org.apache.commons.lang3.RandomStringUtils.random;
+import static org.apache.commons.lang3.RandomUtils.nextInt;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonNameArenaTest {
+
+    @Nested
+    class Intern {
+
+        @Test
+        void should_return_same_code_for_equal_names() throws Exception {
+            PersonNameArena arena = new PersonNameArena();
+
+            int mary = arena.intern("Mary");
+            assertThat(arena.intern(new String("Mary"))).isEqualTo(mary);
+            assertThat(arena.intern("mary")).isNotEqualTo(mary);
+            assertThat(arena.size()).isEqualTo(2);
+        }
+
+        @Test
+        void should_return_null_code_for_null() throws Exception {
+            PersonNameArena arena = new PersonNameArena();
+
+            assertThat(arena.intern(null)).isEqualTo(NULL);
+            assertThat(arena.name(NULL)).isNull();
+            assertThat(arena.size()).isZero();
+        }
+
+        @Test
+        void should_keep_names_if_arena_grows() throws Exception {
+            PersonNameArena arena = new PersonNameArena();
+            for (int i = 0; i < 10_000; i++) {
+                assertThat(arena.intern("Person " + i)).isEqualTo(i);
+            }
+
+            assertThat(arena.name(4711)).isEqualTo("Person 4711");
+            assertThat(arena.intern("Person 4711")).isEqualTo(4711);
+        }
+    }
+
+    @Nested
+    class Copy {
+
+        @Test
+        void should_only_contain_copied_names() throws Exception {
+            PersonNameArena source = new PersonNameArena();
+            source.intern("Mary");
+            int paul = source.intern("Paul");
+            PersonNameArena arena = new PersonNameArena();
+
+            int copied = arena.copy(source, paul);
+            assertThat(arena.name(copied)).isEqualTo("Paul");
+            assertThat(arena.copy(source, paul)).isEqualTo(copied);
+            assertThat(arena.copy(source, NULL)).isEqualTo(NULL);
+            assertThat(arena.size()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    class Name {
+
+        @Test
+        void should_return_interned_name_including_supplementary_characters() throws Exception {
+            PersonNameArena arena = new PersonNameArena();
+            String name = "Jürgen \\u00e9\\u20ac\\uD83D\\uDE00\\u0000";
+
+            assertThat(arena.name(arena.intern(name))).isEqualTo(name);
+        }
+    }
+
+    @Nested
+    class Compare {
+
+        @Test
+        void should_order_like_string_compare_to() throws Exception {
+            PersonNameArena arena = new PersonNameArena();
+            for (int i = 0; i < 10_000; i++) {
+                String left = random(nextInt(0, 5), 0, 0x10000, false, false);
+                String right = random(nextInt(0, 5), 0, 0x10000, false, false);
+
+                assertThat(signum(arena.compare(arena.intern(left), arena.intern(right))))
+                    .isEqualTo(signum(left.compareTo(right)));
+                assertThat(signum(arena.compare(arena.intern(left), encode(right)))).isEqualTo(signum(left.compareTo(right)));
+            }
+        }
+
+        @Test
+        void should_order_null_first() throws Exception {
+            PersonNameArena arena = new PersonNameArena();
+
+            assertThat(arena.compare(NULL, arena.intern(""))).isNegative();
+            assertThat(arena.compare(arena.intern(""), null)).isPositive();
+            assertThat(arena.compare(NULL, (byte[]) null)).isZero();
+        }
+    }
+
+    @Nested
+    class StartsWith {
+
+        @Test
+        void should_return_true_only_if_name_starts_with_prefix() throws Exception {
+            PersonNameArena arena = new PersonNameArena();
+            int code = arena.intern("Zoë Smith");
+
+            assertThat(arena.startsWith(code, encode("Zoë"))).isTrue();
+            assertThat(arena.startsWith(code, encode(""))).isTrue();
+            assertThat(arena.startsWith(code, encode("Zoe"))).isFalse();
+            assertThat(arena.startsWith(code, encode("Zoë Smith Jr"))).isFalse();
+            assertThat(arena.startsWith(NULL, encode(""))).isFalse();
+        }
+    }
+}
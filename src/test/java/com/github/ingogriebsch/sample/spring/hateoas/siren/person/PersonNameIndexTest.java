@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.newArrayList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonNameIndexTest {
+
+    @Nested
+    class Find {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new PersonNameIndex().find(null));
+        }
+
+        @Test
+        void should_return_persons_with_matching_name_ignoring_case() throws Exception {
+            PersonNameIndex index = index(new Person(1L, "Mary", 20), new Person(2L, "Marc", 30), new Person(3L, "MARY", 40));
+
+            assertThat(index.find("mary")).extracting("id").containsExactly(1L, 3L);
+            assertThat(index.find("Marc")).extracting("id").containsExactly(2L);
+            assertThat(index.find("Mar")).isEmpty();
+        }
+
+        @Test
+        void should_not_return_removed_persons() throws Exception {
+            Person mary = new Person(1L, "Mary", 20);
+            PersonNameIndex index = index(mary, new Person(2L, "Mary", 30));
+
+            index.remove(mary);
+            assertThat(index.find("Mary")).extracting("id").containsExactly(2L);
+
+            index.remove(new Person(2L, "Mary", 30));
+            assertThat(index.find("Mary")).isEmpty();
+        }
+    }
+
+    @Nested
+    class AddAll {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new PersonNameIndex().addAll(null));
+        }
+
+        @Test
+        void should_make_all_persons_findable_by_name_and_prefix() throws Exception {
+            PersonNameIndex index = index(new Person(1L, "Mary", 20));
+            index.addAll(newArrayList(new Person(3L, "MARY", 40), new Person(2L, "Marc", 30)));
+
+            assertThat(index.find("mary")).extracting("id").containsExactly(1L, 3L);
+            assertThat(index.findByPrefix("mar")).extracting("id").containsExactly(2L, 1L, 3L);
+        }
+    }
+
+    @Nested
+    class FindByPrefix {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new PersonNameIndex().findByPrefix(null));
+        }
+
+        @Test
+        void should_return_persons_with_matching_prefix_ignoring_case_in_name_order() throws Exception {
+            PersonNameIndex index = index(new Person(1L, "Mary", 20), new Person(2L, "marc", 30), new Person(3L, "Paul", 40),
+                new Person(4L, "Ma", 50));
+
+            assertThat(index.findByPrefix("MA")).extracting("id").containsExactly(4L, 2L, 1L);
+            assertThat(index.findByPrefix("mary")).extracting("id").containsExactly(1L);
+            assertThat(index.findByPrefix("x")).isEmpty();
+            assertThat(index.findByPrefix("")).hasSize(4);
+        }
+    }
+
+    private static PersonNameIndex index(Person... persons) {
+        PersonNameIndex index = new PersonNameIndex();
+        for (Person person : persons) {
+            index.add(person);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,190 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static de.ingogriebsch.spring.hateoas.siren.MediaTypes.SIREN_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ingogriebsch.spring.hateoas.siren.RepresentationModelFactories;
+import de.ingogriebsch.spring.hateoas.siren.SirenActionFieldTypeConverter;
+import de.ingogriebsch.spring.hateoas.siren.SirenConfiguration;
+import de.ingogriebsch.spring.hateoas.siren.SirenEntityClassProvider;
+import de.ingogriebsch.spring.hateoas.siren.SirenEntityRelProvider;
+import de.ingogriebsch.spring.hateoas.siren.SirenMediaTypeConfiguration;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.hateoas.Links;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.hateoas.PagedModel.PageMetadata;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+class PersonPagedModelConverterTest {
+
+    private static final AffordanceTemplate INSERT =
+        AffordanceTemplate.of(PersonController.class, "insert", PersonInput.class, String.class);
+    private static final AffordanceTemplate UPDATE =
+        AffordanceTemplate.of(PersonController.class, "update", Long.class, String.class, String.class, PersonInput.class);
+
+    private final ObjectMapper objectMapper = sirenObjectMapper();
+    private final PersonPagedModelConverter converter = new PersonPagedModelConverter(objectMapper);
+
+    @Nested
+    class CanWrite {
+
+        @Test
+        void should_return_true_for_siren_only() throws Exception {
+            assertThat(converter.canWrite(PersonPagedModel.class, SIREN_JSON)).isTrue();
+            assertThat(converter.canWrite(PersonPagedModel.class, APPLICATION_JSON)).isFalse();
+            assertThat(converter.canWrite(PagedModel.class, SIREN_JSON)).isFalse();
+        }
+
+        @Test
+        void should_never_read() throws Exception {
+            assertThat(converter.canRead(PersonPagedModel.class, SIREN_JSON)).isFalse();
+        }
+    }
+
+    @Nested
+    class Write {
+
+        @Test
+        void should_write_the_same_document_as_the_siren_serializer() throws Exception {
+            List<Person> persons = newArrayList(new Person(1L, "Ingo", 44), new Person(2L, "Edina", 21));
+            PersonPagedModel model = model(persons, new PageMetadata(2, 0, 5));
+
+            assertThat(write(model)).isEqualTo(objectMapper.writeValueAsString(eager(model)));
+        }
+
+        @Test
+        void should_write_the_same_document_as_the_siren_serializer_if_page_spans_several_chunks() throws Exception {
+            List<Person> persons = rangeClosed(1, PersonPagedModelConverter.CHUNK_SIZE * 2 + 1)
+                .mapToObj(id -> new Person(id, "Person " + id, (int) id % 100)).collect(toList());
+            PersonPagedModel model = model(persons, new PageMetadata(persons.size(), 0, persons.size()));
+
+            assertThat(write(model)).isEqualTo(objectMapper.writeValueAsString(eager(model)));
+        }
+
+        @Test
+        void should_write_the_same_document_as_the_siren_serializer_if_page_is_empty() throws Exception {
+            PersonPagedModel model = model(newArrayList(), new PageMetadata(2, 3, 5));
+
+            assertThat(write(model)).isEqualTo(objectMapper.writeValueAsString(eager(model)));
+        }
+
+        @Test
+        void should_derive_the_relations_of_the_entities_from_their_page() throws Exception {
+            SirenEntityRelProvider relProvider = new SirenEntityRelProvider() {
+
+                @Override
+                public List<LinkRelation> get(RepresentationModel<?> entity, RepresentationModel<?> parent) {
+                    return newArrayList(LinkRelation.of(parent instanceof PagedModel ? "page-item" : "other"));
+                }
+            };
+            ObjectMapper objectMapper = sirenObjectMapper(relProvider);
+            PersonPagedModel model = model(newArrayList(new Person(1L, "Ingo", 44)), new PageMetadata(1, 0, 1));
+
+            MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+            new PersonPagedModelConverter(objectMapper).write(model, SIREN_JSON, outputMessage);
+            assertThat(outputMessage.getBodyAsString(UTF_8)).isEqualTo(objectMapper.writeValueAsString(eager(model)))
+                .contains("\"rel\":[\"page-item\"]");
+        }
+
+        @Test
+        void should_not_close_the_body_of_the_output_message() throws Exception {
+            AtomicBoolean closed = new AtomicBoolean();
+            MockHttpOutputMessage outputMessage = new MockHttpOutputMessage() {
+
+                @Override
+                public OutputStream getBody() throws IOException {
+                    return new FilterOutputStream(super.getBody()) {
+
+                        @Override
+                        public void close() {
+                            closed.set(true);
+                        }
+                    };
+                }
+            };
+
+            converter.write(model(newArrayList(new Person(1L, "Ingo", 44)), new PageMetadata(1, 0, 1)), SIREN_JSON,
+                outputMessage);
+            assertThat(closed).isFalse();
+            assertThat(outputMessage.getBodyAsString(UTF_8)).contains("\"Ingo\"");
+        }
+    }
+
+    private String write(PersonPagedModel model) throws Exception {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        converter.write(model, SIREN_JSON, outputMessage);
+        return outputMessage.getBodyAsString(UTF_8);
+    }
+
+    private static PersonPagedModel model(List<Person> persons, PageMetadata metadata) {
+        Links links = Links.of(Link.of("/persons").withSelfRel().andAffordances(INSERT.affordances("/persons")),
+            Link.of("/persons?page=1", "next"));
+        Function<Person, EntityModel<Person>> assembler = p -> {
+            String href = "/persons/" + p.getId();
+            return EntityModel.of(p, Link.of(href).withSelfRel().andAffordances(UPDATE.affordances(href)));
+        };
+        return new PersonPagedModel(persons, metadata, links, assembler);
+    }
+
+    private static PagedModel<EntityModel<Person>> eager(PersonPagedModel model) {
+        return PagedModel.of(newArrayList(model.getContent()), model.getMetadata(), model.getLinks());
+    }
+
+    private static ObjectMapper sirenObjectMapper() {
+        return sirenObjectMapper(null);
+    }
+
+    private static ObjectMapper sirenObjectMapper(SirenEntityRelProvider relProvider) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        if (relProvider != null) {
+            beanFactory.registerSingleton("sirenEntityRelProvider", relProvider);
+        }
+        SirenMediaTypeConfiguration configuration = new SirenMediaTypeConfiguration(
+            beanFactory.getBeanProvider(MessageResolver.class), beanFactory.getBeanProvider(SirenConfiguration.class),
+            beanFactory.getBeanProvider(SirenEntityClassProvider.class),
+            beanFactory.getBeanProvider(SirenEntityRelProvider.class),
+            beanFactory.getBeanProvider(SirenActionFieldTypeConverter.class),
+            beanFactory.getBeanProvider(RepresentationModelFactories.class));
+        return configuration.configureObjectMapper(new ObjectMapper());
+    }
+}
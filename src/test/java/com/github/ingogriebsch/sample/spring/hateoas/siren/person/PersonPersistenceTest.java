@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.time.Duration.ofDays;
+import static java.util.stream.Collectors.toList;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.ALWAYS;
+import static com.github.ingogriebsch.sample.spring.hateoas.siren.person.PersonJournal.Fsync.INTERVAL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.newArrayList;
+import static org.springframework.data.domain.Sort.Order.asc;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersonPersistenceTest {
+
+    @Nested
+    class Recover {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_empty_store_if_nothing_was_persisted() throws Exception {
+            try (PersonPersistence persistence = new PersonPersistence(directory, ALWAYS, 1, ofDays(1))) {
+                assertThat(persistence.recover().size()).isZero();
+            }
+        }
+
+        @Test
+        void should_restore_all_changes_from_the_journal() throws Exception {
+            List<Person> expected;
+            try (PersonPersistence persistence = new PersonPersistence(directory, ALWAYS, 1, ofDays(1))) {
+                PersonService personService = new PersonService(persistence.recover(), persistence.journal());
+                Person mary = personService.insert(new PersonInput("Mary", 20));
+                List<Person> batch =
+                    personService.insertAll(newArrayList(new PersonInput("Paul", 30), new PersonInput("Anna", 40)));
+                personService.update(mary.getId(), new PersonInput("Maria", 21));
+                personService.delete(batch.get(0).getId());
+                expected = personService.export().collect(toList());
+            }
+
+            assertThat(recover(directory, INTERVAL)).usingElementComparatorOnFields("id", "name", "age", "version")
+                .containsExactlyElementsOf(expected);
+        }
+
+        @Test
+        void should_restore_snapshot_and_replay_journal_tail() throws Exception {
+            List<Person> expected;
+            try (PersonPersistence persistence = new PersonPersistence(directory, ALWAYS, 1, ofDays(1))) {
+                PersonStore persons = persistence.recover();
+                PersonService personService = new PersonService(persons, persistence.journal());
+                Person mary = personService.insert(new PersonInput("Mary", 20));
+                personService.insert(new PersonInput("Paul", 30));
+
+                persistence.snapshot(persons);
+                personService.update(mary.getId(), new PersonInput("Maria", 21));
+                personService.insert(new PersonInput("Anna", 40));
+                persistence.snapshot(persons);
+                personService.delete(mary.getId());
+                expected = personService.export().collect(toList());
+            }
+
+            assertThat(recover(directory, ALWAYS)).usingElementComparatorOnFields("id", "name", "age", "version")
+                .containsExactlyElementsOf(expected);
+        }
+
+        @Test
+        void should_restore_changes_journaled_but_not_yet_applied_when_snapshot_was_taken() throws Exception {
+            try (PersonPersistence persistence = new PersonPersistence(directory, ALWAYS, 1, ofDays(1))) {
+                PersonStore persons = persistence.recover();
+                persons.insert(new Person(1L, "Mary", 20));
+                persistence.journal().insert(new Person(1L, "Mary", 20));
+                persistence.journal().update(new Person(1L, "Maria", 21, 1L));
+
+                persistence.snapshot(persons);
+            }
+
+            assertThat(recover(directory, ALWAYS)).usingElementComparatorOnFields("id", "name", "age", "version")
+                .containsExactly(new Person(1L, "Maria", 21, 1L));
+        }
+    }
+
+    @Nested
+    class Seed {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_not_reuse_id_of_deleted_person_after_its_journal_was_purged() throws Exception {
+            try (PersonPersistence persistence = new PersonPersistence(directory, ALWAYS, 1, ofDays(1))) {
+                PersonStore persons = persistence.recover();
+                PersonService personService = new PersonService(persons, persistence.journal());
+                personService.insert(new PersonInput("Mary", 20));
+                Person paul = personService.insert(new PersonInput("Paul", 30));
+                personService.delete(paul.getId());
+
+                persistence.snapshot(persons);
+                persistence.snapshot(persons);
+            }
+
+            try (PersonPersistence persistence = new PersonPersistence(directory, ALWAYS, 1, ofDays(1))) {
+                PersonService personService = new PersonService(persistence.recover(), persistence.journal());
+                assertThat(personService.insert(new PersonInput("Anna", 40)).getId()).isEqualTo(3L);
+            }
+        }
+    }
+
+    private static List<Person> recover(Path directory, PersonJournal.Fsync fsync) throws Exception {
+        try (PersonPersistence persistence = new PersonPersistence(directory, fsync, 1, ofDays(1))) {
+            return persistence.recover().stream(asc("id")).collect(toList());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.util.unit.DataSize.ofBytes;
+import static org.springframework.util.unit.DataSize.ofKilobytes;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class PersonResponseCacheTest {
+
+    private static final String SIREN = "application/vnd.siren+json http://localhost/persons";
+    private static final String HAL = "application/hal+json http://localhost/persons";
+
+    @Nested
+    class Get {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new PersonResponseCache(ofKilobytes(1)).get(null, 0L, SIREN));
+            assertThrows(IllegalArgumentException.class, () -> new PersonResponseCache(ofKilobytes(1)).get(1L, 0L, null));
+        }
+
+        @Test
+        void should_return_response_if_version_and_variant_match() throws Exception {
+            PersonResponseCache cache = new PersonResponseCache(ofKilobytes(1));
+            cache.put(1L, 0L, SIREN, bytes("siren"));
+            cache.put(1L, 0L, HAL, bytes("hal"));
+
+            assertThat(cache.get(1L, 0L, SIREN)).isEqualTo(bytes("siren"));
+            assertThat(cache.get(1L, 0L, HAL)).isEqualTo(bytes("hal"));
+            assertThat(cache.stats().hitCount()).isEqualTo(2L);
+        }
+
+        @Test
+        void should_return_null_if_version_does_not_match() throws Exception {
+            PersonResponseCache cache = new PersonResponseCache(ofKilobytes(1));
+            cache.put(1L, 0L, SIREN, bytes("siren"));
+
+            assertThat(cache.get(1L, 1L, SIREN)).isNull();
+            assertThat(cache.get(2L, 0L, SIREN)).isNull();
+            assertThat(cache.stats().missCount()).isEqualTo(2L);
+        }
+    }
+
+    @Nested
+    class Put {
+
+        @Test
+        void should_replace_responses_of_older_versions() throws Exception {
+            PersonResponseCache cache = new PersonResponseCache(ofKilobytes(1));
+            cache.put(1L, 0L, SIREN, bytes("old"));
+            cache.put(1L, 1L, HAL, bytes("new"));
+            cache.put(1L, 0L, SIREN, bytes("old"));
+
+            assertThat(cache.get(1L, 0L, SIREN)).isNull();
+            assertThat(cache.get(1L, 1L, HAL)).isEqualTo(bytes("new"));
+        }
+
+        @Test
+        void should_evict_if_maximum_weight_is_exceeded() throws Exception {
+            PersonResponseCache cache = new PersonResponseCache(ofBytes(10));
+            cache.put(1L, 0L, SIREN, new byte[8]);
+            cache.put(2L, 0L, SIREN, new byte[8]);
+
+            assertThat(cache.get(1L, 0L, SIREN)).isNull();
+            assertThat(cache.stats().evictionCount()).isEqualTo(1L);
+        }
+    }
+
+    @Nested
+    class Invalidate {
+
+        @Test
+        void should_remove_all_variants_of_person() throws Exception {
+            PersonResponseCache cache = new PersonResponseCache(ofKilobytes(1));
+            cache.put(1L, 0L, SIREN, bytes("siren"));
+            cache.put(1L, 0L, HAL, bytes("hal"));
+            cache.put(2L, 0L, SIREN, bytes("other"));
+
+            cache.invalidate(1L);
+
+            assertThat(cache.get(1L, 0L, SIREN)).isNull();
+            assertThat(cache.get(1L, 0L, HAL)).isNull();
+            assertThat(cache.get(2L, 0L, SIREN)).isEqualTo(bytes("other"));
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+}
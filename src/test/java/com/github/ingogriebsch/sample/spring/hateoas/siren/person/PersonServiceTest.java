@@ -19,6 +19,8 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
 
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
 
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
@@ -27,16 +29,28 @@ import static org.apache.commons.lang3.RandomUtils.nextLong;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.util.Lists.newArrayList;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.Sort.by;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
+import static org.springframework.util.unit.DataSize.ofKilobytes;
 
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.assertj.core.groups.Tuple;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort.Order;
 
 class PersonServiceTest {
 
@@ -60,6 +74,112 @@ class PersonServiceTest {
             assertThat(content).extracting("name", "age").containsExactlyInAnyOrderElementsOf(
                 personInputs.stream().map(pi -> new Tuple(pi.getName(), pi.getAge())).collect(toList()));
         }
+
+        @Test
+        void should_apply_sort_across_all_persons_before_paging() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(personInput("Paul"), personInput("Mary"), personInput("Ringo"), personInput("Anna"))
+                .forEach(p -> personService.insert(p));
+
+            Page<Person> first = personService.findAll(PageRequest.of(0, 2, by("name")));
+            assertThat(first.getContent()).extracting("name").containsExactly("Anna", "Mary");
+            assertThat(first.getTotalElements()).isEqualTo(4);
+
+            Page<Person> second = personService.findAll(PageRequest.of(1, 2, by(DESC, "name")));
+            assertThat(second.getContent()).extracting("name").containsExactly("Mary", "Anna");
+        }
+
+        @Test
+        void should_apply_the_direction_of_every_order_to_its_own_property() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(new PersonInput("Paul", 30), new PersonInput("Anna", 20), new PersonInput("Paul", 40))
+                .forEach(p -> personService.insert(p));
+
+            Page<Person> persons = personService.findAll(PageRequest.of(0, 10, by(Order.asc("name"), Order.desc("age"))));
+            assertThat(persons.getContent()).extracting("age").containsExactly(20, 40, 30);
+        }
+
+        @Test
+        void should_throw_exception_if_sorted_by_unknown_property() throws Exception {
+            PersonService personService = new PersonService();
+            personService.insert(personInput());
+
+            assertThrows(PersonSortException.class, () -> personService.findAll(PageRequest.of(0, 10, by("unknown"))));
+            assertThrows(PersonSortException.class, () -> personService.findAll(PageRequest.of(0, 10, by("name", "unknown"))));
+            assertThrows(PersonSortException.class, () -> personService.findAll(PageRequest.of(0, 10, by("id", "unknown"))));
+        }
+
+        @Test
+        void should_not_change_insertion_order_if_sorted() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(personInput("Paul"), personInput("Mary"), personInput("Anna")).forEach(p -> personService.insert(p));
+
+            personService.findAll(PageRequest.of(0, 10, by("name")));
+
+            Page<Person> persons = personService.findAll(PageRequest.of(0, 10));
+            assertThat(persons.getContent()).extracting("name").containsExactly("Paul", "Mary", "Anna");
+        }
+
+        @Test
+        void should_reflect_updates_in_sort_order() throws Exception {
+            PersonService personService = new PersonService();
+            Person paul = personService.insert(new PersonInput("Paul", 30));
+            personService.insert(new PersonInput("Mary", 40));
+
+            personService.update(paul.getId(), new PersonInput("Paul", 50));
+
+            Page<Person> persons = personService.findAll(PageRequest.of(0, 10, by("age")));
+            assertThat(persons.getContent()).extracting("name").containsExactly("Mary", "Paul");
+        }
+    }
+
+    @Nested
+    class FindAllByCursor {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new PersonService().findAll(null, 10));
+        }
+
+        @Test
+        void should_walk_all_persons_in_sort_order() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(personInput("Paul"), personInput("Mary"), personInput("Ringo"), personInput("Anna"), personInput("John"))
+                .forEach(p -> personService.insert(p));
+
+            PersonCursor cursor = PersonCursor.parse("", by("name")).get();
+            Slice<Person> first = personService.findAll(cursor, 2);
+            assertThat(first.getContent()).extracting("name").containsExactly("Anna", "John");
+            assertThat(first.hasNext()).isTrue();
+
+            cursor = PersonCursor.parse(cursor.after(first.getContent().get(1)).encode(), by("ignored")).get();
+            Slice<Person> second = personService.findAll(cursor, 2);
+            assertThat(second.getContent()).extracting("name").containsExactly("Mary", "Paul");
+            assertThat(second.hasNext()).isTrue();
+
+            cursor = cursor.after(second.getContent().get(1));
+            Slice<Person> third = personService.findAll(cursor, 2);
+            assertThat(third.getContent()).extracting("name").containsExactly("Ringo");
+            assertThat(third.hasNext()).isFalse();
+        }
+
+        @Test
+        void should_not_shift_if_persons_are_inserted_or_deleted_in_between() throws Exception {
+            PersonService personService = new PersonService();
+            List<Person> persons = newArrayList(personInput(), personInput(), personInput(), personInput()).stream()
+                .map(p -> personService.insert(p)).collect(toList());
+
+            PersonCursor cursor = PersonCursor.parse("", by(DESC, "id")).get();
+            Slice<Person> first = personService.findAll(cursor, 2);
+            assertThat(first.getContent()).containsExactly(persons.get(3), persons.get(2));
+
+            personService.delete(persons.get(3).getId());
+            personService.insert(personInput());
+
+            Slice<Person> second = personService.findAll(cursor.after(first.getContent().get(1)), 2);
+            assertThat(second.getContent()).containsExactly(persons.get(1), persons.get(0));
+            assertThat(second.hasNext()).isFalse();
+        }
     }
 
     @Nested
@@ -77,6 +197,136 @@ class PersonServiceTest {
             assertThat(persons).extracting("name", "age")
                 .containsExactlyElementsOf(newArrayList(new Tuple(mary.getName(), mary.getAge())));
         }
+
+        @Test
+        void should_not_return_persons_whose_name_changed() throws Exception {
+            PersonService personService = new PersonService();
+            Person person = personService.insert(personInput("Peter"));
+            personService.update(person.getId(), new PersonInput("Paul", person.getAge()));
+
+            assertThat(personService.search("peter")).isEmpty();
+            assertThat(personService.search("paul")).extracting("id").containsExactly(person.getId());
+        }
+
+        @Test
+        void should_return_page_of_persons_matching_prefix() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(personInput("Peter"), personInput("Paul"), personInput("Mary"), personInput("Pete"))
+                .forEach(p -> personService.insert(p));
+
+            Page<Person> first = personService.search("pe", true, PageRequest.of(0, 1));
+            assertThat(first.getContent()).extracting("name").containsExactly("Pete");
+            assertThat(first.getTotalElements()).isEqualTo(2);
+
+            Page<Person> second = personService.search("pe", true, PageRequest.of(1, 1));
+            assertThat(second.getContent()).extracting("name").containsExactly("Peter");
+        }
+
+        @Test
+        void should_return_page_of_persons_matching_name_in_requested_order() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(new PersonInput("Mary", 30), new PersonInput("Paul", 40), new PersonInput("mary", 20))
+                .forEach(p -> personService.insert(p));
+
+            Page<Person> persons = personService.search("MARY", false, PageRequest.of(0, 10, by("age")));
+            assertThat(persons.getContent()).extracting("age").containsExactly(20, 30);
+            assertThat(persons.getTotalElements()).isEqualTo(2);
+        }
+    }
+
+    @Nested
+    class FindByAge {
+
+        @Test
+        void should_return_page_of_persons_within_range_ordered_by_age() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(new PersonInput("Paul", 40), new PersonInput("Mary", 20), new PersonInput("Anna", 30),
+                new PersonInput("Ringo", 50), new PersonInput("Pete", 30)).forEach(p -> personService.insert(p));
+
+            Page<Person> first = personService.findByAge(25, 45, PageRequest.of(0, 2));
+            assertThat(first.getContent()).extracting("name").containsExactly("Anna", "Pete");
+            assertThat(first.getTotalElements()).isEqualTo(3);
+
+            Page<Person> second = personService.findByAge(25, 45, PageRequest.of(1, 2));
+            assertThat(second.getContent()).extracting("name").containsExactly("Paul");
+
+            assertThat(personService.findByAge(25, 45, PageRequest.of(2, 2)).getContent()).isEmpty();
+        }
+
+        @Test
+        void should_return_page_of_persons_within_range_in_requested_order() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(new PersonInput("Paul", 40), new PersonInput("Mary", 20), new PersonInput("Anna", 30),
+                new PersonInput("Ringo", 50), new PersonInput("Pete", 30)).forEach(p -> personService.insert(p));
+
+            Page<Person> byAge = personService.findByAge(25, 45, PageRequest.of(0, 2, by(DESC, "age")));
+            assertThat(byAge.getContent()).extracting("name").containsExactly("Paul", "Pete");
+
+            Page<Person> byName = personService.findByAge(25, 45, PageRequest.of(1, 2, by("name")));
+            assertThat(byName.getContent()).extracting("name").containsExactly("Pete");
+        }
+
+        @Test
+        void should_match_a_scan_for_every_store_layout() throws Exception {
+            for (PersonStore personStore : newArrayList(new ObjectPersonStore(), new ColumnarPersonStore())) {
+                PersonService personService = new PersonService(personStore);
+                for (int i = 0; i < 1000; i++) {
+                    personService.insert(new PersonInput(randomAlphabetic(10), nextInt(0, 100)));
+                }
+
+                for (int i = 0; i < 50; i++) {
+                    int min = nextInt(0, 100);
+                    int max = nextInt(min, 100);
+                    Pageable pageable = PageRequest.of(nextInt(0, 5), nextInt(1, 50), by(i % 2 == 0 ? DESC : ASC, "age"));
+                    List<Person> expected = personStore.stream(pageable.getSort().iterator().next())
+                        .filter(p -> p.getAge() >= min && p.getAge() <= max).skip(pageable.getOffset())
+                        .limit(pageable.getPageSize()).collect(toList());
+
+                    assertThat(personService.findByAge(min, max, pageable).getContent()).containsExactlyElementsOf(expected);
+                }
+            }
+        }
+    }
+
+    @Nested
+    class AgeStatistics {
+
+        @Test
+        void should_return_count_average_bounds_and_buckets_within_range() throws Exception {
+            PersonService personService = new PersonService();
+            newArrayList(new PersonInput("Paul", 40), new PersonInput("Mary", 20), new PersonInput("Anna", 33),
+                new PersonInput("Ringo", 51), new PersonInput("Pete", 38)).forEach(p -> personService.insert(p));
+
+            PersonAgeStatistics statistics = personService.ageStatistics(25, 45, 10).get();
+            assertThat(statistics.getCount()).isEqualTo(3);
+            assertThat(statistics.getAverage()).isEqualTo(37.0);
+            assertThat(statistics.getMin()).isEqualTo(33);
+            assertThat(statistics.getMax()).isEqualTo(40);
+            assertThat(statistics.getBuckets()).extracting("from", "to", "count").containsExactly(new Tuple(30, 39, 2L),
+                new Tuple(40, 45, 1L));
+        }
+
+        @Test
+        void should_return_empty_statistics_if_no_person_is_within_range() throws Exception {
+            PersonService personService = new PersonService();
+            personService.insert(new PersonInput("Paul", 40));
+
+            PersonAgeStatistics statistics = personService.ageStatistics(50, 60, 10).get();
+            assertThat(statistics.getCount()).isZero();
+            assertThat(statistics.getAverage()).isNull();
+            assertThat(statistics.getMin()).isNull();
+            assertThat(statistics.getBuckets()).isEmpty();
+        }
+
+        @Test
+        void should_return_empty_optional_if_range_needs_too_many_buckets() throws Exception {
+            PersonService personService = new PersonService();
+            personService.insert(new PersonInput("Paul", 0));
+            personService.insert(new PersonInput("Mary", 1000));
+
+            assertThat(personService.ageStatistics(0, 1000, 1)).isEmpty();
+            assertThat(personService.ageStatistics(0, 1000, 10)).isPresent();
+        }
     }
 
     @Nested
@@ -130,6 +380,46 @@ class PersonServiceTest {
 
     }
 
+    @Nested
+    class InsertAll {
+
+        @Test
+        void should_throw_exception_if_called_with_null() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new PersonService().insertAll(null));
+        }
+
+        @Test
+        void should_return_person_instances_with_consecutive_ids_in_input_order() throws Exception {
+            PersonService personService = new PersonService();
+            Person first = personService.insert(personInput());
+            List<PersonInput> personInputs = newArrayList(personInput(), personInput(), personInput());
+
+            List<Person> persons = personService.insertAll(personInputs);
+            assertThat(persons).extracting("id").containsExactly(first.getId() + 1, first.getId() + 2, first.getId() + 3);
+            assertThat(persons).extracting("name", "age").containsExactlyElementsOf(
+                personInputs.stream().map(pi -> new Tuple(pi.getName(), pi.getAge())).collect(toList()));
+            assertThat(personService.findAll(PageRequest.of(0, 10)).getContent()).hasSize(4).containsAll(persons);
+            assertThat(personService.insert(personInput()).getId()).isEqualTo(first.getId() + 4);
+        }
+
+        @Test
+        void should_journal_only_persons_the_store_accepted_and_retry_the_others_with_another_id() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            List<Person> journaled = newArrayList();
+            PersonService personService = new PersonService(personStore, journal(journaled));
+            // Taken past the service, like a loader does, so the id the service hands out next is rejected by the store.
+            personStore.insert(new Person(2L, "taken", 1));
+            List<PersonInput> personInputs = newArrayList(personInput(), personInput(), personInput());
+
+            List<Person> persons = personService.insertAll(personInputs);
+            assertThat(persons).extracting("id").containsExactly(1L, 4L, 3L);
+            assertThat(persons).extracting("name")
+                .containsExactlyElementsOf(personInputs.stream().map(PersonInput::getName).collect(toList()));
+            assertThat(journaled).extracting("id").containsExactly(1L, 3L, 4L);
+            assertThat(personStore.get(2L).map(Person::getName)).contains("taken");
+        }
+    }
+
     @Nested
     class Update {
 
@@ -167,6 +457,116 @@ class PersonServiceTest {
             assertThat(optional).isNotNull();
             assertThat(optional.isPresent()).isFalse();
         }
+
+        @Test
+        void should_increase_version_if_person_is_updated() throws Exception {
+            PersonService personService = new PersonService();
+            Person person = personService.insert(personInput());
+            long version = personService.version();
+
+            Optional<Person> optional = personService.update(person.getId(), personInput(), v -> v == 0L);
+
+            assertThat(optional.map(Person::getVersion)).contains(1L);
+            assertThat(personService.version()).isGreaterThan(version);
+        }
+
+        @Test
+        void should_force_journal_before_updated_person_becomes_visible() throws Exception {
+            PersonStore personStore = new ObjectPersonStore();
+            List<Long> visible = newArrayList();
+            PersonService personService = new PersonService(personStore,
+                journal(newArrayList(), () -> personStore.get(1L).ifPresent(p -> visible.add(p.getVersion()))));
+            personService.insert(personInput());
+
+            assertThat(personService.update(1L, personInput())).map(Person::getVersion).contains(1L);
+            assertThat(visible).containsExactly(0L);
+        }
+
+        @Test
+        void should_invalidate_cached_responses_of_updated_person() throws Exception {
+            PersonResponseCache personResponseCache = new PersonResponseCache(ofKilobytes(1));
+            PersonService personService = new PersonService(new ObjectPersonStore(), PersonJournal.NONE, personResponseCache);
+            Person person = personService.insert(personInput());
+            personResponseCache.put(person.getId(), 0L, "siren", new byte[] { 1 });
+
+            personService.update(person.getId(), personInput());
+
+            assertThat(personResponseCache.get(person.getId(), 0L, "siren")).isNull();
+        }
+
+        @Test
+        void should_throw_exception_and_keep_person_if_version_does_not_match() throws Exception {
+            PersonService personService = new PersonService();
+            PersonInput personInput = personInput();
+            Person person = personService.insert(personInput);
+
+            assertThrows(PersonVersionMismatchException.class,
+                () -> personService.update(person.getId(), personInput(), v -> v == 1L));
+
+            assertThat(personService.findOne(person.getId()).get()).isEqualToComparingOnlyGivenFields(personInput, "name", "age");
+            assertThat(personService.findOne(person.getId()).map(Person::getVersion)).contains(0L);
+        }
+    }
+
+    @Nested
+    class ConcurrentUpdate {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_be_linearizable_if_persons_are_kept_as_objects() throws Exception {
+            verifyLinearizable(new ObjectPersonStore());
+        }
+
+        @Test
+        void should_be_linearizable_if_persons_are_kept_in_columns() throws Exception {
+            verifyLinearizable(new ColumnarPersonStore());
+        }
+
+        @Test
+        void should_be_linearizable_if_persons_are_kept_in_mapped_files() throws Exception {
+            verifyLinearizable(new MappedPersonStore(directory));
+        }
+
+        private void verifyLinearizable(PersonStore personStore) throws Exception {
+            PersonService personService = new PersonService(personStore);
+            Long id = personService.insert(PersonHistory.input("initial")).getId();
+            PersonHistory history = new PersonHistory("initial");
+            int writers = 4;
+            int updates = 2_000;
+
+            ExecutorService executor = newFixedThreadPool(writers * 2);
+            try {
+                CountDownLatch writing = new CountDownLatch(writers);
+                List<Future<?>> futures = newArrayList();
+                for (int w = 0; w < writers; w++) {
+                    String writer = "writer-" + w + "-";
+                    futures.add(executor.submit(() -> {
+                        try {
+                            for (int i = 0; i < updates; i++) {
+                                history.update(writer + i, pi -> personService.update(id, pi));
+                            }
+                        } finally {
+                            writing.countDown();
+                        }
+                    }));
+                    futures.add(executor.submit(() -> {
+                        while (writing.getCount() > 0) {
+                            history.read(() -> personService.findOne(id));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(60, SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(history.violations()).isEmpty();
+            assertThat(personService.findOne(id).map(Person::getVersion)).contains((long) writers * updates);
+        }
     }
 
     @Nested
@@ -197,6 +597,75 @@ class PersonServiceTest {
             assertThat(optional.isPresent()).isFalse();
         }
 
+        @Test
+        void should_throw_exception_and_keep_person_if_version_does_not_match() throws Exception {
+            PersonService personService = new PersonService();
+            Person person = personService.insert(personInput());
+
+            assertThrows(PersonVersionMismatchException.class, () -> personService.delete(person.getId(), v -> v == 1L));
+
+            assertThat(personService.findOne(person.getId())).isPresent();
+        }
+
+        @Test
+        void should_invalidate_cached_responses_of_deleted_person() throws Exception {
+            PersonResponseCache personResponseCache = new PersonResponseCache(ofKilobytes(1));
+            PersonService personService = new PersonService(new ObjectPersonStore(), PersonJournal.NONE, personResponseCache);
+            Person person = personService.insert(personInput());
+            personResponseCache.put(person.getId(), 0L, "siren", new byte[] { 1 });
+
+            personService.delete(person.getId());
+
+            assertThat(personResponseCache.get(person.getId(), 0L, "siren")).isNull();
+        }
+
+    }
+
+    private static PersonJournal journal(List<Person> journaled) {
+        return journal(journaled, () -> {
+        });
+    }
+
+    private static PersonJournal journal(List<Person> journaled, Runnable forced) {
+        return new PersonJournal() {
+
+            @Override
+            public long insert(Person person) {
+                journaled.add(person);
+                return journaled.size();
+            }
+
+            @Override
+            public long insertAll(Collection<Person> persons) {
+                journaled.addAll(persons);
+                return journaled.size();
+            }
+
+            @Override
+            public long update(Person person) {
+                journaled.add(person);
+                return journaled.size();
+            }
+
+            @Override
+            public long delete(Long id) {
+                return journaled.size();
+            }
+
+            @Override
+            public void sync(long position) {
+                forced.run();
+            }
+
+            @Override
+            public long lastId() {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
     }
 
     private static PersonInput personInput() {
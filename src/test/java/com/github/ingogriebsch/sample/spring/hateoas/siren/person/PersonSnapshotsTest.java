@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * Spring HATEOAS Siren sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.siren.person;
+
+import static java.util.concurrent.ForkJoinPool.commonPool;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.newArrayList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersonSnapshotsTest {
+
+    @Nested
+    class Load {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_written_persons_in_chunks() throws Exception {
+            PersonSnapshots snapshots = new PersonSnapshots(directory, 2);
+            List<Person> persons =
+                newArrayList(new Person(1L, "Mary", 20, 3L), new Person(2L, "Jürgen", 30), new Person(3L, null, null));
+            assertThat(snapshots.write(1L, 3L, persons.stream())).isEqualTo(3);
+
+            List<List<Person>> chunks = new CopyOnWriteArrayList<>();
+            assertThat(snapshots.load(1L, commonPool(), chunks::add)).isEqualTo(3);
+
+            assertThat(chunks).extracting(List::size).containsExactlyInAnyOrder(2, 1);
+            assertThat(chunks.stream().flatMap(List::stream)).usingElementComparatorOnFields("id", "name", "age", "version")
+                .containsExactlyInAnyOrderElementsOf(persons);
+        }
+
+        @Test
+        void should_return_many_persons() throws Exception {
+            PersonSnapshots snapshots = new PersonSnapshots(directory, 1000);
+            snapshots.write(1L, 100_000L,
+                rangeClosed(1, 100_000).mapToObj(id -> new Person(id, "Person " + id, (int) (id % 100))));
+
+            PersonStore persons = new ObjectPersonStore();
+            snapshots.load(1L, commonPool(), persons::insertAll);
+
+            assertThat(persons.size()).isEqualTo(100_000);
+            assertThat(persons.get(100_000L)).hasValue(new Person(100_000L, "Person 100000", 0));
+        }
+
+        @Test
+        void should_return_persons_of_an_empty_snapshot() throws Exception {
+            PersonSnapshots snapshots = new PersonSnapshots(directory, 2);
+            snapshots.write(1L, 0L, Stream.empty());
+
+            List<List<Person>> chunks = new CopyOnWriteArrayList<>();
+            assertThat(snapshots.load(1L, commonPool(), chunks::add)).isZero();
+            assertThat(chunks).isEmpty();
+        }
+
+        @Test
+        void should_throw_exception_if_snapshot_is_not_valid() throws Exception {
+            PersonSnapshots snapshots = new PersonSnapshots(directory, 1);
+            Files.write(directory.resolve("snapshot-0000000000000000001.bin"),
+                new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+
+            assertThrows(IOException.class, () -> snapshots.load(1L, commonPool(), c -> {
+            }));
+        }
+    }
+
+    @Nested
+    class LastId {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_highest_id_even_if_snapshot_does_not_contain_it() throws Exception {
+            PersonSnapshots snapshots = new PersonSnapshots(directory, 2);
+            snapshots.write(1L, 42L, Stream.of(new Person(1L, "Mary", 20)));
+
+            assertThat(snapshots.lastId(1L)).isEqualTo(42L);
+        }
+
+        @Test
+        void should_throw_exception_if_snapshot_is_not_valid() throws Exception {
+            PersonSnapshots snapshots = new PersonSnapshots(directory, 1);
+            Files.write(directory.resolve("snapshot-0000000000000000001.bin"), new byte[] { 1, 2, 3, 4 });
+
+            assertThrows(IOException.class, () -> snapshots.lastId(1L));
+        }
+    }
+
+    @Nested
+    class Latest {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void should_return_empty_optional_if_none_was_written() throws Exception {
+            assertThat(new PersonSnapshots(directory, 1).latest()).isEmpty();
+        }
+
+        @Test
+        void should_return_highest_segment_and_purge_older_ones() throws Exception {
+            PersonSnapshots snapshots = new PersonSnapshots(directory, 1);
+            snapshots.write(3L, 0L, Stream.empty());
+            snapshots.write(7L, 0L, Stream.empty());
+            assertThat(snapshots.latest()).hasValue(7L);
+
+            snapshots.purge(7L);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.map(p -> p.getFileName().toString()).collect(toList()))
+                    .containsExactly("snapshot-0000000000000000007.bin");
+            }
+        }
+    }
+}